@@ -19,16 +19,50 @@ repositories {
     mavenCentral()
 }
 
+val jmh: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
 dependencies {
 
     testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 tasks.test {
     useJUnitPlatform()
 }
 
+tasks.register<JavaExec>("jmh") {
+    group = "verification"
+    description = "Runs the JMH benchmarks with the GC profiler. Pass extra JMH options via -Pjmh.args=\"...\"."
+    dependsOn(jmh.classesTaskName)
+    classpath = jmh.runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    val resultFile = layout.buildDirectory.file("reports/jmh/results.json")
+    val extraArgs = providers.gradleProperty("jmh.args").map { it.split(" ").filter(String::isNotBlank) }.orElse(emptyList())
+    doFirst {
+        resultFile.get().asFile.parentFile.mkdirs()
+    }
+    argumentProviders.add(CommandLineArgumentProvider {
+        listOf("-prof", "gc", "-rf", "json", "-rff", resultFile.get().asFile.absolutePath) + extraArgs.get()
+    })
+}
+
+tasks.register<JavaExec>("ingestionLoadTest") {
+    group = "verification"
+    description = "Load-tests BcbpIngestionServer on localhost. Pass options via -Pingestion.args=\"idle=20000 clients=64 ...\"."
+    dependsOn(jmh.classesTaskName)
+    classpath = jmh.runtimeClasspath
+    mainClass.set("de.nielstron.bcbp.BcbpIngestionLoadTest")
+    val extraArgs = providers.gradleProperty("ingestion.args").map { it.split(" ").filter(String::isNotBlank) }.orElse(emptyList())
+    argumentProviders.add(CommandLineArgumentProvider { extraArgs.get() })
+}
+
 tasks.javadoc {
     (options as StandardJavadocDocletOptions).addStringOption("Xdoclint:none", "-quiet")
 }
@@ -0,0 +1,93 @@
+package de.nielstron.bcbp;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency distribution of {@link BcbpParser#tryParse(String)} on hostile payloads, next to a typical pass.
+ * Sampled rather than averaged, so the p99 and p99.99 columns show whether any shape has a slow tail.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AdversarialParseBenchmark {
+
+    private static final int MAX = BcbpParser.DEFAULT_MAX_PAYLOAD_LENGTH;
+
+    public enum Payload {
+        TYPICAL(BenchmarkPayloads.build(1, true, false)),
+        /** Nine legs, every size field at 0xFF and every section filled to it. */
+        MAXIMAL_SECTIONS(maximalSections()),
+        /** The maximal pass padded with airline data up to the length ceiling. */
+        MAXIMAL_LENGTH(pad(maximalSections(), 'X', MAX)),
+        /** Nine legs each claiming 0xFF conditional bytes, far more than the payload holds. */
+        OVERSTATED_SIZES(overstatedSizes()),
+        LINE_BREAK_FLOOD(pad("", '\n', MAX)),
+        LEADING_WHITESPACE(" ".repeat(MAX - BenchmarkPayloads.build(1, true, false).length())
+            + BenchmarkPayloads.build(1, true, false)),
+        /** One character over the ceiling: rejected before anything is read. */
+        OVER_LIMIT(pad(BenchmarkPayloads.build(9, true, true), 'X', MAX + 1)),
+        OVERSIZED(pad(BenchmarkPayloads.build(9, true, true), 'X', 1 << 20));
+
+        final String raw;
+
+        Payload(String raw) {
+            this.raw = raw;
+        }
+    }
+
+    @Param
+    public Payload payload;
+
+    private String raw;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        raw = payload.raw;
+    }
+
+    @Benchmark
+    public ParseResult tryParse() {
+        return IataBcbp.tryParse(raw);
+    }
+
+    @Benchmark
+    public boolean isLikelyBcbp() {
+        return IataBcbp.isLikelyBcbp(raw);
+    }
+
+    private static String maximalSections() {
+        StringBuilder pass = new StringBuilder("M9DESMARAIS/LUC       E");
+        for (int leg = 0; leg < 9; leg++) {
+            pass.append("ABC123 YULFRAAC 0834 226F001A0025 1FF");
+            if (leg == 0) {
+                pass.append(">6FB").append("1WW6225BAC ").append("0".repeat(251 - 11));
+            } else {
+                pass.append("FD").append("0141234567890 1AC AC ").append("1".repeat(253 - 21));
+            }
+        }
+        return pass.append("^1FF").append("S".repeat(255)).toString();
+    }
+
+    private static String overstatedSizes() {
+        return "M9DESMARAIS/LUC       E" + "ABC123 YULFRAAC 0834 226F001A0025 1FF".repeat(9);
+    }
+
+    private static String pad(String payload, char filler, int length) {
+        return payload + String.valueOf(filler).repeat(length - payload.length());
+    }
+}
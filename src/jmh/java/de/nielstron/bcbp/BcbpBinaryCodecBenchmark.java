@@ -0,0 +1,54 @@
+package de.nielstron.bcbp;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** {@link BcbpBinaryCodec} round trips next to re-parsing the raw payload. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BcbpBinaryCodecBenchmark {
+
+    @Param({"SINGLE_LEG_CONDITIONALS", "FOUR_LEG_CONDITIONALS_SECURITY", "NINE_LEG_CONDITIONALS_SECURITY"})
+    public IataBcbpParseBenchmark.Payload payload;
+
+    private String raw;
+    private IataBcbp.Parsed parsed;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        raw = payload.raw;
+        parsed = IataBcbp.parse(raw);
+        encoded = BcbpBinaryCodec.encode(parsed);
+    }
+
+    @Benchmark
+    public IataBcbp.Parsed parse() {
+        return IataBcbp.parse(raw);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return BcbpBinaryCodec.encode(parsed);
+    }
+
+    @Benchmark
+    public IataBcbp.Parsed decode() {
+        return BcbpBinaryCodec.decode(encoded);
+    }
+}
@@ -0,0 +1,53 @@
+package de.nielstron.bcbp;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Gates sharing one {@link BcbpDuplicateDetector}; after the first pass over the legs every scan is a repeat. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class BcbpDuplicateDetectorBenchmark {
+
+    private static final int LEGS = 4_096;
+
+    private final BcbpDuplicateDetector detector = BcbpDuplicateDetector.builder().build();
+    private IataBcbp.Leg[] legs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        legs = new IataBcbp.Leg[LEGS];
+        String payload = BenchmarkPayloads.build(1, false, false);
+        int sequenceAt = 52;
+        for (int i = 0; i < LEGS; i++) {
+            String sequence = String.format("%04d", i);
+            legs[i] = IataBcbp.parse(payload.substring(0, sequenceAt) + sequence + payload.substring(sequenceAt + 4)).getFirstLeg();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Gate {
+        int next;
+    }
+
+    @Benchmark
+    public boolean admit(Gate gate) {
+        IataBcbp.Leg leg = legs[gate.next++ & (LEGS - 1)];
+        return detector.admit(leg);
+    }
+}
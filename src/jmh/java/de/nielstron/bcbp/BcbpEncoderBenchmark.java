@@ -0,0 +1,56 @@
+package de.nielstron.bcbp;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** {@link BcbpEncoder} into reused buffers next to building a fresh {@code String} per pass. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BcbpEncoderBenchmark {
+
+    @Param({"SINGLE_LEG_CONDITIONALS", "FOUR_LEG_CONDITIONALS_SECURITY", "NINE_LEG_CONDITIONALS_SECURITY"})
+    public IataBcbpParseBenchmark.Payload payload;
+
+    private IataBcbp.Parsed parsed;
+    private char[] chars;
+    private ByteBuffer buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parsed = IataBcbp.parse(payload.raw);
+        chars = new char[BcbpEncoder.encodedLength(parsed)];
+        buffer = ByteBuffer.allocateDirect(chars.length);
+    }
+
+    @Benchmark
+    public String encodeString() {
+        return BcbpEncoder.encode(parsed);
+    }
+
+    @Benchmark
+    public int encodeChars() {
+        return BcbpEncoder.encode(parsed, chars, 0);
+    }
+
+    @Benchmark
+    public int encodeDirectBuffer() {
+        buffer.clear();
+        return BcbpEncoder.encode(parsed, buffer);
+    }
+}
@@ -0,0 +1,102 @@
+package de.nielstron.bcbp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load generator for {@link BcbpIngestionServer}: holds idle scanner connections open while active clients
+ * push pipelined payloads, then reports throughput. Run with {@code ./gradlew ingestionLoadTest}.
+ *
+ * <p>Options, as {@code name=value}: {@code host} and {@code port} of a running server (default: start one on
+ * localhost), {@code framing} ({@code LINES}), {@code idle} connections (10000), {@code clients} (64),
+ * {@code payloads} per client (20000) and {@code pipeline} depth (32).
+ */
+public final class BcbpIngestionLoadTest {
+
+    private BcbpIngestionLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new TreeMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("expected name=value: " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        BcbpIngestionServer.Framing framing = BcbpIngestionServer.Framing.valueOf(options.getOrDefault("framing", "LINES"));
+        int idle = Integer.parseInt(options.getOrDefault("idle", "10000"));
+        int clients = Integer.parseInt(options.getOrDefault("clients", "64"));
+        int payloadsPerClient = Integer.parseInt(options.getOrDefault("payloads", "20000"));
+        int pipeline = Integer.parseInt(options.getOrDefault("pipeline", "32"));
+
+        BcbpIngestionServer server = null;
+        InetSocketAddress address;
+        if (options.containsKey("port")) {
+            address = new InetSocketAddress(options.getOrDefault("host", "localhost"), Integer.parseInt(options.get("port")));
+        } else {
+            server = BcbpIngestionServer.builder().framing(framing).start();
+            address = server.address();
+        }
+
+        List<String> payloads = new ArrayList<>(payloadsPerClient);
+        for (int i = 0; i < payloadsPerClient; i++) {
+            payloads.add(i % 10 == 9 ? BenchmarkPayloads.GARBAGE : BenchmarkPayloads.build(1 + i % 4, i % 2 == 0, i % 4 == 3));
+        }
+
+        List<BcbpIngestionClient> idleConnections = new ArrayList<>(idle);
+        ExecutorService workers = BcbpIngestionServer.defaultExecutor();
+        try {
+            long connectStarted = System.nanoTime();
+            for (int i = 0; i < idle; i++) {
+                idleConnections.add(BcbpIngestionClient.connect(address, framing));
+            }
+            System.out.printf("opened %d idle connections in %d ms%n",
+                idle, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStarted));
+
+            long started = System.nanoTime();
+            List<Future<Integer>> runs = new ArrayList<>(clients);
+            for (int c = 0; c < clients; c++) {
+                runs.add(workers.submit(() -> {
+                    try (BcbpIngestionClient client = BcbpIngestionClient.connect(address, framing)) {
+                        return client.parseAll(payloads, pipeline).size();
+                    }
+                }));
+            }
+            long answered = 0;
+            for (Future<Integer> run : runs) {
+                answered += run.get();
+            }
+            long elapsed = System.nanoTime() - started;
+            System.out.printf("%d payloads over %d clients (pipeline %d, %s) in %d ms: %.0f payloads/s%n",
+                answered, clients, pipeline, framing, TimeUnit.NANOSECONDS.toMillis(elapsed), answered * 1e9 / elapsed);
+            if (server != null) {
+                System.out.printf("server connections open: %d%n", server.connectionCount());
+            }
+        } finally {
+            for (BcbpIngestionClient connection : idleConnections) {
+                closeQuietly(connection);
+            }
+            workers.shutdown();
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private static void closeQuietly(BcbpIngestionClient client) {
+        try {
+            client.close();
+        } catch (IOException e) {
+            // Shutting down anyway.
+        }
+    }
+}
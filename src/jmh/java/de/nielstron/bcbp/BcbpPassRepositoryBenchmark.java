@@ -0,0 +1,77 @@
+package de.nielstron.bcbp;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Desks sharing one {@link BcbpPassRepository} holding {@value #PASSES} passes, each with its own PNR,
+ * frequent-flyer number and block of four bag tags; lookups should cost the same at any size, and {@code add}
+ * re-adds known instances.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class BcbpPassRepositoryBenchmark {
+
+    private static final int PASSES = 131_072;
+
+    private final BcbpPassRepository repository = BcbpPassRepository.builder().expectedPasses(PASSES).build();
+    private IataBcbp.Parsed[] passes;
+    private String[] pnrs;
+    private String[] plates;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        passes = new IataBcbp.Parsed[PASSES];
+        pnrs = new String[PASSES];
+        plates = new String[PASSES];
+        String payload = BenchmarkPayloads.build(1, true, false);
+        for (int i = 0; i < PASSES; i++) {
+            pnrs[i] = Integer.toString(i, 36).toUpperCase(Locale.ROOT);
+            String serial = String.format(Locale.ROOT, "%06d", i * 4);
+            plates[i] = "0014" + String.format(Locale.ROOT, "%06d", i * 4 + 2);
+            passes[i] = IataBcbp.parse(payload
+                .replace("ABC123", String.format(Locale.ROOT, "%-6s", pnrs[i]))
+                .replace("0014123456003", "0014" + serial + "003")
+                .replace("1234567890123", String.format(Locale.ROOT, "%013d", i)));
+            repository.add(passes[i]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Desk {
+        int next;
+    }
+
+    @Benchmark
+    public List<IataBcbp.Parsed> findByPnr(Desk desk) {
+        return repository.findByPnr(pnrs[desk.next++ & (PASSES - 1)]);
+    }
+
+    @Benchmark
+    public List<IataBcbp.Parsed> findByBagTag(Desk desk) {
+        return repository.findByBagTag(plates[desk.next++ & (PASSES - 1)]);
+    }
+
+    @Benchmark
+    public void add(Desk desk) {
+        repository.add(passes[desk.next++ & (PASSES - 1)]);
+    }
+}
@@ -0,0 +1,67 @@
+package de.nielstron.bcbp;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** ECDSA P-256 verification of a signed four-leg pass, one at a time and as a parallel batch. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BcbpSignatureVerifierBenchmark {
+
+    private BcbpSignatureVerifier verifier;
+    private String signed;
+    private String[] batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keys = generator.generateKeyPair();
+        verifier = BcbpSignatureVerifier.builder((issuer, keyId) -> keys.getPublic()).build();
+
+        String unsigned = BenchmarkPayloads.build(4, true, false);
+        Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(keys.getPrivate());
+        signature.update(unsigned.getBytes(StandardCharsets.ISO_8859_1));
+        String data = Base64.getEncoder().encodeToString(signature.sign());
+        signed = unsigned + "^1" + String.format("%02X", data.length()) + data;
+        if (verifier.verify(signed) != BcbpSignatureVerifier.Result.VALID) {
+            throw new IllegalStateException("benchmark payload does not verify");
+        }
+
+        batch = new String[1_024];
+        Arrays.fill(batch, signed);
+    }
+
+    @Benchmark
+    public BcbpSignatureVerifier.Result verify() {
+        return verifier.verify(signed);
+    }
+
+    /** Ops are batches of 1024 passes. */
+    @Benchmark
+    public BcbpSignatureVerifier.Result[] verifyAllBatch() {
+        return verifier.verifyAll(batch);
+    }
+}
@@ -0,0 +1,71 @@
+package de.nielstron.bcbp;
+
+import java.util.Locale;
+
+/** Synthetic BCBP payloads shared by the JMH benchmarks. */
+final class BenchmarkPayloads {
+
+    private static final String[][] ROUTE = {
+        {"YUL", "FRA", "AC ", "0834 "},
+        {"FRA", "GVA", "LH ", "3664 "},
+        {"GVA", "LHR", "LX ", "0354 "},
+        {"LHR", "JFK", "BA ", "0117A"},
+        {"JFK", "SFO", "UA ", "1723 "},
+        {"SFO", "NRT", "NH ", "0007 "},
+        {"NRT", "SIN", "SQ ", "0637 "},
+        {"SIN", "SYD", "QF ", "0002 "},
+        {"SYD", "AKL", "NZ ", "0104 "},
+    };
+
+    private static final String UNIQUE_CONDITIONAL = "1WW6225BAC 0014123456003";
+    private static final String REPEATED_CONDITIONAL = "0141234567890 1AC AC 1234567890123    20PCN";
+    private static final String SECURITY_DATA =
+        "GIWVC5EH7JNT684FVNJ91W2QA4DVN5J8K4F0L0GEQ3DF5TGBN8709HKT5D3DW3GBHFCVHMY7J5T6HFR41W2QA4DVN5J8K4F0L0GE";
+
+    static final String GARBAGE = "https://menu.example.com/table/42?lang=en&session=7f3a9c2e1b";
+
+    private BenchmarkPayloads() {
+    }
+
+    /**
+     * Builds a payload with the given number of legs.
+     *
+     * @param legs number of legs (1..9)
+     * @param conditionals whether to include unique and repeated conditional sections
+     * @param security whether to append a {@code ^} security data section
+     */
+    static String build(int legs, boolean conditionals, boolean security) {
+        StringBuilder out = new StringBuilder(64 + legs * 96);
+        out.append('M').append(legs).append("DESMARAIS/LUC       ").append('E');
+        for (int leg = 0; leg < legs; leg++) {
+            String conditional = "";
+            if (conditionals) {
+                String repeated = hex(REPEATED_CONDITIONAL.length()) + REPEATED_CONDITIONAL;
+                conditional = leg == 0
+                    ? ">6" + hex(UNIQUE_CONDITIONAL.length()) + UNIQUE_CONDITIONAL + repeated
+                    : repeated;
+            }
+            String[] route = ROUTE[leg];
+            out.append("ABC123 ")
+                .append(route[0])
+                .append(route[1])
+                .append(route[2])
+                .append(route[3])
+                .append(String.format(Locale.ROOT, "%03d", 200 + leg))
+                .append('Y')
+                .append(String.format(Locale.ROOT, "%03dC", 10 + leg))
+                .append("0025 ")
+                .append('1')
+                .append(hex(conditional.length()))
+                .append(conditional);
+        }
+        if (security) {
+            out.append("^1").append(hex(SECURITY_DATA.length())).append(SECURITY_DATA);
+        }
+        return out.toString();
+    }
+
+    private static String hex(int value) {
+        return String.format(Locale.ROOT, "%02X", value);
+    }
+}
@@ -0,0 +1,141 @@
+package de.nielstron.bcbp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of {@link IataBcbp#parse(String)} across representative payload shapes.
+ *
+ * <p>Run with {@code ./gradlew jmh}; the task enables the GC profiler so every result also
+ * reports {@code gc.alloc.rate.norm} (bytes allocated per operation).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IataBcbpParseBenchmark {
+
+    private static final FieldMask SECURITY_LANE = FieldMask.of(
+        FieldMask.Field.FROM_AIRPORT, FieldMask.Field.OPERATING_CARRIER, FieldMask.Field.FLIGHT_NUMBER,
+        FieldMask.Field.FLIGHT_DATE, FieldMask.Field.REPEATED_CONDITIONAL
+    );
+
+    public enum Payload {
+        SINGLE_LEG(BenchmarkPayloads.build(1, false, false)),
+        SINGLE_LEG_CONDITIONALS(BenchmarkPayloads.build(1, true, false)),
+        SINGLE_LEG_SECURITY(BenchmarkPayloads.build(1, true, true)),
+        FOUR_LEG(BenchmarkPayloads.build(4, false, false)),
+        FOUR_LEG_CONDITIONALS_SECURITY(BenchmarkPayloads.build(4, true, true)),
+        NINE_LEG(BenchmarkPayloads.build(9, false, false)),
+        NINE_LEG_CONDITIONALS_SECURITY(BenchmarkPayloads.build(9, true, true)),
+        AIM_PREFIXED("]Q3" + BenchmarkPayloads.build(1, true, false)),
+        GARBAGE(BenchmarkPayloads.GARBAGE);
+
+        final String raw;
+
+        Payload(String raw) {
+            this.raw = raw;
+        }
+    }
+
+    @Param
+    public Payload payload;
+
+    private final BcbpParser metered = BcbpParser.builder().metrics(new BcbpMetrics()).build();
+
+    private String raw;
+    private byte[] bytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        raw = payload.raw;
+        bytes = raw.getBytes(StandardCharsets.ISO_8859_1);
+        boolean valid = IataBcbp.parse(raw) != null;
+        if (valid == (payload == Payload.GARBAGE)) {
+            throw new IllegalStateException("Unexpected parse outcome for " + payload);
+        }
+    }
+
+    @Benchmark
+    public IataBcbp.Parsed parse() {
+        return IataBcbp.parse(raw);
+    }
+
+    @Benchmark
+    public IataBcbp.Parsed parseBytes() {
+        return IataBcbp.parse(bytes, 0, bytes.length);
+    }
+
+    /** Same as {@link #parse()} with metrics enabled: counters plus two {@code nanoTime} reads. */
+    @Benchmark
+    public IataBcbp.Parsed parseWithMetrics() {
+        return metered.parse(raw);
+    }
+
+    /** Only what a security lane reads: route origin, flight, date and the selectee indicator. */
+    @Benchmark
+    public IataBcbp.Parsed parseSecurityLaneFields() {
+        return IataBcbp.parse(raw, SECURITY_LANE);
+    }
+
+    /** Rejections come back as shared instances, so GARBAGE should report 0 B/op. */
+    @Benchmark
+    public ParseResult tryParseBytes() {
+        return IataBcbp.tryParse(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public boolean isLikelyBcbp() {
+        return IataBcbp.isLikelyBcbp(raw);
+    }
+
+    @Benchmark
+    public boolean validateBytes() {
+        return IataBcbp.validate(bytes, 0, bytes.length);
+    }
+
+    /** The typical consumer: validate, then read only the first leg's route, flight and seat. */
+    @Benchmark
+    public void parseLazyFirstLegSummary(Blackhole blackhole) {
+        LazyBcbp pass = IataBcbp.parseLazy(raw);
+        if (pass != null) {
+            blackhole.consume(pass.getFromAirport());
+            blackhole.consume(pass.flightCode());
+            blackhole.consume(pass.getSeat());
+        }
+    }
+
+    /** The same read into a reused {@link MutableBcbp}; should report 0 B/op for every shape. */
+    @Benchmark
+    public void parseIntoFirstLegSummary(Holder holder, Blackhole blackhole) {
+        MutableBcbp pass = holder.pass;
+        if (IataBcbp.parseInto(raw, pass)) {
+            MutableBcbp.Leg leg = pass.getFirstLeg();
+            blackhole.consume(leg.getFromAirport().charAt(0));
+            blackhole.consume(leg.getOperatingCarrier().length());
+            blackhole.consume(leg.getFlightNumber().length());
+            blackhole.consume(leg.getSeatNumber().length());
+        }
+    }
+
+    /** Per-thread parse target: a {@link MutableBcbp} is not thread-safe. */
+    @State(Scope.Thread)
+    public static class Holder {
+        final MutableBcbp pass = new MutableBcbp();
+    }
+}
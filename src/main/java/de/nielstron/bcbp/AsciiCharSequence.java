@@ -0,0 +1,108 @@
+package de.nielstron.bcbp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Read-only {@link CharSequence} view over single-byte (ASCII / ISO-8859-1) payload bytes.
+ *
+ * <p>Views are immutable except for those created with {@link #AsciiCharSequence()}, which a single thread
+ * re-points with {@link #reset(byte[], int, int)} to avoid allocating a view per payload.
+ */
+final class AsciiCharSequence implements CharSequence {
+    private byte[] array;
+    private final ByteBuffer buffer;
+    private int offset;
+    private int length;
+
+    /** Empty, reusable view; see {@link #reset(byte[], int, int)}. */
+    AsciiCharSequence() {
+        this.buffer = null;
+    }
+
+    AsciiCharSequence(byte[] array, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, array.length);
+        this.array = array;
+        this.buffer = null;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /** Views the remaining bytes of {@code buffer} without changing its position or limit. */
+    AsciiCharSequence(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            this.array = buffer.array();
+            this.buffer = null;
+            this.offset = buffer.arrayOffset() + buffer.position();
+        } else {
+            this.array = null;
+            this.buffer = buffer;
+            this.offset = buffer.position();
+        }
+        this.length = buffer.remaining();
+    }
+
+    /** Views {@code length} bytes of {@code buffer} from absolute index {@code offset}. */
+    AsciiCharSequence(ByteBuffer buffer, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, buffer.capacity());
+        this.array = null;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    private AsciiCharSequence(byte[] array, ByteBuffer buffer, int offset, int length) {
+        this.array = array;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /** Re-points a view made with {@link #AsciiCharSequence()}; pass {@code null} to drop the array. */
+    AsciiCharSequence reset(byte[] array, int offset, int length) {
+        if (array != null) {
+            Objects.checkFromIndexSize(offset, length, array.length);
+        }
+        this.array = array;
+        this.offset = offset;
+        this.length = array != null ? length : 0;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        Objects.checkIndex(index, length);
+        if (array != null) {
+            return (char) (array[offset + index] & 0xFF);
+        }
+        return (char) (buffer.get(offset + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        Objects.checkFromToIndex(start, end, length);
+        return new AsciiCharSequence(array, buffer, offset + start, end - start);
+    }
+
+    /** Decodes {@code [start, end)} into a new String. */
+    String toString(int start, int end) {
+        Objects.checkFromToIndex(start, end, length);
+        if (array != null) {
+            return new String(array, offset + start, end - start, StandardCharsets.ISO_8859_1);
+        }
+        byte[] copy = new byte[end - start];
+        buffer.get(offset + start, copy);
+        return new String(copy, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public String toString() {
+        return toString(0, length);
+    }
+}
@@ -0,0 +1,45 @@
+package de.nielstron.bcbp;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Splits a batch into contiguous chunks, at most four per thread of the executor and none smaller than a
+ * minimum, and runs them in parallel; the calling thread runs the first chunk itself rather than idling.
+ */
+final class BatchChunks {
+
+    private BatchChunks() {
+    }
+
+    /** Work on the elements {@code from} (inclusive) to {@code to} (exclusive) of a batch. */
+    @FunctionalInterface
+    interface Range {
+        void run(int from, int to);
+    }
+
+    /** Runs {@code range} over {@code 0..size} in chunks of at least {@code minChunk}, and waits for all of them. */
+    static void run(int size, int minChunk, Executor executor, Range range) {
+        int parallelism = executor instanceof ForkJoinPool pool ? pool.getParallelism() : Runtime.getRuntime().availableProcessors();
+        int chunks = Math.min(ceilDiv(size, minChunk), parallelism * 4);
+        if (chunks <= 1) {
+            range.run(0, size);
+            return;
+        }
+
+        int chunkSize = ceilDiv(size, chunks);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[chunks - 1];
+        for (int chunk = 1; chunk < chunks; chunk++) {
+            int from = Math.min(chunk * chunkSize, size);
+            int to = Math.min(from + chunkSize, size);
+            futures[chunk - 1] = CompletableFuture.runAsync(() -> range.run(from, to), executor);
+        }
+        range.run(0, Math.min(chunkSize, size));
+        CompletableFuture.allOf(futures).join();
+    }
+
+    private static int ceilDiv(int dividend, int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+}
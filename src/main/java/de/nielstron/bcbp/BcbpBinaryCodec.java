@@ -0,0 +1,650 @@
+package de.nielstron.bcbp;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact, versioned binary form of {@link IataBcbp.Parsed} for shipping parsed passes between services.
+ *
+ * <p>A record is one version byte, a varint body length and the body. Inside the body, integers and dates
+ * (as epoch days) are zigzag varints and optional sections are announced by a presence bitmap. Every string
+ * picks the smallest of four forms: a decimal number that keeps its leading zeros, a number with an
+ * optional {@code A-Z} suffix, a base-37 packed {@code [A-Z0-9]} code, or length-prefixed ISO-8859-1 or
+ * UTF-8 bytes. A typical pass encodes to well under half of its raw payload and decodes without rerunning
+ * the parser. Decoding returns objects equal field by field to the encoded ones.
+ *
+ * <p>Records are self-delimiting, so several can be written back to back into one stream or buffer.
+ */
+public final class BcbpBinaryCodec {
+
+    /** Format version written by this class. */
+    public static final int VERSION = 1;
+
+    private static final int UNIQUE_CONDITIONAL = 1;
+    private static final int SECURITY_DATA = 1 << 1;
+    private static final int VERSION_NUMBER = 1 << 2;
+    private static final int REPEATED_CONDITIONAL = 1;
+
+    private static final int TEXT_DIGITS = 0;
+    private static final int TEXT_CODE = 1;
+    private static final int TEXT_NUMBER_WITH_SUFFIX = 2;
+    private static final int TEXT_BYTES = 3;
+
+    /** Longest all-digit string whose value and length fit the digits form. */
+    private static final int MAX_DIGITS = 16;
+    /** Longest {@code [A-Z0-9]} string that fits a base-37 long next to the form tag. */
+    private static final int MAX_CODE_LENGTH = 11;
+
+    private static final ThreadLocal<Writer> WRITER = ThreadLocal.withInitial(Writer::new);
+
+    private BcbpBinaryCodec() {
+    }
+
+    public static byte[] encode(IataBcbp.Parsed parsed) {
+        Writer writer = body(parsed);
+        byte[] record = new byte[writer.recordLength()];
+        writer.copyRecord(record, 0);
+        return record;
+    }
+
+    /**
+     * Writes one record at the buffer's position and advances it.
+     *
+     * @throws BufferOverflowException if the record does not fit; the buffer is left unchanged
+     */
+    public static void encode(IataBcbp.Parsed parsed, ByteBuffer target) {
+        Writer writer = body(parsed);
+        if (target.remaining() < writer.recordLength()) {
+            throw new BufferOverflowException();
+        }
+        target.put((byte) VERSION);
+        writer.writeLength(target);
+        target.put(writer.bytes, 0, writer.size);
+    }
+
+    public static void encode(IataBcbp.Parsed parsed, OutputStream target) throws IOException {
+        Writer writer = body(parsed);
+        byte[] header = new byte[6];
+        header[0] = (byte) VERSION;
+        int headerLength = 1 + Writer.putVarint(header, 1, writer.size);
+        target.write(header, 0, headerLength);
+        target.write(writer.bytes, 0, writer.size);
+    }
+
+    public static IataBcbp.Parsed decode(byte[] record) {
+        return decode(ByteBuffer.wrap(record));
+    }
+
+    /**
+     * Reads one record from the buffer's position and advances past it.
+     *
+     * @throws BufferUnderflowException if the buffer holds only part of a record; the position is left unchanged
+     * @throws IllegalArgumentException if the record is malformed or of an unknown version
+     */
+    public static IataBcbp.Parsed decode(ByteBuffer source) {
+        int start = source.position();
+        int version = source.get() & 0xFF;
+        if (version != VERSION) {
+            source.position(start);
+            throw new IllegalArgumentException("Unsupported BCBP binary version: " + version);
+        }
+        long length;
+        try {
+            length = Reader.varint(source);
+        } catch (BufferUnderflowException e) {
+            source.position(start);
+            throw e;
+        }
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Malformed BCBP binary record length: " + length);
+        }
+        if (source.remaining() < length) {
+            source.position(start);
+            throw new BufferUnderflowException();
+        }
+        ByteBuffer body = source.slice(source.position(), (int) length);
+        source.position(source.position() + (int) length);
+        return read(new Reader(body));
+    }
+
+    /**
+     * Reads one record from the stream.
+     *
+     * @return the decoded pass, or {@code null} if the stream ended before the record's first byte
+     * @throws EOFException if the stream ends inside a record
+     */
+    public static IataBcbp.Parsed decode(InputStream source) throws IOException {
+        int version = source.read();
+        if (version < 0) {
+            return null;
+        }
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported BCBP binary version: " + version);
+        }
+        long length = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = source.read();
+            if (b < 0) {
+                throw new EOFException("Truncated BCBP binary record");
+            }
+            if (shift > 28) {
+                throw new IllegalArgumentException("Malformed BCBP binary record length");
+            }
+            length |= (long) (b & 0x7F) << shift;
+            if (b < 0x80) {
+                break;
+            }
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Malformed BCBP binary record length: " + length);
+        }
+        byte[] body = source.readNBytes((int) length);
+        if (body.length < length) {
+            throw new EOFException("Truncated BCBP binary record");
+        }
+        return read(new Reader(ByteBuffer.wrap(body)));
+    }
+
+    private static Writer body(IataBcbp.Parsed parsed) {
+        Writer writer = WRITER.get();
+        writer.size = 0;
+
+        int presence = 0;
+        if (parsed.getUniqueConditional() != null) {
+            presence |= UNIQUE_CONDITIONAL;
+        }
+        if (parsed.getSecurityData() != null) {
+            presence |= SECURITY_DATA;
+        }
+        if (parsed.getVersionNumber() != null) {
+            presence |= VERSION_NUMBER;
+        }
+        writer.varint(presence);
+        writer.text(parsed.getFormatCode());
+        writer.signed(parsed.getNumberOfLegs());
+        writer.text(parsed.getPassengerName());
+        writer.text(parsed.getTicketIndicator());
+        writer.text(parsed.getVersionNumberIndicator());
+        if (parsed.getVersionNumber() != null) {
+            writer.signed(parsed.getVersionNumber());
+        }
+        writer.text(parsed.getAirlineData());
+
+        writer.varint(parsed.getLegs().size());
+        for (IataBcbp.Leg leg : parsed.getLegs()) {
+            writeLeg(writer, leg);
+        }
+
+        IataBcbp.UniqueConditional unique = parsed.getUniqueConditional();
+        if (unique != null) {
+            writer.text(unique.getPassengerDescription());
+            writer.text(unique.getCheckInSource());
+            writer.text(unique.getBoardingPassIssuanceSource());
+            writer.date(unique.getIssuanceDate());
+            writer.text(unique.getDocumentType());
+            writer.text(unique.getIssuingAirline());
+            writer.varint(unique.getBagTagNumbers().size());
+            for (String bagTag : unique.getBagTagNumbers()) {
+                writer.text(bagTag);
+            }
+        }
+
+        IataBcbp.SecurityData security = parsed.getSecurityData();
+        if (security != null) {
+            writer.text(security.getType());
+            writer.text(security.getData());
+        }
+        return writer;
+    }
+
+    private static void writeLeg(Writer writer, IataBcbp.Leg leg) {
+        IataBcbp.RepeatedConditional repeated = leg.getRepeatedConditional();
+        writer.varint(repeated != null ? REPEATED_CONDITIONAL : 0);
+        writer.text(leg.getPnrCode());
+        writer.text(leg.getFromAirport());
+        writer.text(leg.getToAirport());
+        writer.text(leg.getOperatingCarrier());
+        writer.text(leg.getFlightNumber());
+        writer.date(leg.getFlightDate());
+        writer.text(leg.getCompartmentCode());
+        writer.text(leg.getSeatNumber());
+        writer.text(leg.getCheckInSequenceNumber());
+        writer.text(leg.getPassengerStatus());
+        writer.signed(leg.getConditionalSize());
+        if (repeated != null) {
+            writer.text(repeated.getAirlineNumericCode());
+            writer.text(repeated.getDocumentSerialNumber());
+            writer.text(repeated.getSelecteeIndicator());
+            writer.text(repeated.getInternationalDocumentVerification());
+            writer.text(repeated.getMarketingCarrierDesignator());
+            writer.text(repeated.getFrequentFlyerAirlineDesignator());
+            writer.text(repeated.getFrequentFlyerNumber());
+            writer.text(repeated.getIdAdIndicator());
+            writer.text(repeated.getFreeBaggageAllowance());
+            Boolean fastTrack = repeated.getFastTrack();
+            writer.varint(fastTrack == null ? 0 : fastTrack ? 2 : 1);
+            writer.text(repeated.getAirlineUse());
+        }
+    }
+
+    private static IataBcbp.Parsed read(Reader reader) {
+        try {
+            int presence = (int) reader.varint();
+            String formatCode = reader.text();
+            int numberOfLegs = reader.signed();
+            String passengerName = reader.text();
+            String ticketIndicator = reader.text();
+            String versionNumberIndicator = reader.text();
+            Integer versionNumber = (presence & VERSION_NUMBER) != 0 ? reader.signed() : null;
+            String airlineData = reader.text();
+
+            int legCount = reader.count();
+            List<IataBcbp.Leg> legs = new ArrayList<>(legCount);
+            for (int i = 0; i < legCount; i++) {
+                legs.add(readLeg(reader));
+            }
+
+            IataBcbp.UniqueConditional unique = null;
+            if ((presence & UNIQUE_CONDITIONAL) != 0) {
+                String passengerDescription = reader.text();
+                String checkInSource = reader.text();
+                String issuanceSource = reader.text();
+                LocalDate issuanceDate = reader.date();
+                String documentType = reader.text();
+                String issuingAirline = reader.text();
+                String[] bagTags = new String[reader.count()];
+                for (int i = 0; i < bagTags.length; i++) {
+                    bagTags[i] = reader.text();
+                    if (bagTags[i] == null) {
+                        throw new IllegalArgumentException("Malformed BCBP binary record: null bag tag");
+                    }
+                }
+                unique = new IataBcbp.UniqueConditional(
+                    passengerDescription, checkInSource, issuanceSource, issuanceDate, documentType, issuingAirline, Arrays.asList(bagTags)
+                );
+            }
+
+            IataBcbp.SecurityData security = null;
+            if ((presence & SECURITY_DATA) != 0) {
+                String type = reader.text();
+                security = new IataBcbp.SecurityData(type, reader.text());
+            }
+            reader.expectEnd();
+
+            return new IataBcbp.Parsed(
+                formatCode, numberOfLegs, passengerName, ticketIndicator, versionNumberIndicator, versionNumber, legs, unique, security, airlineData
+            );
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Malformed BCBP binary record", e);
+        }
+    }
+
+    private static IataBcbp.Leg readLeg(Reader reader) {
+        int presence = (int) reader.varint();
+        String pnrCode = reader.text();
+        String fromAirport = reader.text();
+        String toAirport = reader.text();
+        String operatingCarrier = reader.text();
+        String flightNumber = reader.text();
+        LocalDate flightDate = reader.date();
+        String compartmentCode = reader.text();
+        String seatNumber = reader.text();
+        String checkInSequenceNumber = reader.text();
+        String passengerStatus = reader.text();
+        int conditionalSize = reader.signed();
+
+        IataBcbp.RepeatedConditional repeated = null;
+        if ((presence & REPEATED_CONDITIONAL) != 0) {
+            String airlineNumericCode = reader.text();
+            String documentSerialNumber = reader.text();
+            String selecteeIndicator = reader.text();
+            String documentVerification = reader.text();
+            String marketingCarrier = reader.text();
+            String frequentFlyerAirline = reader.text();
+            String frequentFlyerNumber = reader.text();
+            String idAdIndicator = reader.text();
+            String freeBaggageAllowance = reader.text();
+            long fastTrack = reader.varint();
+            if (fastTrack > 2) {
+                throw new IllegalArgumentException("Malformed BCBP binary fast-track flag: " + fastTrack);
+            }
+            repeated = new IataBcbp.RepeatedConditional(
+                airlineNumericCode,
+                documentSerialNumber,
+                selecteeIndicator,
+                documentVerification,
+                marketingCarrier,
+                frequentFlyerAirline,
+                frequentFlyerNumber,
+                idAdIndicator,
+                freeBaggageAllowance,
+                fastTrack == 0 ? null : fastTrack == 2,
+                reader.text()
+            );
+        }
+
+        return new IataBcbp.Leg(
+            pnrCode,
+            fromAirport,
+            toAirport,
+            operatingCarrier,
+            flightNumber,
+            flightDate,
+            compartmentCode,
+            seatNumber,
+            checkInSequenceNumber,
+            passengerStatus,
+            conditionalSize,
+            repeated
+        );
+    }
+
+    /** Base-37 symbol of {@code c}: {@code A-Z} are 1-26, {@code 0-9} are 27-36, anything else -1. */
+    private static int codeSymbol(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 1;
+        }
+        if (c >= '0' && c <= '9') {
+            return c - '0' + 27;
+        }
+        return -1;
+    }
+
+    private static char codeChar(int symbol) {
+        return (char) (symbol <= 26 ? 'A' + symbol - 1 : '0' + symbol - 27);
+    }
+
+    /** Growable body buffer, reused per thread. */
+    private static final class Writer {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        int recordLength() {
+            return 1 + varintLength(size) + size;
+        }
+
+        void copyRecord(byte[] target, int offset) {
+            target[offset] = (byte) VERSION;
+            int headerLength = 1 + putVarint(target, offset + 1, size);
+            System.arraycopy(bytes, 0, target, offset + headerLength, size);
+        }
+
+        void writeLength(ByteBuffer target) {
+            long value = size;
+            while (value >= 0x80) {
+                target.put((byte) (value | 0x80));
+                value >>>= 7;
+            }
+            target.put((byte) value);
+        }
+
+        void varint(long value) {
+            ensure(10);
+            size += putVarint(bytes, size, value);
+        }
+
+        void signed(int value) {
+            varint(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+        }
+
+        /** Dates are {@code zigzag(epochDay) + 1}, with {@code 0} for {@code null}. */
+        void date(LocalDate date) {
+            if (date == null) {
+                varint(0);
+                return;
+            }
+            long epochDay = date.toEpochDay();
+            varint(((epochDay << 1) ^ (epochDay >> 63)) + 1);
+        }
+
+        /** Strings are {@code (payload << 2 | form) + 1}, with {@code 0} for {@code null}; see the class comment. */
+        void text(String value) {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            int length = value.length();
+            if (length > 0 && length <= MAX_DIGITS && isDigits(value)) {
+                varint(((Long.parseLong(value) << 5 | length) << 2 | TEXT_DIGITS) + 1);
+                return;
+            }
+            long numberWithSuffix = numberWithSuffix(value);
+            if (numberWithSuffix >= 0) {
+                varint((numberWithSuffix << 2 | TEXT_NUMBER_WITH_SUFFIX) + 1);
+                return;
+            }
+            long code = code(value);
+            if (code >= 0) {
+                varint((code << 2 | TEXT_CODE) + 1);
+                return;
+            }
+            boolean latin1 = true;
+            for (int i = 0; i < length && latin1; i++) {
+                latin1 = value.charAt(i) <= 0xFF;
+            }
+            byte[] encoded = value.getBytes(latin1 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+            varint(((long) encoded.length << 3 | (latin1 ? 0 : 4) | TEXT_BYTES) + 1);
+            ensure(encoded.length);
+            System.arraycopy(encoded, 0, bytes, size, encoded.length);
+            size += encoded.length;
+        }
+
+        private static boolean isDigits(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** {@code number << 5 | suffix} for a canonical {@code (0|[1-9][0-9]*)[A-Z]} value, otherwise {@code -1}. */
+        private static long numberWithSuffix(String value) {
+            int length = value.length();
+            if (length < 2 || length > 10 || value.charAt(0) == '0' && length > 2) {
+                return -1;
+            }
+            char suffix = value.charAt(length - 1);
+            if (suffix < 'A' || suffix > 'Z') {
+                return -1;
+            }
+            long number = 0;
+            for (int i = 0; i < length - 1; i++) {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                number = number * 10 + (c - '0');
+            }
+            return number << 5 | (suffix - 'A' + 1);
+        }
+
+        /** Base-37 value of a {@code [A-Z0-9]*} value, first character least significant, otherwise {@code -1}. */
+        private static long code(String value) {
+            if (value.length() > MAX_CODE_LENGTH) {
+                return -1;
+            }
+            long code = 0;
+            for (int i = value.length() - 1; i >= 0; i--) {
+                int symbol = codeSymbol(value.charAt(i));
+                if (symbol < 0) {
+                    return -1;
+                }
+                code = code * 37 + symbol;
+            }
+            return code;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + extra, bytes.length * 2));
+            }
+        }
+
+        static int putVarint(byte[] target, int offset, long value) {
+            int written = 0;
+            while ((value & ~0x7FL) != 0) {
+                target[offset + written++] = (byte) (value | 0x80);
+                value >>>= 7;
+            }
+            target[offset + written++] = (byte) value;
+            return written;
+        }
+
+        static int varintLength(long value) {
+            int length = 1;
+            while ((value & ~0x7FL) != 0) {
+                value >>>= 7;
+                length++;
+            }
+            return length;
+        }
+    }
+
+    private static final class Reader {
+        private final ByteBuffer buffer;
+        private final char[] scratch = new char[MAX_DIGITS];
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        long varint() {
+            return varint(buffer);
+        }
+
+        static long varint(ByteBuffer buffer) {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed BCBP binary varint");
+        }
+
+        int signed() {
+            long zigzag = varint();
+            if (zigzag > 0xFFFFFFFFL || zigzag < 0) {
+                throw new IllegalArgumentException("Malformed BCBP binary integer");
+            }
+            return (int) (zigzag >>> 1) ^ -(int) (zigzag & 1);
+        }
+
+        /** Element count; bounded by the remaining bytes so a corrupt count cannot trigger a huge allocation. */
+        int count() {
+            long count = varint();
+            if (count > buffer.remaining()) {
+                throw new IllegalArgumentException("Malformed BCBP binary count: " + count);
+            }
+            return (int) count;
+        }
+
+        LocalDate date() {
+            long value = varint();
+            if (value == 0) {
+                return null;
+            }
+            long zigzag = value - 1;
+            long epochDay = (zigzag >>> 1) ^ -(zigzag & 1);
+            try {
+                return LocalDate.ofEpochDay(epochDay);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Malformed BCBP binary date", e);
+            }
+        }
+
+        String text() {
+            long header = varint();
+            if (header == 0) {
+                return null;
+            }
+            long payload = (header - 1) >>> 2;
+            return switch ((int) ((header - 1) & 3)) {
+                case TEXT_DIGITS -> digits(payload >>> 5, (int) (payload & 31));
+                case TEXT_NUMBER_WITH_SUFFIX -> numberWithSuffix(payload);
+                case TEXT_CODE -> code(payload);
+                default -> bytes(payload);
+            };
+        }
+
+        private String digits(long value, int length) {
+            for (int i = length - 1; i >= 0; i--) {
+                scratch[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+            return new String(scratch, 0, length);
+        }
+
+        private String numberWithSuffix(long payload) {
+            int suffix = (int) (payload & 31);
+            long number = payload >>> 5;
+            if (suffix < 1 || suffix > 26 || number > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Malformed BCBP binary number: " + payload);
+            }
+            int length = 1;
+            for (long rest = number / 10; rest != 0; rest /= 10) {
+                length++;
+            }
+            scratch[length] = (char) ('A' + suffix - 1);
+            for (int i = length - 1; i >= 0; i--) {
+                scratch[i] = (char) ('0' + number % 10);
+                number /= 10;
+            }
+            return new String(scratch, 0, length + 1);
+        }
+
+        private String code(long value) {
+            int length = 0;
+            while (value != 0) {
+                int symbol = (int) (value % 37);
+                if (symbol == 0 || length == MAX_CODE_LENGTH) {
+                    throw new IllegalArgumentException("Malformed BCBP binary code");
+                }
+                scratch[length++] = codeChar(symbol);
+                value /= 37;
+            }
+            return new String(scratch, 0, length);
+        }
+
+        private String bytes(long payload) {
+            boolean utf8 = (payload & 1) != 0;
+            long length = payload >>> 1;
+            if (length > buffer.remaining()) {
+                throw new IllegalArgumentException("Malformed BCBP binary string length: " + length);
+            }
+            int count = (int) length;
+            byte[] array;
+            int offset;
+            if (buffer.hasArray()) {
+                array = buffer.array();
+                offset = buffer.arrayOffset() + buffer.position();
+                buffer.position(buffer.position() + count);
+            } else {
+                array = new byte[count];
+                offset = 0;
+                buffer.get(array);
+            }
+            return new String(array, offset, count, utf8 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+        }
+
+        void expectEnd() {
+            if (buffer.hasRemaining()) {
+                throw new IllegalArgumentException("Malformed BCBP binary record: " + buffer.remaining() + " trailing bytes");
+            }
+        }
+    }
+}
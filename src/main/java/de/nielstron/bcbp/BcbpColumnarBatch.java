@@ -0,0 +1,534 @@
+package de.nielstron.bcbp;
+
+import static de.nielstron.bcbp.BcbpLayout.NO_VALUE;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Column-oriented store for the legs of many boarding passes.
+ *
+ * <p>Every leg is one row. Payloads are appended straight from their raw form: the structural scan of the
+ * parser locates the fields and they are packed into primitive arrays without materializing
+ * {@link IataBcbp.Parsed}. Compared with keeping {@code Parsed} objects this needs a small fraction of the
+ * heap, and the scan methods are plain loops over {@code int[]} columns that the JIT can vectorize.
+ *
+ * <ul>
+ *   <li>Airport and carrier codes are packed into one {@code int} each (see {@link #packCode(String)}).</li>
+ *   <li>Flight number, seat and check-in sequence are packed as number plus suffix letter.</li>
+ *   <li>Flight dates are epoch days; {@link #NO_DATE} marks a missing date.</li>
+ *   <li>Compartment and passenger status are single chars.</li>
+ *   <li>The optional marketing carrier, frequent-flyer airline and free baggage allowance are dictionary
+ *       encoded; frequent-flyer numbers, which are rare and nearly unique, are kept in a sparse column.</li>
+ * </ul>
+ *
+ * <p>Values read back are equal to the identically named getters of {@link IataBcbp.Leg} and
+ * {@link IataBcbp.RepeatedConditional}. Values that do not fit a packed column (for example codes with
+ * characters outside ISO-8859-1) spill into a dictionary, so the store is lossless for every field it keeps.
+ * Passenger names and the remaining conditional fields are not stored. Instances are not thread-safe.
+ */
+public final class BcbpColumnarBatch {
+
+    /** Epoch-day value of legs without a resolvable flight date. */
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    /** Code columns that {@link #countWhere(CodeColumn, String)} and {@link #rowsWhere(CodeColumn, String)} scan. */
+    public enum CodeColumn {
+        FROM_AIRPORT,
+        TO_AIRPORT,
+        OPERATING_CARRIER
+    }
+
+    private static final int EMPTY_NUMBER = -1;
+    private static final byte FAST_TRACK_NO = 1;
+    private static final byte FAST_TRACK_YES = 2;
+    private static final int[] NO_ROWS = new int[0];
+
+    private final BcbpParser parser;
+    private final BcbpLayout layout = new BcbpLayout();
+
+    private int size;
+    private int passes;
+    private int[] pass;
+    private byte[] legIndex;
+    private int[] fromAirport;
+    private int[] toAirport;
+    private int[] operatingCarrier;
+    private int[] flightNumber;
+    private int[] flightDate;
+    private char[] compartmentCode;
+    private int[] seatNumber;
+    private int[] checkInSequenceNumber;
+    private char[] passengerStatus;
+    private int[] marketingCarrier;
+    private int[] frequentFlyerAirline;
+    private int[] freeBaggageAllowance;
+    private byte[] fastTrack;
+
+    private int frequentFlyerNumbers;
+    private int[] frequentFlyerRows = new int[8];
+    private String[] frequentFlyerValues = new String[8];
+
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> dictionaryIndex = new HashMap<>();
+
+    public BcbpColumnarBatch() {
+        this(BcbpParser.defaultParser(), 1024);
+    }
+
+    /**
+     * @param parser supplies normalization and the reference year for flight dates
+     * @param expectedLegs initial row capacity; columns grow on demand
+     */
+    public BcbpColumnarBatch(BcbpParser parser, int expectedLegs) {
+        this.parser = Objects.requireNonNull(parser, "parser");
+        if (expectedLegs < 0) {
+            throw new IllegalArgumentException("expectedLegs must not be negative: " + expectedLegs);
+        }
+        allocate(Math.max(expectedLegs, 16));
+    }
+
+    /**
+     * Appends every leg of one payload.
+     *
+     * @return {@code false} (and nothing appended) for invalid/non-BCBP payloads
+     */
+    public boolean append(String rawMessage) {
+        return rawMessage != null && append((CharSequence) rawMessage);
+    }
+
+    /** Appends scanner bytes, read as ISO-8859-1. */
+    public boolean append(byte[] payload, int offset, int length) {
+        return payload != null && append(new AsciiCharSequence(payload, offset, length));
+    }
+
+    /** @return the number of payloads that were accepted */
+    public int appendAll(Iterable<String> rawMessages) {
+        int accepted = 0;
+        for (String rawMessage : rawMessages) {
+            if (append(rawMessage)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    private boolean append(CharSequence rawMessage) {
+        try {
+            if (!parser.scan(layout, rawMessage)) {
+                return false;
+            }
+            JulianDates dates = parser.julianDates();
+            LocalDate issuanceDate = layout.isPresent(BcbpLayout.UNIQUE_SECTION) ? IataBcbp.decodeIssueDate(layout, dates) : null;
+            int legs = layout.numberOfLegs();
+            ensureCapacity(size + legs);
+            for (int leg = 0; leg < legs; leg++) {
+                appendLeg(leg, issuanceDate, dates);
+            }
+            passes++;
+            return true;
+        } finally {
+            layout.clear();
+        }
+    }
+
+    private void appendLeg(int leg, LocalDate issuanceDate, JulianDates dates) {
+        int base = BcbpLayout.legSlot(leg, 0);
+        int row = size++;
+        pass[row] = passes;
+        legIndex[row] = (byte) leg;
+        fromAirport[row] = code(base + BcbpLayout.FROM_AIRPORT);
+        toAirport[row] = code(base + BcbpLayout.TO_AIRPORT);
+        operatingCarrier[row] = code(base + BcbpLayout.OPERATING_CARRIER);
+        flightNumber[row] = number(base + BcbpLayout.FLIGHT_NUMBER);
+        LocalDate date = IataBcbp.flightDate(layout, leg, issuanceDate, dates);
+        flightDate[row] = date == null ? NO_DATE : (int) date.toEpochDay();
+        compartmentCode[row] = singleChar(base + BcbpLayout.COMPARTMENT);
+        seatNumber[row] = number(base + BcbpLayout.SEAT);
+        checkInSequenceNumber[row] = number(base + BcbpLayout.CHECK_IN_SEQUENCE);
+        passengerStatus[row] = singleChar(base + BcbpLayout.PASSENGER_STATUS);
+
+        marketingCarrier[row] = 0;
+        frequentFlyerAirline[row] = 0;
+        freeBaggageAllowance[row] = 0;
+        fastTrack[row] = 0;
+        if (!layout.isPresent(base + BcbpLayout.REPEATED_SECTION)) {
+            return;
+        }
+        marketingCarrier[row] = dictionaryCode(layout.trimToNull(base + BcbpLayout.REPEATED_MARKETING_CARRIER));
+        freeBaggageAllowance[row] = dictionaryCode(layout.trimToNull(base + BcbpLayout.REPEATED_FREE_BAGGAGE));
+        if (layout.trimmedEquals(base + BcbpLayout.REPEATED_FAST_TRACK, 'Y')) {
+            fastTrack[row] = FAST_TRACK_YES;
+        } else if (layout.trimmedEquals(base + BcbpLayout.REPEATED_FAST_TRACK, 'N')) {
+            fastTrack[row] = FAST_TRACK_NO;
+        }
+        int frequentFlyer = base + BcbpLayout.REPEATED_FREQUENT_FLYER;
+        if (layout.isPresent(frequentFlyer)) {
+            int start = layout.start(frequentFlyer);
+            int end = layout.end(frequentFlyer);
+            int split = Math.min(start + 3, end);
+            frequentFlyerAirline[row] = dictionaryCode(layout.trimToNull(start, split));
+            String number = layout.trimToNull(split, end);
+            if (number != null) {
+                addFrequentFlyerNumber(row, number);
+            }
+        }
+    }
+
+    /** Number of rows, i.e. legs. */
+    public int size() {
+        return size;
+    }
+
+    /** Number of accepted payloads. */
+    public int passCount() {
+        return passes;
+    }
+
+    /** Zero-based ordinal of the accepted payload that {@code row} belongs to. */
+    public int pass(int row) {
+        return pass[Objects.checkIndex(row, size)];
+    }
+
+    /** Index of {@code row} within its payload's legs. */
+    public int legIndex(int row) {
+        return legIndex[Objects.checkIndex(row, size)];
+    }
+
+    public String fromAirport(int row) {
+        return unpackCode(fromAirport[Objects.checkIndex(row, size)]);
+    }
+
+    public String toAirport(int row) {
+        return unpackCode(toAirport[Objects.checkIndex(row, size)]);
+    }
+
+    public String operatingCarrier(int row) {
+        return unpackCode(operatingCarrier[Objects.checkIndex(row, size)]);
+    }
+
+    public String flightNumber(int row) {
+        return unpackNumber(flightNumber[Objects.checkIndex(row, size)]);
+    }
+
+    /** @return the flight date, or {@code null} if the leg has none */
+    public LocalDate flightDate(int row) {
+        int epochDay = flightDate[Objects.checkIndex(row, size)];
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    /** @return the flight date as epoch day, or {@link #NO_DATE} */
+    public int flightEpochDay(int row) {
+        return flightDate[Objects.checkIndex(row, size)];
+    }
+
+    public String compartmentCode(int row) {
+        return unpackChar(compartmentCode[Objects.checkIndex(row, size)]);
+    }
+
+    public String seatNumber(int row) {
+        return unpackNumber(seatNumber[Objects.checkIndex(row, size)]);
+    }
+
+    public String checkInSequenceNumber(int row) {
+        return unpackNumber(checkInSequenceNumber[Objects.checkIndex(row, size)]);
+    }
+
+    public String passengerStatus(int row) {
+        return unpackChar(passengerStatus[Objects.checkIndex(row, size)]);
+    }
+
+    /** @return the marketing carrier of the repeated conditional section, or {@code null} */
+    public String marketingCarrierDesignator(int row) {
+        return dictionaryValue(marketingCarrier[Objects.checkIndex(row, size)]);
+    }
+
+    /** @return the frequent-flyer airline of the repeated conditional section, or {@code null} */
+    public String frequentFlyerAirlineDesignator(int row) {
+        return dictionaryValue(frequentFlyerAirline[Objects.checkIndex(row, size)]);
+    }
+
+    /** @return the frequent-flyer number of the repeated conditional section, or {@code null} */
+    public String frequentFlyerNumber(int row) {
+        int index = Arrays.binarySearch(frequentFlyerRows, 0, frequentFlyerNumbers, Objects.checkIndex(row, size));
+        return index >= 0 ? frequentFlyerValues[index] : null;
+    }
+
+    /** @return the free baggage allowance of the repeated conditional section, or {@code null} */
+    public String freeBaggageAllowance(int row) {
+        return dictionaryValue(freeBaggageAllowance[Objects.checkIndex(row, size)]);
+    }
+
+    /** @return the fast-track flag of the repeated conditional section, or {@code null} */
+    public Boolean fastTrack(int row) {
+        byte value = fastTrack[Objects.checkIndex(row, size)];
+        return value == 0 ? null : value == FAST_TRACK_YES;
+    }
+
+    /** Number of rows whose {@code column} equals {@code code}. */
+    public int countWhere(CodeColumn column, String code) {
+        int[] values = codeColumn(column);
+        int packed = lookupCode(code);
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            count += values[row] == packed ? 1 : 0;
+        }
+        return count;
+    }
+
+    /** Rows whose {@code column} equals {@code code}, ascending. */
+    public int[] rowsWhere(CodeColumn column, String code) {
+        int[] values = codeColumn(column);
+        int packed = lookupCode(code);
+        int[] rows = new int[countWhere(column, code)];
+        int found = 0;
+        for (int row = 0; row < size && found < rows.length; row++) {
+            if (values[row] == packed) {
+                rows[found++] = row;
+            }
+        }
+        return rows;
+    }
+
+    /** Rows of one flight: operating carrier, flight number as returned by {@link IataBcbp.Leg#getFlightNumber()} and date. */
+    public int[] rowsForFlight(String carrier, String flightNumber, LocalDate date) {
+        int packedCarrier = lookupCode(carrier);
+        int packedNumber = lookupNumber(flightNumber);
+        int epochDay = date == null ? NO_DATE : (int) date.toEpochDay();
+        if (packedCarrier == NO_VALUE || packedNumber == NO_VALUE) {
+            return NO_ROWS;
+        }
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            count += operatingCarrier[row] == packedCarrier & this.flightNumber[row] == packedNumber & flightDate[row] == epochDay ? 1 : 0;
+        }
+        int[] rows = new int[count];
+        int found = 0;
+        for (int row = 0; row < size && found < count; row++) {
+            if (operatingCarrier[row] == packedCarrier && this.flightNumber[row] == packedNumber && flightDate[row] == epochDay) {
+                rows[found++] = row;
+            }
+        }
+        return rows;
+    }
+
+    /** Number of rows with a flight date in {@code [from, to]}. */
+    public int countFlightDatesBetween(LocalDate from, LocalDate to) {
+        int first = (int) from.toEpochDay();
+        int last = (int) to.toEpochDay();
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            int day = flightDate[row];
+            count += day >= first & day <= last ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Packs a code of up to three ISO-8859-1 characters (no NUL) into the low 24 bits of an int, first
+     * character in the highest byte. The empty code packs to {@code 0}.
+     *
+     * @return the packed value, or {@link BcbpLayout#NO_VALUE} if the code does not fit
+     */
+    public static int packCode(String code) {
+        return packCode(code, 0, code.length());
+    }
+
+    private static int packCode(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length > 3) {
+            return NO_VALUE;
+        }
+        int packed = 0;
+        for (int i = 0; i < 3; i++) {
+            int c = 0;
+            if (i < length) {
+                c = text.charAt(start + i);
+                if (c == 0 || c > 0xFF) {
+                    return NO_VALUE;
+                }
+            }
+            packed = packed << 8 | c;
+        }
+        return packed;
+    }
+
+    private int code(int slot) {
+        if (!layout.isPresent(slot)) {
+            return 0;
+        }
+        CharSequence text = layout.text();
+        int start = BcbpLayout.trimStart(text, layout.start(slot), layout.end(slot));
+        int end = BcbpLayout.trimEnd(text, start, layout.end(slot));
+        int packed = packCode(text, start, end);
+        return packed != NO_VALUE ? packed : spill(BcbpLayout.substring(text, start, end));
+    }
+
+    private String unpackCode(int packed) {
+        if (packed < 0) {
+            return dictionary.get(-packed - 2);
+        }
+        char[] chars = new char[3];
+        int length = 0;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            char c = (char) (packed >>> shift & 0xFF);
+            if (c == 0) {
+                break;
+            }
+            chars[length++] = c;
+        }
+        return new String(chars, 0, length);
+    }
+
+    /** Packed code for a query value, or {@link BcbpLayout#NO_VALUE} if no row can hold it. */
+    private int lookupCode(String code) {
+        int packed = packCode(code);
+        if (packed != NO_VALUE) {
+            return packed;
+        }
+        Integer index = dictionaryIndex.get(code);
+        return index == null ? NO_VALUE : -index - 2;
+    }
+
+    /** Packs {@code digits[A-Z]?} as {@code number << 8 | suffix}; other shapes spill into the dictionary. */
+    private int number(int slot) {
+        if (layout.isBlank(slot)) {
+            return EMPTY_NUMBER;
+        }
+        CharSequence text = layout.text();
+        int start = BcbpLayout.trimStart(text, layout.start(slot), layout.end(slot));
+        int end = BcbpLayout.trimEnd(text, start, layout.end(slot));
+        int packed = packNumber(text, start, end);
+        return packed != NO_VALUE ? packed : spill(IataBcbp.normalizePaddedNumberWithOptionalSuffix(text, start, end));
+    }
+
+    private static int packNumber(CharSequence text, int start, int end) {
+        int digitsEnd = end;
+        char last = text.charAt(end - 1);
+        int suffix = 0;
+        if (last >= 'A' && last <= 'Z') {
+            digitsEnd--;
+            suffix = last;
+        }
+        if (digitsEnd == start || digitsEnd - start > 6) {
+            return NO_VALUE;
+        }
+        int number = 0;
+        for (int i = start; i < digitsEnd; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return NO_VALUE;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number << 8 | suffix;
+    }
+
+    private String unpackNumber(int packed) {
+        if (packed == EMPTY_NUMBER) {
+            return "";
+        }
+        if (packed < 0) {
+            return dictionary.get(-packed - 2);
+        }
+        int suffix = packed & 0xFF;
+        String number = Integer.toString(packed >>> 8);
+        return suffix == 0 ? number : number + (char) suffix;
+    }
+
+    private int lookupNumber(String value) {
+        if (value.isEmpty()) {
+            return EMPTY_NUMBER;
+        }
+        int packed = packNumber(value, 0, value.length());
+        if (packed != NO_VALUE && unpackNumber(packed).equals(value)) {
+            return packed;
+        }
+        Integer index = dictionaryIndex.get(value);
+        return index == null ? NO_VALUE : -index - 2;
+    }
+
+    private char singleChar(int slot) {
+        if (!layout.isPresent(slot)) {
+            return 0;
+        }
+        CharSequence text = layout.text();
+        int start = BcbpLayout.trimStart(text, layout.start(slot), layout.end(slot));
+        return start < BcbpLayout.trimEnd(text, start, layout.end(slot)) ? text.charAt(start) : 0;
+    }
+
+    private static String unpackChar(char value) {
+        return value == 0 ? "" : String.valueOf(value);
+    }
+
+    /** Dictionary code for a nullable value: {@code 0} is {@code null}, otherwise index + 1. */
+    private int dictionaryCode(String value) {
+        return value == null ? 0 : intern(value) + 1;
+    }
+
+    private String dictionaryValue(int code) {
+        return code == 0 ? null : dictionary.get(code - 1);
+    }
+
+    /** Negative column value for a value that does not fit its packed column. */
+    private int spill(String value) {
+        return -intern(value) - 2;
+    }
+
+    private int intern(String value) {
+        Integer index = dictionaryIndex.get(value);
+        if (index == null) {
+            index = dictionary.size();
+            dictionary.add(value);
+            dictionaryIndex.put(value, index);
+        }
+        return index;
+    }
+
+    private void addFrequentFlyerNumber(int row, String number) {
+        if (frequentFlyerNumbers == frequentFlyerRows.length) {
+            frequentFlyerRows = Arrays.copyOf(frequentFlyerRows, frequentFlyerNumbers * 2);
+            frequentFlyerValues = Arrays.copyOf(frequentFlyerValues, frequentFlyerNumbers * 2);
+        }
+        frequentFlyerRows[frequentFlyerNumbers] = row;
+        frequentFlyerValues[frequentFlyerNumbers] = number;
+        frequentFlyerNumbers++;
+    }
+
+    private int[] codeColumn(CodeColumn column) {
+        return switch (column) {
+            case FROM_AIRPORT -> fromAirport;
+            case TO_AIRPORT -> toAirport;
+            case OPERATING_CARRIER -> operatingCarrier;
+        };
+    }
+
+    private void ensureCapacity(int rows) {
+        if (rows > pass.length) {
+            allocate(Math.max(rows, pass.length + (pass.length >> 1)));
+        }
+    }
+
+    private void allocate(int capacity) {
+        pass = pass == null ? new int[capacity] : Arrays.copyOf(pass, capacity);
+        legIndex = legIndex == null ? new byte[capacity] : Arrays.copyOf(legIndex, capacity);
+        fromAirport = fromAirport == null ? new int[capacity] : Arrays.copyOf(fromAirport, capacity);
+        toAirport = toAirport == null ? new int[capacity] : Arrays.copyOf(toAirport, capacity);
+        operatingCarrier = operatingCarrier == null ? new int[capacity] : Arrays.copyOf(operatingCarrier, capacity);
+        flightNumber = flightNumber == null ? new int[capacity] : Arrays.copyOf(flightNumber, capacity);
+        flightDate = flightDate == null ? new int[capacity] : Arrays.copyOf(flightDate, capacity);
+        compartmentCode = compartmentCode == null ? new char[capacity] : Arrays.copyOf(compartmentCode, capacity);
+        seatNumber = seatNumber == null ? new int[capacity] : Arrays.copyOf(seatNumber, capacity);
+        checkInSequenceNumber = checkInSequenceNumber == null ? new int[capacity] : Arrays.copyOf(checkInSequenceNumber, capacity);
+        passengerStatus = passengerStatus == null ? new char[capacity] : Arrays.copyOf(passengerStatus, capacity);
+        marketingCarrier = marketingCarrier == null ? new int[capacity] : Arrays.copyOf(marketingCarrier, capacity);
+        frequentFlyerAirline = frequentFlyerAirline == null ? new int[capacity] : Arrays.copyOf(frequentFlyerAirline, capacity);
+        freeBaggageAllowance = freeBaggageAllowance == null ? new int[capacity] : Arrays.copyOf(freeBaggageAllowance, capacity);
+        fastTrack = fastTrack == null ? new byte[capacity] : Arrays.copyOf(fastTrack, capacity);
+    }
+}
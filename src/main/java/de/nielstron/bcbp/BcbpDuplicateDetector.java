@@ -0,0 +1,272 @@
+package de.nielstron.bcbp;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Anti-passback check for gates and lounges: admits each leg once per time window.
+ *
+ * <p>A leg is identified by operating carrier, flight number, flight date, origin airport and check-in
+ * sequence number (or the seat when the sequence number is blank). These fields are packed into two
+ * {@code long}s, exactly for every value a BCBP payload can hold; legs built by hand with longer or unusual
+ * field values fall back to a hash of that field.
+ *
+ * <p>Keys live in lock-striped open-addressing tables of primitive arrays, so a lookup allocates nothing.
+ * Each stripe keeps two generations that each cover one window: when the current generation is a window
+ * old it becomes the previous one and the old previous generation, whose entries are all expired by then,
+ * is cleared and reused. Expiry is therefore amortized into admissions and needs no background thread.
+ * Instances are safe to share between threads.
+ */
+public final class BcbpDuplicateDetector {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int FIELD_BITS = StripedTables.CHAR_BITS;
+
+    private final Clock clock;
+    private final long windowMillis;
+    private final Stripe[] stripes;
+    private final int stripeShift;
+
+    private BcbpDuplicateDetector(Builder builder) {
+        this.clock = builder.clock;
+        this.windowMillis = builder.windowMillis;
+        int stripeCount = StripedTables.concurrencyLevel();
+        int stripeCapacity = StripedTables.tableSize(builder.expectedLegs / stripeCount);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+        this.stripeShift = StripedTables.stripeShift(stripeCount);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Records {@code leg} as admitted unless it already was within the window.
+     *
+     * @return {@code true} if the leg is admitted, {@code false} if it is a repeat scan
+     */
+    public boolean admit(IataBcbp.Leg leg) {
+        long high = highKey(leg);
+        long low = lowKey(leg);
+        long hash = StripedTables.mix(high, low);
+        return stripe(hash).admit(high, low, hash, clock.millis(), windowMillis);
+    }
+
+    /** Whether {@code leg} was admitted within the window, without recording anything. */
+    public boolean wasAdmitted(IataBcbp.Leg leg) {
+        long high = highKey(leg);
+        long low = lowKey(leg);
+        long hash = StripedTables.mix(high, low);
+        return stripe(hash).contains(high, low, hash, clock.millis(), windowMillis);
+    }
+
+    /**
+     * Number of remembered legs after dropping expired generations; legs from the previous generation whose
+     * window has passed are still counted.
+     */
+    public long size() {
+        long now = clock.millis();
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size(now, windowMillis);
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clearAll();
+        }
+    }
+
+    private Stripe stripe(long hash) {
+        return stripes[StripedTables.stripe(hash, stripeShift)];
+    }
+
+    /** Carrier, flight number and flight date: 18 + 30 + 16 bits. */
+    static long highKey(IataBcbp.Leg leg) {
+        long key = pack(0, leg.getOperatingCarrier(), 3);
+        key = pack(key, leg.getFlightNumber(), 5);
+        LocalDate flightDate = leg.getFlightDate();
+        return key << 16 | (flightDate == null ? 0 : (flightDate.toEpochDay() + 1) & 0xFFFF);
+    }
+
+    /** Origin, then a flag and the check-in sequence number or seat: 18 + 1 + 30 bits. */
+    static long lowKey(IataBcbp.Leg leg) {
+        long key = pack(0, leg.getFromAirport(), 3);
+        String sequence = leg.getCheckInSequenceNumber();
+        if (sequence == null || sequence.isEmpty()) {
+            return pack(key << 1, leg.getSeatNumber(), 5);
+        }
+        return pack(key << 1 | 1, sequence, 5);
+    }
+
+    /** Appends {@code width} 6-bit characters of {@code value}, right-aligned, or a hash if it does not fit. */
+    private static long pack(long key, String value, int width) {
+        if (value == null) {
+            return key << (width * FIELD_BITS);
+        }
+        long packed = 0;
+        int length = value.length();
+        boolean exact = length <= width;
+        for (int i = 0; exact && i < length; i++) {
+            int code = StripedTables.code(value.charAt(i));
+            exact = code >= 0;
+            packed = packed << FIELD_BITS | code;
+        }
+        if (!exact) {
+            packed = StripedTables.mix(value.hashCode(), length) >>> (64 - width * FIELD_BITS);
+        }
+        return key << (width * FIELD_BITS) | packed;
+    }
+
+    /** One lock stripe with its current and previous generation. */
+    private static final class Stripe extends StripedTables.Generations<Generation> {
+
+        private Stripe(int capacity) {
+            super(new Generation(capacity), new Generation(capacity));
+        }
+
+        private synchronized boolean admit(long high, long low, long hash, long now, long window) {
+            rotate(now, window);
+            if (current.isAdmitted(high, low, hash, now, window) || previous.isAdmitted(high, low, hash, now, window)) {
+                return false;
+            }
+            current.put(high, low, hash, now);
+            return true;
+        }
+
+        private synchronized boolean contains(long high, long low, long hash, long now, long window) {
+            rotate(now, window);
+            return current.isAdmitted(high, low, hash, now, window) || previous.isAdmitted(high, low, hash, now, window);
+        }
+
+        private synchronized long size(long now, long window) {
+            rotate(now, window);
+            return current.size + previous.size;
+        }
+
+        private synchronized void clearAll() {
+            clear();
+        }
+    }
+
+    /** Linear-probing table of (high, low) keys and the time each was admitted. */
+    private static final class Generation extends StripedTables.Generation {
+        private long[] highs;
+        private long[] lows;
+        private long[] admittedAt;
+        private int mask;
+        private int size;
+
+        private Generation(int capacity) {
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            highs = new long[capacity];
+            lows = new long[capacity];
+            admittedAt = new long[capacity];
+            Arrays.fill(admittedAt, EMPTY);
+            mask = capacity - 1;
+            size = 0;
+        }
+
+        private boolean isAdmitted(long high, long low, long hash, long now, long window) {
+            for (int i = (int) hash & mask; admittedAt[i] != EMPTY; i = (i + 1) & mask) {
+                if (highs[i] == high && lows[i] == low) {
+                    return now - admittedAt[i] < window;
+                }
+            }
+            return false;
+        }
+
+        private void put(long high, long low, long hash, long now) {
+            int i = (int) hash & mask;
+            while (admittedAt[i] != EMPTY) {
+                if (highs[i] == high && lows[i] == low) {
+                    admittedAt[i] = now;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            highs[i] = high;
+            lows[i] = low;
+            admittedAt[i] = now;
+            if (++size > (mask + 1) * 3 / 4) {
+                grow();
+            }
+        }
+
+        private void grow() {
+            long[] oldHighs = highs;
+            long[] oldLows = lows;
+            long[] oldAdmittedAt = admittedAt;
+            allocate(oldHighs.length * 2);
+            for (int j = 0; j < oldHighs.length; j++) {
+                if (oldAdmittedAt[j] != EMPTY) {
+                    int i = (int) StripedTables.mix(oldHighs[j], oldLows[j]) & mask;
+                    while (admittedAt[i] != EMPTY) {
+                        i = (i + 1) & mask;
+                    }
+                    highs[i] = oldHighs[j];
+                    lows[i] = oldLows[j];
+                    admittedAt[i] = oldAdmittedAt[j];
+                    size++;
+                }
+            }
+        }
+
+        @Override
+        void clear(long now) {
+            if (size > 0) {
+                Arrays.fill(admittedAt, EMPTY);
+                size = 0;
+            }
+            startedAt = now;
+        }
+    }
+
+    public static final class Builder {
+        private Clock clock = Clock.systemUTC();
+        private long windowMillis = Duration.ofHours(12).toMillis();
+        private int expectedLegs = 16_384;
+
+        private Builder() {
+        }
+
+        /** How long an admitted leg is refused again. Defaults to 12 hours. */
+        public Builder window(Duration window) {
+            if (window.isNegative() || window.isZero()) {
+                throw new IllegalArgumentException("window must be positive: " + window);
+            }
+            this.windowMillis = Math.max(1, window.toMillis());
+            return this;
+        }
+
+        /** Clock that timestamps admissions. Defaults to {@link Clock#systemUTC()}. */
+        public Builder clock(Clock clock) {
+            this.clock = Objects.requireNonNull(clock, "clock");
+            return this;
+        }
+
+        /** Sizing hint: legs admitted per window. Tables grow past it, so it only saves rehashing. Defaults to 16,384. */
+        public Builder expectedLegs(int expectedLegs) {
+            if (expectedLegs < 1) {
+                throw new IllegalArgumentException("expectedLegs must be positive: " + expectedLegs);
+            }
+            this.expectedLegs = expectedLegs;
+            return this;
+        }
+
+        public BcbpDuplicateDetector build() {
+            return new BcbpDuplicateDetector(this);
+        }
+    }
+}
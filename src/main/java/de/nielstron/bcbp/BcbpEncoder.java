@@ -0,0 +1,474 @@
+package de.nielstron.bcbp;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Writes {@link IataBcbp.Parsed} back into a BCBP payload; the inverse of {@link IataBcbp#parse(String)}.
+ *
+ * <p>Fields are written straight into the caller's {@code char[]}, {@code byte[]} or {@link ByteBuffer}:
+ * fixed-width fields are padded, numbers are zero-padded to their IATA width, the hex size fields are
+ * computed from the sections that follow them and a leg's conditional block is padded up to
+ * {@link IataBcbp.Leg#getConditionalSize()} when that is larger than needed. Parsing the result yields a
+ * pass equal to the input for every value the parser can produce, with these exceptions:
+ *
+ * <ul>
+ *   <li>Passenger names are written as {@code LAST/FIRST} with the last word as surname and cut to the 20
+ *       characters of the name block.</li>
+ *   <li>Flight and issuance dates keep only their day of year and the last digit of the year, so the parser
+ *       has to resolve them to the same year again.</li>
+ *   <li>{@link IataBcbp.RepeatedConditional#getAirlineUse()} is written after its section, where IATA places
+ *       it; the parser does not read it back.</li>
+ *   <li>Leg 0 cannot carry a repeated section without a unique one, so an absent unique section is written
+ *       as an empty one in that case.</li>
+ * </ul>
+ *
+ * <p>Values that do not fit their field (for example a four-letter airport) are rejected with
+ * {@link IllegalArgumentException}; the target's contents are then undefined.
+ */
+public final class BcbpEncoder {
+
+    private static final int UNIQUE_FIXED_LENGTH = 11;
+    private static final int REPEATED_FIXED_LENGTH = 26;
+    private static final int FREQUENT_FLYER_NUMBER_LENGTH = 16;
+    private static final int MAX_HEX = 0xFF;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private BcbpEncoder() {
+    }
+
+    /** Number of characters {@code encode} writes for {@code parsed}. */
+    public static int encodedLength(IataBcbp.Parsed parsed) {
+        List<IataBcbp.Leg> legs = parsed.getLegs();
+        checkLegCount(legs);
+        int length = BcbpLayout.HEADER_LENGTH;
+        for (int legIndex = 0; legIndex < legs.size(); legIndex++) {
+            length += BcbpLayout.LEG_MANDATORY_LENGTH + conditionalLength(parsed, legIndex);
+        }
+        IataBcbp.SecurityData security = parsed.getSecurityData();
+        if (security != null) {
+            length += 4 + length(security.getData());
+        }
+        return length + (needsAirlineDataBlank(parsed) ? 1 : 0) + length(parsed.getAirlineData());
+    }
+
+    public static String encode(IataBcbp.Parsed parsed) {
+        char[] payload = new char[encodedLength(parsed)];
+        encode(parsed, payload, 0);
+        return new String(payload);
+    }
+
+    /**
+     * @return the number of characters written at {@code offset}
+     * @throws IndexOutOfBoundsException if the payload does not fit
+     */
+    public static int encode(IataBcbp.Parsed parsed, char[] target, int offset) {
+        int length = encodedLength(parsed);
+        Objects.checkFromIndexSize(offset, length, target.length);
+        write(parsed, new CharArrayOutput(target, offset));
+        return length;
+    }
+
+    /**
+     * Writes the payload as ISO-8859-1 bytes.
+     *
+     * @return the number of bytes written at {@code offset}
+     * @throws IndexOutOfBoundsException if the payload does not fit
+     */
+    public static int encode(IataBcbp.Parsed parsed, byte[] target, int offset) {
+        int length = encodedLength(parsed);
+        Objects.checkFromIndexSize(offset, length, target.length);
+        write(parsed, new ByteArrayOutput(target, offset));
+        return length;
+    }
+
+    /**
+     * Writes the payload as ISO-8859-1 bytes at the buffer's position and advances it.
+     *
+     * @return the number of bytes written
+     * @throws BufferOverflowException if the payload does not fit; the position is left unchanged
+     */
+    public static int encode(IataBcbp.Parsed parsed, ByteBuffer target) {
+        int length = encodedLength(parsed);
+        if (target.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        write(parsed, new ByteBufferOutput(target, target.position()));
+        target.position(target.position() + length);
+        return length;
+    }
+
+    private static void write(IataBcbp.Parsed parsed, Output out) {
+        List<IataBcbp.Leg> legs = parsed.getLegs();
+        out.put(formatCode(parsed.getFormatCode()));
+        out.put((char) ('0' + legs.size()));
+        writePassengerName(parsed.getPassengerName(), out);
+        writeLeft(parsed.getTicketIndicator(), 1, out);
+
+        for (int legIndex = 0; legIndex < legs.size(); legIndex++) {
+            IataBcbp.Leg leg = legs.get(legIndex);
+            int conditionalLength = conditionalLength(parsed, legIndex);
+            writeMandatoryLeg(leg, conditionalLength, out);
+            int conditionalStart = out.position;
+            if (legIndex == 0 && hasVersionHeader(parsed)) {
+                writeLeft(parsed.getVersionNumberIndicator() != null ? parsed.getVersionNumberIndicator() : ">", 1, out);
+                out.put(parsed.getVersionNumber() != null ? digit(parsed.getVersionNumber()) : ' ');
+                IataBcbp.UniqueConditional unique = parsed.getUniqueConditional();
+                if (unique != null || leg.getRepeatedConditional() != null) {
+                    writeHex(uniqueLength(unique), out);
+                    if (unique != null) {
+                        writeUniqueConditional(unique, out);
+                    }
+                }
+            }
+            IataBcbp.RepeatedConditional repeated = leg.getRepeatedConditional();
+            if (repeated != null) {
+                writeRepeatedConditional(repeated, out);
+            }
+            while (out.position - conditionalStart < conditionalLength) {
+                out.put(' ');
+            }
+        }
+
+        IataBcbp.SecurityData security = parsed.getSecurityData();
+        if (security != null) {
+            out.put('^');
+            writeLeft(security.getType(), 1, out);
+            String data = security.getData() != null ? security.getData() : "";
+            writeHex(data.length(), out);
+            writeRaw(data, out);
+        }
+        if (needsAirlineDataBlank(parsed)) {
+            out.put(' ');
+        }
+        writeRaw(parsed.getAirlineData(), out);
+    }
+
+    /**
+     * Whether airline data would be read back as the security section: right after the legs a {@code ^} starts
+     * one, so a leading blank, which the parser trims off airline data, keeps it apart.
+     */
+    private static boolean needsAirlineDataBlank(IataBcbp.Parsed parsed) {
+        String airlineData = parsed.getAirlineData();
+        return parsed.getSecurityData() == null && airlineData != null && airlineData.startsWith("^");
+    }
+
+    private static void writeMandatoryLeg(IataBcbp.Leg leg, int conditionalLength, Output out) {
+        writeLeft(leg.getPnrCode(), 7, out);
+        writeLeft(leg.getFromAirport(), 3, out);
+        writeLeft(leg.getToAirport(), 3, out);
+        writeLeft(leg.getOperatingCarrier(), 3, out);
+        writePaddedNumber(leg.getFlightNumber(), 5, out);
+        LocalDate flightDate = leg.getFlightDate();
+        if (flightDate != null) {
+            writeDigits(flightDate.getDayOfYear(), 3, out);
+        } else {
+            writeLeft(null, 3, out);
+        }
+        writeLeft(leg.getCompartmentCode(), 1, out);
+        writePaddedNumber(leg.getSeatNumber(), 4, out);
+        writePaddedNumber(leg.getCheckInSequenceNumber(), 5, out);
+        writeLeft(leg.getPassengerStatus(), 1, out);
+        writeHex(conditionalLength, out);
+    }
+
+    private static void writeUniqueConditional(IataBcbp.UniqueConditional unique, Output out) {
+        if (uniqueLength(unique) == 0) {
+            return;
+        }
+        writeLeft(unique.getPassengerDescription(), 1, out);
+        writeLeft(unique.getCheckInSource(), 1, out);
+        writeLeft(unique.getBoardingPassIssuanceSource(), 1, out);
+        LocalDate issuanceDate = unique.getIssuanceDate();
+        if (issuanceDate != null) {
+            out.put((char) ('0' + Math.floorMod(issuanceDate.getYear(), 10)));
+            writeDigits(issuanceDate.getDayOfYear(), 3, out);
+        } else {
+            writeLeft(null, 4, out);
+        }
+        writeLeft(unique.getDocumentType(), 1, out);
+        writeLeft(unique.getIssuingAirline(), 3, out);
+        List<String> bagTags = unique.getBagTagNumbers();
+        for (int i = 0; i < bagTags.size(); i++) {
+            writeLeft(bagTags.get(i), BcbpLayout.BAG_TAG_LENGTH, out);
+        }
+    }
+
+    private static void writeRepeatedConditional(IataBcbp.RepeatedConditional repeated, Output out) {
+        writeHex(repeatedSectionLength(repeated), out);
+        writeLeft(repeated.getAirlineNumericCode(), 3, out);
+        writeLeft(repeated.getDocumentSerialNumber(), 10, out);
+        writeLeft(repeated.getSelecteeIndicator(), 1, out);
+        writeLeft(repeated.getInternationalDocumentVerification(), 1, out);
+        writeLeft(repeated.getMarketingCarrierDesignator(), 3, out);
+        writeLeft(repeated.getFrequentFlyerAirlineDesignator(), 3, out);
+        writeLeft(repeated.getFrequentFlyerNumber(), frequentFlyerNumberLength(repeated), out);
+        writeLeft(repeated.getIdAdIndicator(), 1, out);
+        writeLeft(repeated.getFreeBaggageAllowance(), 3, out);
+        Boolean fastTrack = repeated.getFastTrack();
+        out.put(fastTrack == null ? ' ' : fastTrack ? 'Y' : 'N');
+        writeRaw(repeated.getAirlineUse(), out);
+    }
+
+    /** Writes {@code First Middle Last} as the {@code LAST/FIRST MIDDLE} name block. */
+    private static void writePassengerName(String name, Output out) {
+        int end = out.position + 20;
+        if (name != null && name.indexOf('/') >= 0) {
+            // Only a first name containing a slash prints with one; keep the surname empty.
+            out.put('/');
+            writeNameChars(name, 0, name.length(), end, out);
+        } else if (name != null) {
+            int surname = name.lastIndexOf(' ') + 1;
+            writeNameChars(name, surname, name.length(), end, out);
+            if (surname > 0) {
+                if (out.position < end) {
+                    out.put('/');
+                }
+                writeNameChars(name, 0, surname - 1, end, out);
+            }
+        }
+        while (out.position < end) {
+            out.put(' ');
+        }
+    }
+
+    private static void writeNameChars(String name, int start, int end, int limit, Output out) {
+        for (int i = start; i < end && out.position < limit; i++) {
+            char c = Character.toUpperCase(name.charAt(i));
+            if (!(Character.isUpperCase(c) || Character.isDigit(c) || c == ' ' || c == '/' || c == '-')) {
+                throw new IllegalArgumentException("Passenger name cannot be written as a name block: " + name);
+            }
+            out.put(c);
+        }
+    }
+
+    /**
+     * Writes a {@code digits[A-Z]?} value right-aligned with leading zeros and the suffix (or a space) in the
+     * last position; other values are written left-aligned.
+     */
+    private static void writePaddedNumber(String value, int width, Output out) {
+        if (value == null || value.isEmpty()) {
+            writeLeft(null, width, out);
+            return;
+        }
+        int length = value.length();
+        char last = value.charAt(length - 1);
+        boolean suffixed = last >= 'A' && last <= 'Z';
+        int digits = suffixed ? length - 1 : length;
+        boolean numeric = digits > 0;
+        for (int i = 0; i < digits && numeric; i++) {
+            numeric = value.charAt(i) >= '0' && value.charAt(i) <= '9';
+        }
+        if (!numeric || suffixed && digits > width - 1) {
+            writeLeft(value, width, out);
+            return;
+        }
+        if (!suffixed && digits == width) {
+            writeRaw(value, out);
+            return;
+        }
+        if (digits > width - 1) {
+            throw new IllegalArgumentException("Value does not fit " + width + " characters: " + value);
+        }
+        for (int i = digits; i < width - 1; i++) {
+            out.put('0');
+        }
+        for (int i = 0; i < digits; i++) {
+            out.put(value.charAt(i));
+        }
+        out.put(suffixed ? last : ' ');
+    }
+
+    private static void writeLeft(String value, int width, Output out) {
+        int length = length(value);
+        if (length > width) {
+            throw new IllegalArgumentException("Value does not fit " + width + " characters: " + value);
+        }
+        for (int i = 0; i < length; i++) {
+            out.put(value.charAt(i));
+        }
+        for (int i = length; i < width; i++) {
+            out.put(' ');
+        }
+    }
+
+    private static void writeRaw(String value, Output out) {
+        for (int i = 0, length = length(value); i < length; i++) {
+            out.put(value.charAt(i));
+        }
+    }
+
+    private static void writeDigits(int value, int width, Output out) {
+        for (int divisor = pow10(width - 1); divisor > 0; divisor /= 10) {
+            out.put((char) ('0' + value / divisor % 10));
+        }
+    }
+
+    private static void writeHex(int value, Output out) {
+        out.put(HEX[value >> 4]);
+        out.put(HEX[value & 0xF]);
+    }
+
+    private static int conditionalLength(IataBcbp.Parsed parsed, int legIndex) {
+        IataBcbp.Leg leg = parsed.getLegs().get(legIndex);
+        int length = 0;
+        boolean padding = true;
+        if (legIndex == 0 && hasVersionHeader(parsed)) {
+            length = 2;
+            if (parsed.getUniqueConditional() != null || leg.getRepeatedConditional() != null) {
+                length += 2 + uniqueLength(parsed.getUniqueConditional());
+            } else {
+                // Blank padding right after the version would read as an empty unique section.
+                padding = false;
+            }
+        }
+        IataBcbp.RepeatedConditional repeated = leg.getRepeatedConditional();
+        if (repeated != null) {
+            length += 2 + repeatedSectionLength(repeated) + length(repeated.getAirlineUse());
+        }
+        if (padding && length > 0 || legIndex > 0) {
+            length = Math.max(length, leg.getConditionalSize());
+        }
+        if (length > MAX_HEX) {
+            throw new IllegalArgumentException("Conditional section of leg " + legIndex + " exceeds " + MAX_HEX + " characters");
+        }
+        return length;
+    }
+
+    private static boolean hasVersionHeader(IataBcbp.Parsed parsed) {
+        return parsed.getVersionNumberIndicator() != null
+            || parsed.getUniqueConditional() != null
+            || !parsed.getLegs().isEmpty() && parsed.getLegs().get(0).getRepeatedConditional() != null;
+    }
+
+    /** Length of the unique section; {@code 0} for an absent or entirely empty one. */
+    private static int uniqueLength(IataBcbp.UniqueConditional unique) {
+        if (unique == null) {
+            return 0;
+        }
+        boolean empty = unique.getPassengerDescription() == null
+            && unique.getCheckInSource() == null
+            && unique.getBoardingPassIssuanceSource() == null
+            && unique.getIssuanceDate() == null
+            && unique.getDocumentType() == null
+            && unique.getIssuingAirline() == null
+            && unique.getBagTagNumbers().isEmpty();
+        if (empty) {
+            return 0;
+        }
+        int length = UNIQUE_FIXED_LENGTH + unique.getBagTagNumbers().size() * BcbpLayout.BAG_TAG_LENGTH;
+        if (length > MAX_HEX) {
+            throw new IllegalArgumentException("Too many bag tags: " + unique.getBagTagNumbers().size());
+        }
+        return length;
+    }
+
+    private static int repeatedSectionLength(IataBcbp.RepeatedConditional repeated) {
+        int length = REPEATED_FIXED_LENGTH + frequentFlyerNumberLength(repeated);
+        if (length > MAX_HEX) {
+            throw new IllegalArgumentException("Frequent flyer number too long: " + repeated.getFrequentFlyerNumber());
+        }
+        return length;
+    }
+
+    private static int frequentFlyerNumberLength(IataBcbp.RepeatedConditional repeated) {
+        return Math.max(FREQUENT_FLYER_NUMBER_LENGTH, length(repeated.getFrequentFlyerNumber()));
+    }
+
+    private static void checkLegCount(List<IataBcbp.Leg> legs) {
+        if (legs.isEmpty() || legs.size() > BcbpLayout.MAX_LEGS) {
+            throw new IllegalArgumentException("A pass has 1 to " + BcbpLayout.MAX_LEGS + " legs: " + legs.size());
+        }
+    }
+
+    private static char formatCode(String formatCode) {
+        if (formatCode == null) {
+            return 'M';
+        }
+        if (!formatCode.equals("M") && !formatCode.equals("S")) {
+            throw new IllegalArgumentException("Unknown format code: " + formatCode);
+        }
+        return formatCode.charAt(0);
+    }
+
+    private static char digit(int value) {
+        if (value < 0 || value > 9) {
+            throw new IllegalArgumentException("Version number must be a single digit: " + value);
+        }
+        return (char) ('0' + value);
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static int pow10(int exponent) {
+        int value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    private abstract static class Output {
+        int position;
+
+        Output(int position) {
+            this.position = position;
+        }
+
+        abstract void put(char c);
+    }
+
+    private static final class CharArrayOutput extends Output {
+        private final char[] target;
+
+        CharArrayOutput(char[] target, int offset) {
+            super(offset);
+            this.target = target;
+        }
+
+        @Override
+        void put(char c) {
+            target[position++] = c;
+        }
+    }
+
+    private static final class ByteArrayOutput extends Output {
+        private final byte[] target;
+
+        ByteArrayOutput(byte[] target, int offset) {
+            super(offset);
+            this.target = target;
+        }
+
+        @Override
+        void put(char c) {
+            target[position++] = latin1(c);
+        }
+    }
+
+    private static final class ByteBufferOutput extends Output {
+        private final ByteBuffer target;
+
+        ByteBufferOutput(ByteBuffer target, int offset) {
+            super(offset);
+            this.target = target;
+        }
+
+        @Override
+        void put(char c) {
+            target.put(position++, latin1(c));
+        }
+    }
+
+    private static byte latin1(char c) {
+        if (c > 0xFF) {
+            throw new IllegalArgumentException("Character cannot be written as ISO-8859-1: U+" + Integer.toHexString(c));
+        }
+        return (byte) c;
+    }
+}
@@ -0,0 +1,213 @@
+package de.nielstron.bcbp;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Memory-mapped reader for newline-delimited BCBP scan logs.
+ *
+ * <p>The file is mapped read-only in regions of up to 2 GB that each end on a line boundary, so files of any
+ * size can be read. Lines are framed on {@code \n} (a trailing {@code \r} is dropped) before parsing, and each
+ * line is parsed straight out of the mapped region without first being copied into a {@code String}. Blank
+ * lines and payloads rejected by the parser are skipped.
+ *
+ * <p>{@link #stream()} splits on line boundaries, so {@code stream().parallel()} hands contiguous chunks of
+ * the file to the worker threads; encounter order is file order. The file must not be truncated while a
+ * scanner is in use. Mappings are released when the scanner becomes unreachable.
+ */
+public final class BcbpFileScanner {
+
+    /** Largest region a single {@link MappedByteBuffer} can address. */
+    private static final int MAX_REGION_BYTES = Integer.MAX_VALUE;
+
+    /** Splits stop below this many bytes; roughly a few hundred payloads. */
+    private static final long MIN_SPLIT_BYTES = 64 * 1024;
+
+    /** Rough payload size, used only for {@link Spliterator#estimateSize()}. */
+    private static final int ESTIMATED_LINE_BYTES = 160;
+
+    private final BcbpParser parser;
+    private final MappedByteBuffer[] regions;
+    private final long[] regionStarts;
+    private final long size;
+
+    private BcbpFileScanner(BcbpParser parser, MappedByteBuffer[] regions, long[] regionStarts, long size) {
+        this.parser = parser;
+        this.regions = regions;
+        this.regionStarts = regionStarts;
+        this.size = size;
+    }
+
+    /** Maps {@code path} for parsing with {@link BcbpParser#defaultParser()}. */
+    public static BcbpFileScanner open(Path path) throws IOException {
+        return open(path, BcbpParser.defaultParser());
+    }
+
+    /** Maps {@code path} for parsing with {@code parser}. */
+    public static BcbpFileScanner open(Path path, BcbpParser parser) throws IOException {
+        return open(path, parser, MAX_REGION_BYTES);
+    }
+
+    static BcbpFileScanner open(Path path, BcbpParser parser, int maxRegionBytes) throws IOException {
+        Objects.requireNonNull(path, "path");
+        Objects.requireNonNull(parser, "parser");
+        List<MappedByteBuffer> regions = new ArrayList<>();
+        List<Long> starts = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+            while (start < size) {
+                long length = Math.min(size - start, maxRegionBytes);
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                if (start + length < size) {
+                    // End the region after its last line break so that no line straddles two regions.
+                    int lastBreak = lastLineBreak(region, (int) length);
+                    if (lastBreak >= 0) {
+                        length = lastBreak + 1;
+                    }
+                }
+                regions.add(region);
+                starts.add(start);
+                start += length;
+            }
+            long[] regionStarts = new long[starts.size() + 1];
+            for (int i = 0; i < starts.size(); i++) {
+                regionStarts[i] = starts.get(i);
+            }
+            regionStarts[starts.size()] = size;
+            return new BcbpFileScanner(parser, regions.toArray(new MappedByteBuffer[0]), regionStarts, size);
+        }
+    }
+
+    /** Size of the mapped file in bytes. */
+    public long size() {
+        return size;
+    }
+
+    /** Stream of all accepted passes in file order; call {@code parallel()} to parse on several threads. */
+    public Stream<IataBcbp.Parsed> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /** Shorthand for {@code stream().parallel()}. */
+    public Stream<IataBcbp.Parsed> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /** Spliterator over the whole file; splits fall on line boundaries. */
+    public Spliterator<IataBcbp.Parsed> spliterator() {
+        return new LineSpliterator(0, size);
+    }
+
+    private int regionOf(long position) {
+        int index = Arrays.binarySearch(regionStarts, 0, regions.length, position);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private static int lastLineBreak(MappedByteBuffer region, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (region.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Covers {@code [position, end)}; both are line boundaries in file coordinates. */
+    private final class LineSpliterator implements Spliterator<IataBcbp.Parsed> {
+        private long position;
+        private final long end;
+
+        private LineSpliterator(long position, long end) {
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super IataBcbp.Parsed> action) {
+            while (position < end) {
+                IataBcbp.Parsed parsed = nextLine();
+                if (parsed != null) {
+                    action.accept(parsed);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super IataBcbp.Parsed> action) {
+            while (position < end) {
+                IataBcbp.Parsed parsed = nextLine();
+                if (parsed != null) {
+                    action.accept(parsed);
+                }
+            }
+        }
+
+        /** Parses the line at {@link #position} and moves past it; {@code null} for blank or rejected lines. */
+        private IataBcbp.Parsed nextLine() {
+            int region = regionOf(position);
+            MappedByteBuffer buffer = regions[region];
+            long regionStart = regionStarts[region];
+            int lineStart = (int) (position - regionStart);
+            int limit = (int) (Math.min(end, regionStarts[region + 1]) - regionStart);
+
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            position = regionStart + (lineEnd < limit ? lineEnd + 1 : limit);
+
+            int contentEnd = lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            if (contentEnd == lineStart) {
+                return null;
+            }
+            return parser.parseText(new AsciiCharSequence(buffer, lineStart, contentEnd - lineStart));
+        }
+
+        @Override
+        public Spliterator<IataBcbp.Parsed> trySplit() {
+            if (end - position < 2 * MIN_SPLIT_BYTES) {
+                return null;
+            }
+            long middle = position + (end - position) / 2;
+            int region = regionOf(middle);
+            MappedByteBuffer buffer = regions[region];
+            long regionStart = regionStarts[region];
+            int limit = (int) (Math.min(end, regionStarts[region + 1]) - regionStart);
+            int index = (int) (middle - regionStart);
+            while (index < limit && buffer.get(index) != '\n') {
+                index++;
+            }
+            long split = regionStart + (index < limit ? index + 1 : limit);
+            if (split <= position || split >= end) {
+                return null;
+            }
+            LineSpliterator prefix = new LineSpliterator(position, split);
+            position = split;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return (end - position + ESTIMATED_LINE_BYTES - 1) / ESTIMATED_LINE_BYTES;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package de.nielstron.bcbp;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Blocking client for {@link BcbpIngestionServer}, one connection per instance. Not thread-safe.
+ *
+ * <p>{@link #parseAll(List, int)} keeps up to a given number of requests in flight, which hides the round
+ * trip from the throughput. Keep that depth times the frame size well below the socket buffers: the client
+ * does not read responses while it writes a window.
+ */
+public final class BcbpIngestionClient implements Closeable {
+
+    private final Socket socket;
+    private final BcbpIngestionServer.Framing framing;
+    private final IngestionFrames.Reader reader;
+    private final IngestionFrames.Writer writer;
+
+    private BcbpIngestionClient(Socket socket, BcbpIngestionServer.Framing framing) throws IOException {
+        this.socket = socket;
+        this.framing = framing;
+        this.reader = new IngestionFrames.Reader(socket.getInputStream(), framing, IngestionFrames.MAX_FRAME_LENGTH);
+        this.writer = new IngestionFrames.Writer(socket.getOutputStream(), framing);
+    }
+
+    /** Connects to a server using {@code framing}, which must match the server's. */
+    public static BcbpIngestionClient connect(InetSocketAddress address, BcbpIngestionServer.Framing framing)
+        throws IOException {
+        Objects.requireNonNull(address, "address");
+        Objects.requireNonNull(framing, "framing");
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(address);
+            return new BcbpIngestionClient(socket, framing);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /** Sends one payload and waits for its result. */
+    public ParseResult parse(String payload) throws IOException {
+        writer.write(IngestionFrames.payload(payload, framing));
+        writer.flush();
+        return receive();
+    }
+
+    /**
+     * Sends every payload, keeping up to {@code pipelineDepth} unanswered.
+     *
+     * @return one result per payload, in payload order
+     */
+    public List<ParseResult> parseAll(List<String> payloads, int pipelineDepth) throws IOException {
+        if (pipelineDepth < 1) {
+            throw new IllegalArgumentException("pipelineDepth must be positive: " + pipelineDepth);
+        }
+        List<ParseResult> results = new ArrayList<>(payloads.size());
+        int sent = 0;
+        while (results.size() < payloads.size()) {
+            // Refill once half the window is answered, so that requests leave in batches rather than one by one.
+            if (sent < payloads.size() && sent - results.size() <= pipelineDepth / 2) {
+                while (sent - results.size() < pipelineDepth && sent < payloads.size()) {
+                    writer.write(IngestionFrames.payload(payloads.get(sent++), framing));
+                }
+                writer.flush();
+            }
+            results.add(receive());
+        }
+        return results;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private ParseResult receive() throws IOException {
+        if (!reader.next()) {
+            throw new EOFException("Server closed the connection");
+        }
+        return IngestionFrames.decodeResult(reader.buffer(), reader.frameStart(), reader.frameLength(), framing);
+    }
+}
@@ -0,0 +1,385 @@
+package de.nielstron.bcbp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Embeddable TCP server that parses payloads pushed by gate readers and answers each with its result.
+ *
+ * <p>Each connection is served by one task doing blocking reads, so the code stays a plain loop. By default
+ * tasks run on virtual threads when the runtime has them (Java 21 and later), where an idle connection costs
+ * little more than its socket and two small buffers, so tens of thousands can stay open; on older runtimes
+ * they fall back to a cached pool of platform threads. {@link Builder#connectionExecutor} overrides both.
+ *
+ * <p>Requests and responses use the same {@link Framing}; responses come back in request order. A success is
+ * answered with the {@link BcbpBinaryCodec} record of the pass and a rejection with its
+ * {@link ParseResult.Failure}, offset and leg; {@link BcbpIngestionClient} speaks this protocol. Clients may
+ * pipeline: responses are collected until no further request is waiting or
+ * {@link Builder#maxPipelinedResponses} are pending, then written at once. A frame longer than
+ * {@link Builder#maxPayloadLength} is answered with a {@link ParseResult.Failure#TOO_LONG} rejection; a
+ * length-prefixed one is then skipped, while an overlong line closes the connection, as does a frame cut off
+ * by the peer. Answers to the frames before it are sent first.
+ *
+ * <p>When accepting fails, typically because the process ran out of file descriptors, the acceptor backs off
+ * exponentially up to a second between attempts instead of spinning, counts the failure and passes it to
+ * {@link Builder#acceptErrorHandler}.
+ */
+public final class BcbpIngestionServer implements Closeable {
+
+    private static final long MAX_ACCEPT_BACKOFF_MILLIS = 1_000;
+    /** How long a connection closed on an overlong line waits for the peer to stop sending. */
+    private static final int LINGER_MILLIS = 1_000;
+
+    /** How payloads and responses are delimited on the wire. */
+    public enum Framing {
+        /**
+         * One frame per {@code \n}-terminated line; a trailing {@code \r} is dropped and blank lines are ignored,
+         * so they can serve as keep-alives. Responses are {@code OK <base64 record>} or
+         * {@code ERR <failure> <offset> <leg>} lines.
+         */
+        LINES,
+        /** A big-endian unsigned 16-bit length followed by that many bytes. */
+        LENGTH_PREFIXED
+    }
+
+    private final BcbpParser parser;
+    private final Framing framing;
+    private final int maxPayloadLength;
+    private final int maxPipelinedResponses;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final Consumer<? super IOException> acceptErrorHandler;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger accepted = new AtomicInteger();
+    private final AtomicInteger acceptFailures = new AtomicInteger();
+    private volatile boolean closed;
+
+    private BcbpIngestionServer(Builder builder, ServerSocket serverSocket) {
+        this.parser = builder.parser;
+        this.framing = builder.framing;
+        this.maxPayloadLength = builder.maxPayloadLength;
+        this.maxPipelinedResponses = builder.maxPipelinedResponses;
+        this.ownsExecutor = builder.executor == null;
+        this.executor = ownsExecutor ? defaultExecutor() : builder.executor;
+        this.acceptErrorHandler = builder.acceptErrorHandler;
+        this.serverSocket = serverSocket;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** The bound address; with port {@code 0} this carries the port the system picked. */
+    public InetSocketAddress address() {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** Connections currently open. */
+    public int connectionCount() {
+        return connections.size();
+    }
+
+    /** Connections accepted since the server started. */
+    public int acceptedCount() {
+        return accepted.get();
+    }
+
+    /** Times accepting a connection failed since the server started, e.g. on running out of file descriptors. */
+    public int acceptFailureCount() {
+        return acceptFailures.get();
+    }
+
+    /** Stops accepting, closes every open connection and, unless it was supplied, shuts the executor down. */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            serverSocket.close();
+        } finally {
+            for (Socket connection : connections) {
+                closeQuietly(connection);
+            }
+            if (ownsExecutor) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private void start() {
+        Thread acceptor = new Thread(this::accept, "bcbp-ingestion-acceptor-" + port());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void accept() {
+        long backoffMillis = 0;
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (closed) {
+                    return;
+                }
+                acceptFailures.incrementAndGet();
+                reportAcceptError(e);
+                // Retrying at once would spin while the cause (usually EMFILE) persists.
+                backoffMillis = Math.min(MAX_ACCEPT_BACKOFF_MILLIS, Math.max(1, backoffMillis * 2));
+                pause(backoffMillis);
+                continue;
+            }
+            backoffMillis = 0;
+            accepted.incrementAndGet();
+            connections.add(socket);
+            if (closed) {
+                closeQuietly(socket);
+                connections.remove(socket);
+                return;
+            }
+            try {
+                executor.execute(() -> serve(socket));
+            } catch (RejectedExecutionException e) {
+                closeQuietly(socket);
+                connections.remove(socket);
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            IngestionFrames.Reader reader = new IngestionFrames.Reader(socket.getInputStream(), framing, maxPayloadLength);
+            IngestionFrames.Writer writer = new IngestionFrames.Writer(socket.getOutputStream(), framing);
+            try {
+                if (!answer(reader, writer)) {
+                    writer.flush();
+                    lingerBeforeClose(socket);
+                }
+            } finally {
+                // Frames before a truncated or overlong one are still answered before the connection closes.
+                writer.flush();
+            }
+        } catch (SocketException e) {
+            // Peer reset or server closed; nothing to answer.
+        } catch (IOException e) {
+            // Truncated frame: the connection is dropped, as the protocol cannot resynchronize.
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    /** @return {@code false} if it stopped at an overlong line, whose rest is left unread */
+    private boolean answer(IngestionFrames.Reader reader, IngestionFrames.Writer writer) throws IOException {
+        int pending = 0;
+        while (reader.next()) {
+            ParseResult result;
+            if (reader.oversized()) {
+                result = ParseResult.failure(ParseResult.Failure.TOO_LONG, maxPayloadLength, -1);
+            } else if (reader.frameLength() == 0 && framing == Framing.LINES) {
+                continue;
+            } else {
+                result = parser.tryParse(reader.buffer(), reader.frameStart(), reader.frameLength());
+            }
+            writer.write(IngestionFrames.encodeResult(result, framing));
+            if (reader.oversized() && framing == Framing.LINES) {
+                // The rest of the line is unread, so the next frame cannot be found.
+                return false;
+            }
+            pending++;
+            if (pending >= maxPipelinedResponses || !reader.ready()) {
+                writer.flush();
+                pending = 0;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Half-closes {@code socket} and discards what the peer still sends, for at most {@link #LINGER_MILLIS}:
+     * closing with unread input resets the connection, which can drop the answers just written.
+     */
+    private static void lingerBeforeClose(Socket socket) throws IOException {
+        socket.shutdownOutput();
+        socket.setSoTimeout(LINGER_MILLIS);
+        InputStream in = socket.getInputStream();
+        byte[] discarded = new byte[IngestionFrames.MAX_FRAME_LENGTH];
+        long deadline = System.nanoTime() + LINGER_MILLIS * 1_000_000L;
+        try {
+            while (in.read(discarded) >= 0 && System.nanoTime() < deadline) {
+                // Keep draining until the peer closes or the time is up.
+            }
+        } catch (SocketTimeoutException e) {
+            // The peer neither closed nor sent more; the close cannot lose anything now.
+        }
+    }
+
+    private void reportAcceptError(IOException e) {
+        try {
+            acceptErrorHandler.accept(e);
+        } catch (RuntimeException handlerFailure) {
+            // A faulty handler must not stop the acceptor.
+        }
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already broken; nothing left to release.
+        }
+    }
+
+    /** Virtual-thread-per-task executor where the runtime has one, looked up so that Java 17 builds still run. */
+    static ExecutorService defaultExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threads = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "bcbp-ingestion-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public static final class Builder {
+        private BcbpParser parser = BcbpParser.defaultParser();
+        private Framing framing = Framing.LINES;
+        private InetAddress bindAddress = InetAddress.getLoopbackAddress();
+        private int port;
+        private int backlog = 4096;
+        private int maxPayloadLength = 4096;
+        private int maxPipelinedResponses = 64;
+        private ExecutorService executor;
+        private Consumer<? super IOException> acceptErrorHandler = e -> { };
+
+        private Builder() {
+        }
+
+        /** Parser for every payload. Defaults to {@link BcbpParser#defaultParser()}. */
+        public Builder parser(BcbpParser parser) {
+            this.parser = Objects.requireNonNull(parser, "parser");
+            return this;
+        }
+
+        /** Framing of requests and responses. Defaults to {@link Framing#LINES}. */
+        public Builder framing(Framing framing) {
+            this.framing = Objects.requireNonNull(framing, "framing");
+            return this;
+        }
+
+        /** Address to listen on. Defaults to the loopback address. */
+        public Builder bindAddress(InetAddress bindAddress) {
+            this.bindAddress = Objects.requireNonNull(bindAddress, "bindAddress");
+            return this;
+        }
+
+        /** Port to listen on; {@code 0} (the default) picks a free one, see {@link BcbpIngestionServer#port()}. */
+        public Builder port(int port) {
+            if (port < 0 || port > 0xFFFF) {
+                throw new IllegalArgumentException("port out of range: " + port);
+            }
+            this.port = port;
+            return this;
+        }
+
+        /** Pending connections the operating system may queue before they are accepted. Defaults to 4096. */
+        public Builder backlog(int backlog) {
+            if (backlog < 1) {
+                throw new IllegalArgumentException("backlog must be positive: " + backlog);
+            }
+            this.backlog = backlog;
+            return this;
+        }
+
+        /**
+         * Longest payload accepted; longer frames are rejected as {@link ParseResult.Failure#TOO_LONG} and, with
+         * {@link Framing#LINES}, close the connection. Defaults to 4096 bytes.
+         */
+        public Builder maxPayloadLength(int maxPayloadLength) {
+            if (maxPayloadLength < 1 || maxPayloadLength > IngestionFrames.MAX_FRAME_LENGTH) {
+                throw new IllegalArgumentException("maxPayloadLength must be between 1 and 65535: " + maxPayloadLength);
+            }
+            this.maxPayloadLength = maxPayloadLength;
+            return this;
+        }
+
+        /** Responses held back for a pipelining client before they are written. Defaults to 64. */
+        public Builder maxPipelinedResponses(int maxPipelinedResponses) {
+            if (maxPipelinedResponses < 1) {
+                throw new IllegalArgumentException("maxPipelinedResponses must be positive: " + maxPipelinedResponses);
+            }
+            this.maxPipelinedResponses = maxPipelinedResponses;
+            return this;
+        }
+
+        /**
+         * Runs one task per connection on {@code executor}, which the server then does not shut down. Defaults
+         * to virtual threads where available.
+         */
+        public Builder connectionExecutor(ExecutorService executor) {
+            this.executor = Objects.requireNonNull(executor, "executor");
+            return this;
+        }
+
+        /**
+         * Called on the acceptor thread with every failure to accept a connection, e.g. to log it. Exceptions it
+         * throws are ignored. Defaults to doing nothing; {@link BcbpIngestionServer#acceptFailureCount()} counts
+         * failures either way.
+         */
+        public Builder acceptErrorHandler(Consumer<? super IOException> acceptErrorHandler) {
+            this.acceptErrorHandler = Objects.requireNonNull(acceptErrorHandler, "acceptErrorHandler");
+            return this;
+        }
+
+        /** Binds the socket and starts accepting connections. */
+        public BcbpIngestionServer start() throws IOException {
+            ServerSocket serverSocket = new ServerSocket();
+            try {
+                serverSocket.bind(new InetSocketAddress(bindAddress, port), backlog);
+            } catch (IOException e) {
+                serverSocket.close();
+                throw e;
+            }
+            return start(serverSocket);
+        }
+
+        /** Starts accepting on an already bound {@code serverSocket}. */
+        BcbpIngestionServer start(ServerSocket serverSocket) {
+            BcbpIngestionServer server = new BcbpIngestionServer(this, serverSocket);
+            server.start();
+            return server;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package de.nielstron.bcbp;
+
+/**
+ * Deduplicates the short code fields of parsed passes (airports, carriers, compartments, statuses and the
+ * like), which come from a small vocabulary but are otherwise copied into every {@link IataBcbp.Leg}.
+ *
+ * <p>Install one with {@link BcbpParser.Builder#interner(BcbpInterner)}. Implementations must be safe for
+ * concurrent use and should stay bounded; unlike {@link String#intern()} they only need to return a String
+ * equal to the requested range, not a canonical one.
+ */
+public interface BcbpInterner {
+
+    /** @return a String equal to {@code text.subSequence(start, end)}, ideally one returned before */
+    String intern(CharSequence text, int start, int end);
+
+    /**
+     * Lock-free interner that remembers up to {@code capacity} strings (rounded up to a power of two) in a
+     * direct-mapped table; a new string simply replaces whatever collided with it.
+     */
+    static BcbpInterner bounded(int capacity) {
+        return new DirectMappedInterner(capacity);
+    }
+}
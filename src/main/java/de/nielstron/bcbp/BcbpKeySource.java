@@ -0,0 +1,34 @@
+package de.nielstron.bcbp;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+
+/**
+ * Looks up the public key an airline signs its boarding passes with, for {@link BcbpSignatureVerifier}.
+ *
+ * <p>The verifier caches the keys returned per issuer and key id, and remembers recent unknown ones in a bounded
+ * table, so implementations may be slow (files, a key server) and need not cache themselves. It only asks for
+ * issuers of one to three characters of {@code [A-Z0-9]} and key ids of one such character, but both still come
+ * from the scanned pass and must not be trusted further. Implementations must be safe for concurrent use.
+ */
+public interface BcbpKeySource {
+
+    /**
+     * @param issuer the issuing airline designator of the pass, e.g. {@code AC}
+     * @param keyId the type of security data, which selects among an airline's keys, e.g. {@code 1}
+     * @return the key, or {@code null} if the issuer or key id is unknown
+     */
+    PublicKey load(String issuer, String keyId) throws IOException, GeneralSecurityException;
+
+    /**
+     * Keys stored as files named {@code <issuer>-<keyId>.pem} (a PEM {@code PUBLIC KEY} block) or
+     * {@code <issuer>-<keyId>.der} (X.509 SubjectPublicKeyInfo) in {@code directory}. EC, RSA and DSA keys
+     * are recognized. Issuers and key ids outside {@code [A-Z0-9]} are unknown, and so is any name that would
+     * resolve outside {@code directory}.
+     */
+    static BcbpKeySource directory(Path directory) {
+        return new DirectoryKeySource(directory);
+    }
+}
@@ -0,0 +1,723 @@
+package de.nielstron.bcbp;
+
+import java.util.Arrays;
+
+/**
+ * Offset table produced by a single structural pass over a normalized BCBP payload.
+ *
+ * <p>{@link #scan(CharSequence, int)} applies exactly the validation rules of {@link IataBcbp#parse(String)}
+ * but only records where each field starts and ends. No field is turned into a String until a caller asks
+ * for it, so rejected payloads cost no allocations beyond the layout itself. Fields whose read ran past
+ * the end of their section are recorded as absent ({@link #start(int)} returns {@code -1}).
+ */
+final class BcbpLayout {
+
+    static final int HEADER_LENGTH = 23;
+    static final int LEG_MANDATORY_LENGTH = 37;
+    static final int MAX_LEGS = 9;
+    static final int BAG_TAG_LENGTH = 13;
+
+    /** Marker for integer fields that are missing or not numeric. */
+    static final int NO_VALUE = Integer.MIN_VALUE;
+
+    static final int FORMAT_CODE = 0;
+    static final int NUMBER_OF_LEGS = 1;
+    static final int PASSENGER_NAME = 2;
+    static final int TICKET_INDICATOR = 3;
+    static final int VERSION_INDICATOR = 4;
+    static final int VERSION_NUMBER = 5;
+    static final int UNIQUE_SECTION = 6;
+    static final int UNIQUE_PASSENGER_DESCRIPTION = 7;
+    static final int UNIQUE_CHECK_IN_SOURCE = 8;
+    static final int UNIQUE_ISSUANCE_SOURCE = 9;
+    static final int UNIQUE_ISSUANCE_DATE = 10;
+    static final int UNIQUE_DOCUMENT_TYPE = 11;
+    static final int UNIQUE_ISSUING_AIRLINE = 12;
+    static final int UNIQUE_BAG_TAGS = 13;
+    static final int SECURITY_TYPE = 14;
+    static final int SECURITY_DATA = 15;
+    static final int AIRLINE_DATA = 16;
+    static final int HEADER_SLOTS = 17;
+
+    static final int PNR = 0;
+    static final int FROM_AIRPORT = 1;
+    static final int TO_AIRPORT = 2;
+    static final int OPERATING_CARRIER = 3;
+    static final int FLIGHT_NUMBER = 4;
+    static final int DAY_OF_YEAR = 5;
+    static final int COMPARTMENT = 6;
+    static final int SEAT = 7;
+    static final int CHECK_IN_SEQUENCE = 8;
+    static final int PASSENGER_STATUS = 9;
+    static final int REPEATED_SECTION = 10;
+    static final int REPEATED_AIRLINE_NUMERIC_CODE = 11;
+    static final int REPEATED_DOCUMENT_SERIAL = 12;
+    static final int REPEATED_SELECTEE = 13;
+    static final int REPEATED_DOCUMENT_VERIFICATION = 14;
+    static final int REPEATED_MARKETING_CARRIER = 15;
+    static final int REPEATED_FREQUENT_FLYER = 16;
+    static final int REPEATED_ID_AD = 17;
+    static final int REPEATED_FREE_BAGGAGE = 18;
+    static final int REPEATED_FAST_TRACK = 19;
+    static final int REPEATED_AIRLINE_USE = 20;
+    static final int LEG_SLOTS = 21;
+
+    /** Widths of the mandatory leg fields, indexed by slot from {@link #PNR} to {@link #PASSENGER_STATUS}. */
+    private static final int[] MANDATORY_WIDTHS = {7, 3, 3, 3, 5, 3, 1, 4, 5, 1};
+
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] conditionalSizes;
+    private final int[] daysOfYear;
+    private final Cursor main = new Cursor();
+    private final Cursor conditional = new Cursor();
+    private final Cursor section = new Cursor();
+    private CharSequence text;
+    private int numberOfLegs;
+    private ParseResult.Failure failure;
+    private int failureOffset;
+    private int failureLeg;
+    private int scanStart;
+    private BcbpInterner interner;
+    private PassengerNameCache nameCache;
+
+    BcbpLayout() {
+        this(MAX_LEGS);
+    }
+
+    private BcbpLayout(int legCapacity) {
+        this.starts = new int[HEADER_SLOTS + legCapacity * LEG_SLOTS];
+        this.ends = new int[starts.length];
+        this.conditionalSizes = new int[legCapacity];
+        this.daysOfYear = new int[legCapacity];
+    }
+
+    static int legSlot(int legIndex, int field) {
+        return HEADER_SLOTS + legIndex * LEG_SLOTS + field;
+    }
+
+    /**
+     * Scans {@code text} from {@code start} to its end.
+     *
+     * @return {@code true} if the payload is structurally valid and the offset table has been filled;
+     *     otherwise {@link #failure()} says why
+     */
+    boolean scan(CharSequence text, int start) {
+        this.text = text;
+        this.numberOfLegs = 0;
+        this.failure = null;
+        this.scanStart = start;
+        Arrays.fill(starts, -1);
+        Arrays.fill(ends, -1);
+
+        Cursor cursor = main.reset(start, text.length());
+        if (cursor.remaining() < HEADER_LENGTH + LEG_MANDATORY_LENGTH) {
+            return fail(ParseResult.Failure.TOO_SHORT, text.length(), -1);
+        }
+
+        int formatCode = take(cursor, FORMAT_CODE, 1);
+        char format = text.charAt(formatCode);
+        if (format != 'M' && format != 'S') {
+            return fail(ParseResult.Failure.FORMAT_CODE, formatCode, -1);
+        }
+
+        int legsAt = take(cursor, NUMBER_OF_LEGS, 1);
+        int legs = parseInt(text, legsAt, legsAt + 1, 10);
+        if (legs < 1 || legs > MAX_LEGS) {
+            return fail(ParseResult.Failure.LEG_COUNT, legsAt, -1);
+        }
+
+        int name = take(cursor, PASSENGER_NAME, 20);
+        if (!isPassengerNameBlock(text, name, name + 20)) {
+            return fail(ParseResult.Failure.PASSENGER_NAME, name, -1);
+        }
+        take(cursor, TICKET_INDICATOR, 1);
+
+        for (int legIndex = 0; legIndex < legs; legIndex++) {
+            if (!scanMandatoryLeg(cursor, legIndex)) {
+                return false;
+            }
+
+            int conditionalSize = conditionalSizes[legIndex];
+            int conditionalStart = cursor.take(conditionalSize);
+            if (conditionalStart < 0) {
+                return fail(ParseResult.Failure.CONDITIONAL_OVERFLOW, cursor.position, legIndex);
+            }
+            Cursor conditionalCursor = conditional.reset(conditionalStart, conditionalStart + conditionalSize);
+
+            if (legIndex == 0 && conditionalSize > 0) {
+                take(conditionalCursor, VERSION_INDICATOR, 1);
+                take(conditionalCursor, VERSION_NUMBER, 1);
+                int uniqueSizeAt = conditionalCursor.position;
+                int uniqueSize = conditionalCursor.readHex();
+                if (uniqueSize != NO_VALUE) {
+                    int uniqueStart = conditionalCursor.take(uniqueSize);
+                    if (uniqueStart < 0) {
+                        return fail(ParseResult.Failure.UNIQUE_SIZE, uniqueSizeAt, legIndex);
+                    }
+                    scanUniqueConditional(uniqueStart, uniqueStart + uniqueSize);
+                }
+            }
+
+            if (conditionalCursor.remaining() >= 2) {
+                scanRepeatedConditional(conditionalCursor, legIndex);
+            }
+        }
+
+        scanSecurityData(cursor);
+        if (cursor.remaining() > 0) {
+            take(cursor, AIRLINE_DATA, cursor.remaining());
+        }
+
+        numberOfLegs = legs;
+        return true;
+    }
+
+    /**
+     * Accepts exactly the payloads {@link #scan(CharSequence, int)} accepts, without recording any offsets.
+     *
+     * <p>Only the fields that can reject a payload are looked at: the header, each leg's airports, carrier,
+     * flight number, day of year and hex sizes, and leg 0's unique-section size. Short reads follow
+     * {@link Cursor#take(int)}, so a truncated leg is judged as the scan would judge it.
+     */
+    static boolean isValid(CharSequence text, int start) {
+        int end = text.length();
+        if (end - start < HEADER_LENGTH + LEG_MANDATORY_LENGTH) {
+            return false;
+        }
+        char format = text.charAt(start);
+        if (format != 'M' && format != 'S') {
+            return false;
+        }
+        int legs = parseInt(text, start + 1, start + 2, 10);
+        if (legs < 1 || legs > MAX_LEGS || !isPassengerNameBlock(text, start + 2, start + 22)) {
+            return false;
+        }
+
+        int position = start + HEADER_LENGTH;
+        for (int legIndex = 0; legIndex < legs; legIndex++) {
+            int from = -1;
+            int to = -1;
+            int carrier = -1;
+            int flight = -1;
+            int dayOfYear = -1;
+            for (int field = PNR; field <= PASSENGER_STATUS; field++) {
+                int width = MANDATORY_WIDTHS[field];
+                if (position + width > end) {
+                    continue;
+                }
+                switch (field) {
+                    case FROM_AIRPORT -> from = position;
+                    case TO_AIRPORT -> to = position;
+                    case OPERATING_CARRIER -> carrier = position;
+                    case FLIGHT_NUMBER -> flight = position;
+                    case DAY_OF_YEAR -> dayOfYear = position;
+                    default -> {
+                    }
+                }
+                position += width;
+            }
+            if (position + 2 > end) {
+                return false;
+            }
+            int conditionalSize = hexAt(text, position);
+            position += 2;
+            if (conditionalSize == NO_VALUE
+                || fieldLength(text, from, 3) != 3
+                || fieldLength(text, to, 3) != 3) {
+                return false;
+            }
+            int carrierLength = fieldLength(text, carrier, 3);
+            if (carrierLength < 2 || carrierLength > 3 || isBlankField(text, flight, 5)) {
+                return false;
+            }
+            if (!isBlankField(text, dayOfYear, 3)) {
+                int dayStart = trimStart(text, dayOfYear, dayOfYear + 3);
+                int day = parseInt(text, dayStart, trimEnd(text, dayStart, dayOfYear + 3), 10);
+                if (day != NO_VALUE && (day < 1 || day > 366)) {
+                    return false;
+                }
+            }
+
+            if (conditionalSize < 0 || position + conditionalSize > end) {
+                return false;
+            }
+            int conditionalEnd = position + conditionalSize;
+            if (legIndex == 0 && conditionalSize > 0) {
+                // Version indicator and number, each taken only if it still fits.
+                int unique = Math.min(position + 2, conditionalEnd);
+                if (unique + 2 <= conditionalEnd) {
+                    int uniqueSize = hexAt(text, unique);
+                    if (uniqueSize != NO_VALUE && (uniqueSize < 0 || unique + 2 + uniqueSize > conditionalEnd)) {
+                        return false;
+                    }
+                }
+            }
+            position = conditionalEnd;
+        }
+        return true;
+    }
+
+    /** {@link #isBlank(int)} of a field at {@code start}, which is {@code -1} when the field is absent. */
+    private static boolean isBlankField(CharSequence text, int start, int width) {
+        if (start < 0) {
+            return true;
+        }
+        int trimmedStart = trimStart(text, start, start + width);
+        return isBlank(text, trimmedStart, trimEnd(text, trimmedStart, start + width));
+    }
+
+    /** {@link #trimmedLength(int)} of a field at {@code start}, which is {@code -1} when the field is absent. */
+    private static int fieldLength(CharSequence text, int start, int width) {
+        if (start < 0) {
+            return 0;
+        }
+        int trimmedStart = trimStart(text, start, start + width);
+        return trimEnd(text, trimmedStart, start + width) - trimmedStart;
+    }
+
+    private boolean scanMandatoryLeg(Cursor cursor, int legIndex) {
+        int base = legSlot(legIndex, 0);
+        take(cursor, base + PNR, 7);
+        take(cursor, base + FROM_AIRPORT, 3);
+        take(cursor, base + TO_AIRPORT, 3);
+        take(cursor, base + OPERATING_CARRIER, 3);
+        take(cursor, base + FLIGHT_NUMBER, 5);
+        take(cursor, base + DAY_OF_YEAR, 3);
+        take(cursor, base + COMPARTMENT, 1);
+        take(cursor, base + SEAT, 4);
+        take(cursor, base + CHECK_IN_SEQUENCE, 5);
+        take(cursor, base + PASSENGER_STATUS, 1);
+        // A leg cut off by the end of the payload is reported at the end, not where the cursor gave up.
+        int conditionalSizeAt = cursor.remaining() < 2 ? cursor.end : cursor.position;
+        int conditionalSize = cursor.readHex();
+
+        if (conditionalSize == NO_VALUE) {
+            return fail(ParseResult.Failure.CONDITIONAL_SIZE, conditionalSizeAt, legIndex);
+        }
+        if (trimmedLength(base + FROM_AIRPORT) != 3) {
+            return fail(ParseResult.Failure.FROM_AIRPORT, fieldStart(base + FROM_AIRPORT, cursor), legIndex);
+        }
+        if (trimmedLength(base + TO_AIRPORT) != 3) {
+            return fail(ParseResult.Failure.TO_AIRPORT, fieldStart(base + TO_AIRPORT, cursor), legIndex);
+        }
+        int carrierLength = trimmedLength(base + OPERATING_CARRIER);
+        if (carrierLength < 2 || carrierLength > 3) {
+            return fail(ParseResult.Failure.OPERATING_CARRIER, fieldStart(base + OPERATING_CARRIER, cursor), legIndex);
+        }
+        if (isBlank(base + FLIGHT_NUMBER)) {
+            return fail(ParseResult.Failure.FLIGHT_NUMBER, fieldStart(base + FLIGHT_NUMBER, cursor), legIndex);
+        }
+        int dayOfYear = trimmedInt(base + DAY_OF_YEAR);
+        if (dayOfYear != NO_VALUE && (dayOfYear < 1 || dayOfYear > 366)) {
+            return fail(ParseResult.Failure.DAY_OF_YEAR, starts[base + DAY_OF_YEAR], legIndex);
+        }
+
+        conditionalSizes[legIndex] = conditionalSize;
+        daysOfYear[legIndex] = dayOfYear;
+        return true;
+    }
+
+    private void scanUniqueConditional(int start, int end) {
+        Cursor cursor = section.reset(start, end);
+        take(cursor, UNIQUE_PASSENGER_DESCRIPTION, 1);
+        take(cursor, UNIQUE_CHECK_IN_SOURCE, 1);
+        take(cursor, UNIQUE_ISSUANCE_SOURCE, 1);
+        take(cursor, UNIQUE_ISSUANCE_DATE, 4);
+        take(cursor, UNIQUE_DOCUMENT_TYPE, 1);
+        take(cursor, UNIQUE_ISSUING_AIRLINE, 3);
+        int bagTagsLength = cursor.remaining() / BAG_TAG_LENGTH * BAG_TAG_LENGTH;
+        take(cursor, UNIQUE_BAG_TAGS, bagTagsLength);
+        set(UNIQUE_SECTION, start, end - start);
+    }
+
+    private void scanRepeatedConditional(Cursor cursor, int legIndex) {
+        int sectionSize = cursor.readHex();
+        if (sectionSize == NO_VALUE || sectionSize <= 0 || cursor.remaining() < sectionSize) {
+            return;
+        }
+        int sectionStart = cursor.take(sectionSize);
+
+        int base = legSlot(legIndex, 0);
+        Cursor repeated = section.reset(sectionStart, sectionStart + sectionSize);
+        take(repeated, base + REPEATED_AIRLINE_NUMERIC_CODE, 3);
+        take(repeated, base + REPEATED_DOCUMENT_SERIAL, 10);
+        take(repeated, base + REPEATED_SELECTEE, 1);
+        take(repeated, base + REPEATED_DOCUMENT_VERIFICATION, 1);
+        take(repeated, base + REPEATED_MARKETING_CARRIER, 3);
+        take(repeated, base + REPEATED_FREQUENT_FLYER, Math.max(repeated.remaining() - 5, 0));
+        take(repeated, base + REPEATED_ID_AD, 1);
+        take(repeated, base + REPEATED_FREE_BAGGAGE, 3);
+        take(repeated, base + REPEATED_FAST_TRACK, 1);
+        if (repeated.remaining() > 0) {
+            take(repeated, base + REPEATED_AIRLINE_USE, repeated.remaining());
+        }
+        set(base + REPEATED_SECTION, sectionStart, sectionSize);
+    }
+
+    private void scanSecurityData(Cursor cursor) {
+        if (cursor.remaining() < 4 || text.charAt(cursor.position) != '^') {
+            return;
+        }
+        cursor.take(1);
+        take(cursor, SECURITY_TYPE, 1);
+        int length = cursor.readHex();
+        if (length == NO_VALUE) {
+            return;
+        }
+        take(cursor, SECURITY_DATA, length);
+    }
+
+    /** Records a rejection decided before scanning, at {@code offset} from the start of the raw payload. */
+    boolean reject(ParseResult.Failure failure, int offset) {
+        this.numberOfLegs = 0;
+        this.scanStart = 0;
+        return fail(failure, offset, -1);
+    }
+
+    private boolean fail(ParseResult.Failure failure, int offset, int legIndex) {
+        this.failure = failure;
+        this.failureOffset = offset - scanStart;
+        this.failureLeg = legIndex;
+        return false;
+    }
+
+    /** Start of {@code slot} for failure reporting; a field that did not fit reports the end of the payload. */
+    private int fieldStart(int slot, Cursor cursor) {
+        return starts[slot] >= 0 ? starts[slot] : cursor.end;
+    }
+
+    private int take(Cursor cursor, int slot, int length) {
+        int start = cursor.take(length);
+        set(slot, start, length);
+        return start;
+    }
+
+    private void set(int slot, int start, int length) {
+        starts[slot] = start;
+        ends[slot] = start < 0 ? -1 : start + length;
+    }
+
+    CharSequence text() {
+        return text;
+    }
+
+    int numberOfLegs() {
+        return numberOfLegs;
+    }
+
+    /** Why the last {@link #scan(CharSequence, int)} returned {@code false}, or {@code null} after a success. */
+    ParseResult.Failure failure() {
+        return failure;
+    }
+
+    /** Offset of the reported failure, counted from the start of the payload as scanned. */
+    int failureOffset() {
+        return failureOffset;
+    }
+
+    /** Leg the reported failure belongs to, or {@code -1} for the header. */
+    int failureLeg() {
+        return failureLeg;
+    }
+
+    int conditionalSize(int legIndex) {
+        return conditionalSizes[legIndex];
+    }
+
+    /** Decoded day-of-year of the leg's flight date, or {@link #NO_VALUE}. */
+    int dayOfYear(int legIndex) {
+        return daysOfYear[legIndex];
+    }
+
+    boolean isPresent(int slot) {
+        return starts[slot] >= 0;
+    }
+
+    int start(int slot) {
+        return starts[slot];
+    }
+
+    int end(int slot) {
+        return ends[slot];
+    }
+
+    /** Installs the string caches that {@link #codeToEmpty(int)} and {@link #passengerName()} go through. */
+    void useCaches(BcbpInterner interner, PassengerNameCache nameCache) {
+        this.interner = interner;
+        this.nameCache = nameCache;
+    }
+
+    /** Drops the reference to the scanned payload so a reused layout does not retain caller buffers. */
+    void clear() {
+        text = null;
+        interner = null;
+        nameCache = null;
+    }
+
+    /** Returns a right-sized copy that owns its arrays, for callers that keep the layout around. */
+    BcbpLayout copy() {
+        BcbpLayout copy = new BcbpLayout(numberOfLegs);
+        System.arraycopy(starts, 0, copy.starts, 0, copy.starts.length);
+        System.arraycopy(ends, 0, copy.ends, 0, copy.ends.length);
+        System.arraycopy(conditionalSizes, 0, copy.conditionalSizes, 0, numberOfLegs);
+        System.arraycopy(daysOfYear, 0, copy.daysOfYear, 0, numberOfLegs);
+        copy.text = text;
+        copy.numberOfLegs = numberOfLegs;
+        copy.interner = interner;
+        copy.nameCache = nameCache;
+        return copy;
+    }
+
+    /** Raw field value, or {@code null} if the read ran past the end of its section. */
+    String raw(int slot) {
+        int start = starts[slot];
+        return start < 0 ? null : substring(text, start, ends[slot]);
+    }
+
+    String trimToEmpty(int slot) {
+        int start = starts[slot];
+        if (start < 0) {
+            return "";
+        }
+        int trimmedStart = trimStart(text, start, ends[slot]);
+        return substring(text, trimmedStart, trimEnd(text, trimmedStart, ends[slot]));
+    }
+
+    String trimToNull(int slot) {
+        int start = starts[slot];
+        return start < 0 ? null : trimToNull(start, ends[slot]);
+    }
+
+    /** {@code trimToNull} of the absolute range {@code [start, end)} of the scanned text. */
+    String trimToNull(int start, int end) {
+        int trimmedStart = trimStart(text, start, end);
+        int trimmedEnd = trimEnd(text, trimmedStart, end);
+        if (isBlank(text, trimmedStart, trimmedEnd)) {
+            return null;
+        }
+        return substring(text, trimmedStart, trimmedEnd);
+    }
+
+    /** {@link #trimToEmpty(int)} for short code fields, deduplicated through the installed interner. */
+    String codeToEmpty(int slot) {
+        int start = starts[slot];
+        if (start < 0) {
+            return "";
+        }
+        int trimmedStart = trimStart(text, start, ends[slot]);
+        return code(trimmedStart, trimEnd(text, trimmedStart, ends[slot]));
+    }
+
+    /** {@link #trimToNull(int)} for short code fields, deduplicated through the installed interner. */
+    String codeToNull(int slot) {
+        int start = starts[slot];
+        return start < 0 ? null : codeToNull(start, ends[slot]);
+    }
+
+    /** {@link #trimToNull(int, int)} for short code fields, deduplicated through the installed interner. */
+    String codeToNull(int start, int end) {
+        int trimmedStart = trimStart(text, start, end);
+        int trimmedEnd = trimEnd(text, trimmedStart, end);
+        if (isBlank(text, trimmedStart, trimmedEnd)) {
+            return null;
+        }
+        return code(trimmedStart, trimmedEnd);
+    }
+
+    private String code(int start, int end) {
+        return interner != null ? interner.intern(text, start, end) : substring(text, start, end);
+    }
+
+    /** Formatted passenger name, served from the installed name cache when there is one. */
+    String passengerName() {
+        int start = starts[PASSENGER_NAME];
+        int end = ends[PASSENGER_NAME];
+        return nameCache != null ? nameCache.passengerName(text, start, end) : IataBcbp.prettyPassengerName(text, start, end);
+    }
+
+    /** Whether {@code trimToNull(field)} equals the single character {@code expected}. */
+    boolean trimmedEquals(int slot, char expected) {
+        int start = starts[slot];
+        if (start < 0) {
+            return false;
+        }
+        int trimmedStart = trimStart(text, start, ends[slot]);
+        return trimEnd(text, trimmedStart, ends[slot]) - trimmedStart == 1 && text.charAt(trimmedStart) == expected;
+    }
+
+    /** {@link #trimEndToEmpty(CharSequence, int, int)} of the field, or "" if absent. */
+    String trimEndToEmpty(int slot) {
+        int start = starts[slot];
+        return start < 0 ? "" : trimEndToEmpty(text, start, ends[slot]);
+    }
+
+    /** Same result as {@code value.replaceFirst("\\s+$", "")} on {@code [start, end)}. */
+    static String trimEndToEmpty(CharSequence text, int start, int end) {
+        if (end == start) {
+            return "";
+        }
+        char last = text.charAt(end - 1);
+        if (isRegexWhitespace(last)) {
+            return substring(text, start, trailingWhitespaceStart(text, start, end));
+        }
+        if (last == '\u0085' || last == '\u2028' || last == '\u2029') {
+            // '$' also matches just before a final line terminator.
+            int cut = trailingWhitespaceStart(text, start, end - 1);
+            if (cut < end - 1) {
+                return substring(text, start, cut) + last;
+            }
+        }
+        return substring(text, start, end);
+    }
+
+    private static int trailingWhitespaceStart(CharSequence text, int start, int end) {
+        while (end > start && isRegexWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    /** {@code trimToNull(field)} parsed as a decimal integer, or {@link #NO_VALUE}. */
+    int trimmedInt(int slot) {
+        if (isBlank(slot)) {
+            return NO_VALUE;
+        }
+        int trimmedStart = trimStart(text, starts[slot], ends[slot]);
+        return parseInt(text, trimmedStart, trimEnd(text, trimmedStart, ends[slot]), 10);
+    }
+
+    /** Length after {@link String#trim()}, or 0 if absent. */
+    int trimmedLength(int slot) {
+        int start = starts[slot];
+        if (start < 0) {
+            return 0;
+        }
+        int trimmedStart = trimStart(text, start, ends[slot]);
+        return trimEnd(text, trimmedStart, ends[slot]) - trimmedStart;
+    }
+
+    /** Whether {@code trimToNull(field)} would return {@code null}. */
+    boolean isBlank(int slot) {
+        int start = starts[slot];
+        if (start < 0) {
+            return true;
+        }
+        int trimmedStart = trimStart(text, start, ends[slot]);
+        return isBlank(text, trimmedStart, trimEnd(text, trimmedStart, ends[slot]));
+    }
+
+    /** Same contract as {@link String#isBlank()} on {@code [start, end)}. */
+    static boolean isBlank(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String substring(CharSequence text, int start, int end) {
+        if (text instanceof String value) {
+            return value.substring(start, end);
+        }
+        if (text instanceof AsciiCharSequence ascii) {
+            return ascii.toString(start, end);
+        }
+        return text.subSequence(start, end).toString();
+    }
+
+    /** First index in {@code [start, end)} not stripped by {@link String#trim()}. */
+    static int trimStart(CharSequence text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    /** End index of {@code [start, end)} after {@link String#trim()} strips trailing characters. */
+    static int trimEnd(CharSequence text, int start, int end) {
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /** Matches the characters of the regex class {@code \s}. */
+    static boolean isRegexWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /** Same contract as {@link Integer#valueOf(String, int)}, returning {@link #NO_VALUE} on failure. */
+    static int parseInt(CharSequence text, int start, int end, int radix) {
+        if (start >= end) {
+            return NO_VALUE;
+        }
+        int index = start;
+        boolean negative = false;
+        char first = text.charAt(index);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            index++;
+            if (index == end) {
+                return NO_VALUE;
+            }
+        }
+        int value = 0;
+        for (; index < end; index++) {
+            int digit = Character.digit(text.charAt(index), radix);
+            if (digit < 0) {
+                return NO_VALUE;
+            }
+            value = value * radix + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /** The two-character hex size at {@code start}: {@code 0} when blank, {@link #NO_VALUE} when not hex. */
+    static int hexAt(CharSequence text, int start) {
+        int trimmedStart = trimStart(text, start, start + 2);
+        int trimmedEnd = trimEnd(text, trimmedStart, start + 2);
+        return isBlank(text, trimmedStart, trimmedEnd) ? 0 : parseInt(text, trimmedStart, trimmedEnd, 16);
+    }
+
+    static boolean isPassengerNameBlock(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (!(Character.isUpperCase(c) || Character.isDigit(c) || c == ' ' || c == '/' || c == '-')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final class Cursor {
+        private int position;
+        private int end;
+
+        Cursor reset(int start, int end) {
+            this.position = start;
+            this.end = end;
+            return this;
+        }
+
+        int remaining() {
+            return end - position;
+        }
+
+        /** Advances by {@code length} and returns the previous position, or -1 without advancing. */
+        int take(int length) {
+            if (length < 0 || position + length > end) {
+                return -1;
+            }
+            int start = position;
+            position += length;
+            return start;
+        }
+
+        int readHex() {
+            int start = take(2);
+            return start < 0 ? NO_VALUE : hexAt(text, start);
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package de.nielstron.bcbp;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Live per-flight passenger counts fed by any number of scanning threads.
+ *
+ * <p>Every leg of an added pass is counted under its {@link Flight}: in total, by compartment, by passenger
+ * status, by selectee indicator and, when the repeated conditional section says so, as fast track. Counters
+ * are {@link LongAdder}s created on first use, so threads scanning for the same flight during a banked
+ * departure do not contend on one word, and a flight only holds adders for the codes it has seen.
+ *
+ * <p>Adds hold one of several striped {@link StampedLock}s in shared mode. {@link #snapshot()} takes them all
+ * exclusively, but only to copy each flight's sums into a primitive array; the breakdown maps are built after
+ * the locks are released, so scanners wait for that copy alone. Every snapshot
+ * is still a consistent cut in which each flight's breakdowns add up to its total. Flights with no scans for
+ * {@link Builder#expireAfterIdle} are dropped by {@link #expire()}, which every snapshot runs first; it only
+ * excludes adds when a flight is actually idle.
+ */
+public final class BcbpManifestAggregator {
+
+    /** Slot of a missing value; slots 1-36 hold the {@link StripedTables#code(char)} of a single character, 38 anything else. */
+    private static final int ABSENT = 0;
+    private static final int OTHER = 38;
+    private static final int SLOTS_PER_DIMENSION = 39;
+    private static final int COMPARTMENT = 0;
+    private static final int PASSENGER_STATUS = SLOTS_PER_DIMENSION;
+    private static final int SELECTEE = 2 * SLOTS_PER_DIMENSION;
+    private static final int SLOTS = 3 * SLOTS_PER_DIMENSION;
+    /** A flight's sums as copied under the locks: every slot, then passengers and fast track. */
+    private static final int PASSENGERS = SLOTS;
+    private static final int FAST_TRACK = SLOTS + 1;
+    private static final int SUMS = SLOTS + 2;
+
+    /** Last-seen times are only written when they move by more than this, to keep hot flights off one cache line. */
+    private static final long LAST_SEEN_GRANULARITY_MILLIS = 1_000;
+
+    private final BcbpParser parser;
+    private final Clock clock;
+    private final long expireAfterIdleMillis;
+    private final ConcurrentHashMap<Flight, FlightCounters> flights = new ConcurrentHashMap<>();
+    private final StampedLock[] locks;
+    private final int lockMask;
+
+    private BcbpManifestAggregator(Builder builder) {
+        this.parser = builder.parser;
+        this.clock = builder.clock;
+        this.expireAfterIdleMillis = builder.expireAfterIdleMillis;
+        int stripes = StripedTables.concurrencyLevel();
+        this.locks = new StampedLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new StampedLock();
+        }
+        this.lockMask = stripes - 1;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Parses {@code rawMessage} with the configured parser and counts its legs.
+     *
+     * @return {@code false} if the payload was rejected
+     */
+    public boolean add(String rawMessage) {
+        IataBcbp.Parsed parsed = parser.parse(rawMessage);
+        if (parsed == null) {
+            return false;
+        }
+        add(parsed);
+        return true;
+    }
+
+    /** Counts every leg of {@code pass} under its flight. */
+    public void add(IataBcbp.Parsed pass) {
+        long now = clock.millis();
+        StampedLock lock = locks[(int) Thread.currentThread().getId() & lockMask];
+        long stamp = lock.readLock();
+        try {
+            for (IataBcbp.Leg leg : pass.getLegs()) {
+                counters(Flight.of(leg), now).add(leg, now);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Drops flights whose last scan is older than the idle timeout. */
+    public void expire() {
+        long cutoff = clock.millis() - expireAfterIdleMillis;
+        if (!hasIdleFlight(cutoff)) {
+            return;
+        }
+        long[] stamps = lockAll();
+        try {
+            // Rechecked under the locks: a scan may have revived a flight since.
+            flights.values().removeIf(counters -> counters.lastSeen < cutoff);
+        } finally {
+            unlockAll(stamps);
+        }
+    }
+
+    /**
+     * Stops tracking {@code flight}, e.g. once it has departed. Like {@link #snapshot()} this briefly excludes
+     * adds, so every scan lands either in the returned counts or in the flight tracked anew after this call.
+     *
+     * @return the flight's final counts, or {@code null} if it was not tracked
+     */
+    public FlightCounts remove(Flight flight) {
+        long[] sums;
+        long[] stamps = lockAll();
+        try {
+            FlightCounters removed = flights.remove(flight);
+            sums = removed == null ? null : removed.sums();
+        } finally {
+            unlockAll(stamps);
+        }
+        return sums == null ? null : FlightCounts.of(sums);
+    }
+
+    /** Consistent counts of every tracked flight, after dropping idle ones. */
+    public Snapshot snapshot() {
+        expire();
+        Map<Flight, long[]> sums = new HashMap<>(flights.size() * 2);
+        long[] stamps = lockAll();
+        try {
+            flights.forEach((flight, counters) -> sums.put(flight, counters.sums()));
+        } finally {
+            unlockAll(stamps);
+        }
+        Map<Flight, FlightCounts> counts = new HashMap<>(sums.size() * 2);
+        sums.forEach((flight, flightSums) -> counts.put(flight, FlightCounts.of(flightSums)));
+        return new Snapshot(counts);
+    }
+
+    /** Excludes every add, so that no scan lands in a flight while it is being summed or dropped. */
+    private long[] lockAll() {
+        long[] stamps = new long[locks.length];
+        for (int i = 0; i < locks.length; i++) {
+            stamps[i] = locks[i].writeLock();
+        }
+        return stamps;
+    }
+
+    private void unlockAll(long[] stamps) {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i].unlockWrite(stamps[i]);
+        }
+    }
+
+    private boolean hasIdleFlight(long cutoff) {
+        for (FlightCounters counters : flights.values()) {
+            if (counters.lastSeen < cutoff) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private FlightCounters counters(Flight flight, long now) {
+        FlightCounters counters = flights.get(flight);
+        if (counters == null) {
+            counters = flights.computeIfAbsent(flight, ignored -> new FlightCounters(now));
+        }
+        return counters;
+    }
+
+    private static int slot(String code) {
+        if (code == null || code.isBlank()) {
+            return ABSENT;
+        }
+        if (code.length() != 1) {
+            return OTHER;
+        }
+        // A single space is blank, so only digits and letters are left to code.
+        int slot = StripedTables.code(code.charAt(0));
+        return slot < 0 ? OTHER : slot;
+    }
+
+    private static String code(int slot) {
+        if (slot == OTHER) {
+            return "?";
+        }
+        return String.valueOf(StripedTables.character(slot));
+    }
+
+    /** Adders of one flight; each code's adder is created by the first scan that needs it. */
+    private static final class FlightCounters {
+        private final LongAdder passengers = new LongAdder();
+        private final LongAdder fastTrack = new LongAdder();
+        private final AtomicReferenceArray<LongAdder> slots = new AtomicReferenceArray<>(SLOTS);
+        private volatile long lastSeen;
+
+        private FlightCounters(long now) {
+            this.lastSeen = now;
+        }
+
+        private void add(IataBcbp.Leg leg, long now) {
+            passengers.increment();
+            increment(COMPARTMENT + slot(leg.getCompartmentCode()));
+            increment(PASSENGER_STATUS + slot(leg.getPassengerStatus()));
+            IataBcbp.RepeatedConditional repeated = leg.getRepeatedConditional();
+            if (repeated != null) {
+                increment(SELECTEE + slot(repeated.getSelecteeIndicator()));
+                if (Boolean.TRUE.equals(repeated.getFastTrack())) {
+                    fastTrack.increment();
+                }
+            }
+            if (now - lastSeen > LAST_SEEN_GRANULARITY_MILLIS) {
+                lastSeen = now;
+            }
+        }
+
+        private void increment(int slot) {
+            if (slot % SLOTS_PER_DIMENSION == ABSENT) {
+                return;
+            }
+            LongAdder adder = slots.get(slot);
+            if (adder == null) {
+                LongAdder created = new LongAdder();
+                adder = slots.compareAndSet(slot, null, created) ? created : slots.get(slot);
+            }
+            adder.increment();
+        }
+
+        /** Every slot's sum, then passengers and fast track; see {@link FlightCounts#of(long[])}. */
+        private long[] sums() {
+            long[] sums = new long[SUMS];
+            for (int slot = 0; slot < SLOTS; slot++) {
+                LongAdder adder = slots.get(slot);
+                if (adder != null) {
+                    sums[slot] = adder.sum();
+                }
+            }
+            sums[PASSENGERS] = passengers.sum();
+            sums[FAST_TRACK] = fastTrack.sum();
+            return sums;
+        }
+    }
+
+    /**
+     * A flight as identified on a boarding pass: operating carrier, flight number, date and origin. Values are
+     * compared as they are, so they must be in the form {@link IataBcbp.Leg} returns them: carrier and airport
+     * codes without padding, and the flight number without leading zeros or padding ({@code "834"}, not
+     * {@code "0834"}, with any suffix letter kept, as in {@code "117A"}).
+     */
+    public static final class Flight {
+        private final String operatingCarrier;
+        private final String flightNumber;
+        private final LocalDate flightDate;
+        private final String fromAirport;
+
+        public Flight(String operatingCarrier, String flightNumber, LocalDate flightDate, String fromAirport) {
+            this.operatingCarrier = Objects.requireNonNull(operatingCarrier, "operatingCarrier");
+            this.flightNumber = Objects.requireNonNull(flightNumber, "flightNumber");
+            this.flightDate = flightDate;
+            this.fromAirport = Objects.requireNonNull(fromAirport, "fromAirport");
+        }
+
+        static Flight of(IataBcbp.Leg leg) {
+            return new Flight(leg.getOperatingCarrier(), leg.getFlightNumber(), leg.getFlightDate(), leg.getFromAirport());
+        }
+
+        public String getOperatingCarrier() {
+            return operatingCarrier;
+        }
+
+        public String getFlightNumber() {
+            return flightNumber;
+        }
+
+        /** @return the flight date, or {@code null} if the pass did not carry one */
+        public LocalDate getFlightDate() {
+            return flightDate;
+        }
+
+        public String getFromAirport() {
+            return fromAirport;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Flight flight
+                && flight.operatingCarrier.equals(operatingCarrier)
+                && flight.flightNumber.equals(flightNumber)
+                && Objects.equals(flight.flightDate, flightDate)
+                && flight.fromAirport.equals(fromAirport);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(operatingCarrier, flightNumber, flightDate, fromAirport);
+        }
+
+        @Override
+        public String toString() {
+            return IataBcbp.flightCode(operatingCarrier, flightNumber) + " " + flightDate + " from " + fromAirport;
+        }
+    }
+
+    /**
+     * Counts of one flight. Breakdowns map the one-character code to its count; passes without the field are
+     * left out, and codes outside {@code [0-9A-Z]} are counted under {@code ?}.
+     */
+    public static final class FlightCounts {
+        private final long passengers;
+        private final Map<String, Long> byCompartment;
+        private final Map<String, Long> byPassengerStatus;
+        private final Map<String, Long> bySelecteeIndicator;
+        private final long fastTrack;
+
+        FlightCounts(
+            long passengers,
+            Map<String, Long> byCompartment,
+            Map<String, Long> byPassengerStatus,
+            Map<String, Long> bySelecteeIndicator,
+            long fastTrack
+        ) {
+            this.passengers = passengers;
+            this.byCompartment = byCompartment;
+            this.byPassengerStatus = byPassengerStatus;
+            this.bySelecteeIndicator = bySelecteeIndicator;
+            this.fastTrack = fastTrack;
+        }
+
+        private static FlightCounts of(long[] sums) {
+            return new FlightCounts(
+                sums[PASSENGERS],
+                breakdown(sums, COMPARTMENT),
+                breakdown(sums, PASSENGER_STATUS),
+                breakdown(sums, SELECTEE),
+                sums[FAST_TRACK]
+            );
+        }
+
+        /** Codes never scanned have no adder and sum to 0; with adds excluded, that is the only way to get 0. */
+        private static Map<String, Long> breakdown(long[] sums, int dimension) {
+            Map<String, Long> breakdown = new TreeMap<>();
+            for (int slot = 1; slot < SLOTS_PER_DIMENSION; slot++) {
+                long sum = sums[dimension + slot];
+                if (sum != 0) {
+                    breakdown.merge(code(slot), sum, Long::sum);
+                }
+            }
+            return Collections.unmodifiableMap(breakdown);
+        }
+
+        /** Scanned legs, counting rescans of the same pass again. */
+        public long getPassengers() {
+            return passengers;
+        }
+
+        public Map<String, Long> getByCompartment() {
+            return byCompartment;
+        }
+
+        public Map<String, Long> getByPassengerStatus() {
+            return byPassengerStatus;
+        }
+
+        /** Only legs with a repeated conditional section carry a selectee indicator. */
+        public Map<String, Long> getBySelecteeIndicator() {
+            return bySelecteeIndicator;
+        }
+
+        public long getFastTrack() {
+            return fastTrack;
+        }
+
+        @Override
+        public String toString() {
+            return "FlightCounts[passengers=" + passengers
+                + ", compartments=" + byCompartment
+                + ", statuses=" + byPassengerStatus
+                + ", selectees=" + bySelecteeIndicator
+                + ", fastTrack=" + fastTrack + "]";
+        }
+    }
+
+    /** Counts of every tracked flight at one instant. */
+    public static final class Snapshot {
+        private final Map<Flight, FlightCounts> flights;
+
+        Snapshot(Map<Flight, FlightCounts> flights) {
+            this.flights = Collections.unmodifiableMap(flights);
+        }
+
+        public Map<Flight, FlightCounts> getFlights() {
+            return flights;
+        }
+
+        /** @return the counts of {@code flight}, or {@code null} if it is not tracked */
+        public FlightCounts get(Flight flight) {
+            return flights.get(flight);
+        }
+
+        /** Scanned legs across all flights. */
+        public long getPassengers() {
+            long passengers = 0;
+            for (FlightCounts counts : flights.values()) {
+                passengers += counts.passengers;
+            }
+            return passengers;
+        }
+    }
+
+    public static final class Builder {
+        private BcbpParser parser = BcbpParser.defaultParser();
+        private Clock clock = Clock.systemUTC();
+        private long expireAfterIdleMillis = Duration.ofHours(6).toMillis();
+
+        private Builder() {
+        }
+
+        /** Parser for {@link #add(String)}. Defaults to {@link BcbpParser#defaultParser()}. */
+        public Builder parser(BcbpParser parser) {
+            this.parser = Objects.requireNonNull(parser, "parser");
+            return this;
+        }
+
+        /** Clock for idle expiry. Defaults to {@link Clock#systemUTC()}. */
+        public Builder clock(Clock clock) {
+            this.clock = Objects.requireNonNull(clock, "clock");
+            return this;
+        }
+
+        /** Drops a flight once it has gone this long without a scan. Defaults to 6 hours. */
+        public Builder expireAfterIdle(Duration idle) {
+            if (idle.isNegative() || idle.isZero()) {
+                throw new IllegalArgumentException("idle must be positive: " + idle);
+            }
+            this.expireAfterIdleMillis = idle.toMillis();
+            return this;
+        }
+
+        public BcbpManifestAggregator build() {
+            return new BcbpManifestAggregator(this);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package de.nielstron.bcbp;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for one {@link BcbpParser}, enabled with {@link BcbpParser.Builder#metrics(BcbpMetrics)}.
+ *
+ * <p>Every counter is a {@link LongAdder}, so threads parsing in parallel update separate cells instead of
+ * contending on one word; an adder only grows cells once it sees contention. Recorded per payload: the
+ * outcome (pass or {@link ParseResult.Failure}), the leg count and conditional sections of passes, and the
+ * time spent in {@code parse}, {@code tryParse} and {@code parseLazy} in a log2 histogram. Parsers built
+ * without metrics skip all of it behind a single null check.
+ *
+ * <p>{@link #snapshot()} sums the counters into an immutable {@link Snapshot} for export. It does not stop
+ * recording, so counts taken while parsing continues may be off by the payloads in flight.
+ */
+public final class BcbpMetrics {
+
+    /** Bucket {@code i} holds durations in {@code [2^(i-1), 2^i)} nanoseconds; bucket 0 holds zero. */
+    static final int LATENCY_BUCKETS = 64;
+
+    private static final ParseResult.Failure[] FAILURES = ParseResult.Failure.values();
+
+    private final LongAdder passes = new LongAdder();
+    private final LongAdder[] rejections = adders(FAILURES.length);
+    private final LongAdder[] legCounts = adders(BcbpLayout.MAX_LEGS);
+    private final LongAdder withUniqueConditional = new LongAdder();
+    private final LongAdder withRepeatedConditional = new LongAdder();
+    private final LongAdder withSecurityData = new LongAdder();
+    private final LongAdder[] latency = adders(LATENCY_BUCKETS);
+    private final LongAdder latencyNanos = new LongAdder();
+
+    public BcbpMetrics() {
+    }
+
+    /** Counts a payload that {@code layout} has just accepted. */
+    void recordPass(BcbpLayout layout) {
+        passes.increment();
+        int legs = layout.numberOfLegs();
+        legCounts[legs - 1].increment();
+        if (layout.isPresent(BcbpLayout.UNIQUE_SECTION)) {
+            withUniqueConditional.increment();
+        }
+        for (int legIndex = 0; legIndex < legs; legIndex++) {
+            if (layout.isPresent(BcbpLayout.legSlot(legIndex, BcbpLayout.REPEATED_SECTION))) {
+                withRepeatedConditional.increment();
+                break;
+            }
+        }
+        if (layout.isPresent(BcbpLayout.SECURITY_DATA)) {
+            withSecurityData.increment();
+        }
+    }
+
+    void recordRejection(ParseResult.Failure failure) {
+        rejections[failure.ordinal()].increment();
+    }
+
+    void recordLatency(long nanos) {
+        long clamped = Math.max(0, nanos);
+        latency[bucket(clamped)].increment();
+        latencyNanos.add(clamped);
+    }
+
+    static int bucket(long nanos) {
+        return Math.min(LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    /** Sums the counters as of now. */
+    public Snapshot snapshot() {
+        long[] rejected = sums(rejections);
+        Map<ParseResult.Failure, Long> byFailure = new EnumMap<>(ParseResult.Failure.class);
+        for (ParseResult.Failure failure : FAILURES) {
+            byFailure.put(failure, rejected[failure.ordinal()]);
+        }
+        return new Snapshot(
+            passes.sum(),
+            byFailure,
+            sums(legCounts),
+            withUniqueConditional.sum(),
+            withRepeatedConditional.sum(),
+            withSecurityData.sum(),
+            sums(latency),
+            latencyNanos.sum()
+        );
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static long[] sums(LongAdder[] adders) {
+        long[] sums = new long[adders.length];
+        for (int i = 0; i < adders.length; i++) {
+            sums[i] = adders[i].sum();
+        }
+        return sums;
+    }
+
+    /** Point-in-time totals of a {@link BcbpMetrics}. */
+    public static final class Snapshot {
+        private final long passes;
+        private final Map<ParseResult.Failure, Long> rejections;
+        private final long rejected;
+        private final long[] legCounts;
+        private final long withUniqueConditional;
+        private final long withRepeatedConditional;
+        private final long withSecurityData;
+        private final long[] latency;
+        private final long latencyCount;
+        private final long latencyNanos;
+
+        private Snapshot(
+            long passes,
+            Map<ParseResult.Failure, Long> rejections,
+            long[] legCounts,
+            long withUniqueConditional,
+            long withRepeatedConditional,
+            long withSecurityData,
+            long[] latency,
+            long latencyNanos
+        ) {
+            this.passes = passes;
+            this.rejections = rejections;
+            this.rejected = rejections.values().stream().mapToLong(Long::longValue).sum();
+            this.legCounts = legCounts;
+            this.withUniqueConditional = withUniqueConditional;
+            this.withRepeatedConditional = withRepeatedConditional;
+            this.withSecurityData = withSecurityData;
+            this.latency = latency;
+            this.latencyCount = Arrays.stream(latency).sum();
+            this.latencyNanos = latencyNanos;
+        }
+
+        /** Passes plus rejections. */
+        public long getParses() {
+            return passes + rejected;
+        }
+
+        public long getPasses() {
+            return passes;
+        }
+
+        public long getRejections() {
+            return rejected;
+        }
+
+        public long getRejections(ParseResult.Failure failure) {
+            return rejections.get(failure);
+        }
+
+        /** Rejections by reason, including reasons never seen (as zero). */
+        public Map<ParseResult.Failure, Long> getRejectionsByFailure() {
+            return Collections.unmodifiableMap(rejections);
+        }
+
+        /** Passes with exactly {@code legs} legs. */
+        public long getPassesWithLegs(int legs) {
+            if (legs < 1 || legs > legCounts.length) {
+                throw new IllegalArgumentException("legs must be between 1 and " + legCounts.length + ": " + legs);
+            }
+            return legCounts[legs - 1];
+        }
+
+        public long getPassesWithUniqueConditional() {
+            return withUniqueConditional;
+        }
+
+        /** Passes where at least one leg carries a repeated conditional section. */
+        public long getPassesWithRepeatedConditional() {
+            return withRepeatedConditional;
+        }
+
+        public long getPassesWithSecurityData() {
+            return withSecurityData;
+        }
+
+        /** Number of timed calls; payloads scanned by other entry points are counted but not timed. */
+        public long getLatencyCount() {
+            return latencyCount;
+        }
+
+        public long getMeanLatencyNanos() {
+            return latencyCount == 0 ? 0 : latencyNanos / latencyCount;
+        }
+
+        /**
+         * Upper bound of the histogram bucket holding the {@code quantile} (0 to 1) of timed calls, so the
+         * true value is below this and at least half of it; {@code 0} if nothing was timed.
+         */
+        public long getLatencyNanosAtQuantile(double quantile) {
+            if (quantile < 0 || quantile > 1) {
+                throw new IllegalArgumentException("quantile must be between 0 and 1: " + quantile);
+            }
+            if (latencyCount == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * latencyCount));
+            long seen = 0;
+            for (int bucket = 0; bucket < latency.length; bucket++) {
+                seen += latency[bucket];
+                if (seen >= rank) {
+                    return upperBound(bucket);
+                }
+            }
+            return upperBound(latency.length - 1);
+        }
+
+        /** Count of timed calls in histogram bucket {@code bucket}; see {@link #getLatencyBucketUpperBound(int)}. */
+        public long getLatencyBucketCount(int bucket) {
+            return latency[bucket];
+        }
+
+        /** Exclusive upper bound in nanoseconds of histogram bucket {@code bucket} (0 to 63). */
+        public static long getLatencyBucketUpperBound(int bucket) {
+            return upperBound(bucket);
+        }
+
+        private static long upperBound(int bucket) {
+            return bucket >= LATENCY_BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+        }
+
+        @Override
+        public String toString() {
+            Map<ParseResult.Failure, Long> seen = new EnumMap<>(ParseResult.Failure.class);
+            rejections.forEach((failure, count) -> {
+                if (count > 0) {
+                    seen.put(failure, count);
+                }
+            });
+            return "BcbpMetrics[passes=" + passes
+                + ", rejections=" + seen
+                + ", legs=" + Arrays.toString(legCounts)
+                + ", unique=" + withUniqueConditional
+                + ", repeated=" + withRepeatedConditional
+                + ", security=" + withSecurityData
+                + ", p50=" + getLatencyNanosAtQuantile(0.5) + "ns"
+                + ", p99=" + getLatencyNanosAtQuantile(0.99) + "ns]";
+        }
+    }
+}
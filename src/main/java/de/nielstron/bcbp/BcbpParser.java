@@ -0,0 +1,502 @@
+package de.nielstron.bcbp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Configured, reusable BCBP parser.
+ *
+ * <p>The static methods of {@link IataBcbp} delegate to {@link #defaultParser()}. Build a dedicated
+ * instance to control the clock that resolves year-less dates (for example when replaying historic scan
+ * logs), to turn off input normalization or to deduplicate strings across long-lived results. Instances are
+ * immutable apart from their internal caches and are safe to share between threads.
+ *
+ * <p>BCBP dates carry no year: flight dates are a day of year and the issuance date only carries the last
+ * digit of its year. Both are resolved against a reference year, which is the current UTC year of the
+ * configured clock unless {@link Builder#fixedReferenceYear(int)} pins it. The clock is read once per
+ * payload; when that reading leaves the cached year, the parser switches to the date table of the new year,
+ * in which every date it can resolve is a precomputed {@link LocalDate}.
+ *
+ * <p>Payloads come from untrusted barcodes, so their cost is bounded: anything longer than
+ * {@link Builder#maxPayloadLength(int)} is rejected with {@link ParseResult.Failure#TOO_LONG} before it is
+ * copied or scanned, and every other payload is handled in time linear in its length. Section sizes are two
+ * hex digits and legs at most nine, so no field can make the scanner revisit input.
+ */
+public final class BcbpParser {
+
+    private static final BcbpParser DEFAULT = builder().build();
+
+    private static final ThreadLocal<BcbpLayout> LAYOUT = ThreadLocal.withInitial(BcbpLayout::new);
+
+    /** Reused view for {@link #validate(byte[], int, int)}, which must not allocate. */
+    private static final ThreadLocal<AsciiCharSequence> BYTES_VIEW = ThreadLocal.withInitial(AsciiCharSequence::new);
+
+    /**
+     * Default for {@link Builder#maxPayloadLength(int)}: above the capacity of a PDF417 or Aztec symbol and of
+     * a byte-mode QR code, so no real boarding pass comes near it.
+     */
+    public static final int DEFAULT_MAX_PAYLOAD_LENGTH = 4096;
+
+    /** Smallest number of payloads worth handing to another thread. */
+    private static final int MIN_BATCH_CHUNK = 256;
+
+    private final Clock clock;
+    private final int fixedReferenceYear;
+    private final boolean stripSymbologyIdentifier;
+    private final boolean stripLineBreaks;
+    private final BcbpInterner interner;
+    private final PassengerNameCache nameCache;
+    private final BcbpMetrics metrics;
+    private final int maxPayloadLength;
+    private final JulianDates fixedDates;
+    private volatile CachedYear cachedYear = new CachedYear(null, 0, 0);
+
+    private BcbpParser(Builder builder) {
+        this.clock = builder.clock;
+        this.fixedReferenceYear = builder.fixedReferenceYear;
+        this.fixedDates = fixedReferenceYear != 0 ? JulianDates.forYear(fixedReferenceYear) : null;
+        this.stripSymbologyIdentifier = builder.stripSymbologyIdentifier;
+        this.stripLineBreaks = builder.stripLineBreaks;
+        this.interner = builder.interner;
+        this.nameCache = builder.passengerNameCacheSize > 0 ? new PassengerNameCache(builder.passengerNameCacheSize) : null;
+        this.metrics = builder.metrics;
+        this.maxPayloadLength = builder.maxPayloadLength;
+    }
+
+    /** Parser used by the static {@link IataBcbp} methods: system UTC clock, lenient input handling. */
+    public static BcbpParser defaultParser() {
+        return DEFAULT;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** @return the parsed payload, or {@code null} for invalid/non-BCBP payloads */
+    public IataBcbp.Parsed parse(String rawMessage) {
+        if (rawMessage == null) {
+            countNullInput();
+            return null;
+        }
+        return parseText(rawMessage);
+    }
+
+    /** Parses a payload, decoding only the fields in {@code mask}; see {@link FieldMask}. */
+    public IataBcbp.Parsed parse(String rawMessage, FieldMask mask) {
+        Objects.requireNonNull(mask, "mask");
+        if (rawMessage == null) {
+            countNullInput();
+            return null;
+        }
+        return parseText(rawMessage, mask.bits());
+    }
+
+    /** Parses scanner bytes (read as ISO-8859-1); see {@link IataBcbp#parse(byte[], int, int)}. */
+    public IataBcbp.Parsed parse(byte[] payload, int offset, int length) {
+        if (payload == null) {
+            countNullInput();
+            return null;
+        }
+        return parseText(new AsciiCharSequence(payload, offset, length));
+    }
+
+    /** Parses the remaining bytes of {@code payload}; its position and limit are left unchanged. */
+    public IataBcbp.Parsed parse(ByteBuffer payload) {
+        if (payload == null) {
+            countNullInput();
+            return null;
+        }
+        return parseText(new AsciiCharSequence(payload));
+    }
+
+    /**
+     * Parses a payload and reports why it was rejected instead of returning {@code null}; see
+     * {@link ParseResult}. Rejections never throw and reuse shared instances.
+     */
+    public ParseResult tryParse(String rawMessage) {
+        if (rawMessage == null) {
+            countNullInput();
+            return ParseResult.nullInput();
+        }
+        return tryParseText(rawMessage);
+    }
+
+    /** {@link #tryParse(String)} for scanner bytes, read as ISO-8859-1. */
+    public ParseResult tryParse(byte[] payload, int offset, int length) {
+        if (payload == null) {
+            countNullInput();
+            return ParseResult.nullInput();
+        }
+        AsciiCharSequence view = BYTES_VIEW.get().reset(payload, offset, length);
+        try {
+            return tryParseText(view);
+        } finally {
+            view.reset(null, 0, 0);
+        }
+    }
+
+    /** {@link #tryParse(String)} for the remaining bytes of {@code payload}; its position and limit are left unchanged. */
+    public ParseResult tryParse(ByteBuffer payload) {
+        if (payload == null) {
+            countNullInput();
+            return ParseResult.nullInput();
+        }
+        return tryParseText(new AsciiCharSequence(payload));
+    }
+
+    /**
+     * Parses into a reusable holder instead of building a {@link IataBcbp.Parsed}; see {@link MutableBcbp}.
+     * Once the holder has seen its longest payload, neither accepting nor rejecting one allocates.
+     *
+     * @return whether the payload was accepted; {@link MutableBcbp#getFailure()} says why not
+     */
+    public boolean parseInto(CharSequence rawMessage, MutableBcbp target) {
+        Objects.requireNonNull(target, "target");
+        if (rawMessage == null) {
+            countNullInput();
+            target.reset();
+            return false;
+        }
+        BcbpLayout layout = target.layout();
+        long started = metrics != null ? System.nanoTime() : 0;
+        try {
+            // Copied with line breaks already dropped, so the scan never strips into a String of its own.
+            CharSequence message = rawMessage.length() > maxPayloadLength ? rawMessage : target.load(rawMessage, stripLineBreaks);
+            boolean accepted = scan(layout, message);
+            target.onScanned(accepted, accepted ? julianDates() : null);
+            return accepted;
+        } finally {
+            if (metrics != null) {
+                metrics.recordLatency(System.nanoTime() - started);
+            }
+        }
+    }
+
+    /** {@link #parseInto(CharSequence, MutableBcbp)} for scanner bytes, read as ISO-8859-1. */
+    public boolean parseInto(byte[] payload, int offset, int length, MutableBcbp target) {
+        if (payload == null) {
+            return parseInto((CharSequence) null, target);
+        }
+        AsciiCharSequence view = BYTES_VIEW.get().reset(payload, offset, length);
+        try {
+            return parseInto(view, target);
+        } finally {
+            view.reset(null, 0, 0);
+        }
+    }
+
+    /**
+     * Whether {@link #parse(String)} would accept {@code rawMessage}, decided without building anything.
+     *
+     * <p>Checks the format code, leg count, name block, each leg's mandatory fields and hex sizes, and that
+     * the sizes add up within the payload. Nothing is allocated unless the payload contains line breaks,
+     * which are stripped into a copy as for parsing.
+     */
+    public boolean isLikelyBcbp(CharSequence rawMessage) {
+        if (rawMessage == null || rawMessage.length() > maxPayloadLength) {
+            return false;
+        }
+        CharSequence message = stripLineBreaks ? IataBcbp.stripLineBreaks(rawMessage) : rawMessage;
+        return BcbpLayout.isValid(message, IataBcbp.payloadStart(message, stripSymbologyIdentifier));
+    }
+
+    /** {@link #isLikelyBcbp(CharSequence)} for scanner bytes, read as ISO-8859-1. */
+    public boolean validate(byte[] payload, int offset, int length) {
+        if (payload == null) {
+            return false;
+        }
+        AsciiCharSequence view = BYTES_VIEW.get().reset(payload, offset, length);
+        try {
+            return isLikelyBcbp(view);
+        } finally {
+            view.reset(null, 0, 0);
+        }
+    }
+
+    /** @return a lazily decoded view, or {@code null} for invalid/non-BCBP payloads */
+    public LazyBcbp parseLazy(String rawMessage) {
+        if (rawMessage == null) {
+            countNullInput();
+            return null;
+        }
+        return scanLazy(rawMessage);
+    }
+
+    /** Lazy variant of {@link #parse(byte[], int, int)}; the bytes are copied once. */
+    public LazyBcbp parseLazy(byte[] payload, int offset, int length) {
+        if (payload == null) {
+            countNullInput();
+            return null;
+        }
+        Objects.checkFromIndexSize(offset, length, payload.length);
+        if (length > maxPayloadLength) {
+            // Rejected without copying the bytes first.
+            return scanLazy(new AsciiCharSequence(payload, offset, length));
+        }
+        return scanLazy(new String(payload, offset, length, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Parses a batch on the common {@link ForkJoinPool}.
+     *
+     * @return one result per input, in input order; {@code null} elements yield rejected results
+     */
+    public List<ParseResult> parseAll(List<String> rawMessages) {
+        return parseAll(rawMessages, ForkJoinPool.commonPool());
+    }
+
+    /** Parses a batch by splitting it into contiguous chunks that run on {@code executor}. */
+    public List<ParseResult> parseAll(List<String> rawMessages, Executor executor) {
+        return Collections.unmodifiableList(Arrays.asList(parseAll(rawMessages.toArray(new String[0]), executor)));
+    }
+
+    /** Array variant of {@link #parseAll(List)}. */
+    public ParseResult[] parseAll(String[] rawMessages) {
+        return parseAll(rawMessages, ForkJoinPool.commonPool());
+    }
+
+    /** Array variant of {@link #parseAll(List, Executor)}. */
+    public ParseResult[] parseAll(String[] rawMessages, Executor executor) {
+        Objects.requireNonNull(rawMessages, "rawMessages");
+        Objects.requireNonNull(executor, "executor");
+        ParseResult[] results = new ParseResult[rawMessages.length];
+        BatchChunks.run(rawMessages.length, MIN_BATCH_CHUNK, executor, (from, to) -> parseRange(rawMessages, results, from, to));
+        return results;
+    }
+
+    private void parseRange(String[] rawMessages, ParseResult[] results, int from, int to) {
+        for (int i = from; i < to; i++) {
+            results[i] = tryParse(rawMessages[i]);
+        }
+    }
+
+    /** The year that year-less BCBP dates are currently resolved against. */
+    public int referenceYear() {
+        return fixedReferenceYear != 0 ? fixedReferenceYear : julianDates().referenceYear();
+    }
+
+    /** Date tables for the current {@link #referenceYear()}, swapped for the next year's when the clock gets there. */
+    JulianDates julianDates() {
+        if (fixedDates != null) {
+            return fixedDates;
+        }
+        long now = clock.millis();
+        CachedYear cached = cachedYear;
+        if (now >= cached.validFrom && now < cached.validUntil) {
+            return cached.dates;
+        }
+        int year = LocalDate.ofEpochDay(Math.floorDiv(now, 86_400_000L)).getYear();
+        JulianDates dates = JulianDates.forYear(year);
+        cachedYear = new CachedYear(
+            dates,
+            LocalDate.of(year, 1, 1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli(),
+            LocalDate.of(year + 1, 1, 1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli()
+        );
+        return dates;
+    }
+
+    /** Longest payload accepted; see {@link Builder#maxPayloadLength(int)}. */
+    public int maxPayloadLength() {
+        return maxPayloadLength;
+    }
+
+    /** The metrics configured with {@link Builder#metrics(BcbpMetrics)}, or {@code null}. */
+    public BcbpMetrics metrics() {
+        return metrics;
+    }
+
+    IataBcbp.Parsed parseText(CharSequence rawMessage) {
+        return parseText(rawMessage, FieldMask.ALL_BITS);
+    }
+
+    private IataBcbp.Parsed parseText(CharSequence rawMessage, long loaded) {
+        BcbpLayout layout = LAYOUT.get();
+        long started = metrics != null ? System.nanoTime() : 0;
+        try {
+            if (!scan(layout, rawMessage)) {
+                return null;
+            }
+            return IataBcbp.materialize(layout, julianDates(), loaded);
+        } finally {
+            layout.clear();
+            if (metrics != null) {
+                metrics.recordLatency(System.nanoTime() - started);
+            }
+        }
+    }
+
+    private ParseResult tryParseText(CharSequence rawMessage) {
+        BcbpLayout layout = LAYOUT.get();
+        long started = metrics != null ? System.nanoTime() : 0;
+        try {
+            if (!scan(layout, rawMessage)) {
+                return ParseResult.failure(layout);
+            }
+            return ParseResult.success(IataBcbp.materialize(layout, julianDates(), FieldMask.ALL_BITS));
+        } finally {
+            layout.clear();
+            if (metrics != null) {
+                metrics.recordLatency(System.nanoTime() - started);
+            }
+        }
+    }
+
+    private LazyBcbp scanLazy(CharSequence rawMessage) {
+        BcbpLayout layout = LAYOUT.get();
+        long started = metrics != null ? System.nanoTime() : 0;
+        try {
+            if (!scan(layout, rawMessage)) {
+                return null;
+            }
+            return new LazyBcbp(layout.copy(), julianDates());
+        } finally {
+            layout.clear();
+            if (metrics != null) {
+                metrics.recordLatency(System.nanoTime() - started);
+            }
+        }
+    }
+
+    /** The payload as the scanner sees it: line breaks and the symbology identifier removed as configured. */
+    String normalize(String rawMessage) {
+        CharSequence message = stripLineBreaks ? IataBcbp.stripLineBreaks(rawMessage) : rawMessage;
+        int start = IataBcbp.payloadStart(message, stripSymbologyIdentifier);
+        return message.subSequence(start, message.length()).toString();
+    }
+
+    /** Millis of the configured clock, for callers that expire state alongside the reference year. */
+    long millis() {
+        return clock.millis();
+    }
+
+    boolean scan(BcbpLayout layout, CharSequence rawMessage) {
+        boolean accepted;
+        if (rawMessage.length() > maxPayloadLength) {
+            accepted = layout.reject(ParseResult.Failure.TOO_LONG, maxPayloadLength);
+        } else {
+            CharSequence message = stripLineBreaks ? IataBcbp.stripLineBreaks(rawMessage) : rawMessage;
+            layout.useCaches(interner, nameCache);
+            accepted = layout.scan(message, IataBcbp.payloadStart(message, stripSymbologyIdentifier));
+        }
+        if (metrics != null) {
+            if (accepted) {
+                metrics.recordPass(layout);
+            } else {
+                metrics.recordRejection(layout.failure());
+            }
+        }
+        return accepted;
+    }
+
+    private void countNullInput() {
+        if (metrics != null) {
+            metrics.recordRejection(ParseResult.Failure.NULL_INPUT);
+        }
+    }
+
+    private static final class CachedYear {
+        private final JulianDates dates;
+        private final long validFrom;
+        private final long validUntil;
+
+        private CachedYear(JulianDates dates, long validFrom, long validUntil) {
+            this.dates = dates;
+            this.validFrom = validFrom;
+            this.validUntil = validUntil;
+        }
+    }
+
+    public static final class Builder {
+        private Clock clock = Clock.systemUTC();
+        private int fixedReferenceYear;
+        private boolean stripSymbologyIdentifier = true;
+        private boolean stripLineBreaks = true;
+        private BcbpInterner interner;
+        private int passengerNameCacheSize;
+        private BcbpMetrics metrics;
+        private int maxPayloadLength = DEFAULT_MAX_PAYLOAD_LENGTH;
+
+        private Builder() {
+        }
+
+        /** Clock whose current UTC year resolves year-less dates. Defaults to {@link Clock#systemUTC()}. */
+        public Builder clock(Clock clock) {
+            this.clock = Objects.requireNonNull(clock, "clock");
+            return this;
+        }
+
+        /** Resolves year-less dates against {@code year} regardless of the clock. */
+        public Builder fixedReferenceYear(int year) {
+            if (year < 1 || year > 9999) {
+                throw new IllegalArgumentException("year must be between 1 and 9999: " + year);
+            }
+            this.fixedReferenceYear = year;
+            return this;
+        }
+
+        /** Whether a leading symbology identifier such as {@code ]Q3} is skipped. Defaults to {@code true}. */
+        public Builder stripSymbologyIdentifier(boolean strip) {
+            this.stripSymbologyIdentifier = strip;
+            return this;
+        }
+
+        /** Whether CR/LF characters anywhere in the payload are dropped. Defaults to {@code true}. */
+        public Builder stripLineBreaks(boolean strip) {
+            this.stripLineBreaks = strip;
+            return this;
+        }
+
+        /**
+         * Interner for short code fields such as airports, carriers and compartments, so that long-lived
+         * result sets share one String per code. Defaults to none; see {@link BcbpInterner#bounded(int)}.
+         */
+        public Builder interner(BcbpInterner interner) {
+            this.interner = interner;
+            return this;
+        }
+
+        /** Remembers the formatted name of up to {@code capacity} raw name blocks; {@code 0} (the default) disables it. */
+        public Builder passengerNameCache(int capacity) {
+            if (capacity < 0) {
+                throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+            }
+            this.passengerNameCacheSize = capacity;
+            return this;
+        }
+
+        /**
+         * Records outcomes, pass shapes and latency into {@code metrics}; see {@link BcbpMetrics}. Defaults to
+         * none, which costs one null check per payload. One instance may be shared by several parsers.
+         */
+        public Builder metrics(BcbpMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Rejects payloads longer than {@code length} characters, counted before line breaks and the symbology
+         * identifier are removed, with {@link ParseResult.Failure#TOO_LONG}. Defaults to
+         * {@link BcbpParser#DEFAULT_MAX_PAYLOAD_LENGTH}.
+         */
+        public Builder maxPayloadLength(int length) {
+            if (length < 1) {
+                throw new IllegalArgumentException("length must be positive: " + length);
+            }
+            this.maxPayloadLength = length;
+            return this;
+        }
+
+        public BcbpParser build() {
+            return new BcbpParser(this);
+        }
+    }
+}
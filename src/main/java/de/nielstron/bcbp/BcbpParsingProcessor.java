@@ -0,0 +1,360 @@
+package de.nielstron.bcbp;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+/**
+ * {@link Flow.Processor} that parses a stream of payloads into {@link ParseResult}s, one per payload and in
+ * payload order.
+ *
+ * <p>Payloads are parsed on the configured executor in batches of whatever has arrived since the previous
+ * batch started, up to {@link Builder#batchSize(int)}. With {@link Builder#parallelism(int)} above one, that many
+ * batches run at once and their results are still emitted in order.
+ *
+ * <p>Demand flows upstream: the processor never requests more payloads than its subscriber has requested
+ * results for, and never holds more than {@code 2 * batchSize * parallelism} of them, so an unbounded
+ * request does not buffer an unbounded burst. It serves a single subscriber and subscribes to a single
+ * upstream; later ones are rejected. Completion and upstream errors are passed on after the results of every
+ * payload received before them. If parsing a batch throws, even an {@link Error}, the results before that
+ * batch are emitted and the exception then fails the stream.
+ *
+ * <p>{@code ByteBuffer} payloads are parsed after {@code onNext} returns, so the publisher must not reuse them.
+ */
+public final class BcbpParsingProcessor<T> implements Flow.Processor<T, ParseResult> {
+
+    private static final Flow.Subscription CANCELLED = new Flow.Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    private final BcbpParser parser;
+    private final BiFunction<BcbpParser, ? super T, ParseResult> parse;
+    private final Executor executor;
+    private final int batchSize;
+    private final int parallelism;
+    private final long bufferSize;
+
+    private final AtomicReference<Flow.Subscription> upstream = new AtomicReference<>();
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final ConcurrentLinkedQueue<T> inputs = new ConcurrentLinkedQueue<>();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger wip = new AtomicInteger();
+    /** Set once the subscriber's {@code onSubscribe} has returned; nothing is emitted before. */
+    private volatile Flow.Subscriber<? super ParseResult> subscriber;
+    private volatile boolean upstreamDone;
+    private volatile Throwable upstreamError;
+    private volatile Throwable failure;
+    private volatile boolean cancelled;
+
+    // Only touched inside drain().
+    private final ArrayDeque<Batch> batches = new ArrayDeque<>();
+    /** Payloads requested from upstream whose results have not been emitted yet. */
+    private long pulled;
+    private boolean terminated;
+
+    private BcbpParsingProcessor(Builder<T> builder) {
+        this.parser = builder.parser;
+        this.parse = builder.parse;
+        this.executor = builder.executor;
+        this.batchSize = builder.batchSize;
+        this.parallelism = builder.parallelism;
+        this.bufferSize = 2L * builder.batchSize * builder.parallelism;
+    }
+
+    /** Builder for a processor of String payloads. */
+    public static Builder<String> forStrings() {
+        return new Builder<String>((parser, payload) -> parser.tryParse(payload));
+    }
+
+    /** Builder for a processor of scanner bytes, read as ISO-8859-1 from each buffer's remaining bytes. */
+    public static Builder<ByteBuffer> forByteBuffers() {
+        return new Builder<ByteBuffer>((parser, payload) -> parser.tryParse(payload));
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ParseResult> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(CANCELLED);
+            subscriber.onError(new IllegalStateException("BcbpParsingProcessor supports a single subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Downstream());
+        this.subscriber = subscriber;
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription, "subscription");
+        if (!upstream.compareAndSet(null, subscription)) {
+            subscription.cancel();
+            return;
+        }
+        if (cancelled) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(T item) {
+        inputs.offer(Objects.requireNonNull(item, "item"));
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        upstreamError = Objects.requireNonNull(throwable, "throwable");
+        upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+
+    /**
+     * Emits finished results, starts batches and requests payloads. Runs on whichever thread signals first;
+     * signals arriving meanwhile make that thread loop again instead of running concurrently.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super ParseResult> subscriber = this.subscriber;
+            if (terminated) {
+                inputs.clear();
+            } else if (subscriber != null) {
+                drain(subscriber);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void drain(Flow.Subscriber<? super ParseResult> subscriber) {
+        if (cancelled) {
+            terminate();
+            return;
+        }
+        Throwable error = failure;
+        if (error != null) {
+            terminate();
+            subscriber.onError(error);
+            return;
+        }
+
+        long demand = requested.get();
+        long emitted = 0;
+        Batch head;
+        while ((head = batches.peek()) != null && head.done) {
+            if (head.error != null) {
+                terminate();
+                subscriber.onError(head.error);
+                return;
+            }
+            while (emitted < demand && head.next < head.results.length) {
+                ParseResult result = head.results[head.next];
+                head.results[head.next++] = null;
+                emitted++;
+                try {
+                    subscriber.onNext(result);
+                } catch (RuntimeException e) {
+                    // A throwing subscriber is treated as having cancelled (Reactive Streams rule 2.13).
+                    terminate();
+                    return;
+                }
+                if (cancelled) {
+                    terminate();
+                    return;
+                }
+            }
+            if (head.next < head.results.length) {
+                break;
+            }
+            batches.poll();
+        }
+        if (emitted > 0) {
+            pulled -= emitted;
+            if (demand != Long.MAX_VALUE) {
+                requested.addAndGet(-emitted);
+            }
+        }
+
+        if (upstreamDone && inputs.isEmpty() && batches.isEmpty()) {
+            terminated = true;
+            Throwable completion = upstreamError;
+            if (completion != null) {
+                subscriber.onError(completion);
+            } else {
+                subscriber.onComplete();
+            }
+            return;
+        }
+
+        while (inFlight.get() < parallelism && !inputs.isEmpty()) {
+            Batch batch = nextBatch();
+            batches.add(batch);
+            inFlight.incrementAndGet();
+            try {
+                executor.execute(() -> run(batch));
+            } catch (RejectedExecutionException e) {
+                terminate();
+                subscriber.onError(e);
+                return;
+            }
+        }
+
+        Flow.Subscription subscription = upstream.get();
+        if (subscription != null && !upstreamDone) {
+            long wanted = Math.min(bufferSize, requested.get()) - pulled;
+            if (wanted > 0) {
+                pulled += wanted;
+                subscription.request(wanted);
+            }
+        }
+    }
+
+    private Batch nextBatch() {
+        Object[] items = new Object[Math.min(batchSize, inputs.size())];
+        int count = 0;
+        T item;
+        while (count < items.length && (item = inputs.poll()) != null) {
+            items[count++] = item;
+        }
+        return new Batch(items, count);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void run(Batch batch) {
+        try {
+            for (int i = 0; i < batch.results.length; i++) {
+                batch.results[i] = parse.apply(parser, (T) batch.items[i]);
+                batch.items[i] = null;
+            }
+        } catch (Throwable e) {
+            // Errors too: a batch that never completes would hold back every result after it, and the end of the stream.
+            batch.error = e;
+        }
+        batch.done = true;
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    private void terminate() {
+        terminated = true;
+        batches.clear();
+        inputs.clear();
+        Flow.Subscription subscription = upstream.get();
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    private void fail(Throwable error) {
+        if (failure == null) {
+            failure = error;
+        }
+        drain();
+    }
+
+    /** A run of consecutive payloads, parsed by one task and emitted in order once {@link #done}. */
+    private static final class Batch {
+        private final Object[] items;
+        private final ParseResult[] results;
+        private int next;
+        private Throwable error;
+        private volatile boolean done;
+
+        private Batch(Object[] items, int count) {
+            this.items = items;
+            this.results = new ParseResult[count];
+        }
+    }
+
+    private final class Downstream implements Flow.Subscription {
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("non-positive subscription request: " + n));
+                return;
+            }
+            requested.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+    }
+
+    public static final class Builder<T> {
+        private final BiFunction<BcbpParser, ? super T, ParseResult> parse;
+        private BcbpParser parser = BcbpParser.defaultParser();
+        private Executor executor = ForkJoinPool.commonPool();
+        private int batchSize = 256;
+        private int parallelism = 1;
+
+        private Builder(BiFunction<BcbpParser, ? super T, ParseResult> parse) {
+            this.parse = parse;
+        }
+
+        /** Parser for every payload. Defaults to {@link BcbpParser#defaultParser()}. */
+        public Builder<T> parser(BcbpParser parser) {
+            this.parser = Objects.requireNonNull(parser, "parser");
+            return this;
+        }
+
+        /** Executor that parses batches. Defaults to the common {@link ForkJoinPool}. */
+        public Builder<T> executor(Executor executor) {
+            this.executor = Objects.requireNonNull(executor, "executor");
+            return this;
+        }
+
+        /** Most payloads parsed by one task. Defaults to 256. */
+        public Builder<T> batchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /** Most batches parsed at once; results are emitted in order regardless. Defaults to 1. */
+        public Builder<T> parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public BcbpParsingProcessor<T> build() {
+            return new BcbpParsingProcessor<>(this);
+        }
+    }
+}
@@ -0,0 +1,562 @@
+package de.nielstron.bcbp;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+
+/**
+ * Recently added passes, looked up by PNR, frequent-flyer number or bag tag.
+ *
+ * <p>Each added pass is indexed under the PNR code and frequent-flyer number of every leg and under every
+ * bag tag of its unique conditional section. A bag tag is a ten-digit licence plate (a leading digit, the
+ * airline's numeric code and a six-digit serial number) followed by the number of consecutive tags after it,
+ * so a block is expanded into one index entry per plate, up to {@link Builder#maxBagTagsPerBlock}, and any
+ * tag of a checked-in group finds the pass. Fields a pass was parsed without (see {@link FieldMask}) are not
+ * indexed.
+ *
+ * <p>Values are packed into {@code long} keys, exactly for every plate and for up to ten characters of
+ * {@code [0-9A-Z ]}, and otherwise hashed; every hit is checked against the pass itself, so a hashed key
+ * never returns a wrong pass. Keys live in lock-striped open-addressing tables of primitive arrays, and each
+ * key heads a chain of the passes added under it, so a value many passes share, such as a group booking's
+ * PNR, takes one slot and a lookup costs its matches.
+ *
+ * <p>Like {@link BcbpDuplicateDetector}, each stripe keeps two generations that each cover one retention
+ * period and recycles the older one when the newer one is a period old, so expiry is amortized into adds: a
+ * pass is found for the retention period after it was added, and its entries are released within two.
+ * Lookups take a stripe's lock in shared mode and adds take it exclusively; a pass is added to each index in
+ * turn, so a concurrent lookup may find it by one key before another. Instances are safe to share between
+ * threads.
+ */
+public final class BcbpPassRepository {
+
+    private static final int FIELD_BITS = StripedTables.CHAR_BITS;
+    private static final int PACKED_CHARS = 10;
+    /** Keys are the index in the top two bits over a value; hashed values set bit 61, packed ones stay below. */
+    private static final int INDEX_SHIFT = 62;
+    private static final long HASHED = 1L << 61;
+    private static final long PNR = 0;
+    private static final long FREQUENT_FLYER = 1;
+    private static final long BAG_TAG = 2;
+    private static final int PLATE_LENGTH = 10;
+    private static final int BAG_TAG_LENGTH = 13;
+    private static final long SERIALS = 1_000_000;
+
+    private final BcbpParser parser;
+    private final Clock clock;
+    private final long retentionMillis;
+    private final int maxBagTagsPerBlock;
+    private final Stripe[] stripes;
+    private final int stripeShift;
+
+    private BcbpPassRepository(Builder builder) {
+        this.parser = builder.parser;
+        this.clock = builder.clock;
+        this.retentionMillis = builder.retentionMillis;
+        this.maxBagTagsPerBlock = builder.maxBagTagsPerBlock;
+        int stripeCount = StripedTables.concurrencyLevel();
+        // Most passes carry one PNR, and about as many frequent-flyer numbers and bag tags again.
+        int stripeCapacity = StripedTables.tableSize((int) Math.min(Integer.MAX_VALUE / 4, 2L * builder.expectedPasses / stripeCount));
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+        this.stripeShift = StripedTables.stripeShift(stripeCount);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Parses {@code rawMessage} with the configured parser and adds the pass.
+     *
+     * @return {@code false} if the payload was rejected
+     */
+    public boolean add(String rawMessage) {
+        IataBcbp.Parsed parsed = parser.parse(rawMessage);
+        if (parsed == null) {
+            return false;
+        }
+        add(parsed);
+        return true;
+    }
+
+    /**
+     * Indexes {@code pass} under its PNR codes, frequent-flyer numbers and bag tags. Adding the same instance
+     * again, as a {@link CachingBcbpParser} returns for a rescan, restarts its retention period; lookups still
+     * return it once.
+     */
+    public void add(IataBcbp.Parsed pass) {
+        long[] keys = keys(pass, maxBagTagsPerBlock);
+        if (keys.length == 0) {
+            return;
+        }
+        long now = clock.millis();
+        for (long key : keys) {
+            long hash = StripedTables.mix(key);
+            stripe(hash).put(key, hash, pass, now, retentionMillis);
+        }
+    }
+
+    /** Passes with a leg booked under {@code pnr}, compared after stripping surrounding blanks. */
+    public List<IataBcbp.Parsed> findByPnr(String pnr) {
+        String code = pnr.strip();
+        return find(textKey(PNR, code), pass -> hasPnr(pass, code));
+    }
+
+    /** Passes with a leg carrying frequent-flyer number {@code number}, compared after stripping surrounding blanks. */
+    public List<IataBcbp.Parsed> findByFrequentFlyerNumber(String number) {
+        String code = number.strip();
+        return find(textKey(FREQUENT_FLYER, code), pass -> hasFrequentFlyerNumber(pass, code));
+    }
+
+    /**
+     * Passes whose bag tags include {@code bagTag}: a ten-digit licence plate, or a 13-digit BCBP bag tag whose
+     * plate is used and whose consecutive-tag count is ignored. Any plate within a consecutive block finds the
+     * pass. Tags that are not digits are matched as they are.
+     */
+    public List<IataBcbp.Parsed> findByBagTag(String bagTag) {
+        String tag = bagTag.strip();
+        long plate = plate(tag);
+        if (plate < 0) {
+            return find(textKey(BAG_TAG, tag), pass -> hasBagTag(pass, tag));
+        }
+        int maxBagTags = maxBagTagsPerBlock;
+        return find(BAG_TAG << INDEX_SHIFT | plate, pass -> hasPlate(pass, plate, maxBagTags));
+    }
+
+    /** Releases entries that have outlived the retention period in every stripe, without waiting for adds. */
+    public void expire() {
+        long now = clock.millis();
+        for (Stripe stripe : stripes) {
+            stripe.expire(now, retentionMillis);
+        }
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clearAll();
+        }
+    }
+
+    private List<IataBcbp.Parsed> find(long key, Predicate<IataBcbp.Parsed> matches) {
+        long hash = StripedTables.mix(key);
+        List<IataBcbp.Parsed> found = stripe(hash).collect(key, hash, clock.millis(), retentionMillis, matches);
+        if (found == null) {
+            return List.of();
+        }
+        return Collections.unmodifiableList(found.size() > 1 ? distinct(found) : found);
+    }
+
+    /** {@code found} with each instance once; rescans can leave one in a chain twice, or in both generations. */
+    private static List<IataBcbp.Parsed> distinct(List<IataBcbp.Parsed> found) {
+        Set<IataBcbp.Parsed> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<IataBcbp.Parsed> distinct = new ArrayList<>(found.size());
+        for (IataBcbp.Parsed pass : found) {
+            if (seen.add(pass)) {
+                distinct.add(pass);
+            }
+        }
+        return distinct;
+    }
+
+    private Stripe stripe(long hash) {
+        return stripes[StripedTables.stripe(hash, stripeShift)];
+    }
+
+    /** Distinct keys of every indexed value of {@code pass}, in ascending order. */
+    static long[] keys(IataBcbp.Parsed pass, int maxBagTagsPerBlock) {
+        long[] keys = new long[4];
+        int count = 0;
+        boolean pnrLoaded = pass.isLoaded(FieldMask.Field.PNR);
+        boolean repeatedLoaded = pass.isLoaded(FieldMask.Field.REPEATED_CONDITIONAL);
+        for (IataBcbp.Leg leg : pass.getLegs()) {
+            if (pnrLoaded && !leg.getPnrCode().isEmpty()) {
+                keys = append(keys, count++, textKey(PNR, leg.getPnrCode()));
+            }
+            IataBcbp.RepeatedConditional repeated = repeatedLoaded ? leg.getRepeatedConditional() : null;
+            if (repeated != null && repeated.getFrequentFlyerNumber() != null) {
+                keys = append(keys, count++, textKey(FREQUENT_FLYER, repeated.getFrequentFlyerNumber()));
+            }
+        }
+        IataBcbp.UniqueConditional unique = pass.isLoaded(FieldMask.Field.BAG_TAGS) ? pass.getUniqueConditional() : null;
+        if (unique != null) {
+            for (String bagTag : unique.getBagTagNumbers()) {
+                long plate = plate(bagTag);
+                if (plate < 0) {
+                    keys = append(keys, count++, textKey(BAG_TAG, bagTag));
+                    continue;
+                }
+                int plates = Math.min(following(bagTag), maxBagTagsPerBlock - 1) + 1;
+                for (int i = 0; i < plates; i++) {
+                    keys = append(keys, count++, BAG_TAG << INDEX_SHIFT | nextPlate(plate, i));
+                }
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || keys[i] != keys[distinct - 1]) {
+                keys[distinct++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, distinct);
+    }
+
+    private static long[] append(long[] keys, int count, long key) {
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count * 2);
+        }
+        keys[count] = key;
+        return keys;
+    }
+
+    /** Up to ten 6-bit characters of {@code value}, or a hash with bit 61 set if it does not fit. */
+    static long textKey(long index, String value) {
+        int length = value.length();
+        long packed = 0;
+        boolean exact = length <= PACKED_CHARS;
+        for (int i = 0; exact && i < length; i++) {
+            int code = StripedTables.code(value.charAt(i));
+            exact = code >= 0;
+            packed = packed << FIELD_BITS | code;
+        }
+        if (!exact) {
+            packed = HASHED | StripedTables.mix(value.hashCode() ^ (long) length << 32) >>> (64 - PACKED_CHARS * FIELD_BITS);
+        }
+        return index << INDEX_SHIFT | packed;
+    }
+
+    /**
+     * The licence plate of a ten-digit plate or 13-digit bag tag as a number, or -1 for anything else. Other
+     * lengths are not treated as plates, so that a tag is only ever expanded the way it is looked up.
+     */
+    static long plate(String bagTag) {
+        int length = bagTag.length();
+        if (length != PLATE_LENGTH && length != BAG_TAG_LENGTH) {
+            return -1;
+        }
+        long plate = 0;
+        for (int i = 0; i < length; i++) {
+            char c = bagTag.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            if (i < PLATE_LENGTH) {
+                plate = plate * 10 + (c - '0');
+            }
+        }
+        return plate;
+    }
+
+    /** The number of consecutive tags after the first one in a block; 0 for a bare plate. */
+    private static int following(String bagTag) {
+        return bagTag.length() == BAG_TAG_LENGTH ? Integer.parseInt(bagTag, PLATE_LENGTH, BAG_TAG_LENGTH, 10) : 0;
+    }
+
+    /** The plate {@code offset} tags after {@code plate}; the serial number wraps within the airline's range. */
+    private static long nextPlate(long plate, int offset) {
+        return plate - plate % SERIALS + (plate % SERIALS + offset) % SERIALS;
+    }
+
+    private static boolean hasPnr(IataBcbp.Parsed pass, String pnr) {
+        for (IataBcbp.Leg leg : pass.getLegs()) {
+            if (leg.getPnrCode().equals(pnr)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasFrequentFlyerNumber(IataBcbp.Parsed pass, String number) {
+        for (IataBcbp.Leg leg : pass.getLegs()) {
+            IataBcbp.RepeatedConditional repeated = leg.getRepeatedConditional();
+            if (repeated != null && number.equals(repeated.getFrequentFlyerNumber())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasBagTag(IataBcbp.Parsed pass, String bagTag) {
+        return pass.getUniqueConditional().getBagTagNumbers().contains(bagTag);
+    }
+
+    private static boolean hasPlate(IataBcbp.Parsed pass, long plate, int maxBagTagsPerBlock) {
+        for (String bagTag : pass.getUniqueConditional().getBagTagNumbers()) {
+            long first = plate(bagTag);
+            if (first >= 0 && first / SERIALS == plate / SERIALS) {
+                long offset = Math.floorMod(plate - first, SERIALS);
+                if (offset <= Math.min(following(bagTag), maxBagTagsPerBlock - 1)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** One lock stripe with its current and previous generation. */
+    private static final class Stripe extends StripedTables.Generations<Generation> {
+        private final StampedLock lock = new StampedLock();
+
+        private Stripe(int capacity) {
+            super(new Generation(capacity), new Generation(capacity));
+        }
+
+        private void put(long key, long hash, IataBcbp.Parsed pass, long now, long retention) {
+            long stamp = lock.writeLock();
+            try {
+                rotate(now, retention);
+                current.put(key, hash, pass, now);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /** Live matches of {@code key}, or {@code null} if there are none. */
+        private List<IataBcbp.Parsed> collect(
+            long key,
+            long hash,
+            long now,
+            long retention,
+            Predicate<IataBcbp.Parsed> matches
+        ) {
+            long stamp = lock.readLock();
+            try {
+                List<IataBcbp.Parsed> found = current.collect(key, hash, now, retention, matches, null);
+                return previous.collect(key, hash, now, retention, matches, found);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private void expire(long now, long retention) {
+            long stamp = lock.writeLock();
+            try {
+                rotate(now, retention);
+                // The current generation is younger than one period, so only the previous one holds expired entries.
+                previous.dropExpired(now, retention);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private void clearAll() {
+            long stamp = lock.writeLock();
+            try {
+                clear();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Linear-probing table of distinct keys, each heading a chain of the entries added under it, newest first.
+     * Entries are numbered from 1 in the order they were added; slot heads of 0 are empty.
+     */
+    private static final class Generation extends StripedTables.Generation {
+        private long[] keys;
+        private int[] heads;
+        private int mask;
+        private int size;
+        private long[] entryKeys;
+        private long[] addedAt;
+        private IataBcbp.Parsed[] passes;
+        private int[] next;
+        private int entries;
+
+        private Generation(int capacity) {
+            allocateTable(capacity);
+            allocateEntries(capacity / 2);
+        }
+
+        private void allocateTable(int capacity) {
+            keys = new long[capacity];
+            heads = new int[capacity];
+            mask = capacity - 1;
+            size = 0;
+        }
+
+        private void allocateEntries(int capacity) {
+            entryKeys = new long[capacity + 1];
+            addedAt = new long[capacity + 1];
+            passes = new IataBcbp.Parsed[capacity + 1];
+            next = new int[capacity + 1];
+            entries = 0;
+        }
+
+        private List<IataBcbp.Parsed> collect(
+            long key,
+            long hash,
+            long now,
+            long retention,
+            Predicate<IataBcbp.Parsed> matches,
+            List<IataBcbp.Parsed> found
+        ) {
+            for (int entry = heads[slot(key, hash)]; entry != 0; entry = next[entry]) {
+                if (now - addedAt[entry] < retention && matches.test(passes[entry])) {
+                    if (found == null) {
+                        found = new ArrayList<>(2);
+                    }
+                    found.add(passes[entry]);
+                }
+            }
+            return found;
+        }
+
+        /** The slot holding {@code key}, or the empty slot it would take. */
+        private int slot(long key, long hash) {
+            int i = (int) hash & mask;
+            while (heads[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private void put(long key, long hash, IataBcbp.Parsed pass, long now) {
+            int i = slot(key, hash);
+            int head = heads[i];
+            if (head != 0 && passes[head] == pass) {
+                // A rescan of the instance added last under this key.
+                addedAt[head] = now;
+                return;
+            }
+            if (entries + 1 == passes.length) {
+                growEntries();
+            }
+            int entry = ++entries;
+            entryKeys[entry] = key;
+            addedAt[entry] = now;
+            passes[entry] = pass;
+            next[entry] = head;
+            keys[i] = key;
+            heads[i] = entry;
+            if (head == 0 && ++size > (mask + 1) * 3 / 4) {
+                rehash(keys.length * 2);
+            }
+        }
+
+        private void growEntries() {
+            int capacity = passes.length * 2;
+            entryKeys = Arrays.copyOf(entryKeys, capacity);
+            addedAt = Arrays.copyOf(addedAt, capacity);
+            passes = Arrays.copyOf(passes, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldHeads = heads;
+            allocateTable(capacity);
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldHeads[j] != 0) {
+                    int i = slot(oldKeys[j], StripedTables.mix(oldKeys[j]));
+                    keys[i] = oldKeys[j];
+                    heads[i] = oldHeads[j];
+                    size++;
+                }
+            }
+        }
+
+        /** Rebuilds the generation from the entries still within their retention, in the order they were added. */
+        private void dropExpired(long now, long retention) {
+            int live = 0;
+            for (int entry = 1; entry <= entries; entry++) {
+                if (now - addedAt[entry] < retention) {
+                    live++;
+                }
+            }
+            if (live == entries) {
+                return;
+            }
+            long[] oldKeys = entryKeys;
+            long[] oldAddedAt = addedAt;
+            IataBcbp.Parsed[] oldPasses = passes;
+            int oldEntries = entries;
+            allocateTable(keys.length);
+            allocateEntries(Math.max(8, live));
+            for (int entry = 1; entry <= oldEntries; entry++) {
+                if (now - oldAddedAt[entry] < retention) {
+                    put(oldKeys[entry], StripedTables.mix(oldKeys[entry]), oldPasses[entry], oldAddedAt[entry]);
+                }
+            }
+        }
+
+        @Override
+        void clear(long now) {
+            if (entries > 0) {
+                Arrays.fill(heads, 0);
+                Arrays.fill(passes, 1, entries + 1, null);
+                size = 0;
+                entries = 0;
+            }
+            startedAt = now;
+        }
+    }
+
+    public static final class Builder {
+        private BcbpParser parser = BcbpParser.defaultParser();
+        private Clock clock = Clock.systemUTC();
+        private long retentionMillis = Duration.ofHours(24).toMillis();
+        private int expectedPasses = 65_536;
+        private int maxBagTagsPerBlock = 32;
+
+        private Builder() {
+        }
+
+        /** Parser for {@link #add(String)}. Defaults to {@link BcbpParser#defaultParser()}. */
+        public Builder parser(BcbpParser parser) {
+            this.parser = Objects.requireNonNull(parser, "parser");
+            return this;
+        }
+
+        /** Clock that timestamps adds. Defaults to {@link Clock#systemUTC()}. */
+        public Builder clock(Clock clock) {
+            this.clock = Objects.requireNonNull(clock, "clock");
+            return this;
+        }
+
+        /** How long an added pass can be found. Defaults to 24 hours. */
+        public Builder retention(Duration retention) {
+            if (retention.isNegative() || retention.isZero()) {
+                throw new IllegalArgumentException("retention must be positive: " + retention);
+            }
+            this.retentionMillis = Math.max(1, retention.toMillis());
+            return this;
+        }
+
+        /** Sizing hint: passes added per retention period. Tables grow past it, so it only saves rehashing. Defaults to 65,536. */
+        public Builder expectedPasses(int expectedPasses) {
+            if (expectedPasses < 1) {
+                throw new IllegalArgumentException("expectedPasses must be positive: " + expectedPasses);
+            }
+            this.expectedPasses = expectedPasses;
+            return this;
+        }
+
+        /**
+         * Most plates indexed per bag tag block; a block claiming more consecutive tags is only found by its first
+         * {@code maxBagTagsPerBlock} plates. Bounds what one hostile payload can insert. Defaults to 32.
+         */
+        public Builder maxBagTagsPerBlock(int maxBagTagsPerBlock) {
+            if (maxBagTagsPerBlock < 1) {
+                throw new IllegalArgumentException("maxBagTagsPerBlock must be positive: " + maxBagTagsPerBlock);
+            }
+            this.maxBagTagsPerBlock = maxBagTagsPerBlock;
+            return this;
+        }
+
+        public BcbpPassRepository build() {
+            return new BcbpPassRepository(this);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package de.nielstron.bcbp;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Verifies the digital signature carried in the security data of a boarding pass.
+ *
+ * <p>The signed data is the payload from its first character up to, but excluding, the {@code ^} that opens
+ * the security section, read as ISO-8859-1 bytes after the parser's line-break and symbology-identifier
+ * handling. The security data holds the Base64 encoded signature. The key is chosen by the issuing airline
+ * of the unique conditional section (or, without one, the first leg's operating carrier) and the type of
+ * security data, which serves as the key id.
+ *
+ * <p>Keys come from a {@link BcbpKeySource} and are cached per issuer and key id; {@link #clearKeyCache()}
+ * forgets them after a key rotation. Issuers that are not one to three characters of {@code [A-Z0-9]} followed
+ * by blanks, and key ids that are not one such character, are unknown without asking the key source. Other
+ * lookups that found nothing or failed are remembered in a small direct-mapped table, so hostile passes naming
+ * ever new issuers cost bounded memory and cannot grow the key cache. The key source is asked outside any
+ * lock: threads needing the same uncached key wait for one lookup, and other keys stay available meanwhile.
+ * Each thread reuses one {@link Signature} per algorithm, so a steady stream of passes only pays for the
+ * verification itself.
+ * Instances are safe to share between threads.
+ */
+public final class BcbpSignatureVerifier {
+
+    /** Outcome of verifying one payload. */
+    public enum Result {
+        /** The signature matches the signed data under the issuer's key. */
+        VALID,
+        /** The signature does not match, is not Base64 or is not a well-formed signature for the key. */
+        INVALID,
+        /** The payload parses but carries no security data. */
+        NO_SIGNATURE,
+        /** No key is known for the issuer and key id, or it could not be loaded. */
+        UNKNOWN_KEY,
+        /** The payload is {@code null} or not a boarding pass. */
+        NOT_BCBP
+    }
+
+    private static final ThreadLocal<BcbpLayout> LAYOUT = ThreadLocal.withInitial(BcbpLayout::new);
+    private static final ThreadLocal<Map<String, Signature>> SIGNATURES = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<byte[][]> SIGNED_BYTES = ThreadLocal.withInitial(() -> new byte[][] {new byte[512]});
+
+    /** Smallest number of payloads worth handing to another thread. */
+    private static final int MIN_BATCH_CHUNK = 64;
+
+    private static final CachedKey NO_KEY = new CachedKey(null, null);
+    private static final int ISSUER_LENGTH = 3;
+    private static final int UNKNOWN_KEY_SLOTS = 1024;
+
+    private final BcbpParser parser;
+    private final BcbpKeySource keySource;
+    private final String signatureAlgorithm;
+    private final ConcurrentHashMap<Long, CachedKey> keys = new ConcurrentHashMap<>();
+    /** Lookups in progress, so that concurrent misses on one id share a single key source call. */
+    private final ConcurrentHashMap<Long, FutureTask<CachedKey>> loading = new ConcurrentHashMap<>();
+    /** Ids whose lookup found nothing, direct-mapped; 0 is empty because no valid id is 0. */
+    private final AtomicLongArray unknownKeys = new AtomicLongArray(UNKNOWN_KEY_SLOTS);
+    /** Bumped by {@link #clearKeyCache()}, so that lookups started before it do not store what they found. */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private BcbpSignatureVerifier(Builder builder) {
+        this.parser = builder.parser;
+        this.keySource = builder.keySource;
+        this.signatureAlgorithm = builder.signatureAlgorithm;
+    }
+
+    public static Builder builder(BcbpKeySource keySource) {
+        return new Builder(keySource);
+    }
+
+    public Result verify(String rawMessage) {
+        if (rawMessage == null) {
+            return Result.NOT_BCBP;
+        }
+        BcbpLayout layout = LAYOUT.get();
+        try {
+            if (!parser.scan(layout, rawMessage)) {
+                return Result.NOT_BCBP;
+            }
+            if (!layout.isPresent(BcbpLayout.SECURITY_DATA)) {
+                return Result.NO_SIGNATURE;
+            }
+            CachedKey key = key(layout);
+            if (key == NO_KEY) {
+                return Result.UNKNOWN_KEY;
+            }
+            return verify(layout, key);
+        } finally {
+            layout.clear();
+        }
+    }
+
+    /** Verifies a batch on the common {@link ForkJoinPool}; one result per input, in input order. */
+    public Result[] verifyAll(String[] rawMessages) {
+        return verifyAll(rawMessages, ForkJoinPool.commonPool());
+    }
+
+    /** Verifies a batch by splitting it into contiguous chunks that run on {@code executor}. */
+    public Result[] verifyAll(String[] rawMessages, Executor executor) {
+        Objects.requireNonNull(rawMessages, "rawMessages");
+        Objects.requireNonNull(executor, "executor");
+        Result[] results = new Result[rawMessages.length];
+        BatchChunks.run(rawMessages.length, MIN_BATCH_CHUNK, executor, (from, to) -> verifyRange(rawMessages, results, from, to));
+        return results;
+    }
+
+    /** Forgets every cached key and unknown issuer, e.g. after keys were rotated in the key source. */
+    public void clearKeyCache() {
+        generation.incrementAndGet();
+        keys.clear();
+        for (int i = 0; i < UNKNOWN_KEY_SLOTS; i++) {
+            unknownKeys.set(i, 0);
+        }
+    }
+
+    private void verifyRange(String[] rawMessages, Result[] results, int from, int to) {
+        for (int i = from; i < to; i++) {
+            results[i] = verify(rawMessages[i]);
+        }
+    }
+
+    private CachedKey key(BcbpLayout layout) {
+        int issuerSlot = layout.isPresent(BcbpLayout.UNIQUE_ISSUING_AIRLINE) && !layout.isBlank(BcbpLayout.UNIQUE_ISSUING_AIRLINE)
+            ? BcbpLayout.UNIQUE_ISSUING_AIRLINE
+            : BcbpLayout.legSlot(0, BcbpLayout.OPERATING_CARRIER);
+        long id = keyId(layout, issuerSlot);
+        if (id < 0) {
+            return NO_KEY;
+        }
+        CachedKey cached = keys.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        int unknownSlot = (int) (id ^ id >>> 17 ^ id >>> 35) & (UNKNOWN_KEY_SLOTS - 1);
+        if (unknownKeys.get(unknownSlot) == id) {
+            return NO_KEY;
+        }
+        String issuer = layout.trimToNull(issuerSlot);
+        String keyId = layout.trimToEmpty(BcbpLayout.SECURITY_TYPE);
+        FutureTask<CachedKey> lookup = new FutureTask<>(() -> load(issuer, keyId));
+        FutureTask<CachedKey> running = loading.putIfAbsent(id, lookup);
+        if (running != null) {
+            cached = await(running);
+            return cached == null ? NO_KEY : cached;
+        }
+        int started = generation.get();
+        try {
+            // Runs on this thread but outside any map lock, so a slow key source only holds up this id.
+            lookup.run();
+            cached = await(lookup);
+            // Misses are not stored in the map; they go to the bounded table instead. Either store is undone
+            // if the cache was cleared meanwhile, as the key source may have answered for a rotated key.
+            if (cached == null) {
+                unknownKeys.set(unknownSlot, id);
+                if (generation.get() != started) {
+                    unknownKeys.compareAndSet(unknownSlot, id, 0);
+                }
+                return NO_KEY;
+            }
+            keys.put(id, cached);
+            if (generation.get() != started) {
+                keys.remove(id, cached);
+            }
+            return cached;
+        } finally {
+            loading.remove(id, lookup);
+        }
+    }
+
+    /** @return the looked up key or {@code null}, also when interrupted while waiting for another thread's lookup */
+    private static CachedKey await(FutureTask<CachedKey> lookup) {
+        try {
+            return lookup.get();
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException failed) {
+            // load() absorbs the key source's checked exceptions, so this is whatever unchecked one it threw.
+            Throwable cause = failed.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * The key id character and all three issuer characters, 16 bits each, or -1 unless the key id is one
+     * character of {@code [A-Z0-9]} and the issuer one to three of them followed only by blanks. A field cut
+     * short by the end of its section reads as blank.
+     */
+    static long keyId(BcbpLayout layout, int issuerSlot) {
+        CharSequence text = layout.text();
+        char type = text.charAt(layout.start(BcbpLayout.SECURITY_TYPE));
+        if (!isKeyChar(type)) {
+            return -1;
+        }
+        long id = type;
+        int start = layout.start(issuerSlot);
+        int end = layout.end(issuerSlot);
+        boolean blank = false;
+        for (int i = 0; i < ISSUER_LENGTH; i++) {
+            char c = start + i < end ? text.charAt(start + i) : ' ';
+            if (c == ' ' && i > 0) {
+                blank = true;
+            } else if (blank || !isKeyChar(c)) {
+                return -1;
+            }
+            id = id << 16 | c;
+        }
+        return id;
+    }
+
+    static boolean isKeyChar(char c) {
+        return c >= 'A' && c <= 'Z' || c >= '0' && c <= '9';
+    }
+
+    /** @return the key, or {@code null} if the key source has none, failed, or its algorithm is unsupported */
+    private CachedKey load(String issuer, String keyId) {
+        PublicKey key;
+        try {
+            key = keySource.load(issuer, keyId);
+        } catch (IOException | GeneralSecurityException unavailable) {
+            return null;
+        }
+        if (key == null) {
+            return null;
+        }
+        String algorithm = signatureAlgorithm != null ? signatureAlgorithm : defaultSignatureAlgorithm(key.getAlgorithm());
+        return algorithm == null ? null : new CachedKey(key, algorithm);
+    }
+
+    static String defaultSignatureAlgorithm(String keyAlgorithm) {
+        return switch (keyAlgorithm) {
+            case "EC" -> "SHA256withECDSA";
+            case "RSA" -> "SHA256withRSA";
+            case "DSA" -> "SHA256withDSA";
+            default -> null;
+        };
+    }
+
+    private static Result verify(BcbpLayout layout, CachedKey key) {
+        byte[] signatureBytes;
+        try {
+            signatureBytes = Base64.getDecoder().decode(layout.trimEndToEmpty(BcbpLayout.SECURITY_DATA));
+        } catch (IllegalArgumentException notBase64) {
+            return Result.INVALID;
+        }
+
+        CharSequence text = layout.text();
+        int start = layout.start(BcbpLayout.FORMAT_CODE);
+        int length = layout.start(BcbpLayout.SECURITY_TYPE) - 1 - start;
+        byte[][] holder = SIGNED_BYTES.get();
+        byte[] signed = holder[0];
+        if (signed.length < length) {
+            signed = Arrays.copyOf(signed, Math.max(length, signed.length * 2));
+            holder[0] = signed;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(start + i);
+            signed[i] = (byte) (c <= 0xFF ? c : '?');
+        }
+
+        try {
+            Signature signature = signature(key.algorithm);
+            signature.initVerify(key.key);
+            signature.update(signed, 0, length);
+            return signature.verify(signatureBytes) ? Result.VALID : Result.INVALID;
+        } catch (GeneralSecurityException malformed) {
+            return Result.INVALID;
+        }
+    }
+
+    private static Signature signature(String algorithm) throws NoSuchAlgorithmException {
+        Map<String, Signature> signatures = SIGNATURES.get();
+        Signature signature = signatures.get(algorithm);
+        if (signature == null) {
+            signature = Signature.getInstance(algorithm);
+            signatures.put(algorithm, signature);
+        }
+        return signature;
+    }
+
+    private static final class CachedKey {
+        private final PublicKey key;
+        private final String algorithm;
+
+        private CachedKey(PublicKey key, String algorithm) {
+            this.key = key;
+            this.algorithm = algorithm;
+        }
+    }
+
+    public static final class Builder {
+        private final BcbpKeySource keySource;
+        private BcbpParser parser = BcbpParser.defaultParser();
+        private String signatureAlgorithm;
+
+        private Builder(BcbpKeySource keySource) {
+            this.keySource = Objects.requireNonNull(keySource, "keySource");
+        }
+
+        /** Parser whose input normalization decides what the signed data is. Defaults to {@link BcbpParser#defaultParser()}. */
+        public Builder parser(BcbpParser parser) {
+            this.parser = Objects.requireNonNull(parser, "parser");
+            return this;
+        }
+
+        /**
+         * JCA signature algorithm for every key, e.g. {@code SHA1withDSA}. Defaults to SHA-256 with the key's
+         * algorithm: {@code SHA256withECDSA}, {@code SHA256withRSA} or {@code SHA256withDSA}.
+         */
+        public Builder signatureAlgorithm(String algorithm) {
+            this.signatureAlgorithm = Objects.requireNonNull(algorithm, "algorithm");
+            return this;
+        }
+
+        public BcbpSignatureVerifier build() {
+            return new BcbpSignatureVerifier(this);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package de.nielstron.bcbp;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in result cache in front of a {@link BcbpParser}.
+ *
+ * <p>A pass is usually scanned several times on its way through the airport, and kiosks often read the
+ * same screen repeatedly. Results are keyed by the normalized payload (line breaks and symbology identifier
+ * removed as the parser would), so rescans that only differ in framing still hit. {@link IataBcbp.Parsed} is
+ * immutable, so cached instances are shared between callers and threads.
+ *
+ * <p>The cache is split into lock-striped LRU segments; each segment holds an equal share of
+ * {@link Builder#maximumSize(int)}. Entries optionally expire a fixed time after they were parsed, measured
+ * with the parser's clock, and are also dropped when the parser's reference year moves on. Rejected payloads
+ * are not cached so that a stream of garbage cannot evict real passes.
+ */
+public final class CachingBcbpParser {
+
+    private final BcbpParser parser;
+    private final long expireAfterWriteMillis;
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private CachingBcbpParser(Builder builder) {
+        this.parser = builder.parser;
+        this.expireAfterWriteMillis = builder.expireAfterWriteMillis;
+        int segmentCount = Math.min(StripedTables.concurrencyLevel(), Integer.highestOneBit(builder.maximumSize));
+        int segmentCapacity = (builder.maximumSize + segmentCount - 1) / segmentCount;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+        this.segmentMask = segmentCount - 1;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** @return the parsed payload, or {@code null} for invalid/non-BCBP payloads */
+    public IataBcbp.Parsed parse(String rawMessage) {
+        if (rawMessage == null || rawMessage.length() > parser.maxPayloadLength()) {
+            // Rejected by the parser before it copies anything; normalizing it into a key first would.
+            return parser.parse(rawMessage);
+        }
+        String key = parser.normalize(rawMessage);
+        int hash = key.hashCode();
+        Segment segment = segments[(hash ^ (hash >>> 16)) & segmentMask];
+        long now = parser.millis();
+        int referenceYear = parser.referenceYear();
+
+        IataBcbp.Parsed cached = segment.get(key, now, referenceYear);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        // Parse outside the segment lock; a concurrent miss on the same key parses twice, which is harmless.
+        IataBcbp.Parsed parsed = parser.parse(rawMessage);
+        if (parsed != null) {
+            long expiresAt = expireAfterWriteMillis == 0 ? Long.MAX_VALUE : saturatedAdd(now, expireAfterWriteMillis);
+            segment.put(key, new Entry(parsed, expiresAt, referenceYear));
+        }
+        return parsed;
+    }
+
+    /** Number of cached passes, including ones that have expired but were not looked up since. */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /** Removes expired entries eagerly instead of waiting for them to be looked up or pushed out. */
+    public void cleanUp() {
+        long now = parser.millis();
+        int referenceYear = parser.referenceYear();
+        for (Segment segment : segments) {
+            segment.removeStale(now, referenceYear);
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return ((a ^ sum) & (b ^ sum)) < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    private static final class Entry {
+        private final IataBcbp.Parsed parsed;
+        private final long expiresAt;
+        private final int referenceYear;
+
+        private Entry(IataBcbp.Parsed parsed, long expiresAt, int referenceYear) {
+            this.parsed = parsed;
+            this.expiresAt = expiresAt;
+            this.referenceYear = referenceYear;
+        }
+
+        private boolean isStale(long now, int currentReferenceYear) {
+            return now >= expiresAt || referenceYear != currentReferenceYear;
+        }
+    }
+
+    /** One lock stripe: an access-ordered map that drops its least recently used entry when full. */
+    private final class Segment {
+        private final Map<String, Entry> entries;
+
+        private Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        private synchronized IataBcbp.Parsed get(String key, long now, int referenceYear) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isStale(now, referenceYear)) {
+                entries.remove(key);
+                evictions.increment();
+                return null;
+            }
+            return entry.parsed;
+        }
+
+        private synchronized void put(String key, Entry entry) {
+            entries.put(key, entry);
+        }
+
+        private synchronized void removeStale(long now, int referenceYear) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().isStale(now, referenceYear)) {
+                    iterator.remove();
+                    evictions.increment();
+                }
+            }
+        }
+
+        private synchronized int size() {
+            return entries.size();
+        }
+
+        private synchronized void clear() {
+            entries.clear();
+        }
+    }
+
+    /** Point-in-time cache counters. Evictions count entries dropped for size, age or a new reference year. */
+    public static final class Stats {
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+
+        Stats(long hitCount, long missCount, long evictionCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        public long getRequestCount() {
+            return hitCount + missCount;
+        }
+
+        /** @return hits divided by requests, or {@code 1.0} before the first request */
+        public double hitRate() {
+            long requests = getRequestCount();
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats[hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+        }
+    }
+
+    public static final class Builder {
+        private BcbpParser parser = BcbpParser.defaultParser();
+        private int maximumSize = 10_000;
+        private long expireAfterWriteMillis;
+
+        private Builder() {
+        }
+
+        /** Parser used on cache misses; its clock also drives expiry. Defaults to {@link BcbpParser#defaultParser()}. */
+        public Builder parser(BcbpParser parser) {
+            this.parser = Objects.requireNonNull(parser, "parser");
+            return this;
+        }
+
+        /** Upper bound on cached passes. Defaults to 10,000. */
+        public Builder maximumSize(int maximumSize) {
+            if (maximumSize < 1) {
+                throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+            }
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /** Drops entries this long after they were parsed. By default entries only leave for size or a new year. */
+        public Builder expireAfterWrite(Duration duration) {
+            if (duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException("duration must be positive: " + duration);
+            }
+            this.expireAfterWriteMillis = Math.max(1, saturatedMillis(duration));
+            return this;
+        }
+
+        public CachingBcbpParser build() {
+            return new CachingBcbpParser(this);
+        }
+
+        private static long saturatedMillis(Duration duration) {
+            try {
+                return duration.toMillis();
+            } catch (ArithmeticException e) {
+                return Long.MAX_VALUE;
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package de.nielstron.bcbp;
+
+/**
+ * {@link BcbpInterner} backed by a single direct-mapped array.
+ *
+ * <p>Slots are read and written without synchronization. That is safe because Strings are immutable and
+ * safely published through their final fields; a lost race only costs one duplicate String.
+ */
+final class DirectMappedInterner implements BcbpInterner {
+
+    /** Longer values are free-text rather than codes and are not worth a slot. */
+    static final int MAX_INTERNED_LENGTH = 16;
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final String[] table;
+    private final int mask;
+
+    DirectMappedInterner(int capacity) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity must be between 1 and " + MAX_CAPACITY + ": " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.table = new String[size];
+        this.mask = size - 1;
+    }
+
+    @Override
+    public String intern(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length == 0) {
+            return "";
+        }
+        if (length > MAX_INTERNED_LENGTH) {
+            return BcbpLayout.substring(text, start, end);
+        }
+        int index = slot(hash(text, start, end));
+        String cached = table[index];
+        if (cached != null && contentEquals(cached, text, start, end)) {
+            return cached;
+        }
+        String value = BcbpLayout.substring(text, start, end);
+        table[index] = value;
+        return value;
+    }
+
+    int capacity() {
+        return table.length;
+    }
+
+    private int slot(int hash) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /** Same value as {@link String#hashCode()} of the range. */
+    static int hash(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return hash;
+    }
+
+    static boolean contentEquals(String value, CharSequence text, int start, int end) {
+        if (value.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
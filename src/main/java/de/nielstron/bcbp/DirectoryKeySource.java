@@ -0,0 +1,87 @@
+package de.nielstron.bcbp;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * {@link BcbpKeySource#directory(Path)}.
+ *
+ * <p>The issuer and key id come from the scanned pass, so they are only used in a file name when they are a
+ * designator and a type character, and the resolved file must still lie inside the directory.
+ */
+final class DirectoryKeySource implements BcbpKeySource {
+
+    private static final String[] KEY_ALGORITHMS = {"EC", "RSA", "DSA"};
+
+    private final Path directory;
+
+    DirectoryKeySource(Path directory) {
+        this.directory = Objects.requireNonNull(directory, "directory").normalize();
+    }
+
+    @Override
+    public PublicKey load(String issuer, String keyId) throws IOException, GeneralSecurityException {
+        if (!isKeyName(issuer, 3) || !isKeyName(keyId, 1)) {
+            return null;
+        }
+        String name = issuer + "-" + keyId;
+        Path pem = resolve(name + ".pem");
+        if (pem != null && Files.isRegularFile(pem)) {
+            return decode(pemBody(Files.readString(pem, StandardCharsets.US_ASCII)));
+        }
+        Path der = resolve(name + ".der");
+        if (der != null && Files.isRegularFile(der)) {
+            return decode(Files.readAllBytes(der));
+        }
+        return null;
+    }
+
+    /** Whether {@code value} is one to {@code maxLength} characters of {@code [A-Z0-9]}. */
+    private static boolean isKeyName(String value, int maxLength) {
+        if (value == null || value.isEmpty() || value.length() > maxLength) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (!BcbpSignatureVerifier.isKeyChar(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Path resolve(String fileName) {
+        Path resolved = directory.resolve(fileName).normalize();
+        return resolved.startsWith(directory) ? resolved : null;
+    }
+
+    private static byte[] pemBody(String pem) throws InvalidKeySpecException {
+        int begin = pem.indexOf("-----BEGIN PUBLIC KEY-----");
+        int end = pem.indexOf("-----END PUBLIC KEY-----");
+        if (begin < 0 || end < begin) {
+            throw new InvalidKeySpecException("no PUBLIC KEY block");
+        }
+        String body = pem.substring(begin + "-----BEGIN PUBLIC KEY-----".length(), end);
+        return Base64.getMimeDecoder().decode(body);
+    }
+
+    static PublicKey decode(byte[] encoded) throws GeneralSecurityException {
+        X509EncodedKeySpec spec = new X509EncodedKeySpec(encoded);
+        for (String algorithm : KEY_ALGORITHMS) {
+            try {
+                return KeyFactory.getInstance(algorithm).generatePublic(spec);
+            } catch (InvalidKeySpecException wrongAlgorithm) {
+                // try the next one
+            }
+        }
+        throw new InvalidKeySpecException("not an EC, RSA or DSA public key");
+    }
+}
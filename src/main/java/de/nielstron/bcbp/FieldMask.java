@@ -0,0 +1,116 @@
+package de.nielstron.bcbp;
+
+import java.util.EnumSet;
+
+/**
+ * Set of fields to decode in {@link IataBcbp#parse(String, FieldMask)}.
+ *
+ * <p>The payload is still validated in full; only the decoding of fields outside the mask is skipped (no
+ * name formatting, no number normalization, no conditional sections). Getters of fields that were not
+ * loaded throw {@link IllegalStateException}; {@link IataBcbp.Parsed#isLoaded(Field)} tells them apart
+ * without throwing. The leg count and each leg's conditional size are structural and always loaded.
+ */
+public final class FieldMask {
+
+    /** Decodable fields; leg fields apply to every leg. */
+    public enum Field {
+        FORMAT_CODE,
+        PASSENGER_NAME,
+        TICKET_INDICATOR,
+        /** Version number indicator and version number. */
+        VERSION,
+        PNR,
+        FROM_AIRPORT,
+        TO_AIRPORT,
+        OPERATING_CARRIER,
+        FLIGHT_NUMBER,
+        FLIGHT_DATE,
+        COMPARTMENT,
+        SEAT,
+        CHECK_IN_SEQUENCE,
+        PASSENGER_STATUS,
+        /** The fixed fields of the unique conditional section, including the issuance date. */
+        UNIQUE_CONDITIONAL,
+        /** The bag tags of the unique conditional section. */
+        BAG_TAGS,
+        /** Each leg's repeated conditional section. */
+        REPEATED_CONDITIONAL,
+        SECURITY_DATA,
+        AIRLINE_DATA;
+
+        final long bit = 1L << ordinal();
+    }
+
+    static final long ALL_BITS = (1L << Field.values().length) - 1;
+
+    private static final FieldMask ALL = new FieldMask(ALL_BITS);
+
+    private final long bits;
+
+    private FieldMask(long bits) {
+        this.bits = bits;
+    }
+
+    /** Every field; parsing with it is equivalent to {@link IataBcbp#parse(String)}. */
+    public static FieldMask all() {
+        return ALL;
+    }
+
+    public static FieldMask of(Field first, Field... rest) {
+        return new FieldMask(first.bit).with(rest);
+    }
+
+    /** This mask plus {@code fields}. */
+    public FieldMask with(Field... fields) {
+        long union = bits;
+        for (Field field : fields) {
+            union |= field.bit;
+        }
+        return union == bits ? this : new FieldMask(union);
+    }
+
+    /** This mask minus {@code fields}. */
+    public FieldMask without(Field... fields) {
+        long difference = bits;
+        for (Field field : fields) {
+            difference &= ~field.bit;
+        }
+        return difference == bits ? this : new FieldMask(difference);
+    }
+
+    public boolean contains(Field field) {
+        return (bits & field.bit) != 0;
+    }
+
+    long bits() {
+        return bits;
+    }
+
+    /** Throws unless {@code field} is in {@code loaded}; called by the getters of projected results. */
+    static void checkLoaded(long loaded, Field field) {
+        if ((loaded & field.bit) == 0) {
+            throw new IllegalStateException(field + " was not loaded; add it to the FieldMask");
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof FieldMask mask && mask.bits == bits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(bits);
+    }
+
+    @Override
+    public String toString() {
+        EnumSet<Field> fields = EnumSet.noneOf(Field.class);
+        for (Field field : Field.values()) {
+            if (contains(field)) {
+                fields.add(field);
+            }
+        }
+        return "FieldMask" + fields;
+    }
+}
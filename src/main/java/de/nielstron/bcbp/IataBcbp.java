@@ -1,502 +1,552 @@
 package de.nielstron.bcbp;
 
+import static de.nielstron.bcbp.BcbpLayout.NO_VALUE;
+
+import java.nio.ByteBuffer;
 import java.time.LocalDate;
-import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /** Parser for IATA BCBP payloads. */
 public final class IataBcbp {
 
-    private static final int HEADER_LENGTH = 23;
-    private static final int LEG_MANDATORY_LENGTH = 37;
-
-    private static final Pattern NUMBER_WITH_SUFFIX_PATTERN = Pattern.compile("^(0*)(\\d+)([A-Z]?)$");
-
     private IataBcbp() {
     }
 
+    /**
+     * Parses a payload with {@link BcbpParser#defaultParser()}.
+     *
+     * @return the parsed payload, or {@code null} for invalid/non-BCBP payloads
+     */
     public static Parsed parse(String rawMessage) {
-        if (rawMessage == null) {
-            return null;
-        }
+        return BcbpParser.defaultParser().parse(rawMessage);
+    }
 
-        String message = normalize(rawMessage);
-        if (message.length() < HEADER_LENGTH + LEG_MANDATORY_LENGTH) {
-            return null;
-        }
+    /**
+     * Parses payload bytes as delivered by a scanner, without decoding them into a String first.
+     *
+     * <p>Bytes are read as ISO-8859-1. Fields are only turned into Strings once the whole payload has
+     * passed validation, so rejected input allocates almost nothing.
+     */
+    public static Parsed parse(byte[] payload, int offset, int length) {
+        return BcbpParser.defaultParser().parse(payload, offset, length);
+    }
 
-        Cursor cursor = new Cursor(message);
+    /** Parses the remaining bytes of {@code payload}; its position and limit are left unchanged. */
+    public static Parsed parse(ByteBuffer payload) {
+        return BcbpParser.defaultParser().parse(payload);
+    }
 
-        String formatCode = cursor.read(1);
-        if (formatCode == null || (!"M".equals(formatCode) && !"S".equals(formatCode))) {
-            return null;
-        }
+    /**
+     * Parses a payload but only decodes the fields in {@code mask}; see {@link FieldMask}.
+     *
+     * @return the projected pass, or {@code null} for invalid/non-BCBP payloads
+     */
+    public static Parsed parse(String rawMessage, FieldMask mask) {
+        return BcbpParser.defaultParser().parse(rawMessage, mask);
+    }
 
-        Integer numberOfLegs = toInt(cursor.read(1));
-        if (numberOfLegs == null || numberOfLegs < 1 || numberOfLegs > 9) {
-            return null;
-        }
+    /**
+     * Parses a payload with {@link BcbpParser#defaultParser()}, reporting the reason, offset and leg of a
+     * rejection instead of returning {@code null}.
+     */
+    public static ParseResult tryParse(String rawMessage) {
+        return BcbpParser.defaultParser().tryParse(rawMessage);
+    }
 
-        String passengerNameRaw = cursor.read(20);
-        if (passengerNameRaw == null || !isPassengerNameBlock(passengerNameRaw)) {
-            return null;
-        }
-        String passengerName = prettyPassengerName(passengerNameRaw);
+    /** {@link #tryParse(String)} for scanner bytes, read as ISO-8859-1. */
+    public static ParseResult tryParse(byte[] payload, int offset, int length) {
+        return BcbpParser.defaultParser().tryParse(payload, offset, length);
+    }
 
-        String ticketIndicator = trimToEmpty(cursor.read(1));
+    /** {@link #tryParse(String)} for the remaining bytes of {@code payload}; its position and limit are left unchanged. */
+    public static ParseResult tryParse(ByteBuffer payload) {
+        return BcbpParser.defaultParser().tryParse(payload);
+    }
 
-        List<Leg> legs = new ArrayList<>();
-        String versionIndicator = null;
-        Integer versionNumber = null;
-        UniqueConditional uniqueConditional = null;
-        int referenceYear = LocalDate.now(ZoneOffset.UTC).getYear();
+    /**
+     * Parses with {@link BcbpParser#defaultParser()} into a reusable holder; see
+     * {@link BcbpParser#parseInto(CharSequence, MutableBcbp)}.
+     */
+    public static boolean parseInto(CharSequence rawMessage, MutableBcbp target) {
+        return BcbpParser.defaultParser().parseInto(rawMessage, target);
+    }
 
-        for (int legIndex = 0; legIndex < numberOfLegs; legIndex++) {
-            Leg mandatory = parseMandatoryLeg(cursor);
-            if (mandatory == null) {
-                return null;
-            }
+    /**
+     * Cheap pre-check for camera frames and other input that is mostly not BCBP: answers whether
+     * {@link #parse(String)} would accept the payload in a single pass over it, without building a result.
+     */
+    public static boolean isLikelyBcbp(CharSequence rawMessage) {
+        return BcbpParser.defaultParser().isLikelyBcbp(rawMessage);
+    }
 
-            String conditionalPayload = cursor.read(mandatory.getConditionalSize());
-            if (conditionalPayload == null) {
-                return null;
-            }
-            Cursor conditionalCursor = new Cursor(conditionalPayload);
-
-            if (legIndex == 0 && mandatory.getConditionalSize() > 0) {
-                versionIndicator = trimEndToEmpty(conditionalCursor.read(1));
-                versionNumber = toInt(trimToNull(conditionalCursor.read(1)));
-                Integer uniqueSize = conditionalCursor.readHex();
-                if (uniqueSize != null) {
-                    String uniquePayload = conditionalCursor.read(uniqueSize);
-                    if (uniquePayload == null) {
-                        return null;
-                    }
-                    uniqueConditional = parseUniqueConditional(uniquePayload, referenceYear);
-                }
-            }
+    /** {@link #isLikelyBcbp(CharSequence)} for scanner bytes, read as ISO-8859-1. */
+    public static boolean validate(byte[] payload, int offset, int length) {
+        return BcbpParser.defaultParser().validate(payload, offset, length);
+    }
 
-            RepeatedConditional repeatedConditional = null;
-            if (conditionalCursor.remaining() >= 2) {
-                repeatedConditional = parseRepeatedConditional(conditionalCursor);
-            }
+    /**
+     * Validates the payload like {@link #parse(String)} but defers decoding: each field of the returned
+     * view is decoded the first time its getter is called.
+     *
+     * @return the lazy view, or {@code null} for invalid/non-BCBP payloads
+     */
+    public static LazyBcbp parseLazy(String rawMessage) {
+        return BcbpParser.defaultParser().parseLazy(rawMessage);
+    }
+
+    /**
+     * Lazy variant of {@link #parse(byte[], int, int)}. The bytes are copied once because the view
+     * outlives the call and the caller may reuse its buffer.
+     */
+    public static LazyBcbp parseLazy(byte[] payload, int offset, int length) {
+        return BcbpParser.defaultParser().parseLazy(payload, offset, length);
+    }
+
+    /**
+     * Parses a batch in parallel with {@link BcbpParser#defaultParser()}.
+     *
+     * @return one result per input, in input order
+     */
+    public static List<ParseResult> parseAll(List<String> rawMessages) {
+        return BcbpParser.defaultParser().parseAll(rawMessages);
+    }
+
+    /** Array variant of {@link #parseAll(List)}. */
+    public static ParseResult[] parseAll(String[] rawMessages) {
+        return BcbpParser.defaultParser().parseAll(rawMessages);
+    }
 
-            legs.add(mandatory.withRepeatedConditional(repeatedConditional));
+    static Parsed materialize(BcbpLayout layout, int referenceYear) {
+        return materialize(layout, JulianDates.forYear(referenceYear), FieldMask.ALL_BITS);
+    }
+
+    static Parsed materialize(BcbpLayout layout, JulianDates dates) {
+        return materialize(layout, dates, FieldMask.ALL_BITS);
+    }
+
+    /** Decodes the fields whose {@link FieldMask.Field} bit is set in {@code loaded}; the rest stay null. */
+    static Parsed materialize(BcbpLayout layout, JulianDates dates, long loaded) {
+        String versionIndicator = null;
+        Integer versionNumber = null;
+        if (isSet(loaded, FieldMask.Field.VERSION) && layout.conditionalSize(0) > 0) {
+            versionIndicator = layout.trimEndToEmpty(BcbpLayout.VERSION_INDICATOR);
+            versionNumber = toInteger(layout.trimmedInt(BcbpLayout.VERSION_NUMBER));
         }
 
-        LocalDate issuedDate = uniqueConditional != null ? uniqueConditional.getIssuanceDate() : null;
-        List<Leg> legsWithResolvedDates = new ArrayList<>(legs.size());
-        for (Leg leg : legs) {
-            legsWithResolvedDates.add(leg.withFlightDate(resolveFlightDate(leg.getFlightDate(), issuedDate, referenceYear)));
+        // Flight dates resolve against the issuance date, so it is decoded whenever either needs it.
+        LocalDate issuedDate = null;
+        if ((isSet(loaded, FieldMask.Field.UNIQUE_CONDITIONAL) || isSet(loaded, FieldMask.Field.FLIGHT_DATE))
+            && layout.isPresent(BcbpLayout.UNIQUE_SECTION)) {
+            issuedDate = decodeIssueDate(layout, dates);
+        }
+        UniqueConditional uniqueConditional = null;
+        if (isSet(loaded, FieldMask.Field.UNIQUE_CONDITIONAL) || isSet(loaded, FieldMask.Field.BAG_TAGS)) {
+            uniqueConditional = uniqueConditional(layout, issuedDate, loaded);
         }
 
-        SecurityData securityData = parseSecurityData(cursor);
-        String airlineData = trimToNull(cursor.readRemaining());
+        int numberOfLegs = layout.numberOfLegs();
+        List<Leg> legs = new ArrayList<>(numberOfLegs);
+        for (int legIndex = 0; legIndex < numberOfLegs; legIndex++) {
+            legs.add(leg(layout, legIndex, issuedDate, dates, loaded));
+        }
 
         return new Parsed(
-            formatCode,
+            isSet(loaded, FieldMask.Field.FORMAT_CODE) ? layout.raw(BcbpLayout.FORMAT_CODE) : null,
             numberOfLegs,
-            passengerName,
-            ticketIndicator,
+            isSet(loaded, FieldMask.Field.PASSENGER_NAME) ? passengerName(layout) : null,
+            isSet(loaded, FieldMask.Field.TICKET_INDICATOR) ? layout.codeToEmpty(BcbpLayout.TICKET_INDICATOR) : null,
             versionIndicator,
             versionNumber,
-            legsWithResolvedDates,
+            legs,
             uniqueConditional,
-            securityData,
-            airlineData
+            isSet(loaded, FieldMask.Field.SECURITY_DATA) ? securityData(layout) : null,
+            isSet(loaded, FieldMask.Field.AIRLINE_DATA) ? layout.trimToNull(BcbpLayout.AIRLINE_DATA) : null,
+            loaded
         );
     }
 
-    private static Leg parseMandatoryLeg(Cursor cursor) {
-        String pnr = trimToEmpty(cursor.read(7));
-        String from = trimToEmpty(cursor.read(3));
-        String to = trimToEmpty(cursor.read(3));
-        String carrier = trimToEmpty(cursor.read(3));
-        String flight = normalizePaddedNumberWithOptionalSuffix(trimToNull(cursor.read(5)));
-        Integer dayOfYear = toInt(trimToNull(cursor.read(3)));
-        String compartment = trimToEmpty(cursor.read(1));
-        String seat = normalizePaddedNumberWithOptionalSuffix(trimToNull(cursor.read(4)));
-        String checkIn = normalizePaddedNumberWithOptionalSuffix(trimToNull(cursor.read(5)));
-        String passengerStatus = trimToEmpty(cursor.read(1));
-        Integer conditionalSize = cursor.readHex();
-
-        if (conditionalSize == null) {
-            return null;
-        }
-        if (from.length() != 3 || to.length() != 3) {
-            return null;
-        }
-        if (carrier.length() < 2 || carrier.length() > 3) {
-            return null;
-        }
-        if (flight.isBlank()) {
-            return null;
-        }
-        if (dayOfYear != null && (dayOfYear < 1 || dayOfYear > 366)) {
-            return null;
-        }
-
-        LocalDate flightDate = null;
-        if (dayOfYear != null) {
-            flightDate = decodeDayOfYear(dayOfYear, LocalDate.now(ZoneOffset.UTC).getYear());
-        }
+    static Leg leg(BcbpLayout layout, int legIndex, LocalDate issuanceDate, JulianDates dates) {
+        return leg(layout, legIndex, issuanceDate, dates, FieldMask.ALL_BITS);
+    }
 
+    static Leg leg(BcbpLayout layout, int legIndex, LocalDate issuanceDate, JulianDates dates, long loaded) {
+        int base = BcbpLayout.legSlot(legIndex, 0);
         return new Leg(
-            pnr,
-            from,
-            to,
-            carrier,
-            flight,
-            flightDate,
-            compartment,
-            seat,
-            checkIn,
-            passengerStatus,
-            conditionalSize,
-            null
+            isSet(loaded, FieldMask.Field.PNR) ? layout.trimToEmpty(base + BcbpLayout.PNR) : null,
+            isSet(loaded, FieldMask.Field.FROM_AIRPORT) ? layout.codeToEmpty(base + BcbpLayout.FROM_AIRPORT) : null,
+            isSet(loaded, FieldMask.Field.TO_AIRPORT) ? layout.codeToEmpty(base + BcbpLayout.TO_AIRPORT) : null,
+            isSet(loaded, FieldMask.Field.OPERATING_CARRIER) ? layout.codeToEmpty(base + BcbpLayout.OPERATING_CARRIER) : null,
+            isSet(loaded, FieldMask.Field.FLIGHT_NUMBER) ? paddedNumber(layout, base + BcbpLayout.FLIGHT_NUMBER) : null,
+            isSet(loaded, FieldMask.Field.FLIGHT_DATE) ? flightDate(layout, legIndex, issuanceDate, dates) : null,
+            isSet(loaded, FieldMask.Field.COMPARTMENT) ? layout.codeToEmpty(base + BcbpLayout.COMPARTMENT) : null,
+            isSet(loaded, FieldMask.Field.SEAT) ? paddedNumber(layout, base + BcbpLayout.SEAT) : null,
+            isSet(loaded, FieldMask.Field.CHECK_IN_SEQUENCE) ? paddedNumber(layout, base + BcbpLayout.CHECK_IN_SEQUENCE) : null,
+            isSet(loaded, FieldMask.Field.PASSENGER_STATUS) ? layout.codeToEmpty(base + BcbpLayout.PASSENGER_STATUS) : null,
+            layout.conditionalSize(legIndex),
+            isSet(loaded, FieldMask.Field.REPEATED_CONDITIONAL) ? repeatedConditional(layout, base) : null,
+            loaded
         );
     }
 
-    private static UniqueConditional parseUniqueConditional(String rawSection, int referenceYear) {
-        Cursor cursor = new Cursor(rawSection);
-        String passengerDescription = cleanOptional(cursor.read(1));
-        String checkInSource = cleanOptional(cursor.read(1));
-        String boardingPassIssuanceSource = cleanOptional(cursor.read(1));
-        LocalDate issuanceDate = decodeIssueDate(cursor.read(4), referenceYear);
-        String documentType = cleanOptional(cursor.read(1));
-        String issuingAirline = cleanOptional(cursor.read(3));
-        List<String> bagTags = new ArrayList<>();
+    private static boolean isSet(long loaded, FieldMask.Field field) {
+        return (loaded & field.bit) != 0;
+    }
+
+    static LocalDate flightDate(BcbpLayout layout, int legIndex, LocalDate issuanceDate, JulianDates dates) {
+        int dayOfYear = layout.dayOfYear(legIndex);
+        return dayOfYear == NO_VALUE ? null : dates.flightDate(dayOfYear, issuanceDate);
+    }
 
-        while (cursor.remaining() >= 13) {
-            String bagTag = cleanOptional(cursor.read(13));
-            if (bagTag != null) {
-                bagTags.add(bagTag);
+    static UniqueConditional uniqueConditional(BcbpLayout layout, JulianDates dates) {
+        if (!layout.isPresent(BcbpLayout.UNIQUE_SECTION)) {
+            return null;
+        }
+        return uniqueConditional(layout, decodeIssueDate(layout, dates), FieldMask.ALL_BITS);
+    }
+
+    private static UniqueConditional uniqueConditional(BcbpLayout layout, LocalDate issuanceDate, long loaded) {
+        if (!layout.isPresent(BcbpLayout.UNIQUE_SECTION)) {
+            return null;
+        }
+
+        List<String> bagTags = new ArrayList<>();
+        if (isSet(loaded, FieldMask.Field.BAG_TAGS) && layout.isPresent(BcbpLayout.UNIQUE_BAG_TAGS)) {
+            int end = layout.end(BcbpLayout.UNIQUE_BAG_TAGS);
+            for (int start = layout.start(BcbpLayout.UNIQUE_BAG_TAGS); start < end; start += BcbpLayout.BAG_TAG_LENGTH) {
+                String bagTag = layout.trimToNull(start, start + BcbpLayout.BAG_TAG_LENGTH);
+                if (bagTag != null) {
+                    bagTags.add(bagTag);
+                }
             }
         }
 
+        if (!isSet(loaded, FieldMask.Field.UNIQUE_CONDITIONAL)) {
+            return new UniqueConditional(null, null, null, null, null, null, bagTags, loaded);
+        }
         return new UniqueConditional(
-            passengerDescription,
-            checkInSource,
-            boardingPassIssuanceSource,
+            layout.codeToNull(BcbpLayout.UNIQUE_PASSENGER_DESCRIPTION),
+            layout.codeToNull(BcbpLayout.UNIQUE_CHECK_IN_SOURCE),
+            layout.codeToNull(BcbpLayout.UNIQUE_ISSUANCE_SOURCE),
             issuanceDate,
-            documentType,
-            issuingAirline,
-            bagTags
+            layout.codeToNull(BcbpLayout.UNIQUE_DOCUMENT_TYPE),
+            layout.codeToNull(BcbpLayout.UNIQUE_ISSUING_AIRLINE),
+            bagTags,
+            loaded
         );
     }
 
-    private static RepeatedConditional parseRepeatedConditional(Cursor cursor) {
-        Integer sectionSize = cursor.readHex();
-        if (sectionSize == null || sectionSize <= 0 || cursor.remaining() < sectionSize) {
+    static RepeatedConditional repeatedConditional(BcbpLayout layout, int base) {
+        if (!layout.isPresent(base + BcbpLayout.REPEATED_SECTION)) {
             return null;
         }
 
-        String sectionRaw = cursor.read(sectionSize);
-        if (sectionRaw == null) {
-            return null;
+        String frequentFlyerAirlineDesignator = null;
+        String frequentFlyerNumber = null;
+        int frequentFlyer = base + BcbpLayout.REPEATED_FREQUENT_FLYER;
+        if (layout.isPresent(frequentFlyer)) {
+            int start = layout.start(frequentFlyer);
+            int end = layout.end(frequentFlyer);
+            int split = Math.min(start + 3, end);
+            frequentFlyerAirlineDesignator = layout.codeToNull(start, split);
+            frequentFlyerNumber = layout.trimToNull(split, end);
         }
 
-        Cursor section = new Cursor(sectionRaw);
-        String airlineNumericCode = cleanOptional(section.read(3));
-        String documentSerialNumber = cleanOptional(section.read(10));
-        String selecteeIndicator = cleanOptional(section.read(1));
-        String internationalDocumentVerification = cleanOptional(section.read(1));
-        String marketingCarrierDesignator = cleanOptional(section.read(3));
-
-        int remainingAfterFixed = section.remaining();
-        int frequentFlyerSize = Math.max(remainingAfterFixed - 5, 0);
-        String frequentFlyerRaw = Objects.requireNonNullElse(section.read(frequentFlyerSize), "");
-        String frequentFlyerAirlineDesignator = cleanOptional(safeTake(frequentFlyerRaw, 3));
-        String frequentFlyerNumber = cleanOptional(safeDrop(frequentFlyerRaw, 3));
-
-        String idAdIndicator = cleanOptional(section.read(1));
-        String freeBaggageAllowance = cleanOptional(section.read(3));
-
         Boolean fastTrack = null;
-        String fastTrackRaw = trimToNull(section.read(1));
-        if ("Y".equals(fastTrackRaw)) {
+        if (layout.trimmedEquals(base + BcbpLayout.REPEATED_FAST_TRACK, 'Y')) {
             fastTrack = Boolean.TRUE;
-        } else if ("N".equals(fastTrackRaw)) {
+        } else if (layout.trimmedEquals(base + BcbpLayout.REPEATED_FAST_TRACK, 'N')) {
             fastTrack = Boolean.FALSE;
         }
 
-        String airlineUse = cleanOptional(section.readRemaining());
-
         return new RepeatedConditional(
-            airlineNumericCode,
-            documentSerialNumber,
-            selecteeIndicator,
-            internationalDocumentVerification,
-            marketingCarrierDesignator,
+            layout.codeToNull(base + BcbpLayout.REPEATED_AIRLINE_NUMERIC_CODE),
+            layout.trimToNull(base + BcbpLayout.REPEATED_DOCUMENT_SERIAL),
+            layout.codeToNull(base + BcbpLayout.REPEATED_SELECTEE),
+            layout.codeToNull(base + BcbpLayout.REPEATED_DOCUMENT_VERIFICATION),
+            layout.codeToNull(base + BcbpLayout.REPEATED_MARKETING_CARRIER),
             frequentFlyerAirlineDesignator,
             frequentFlyerNumber,
-            idAdIndicator,
-            freeBaggageAllowance,
+            layout.codeToNull(base + BcbpLayout.REPEATED_ID_AD),
+            layout.codeToNull(base + BcbpLayout.REPEATED_FREE_BAGGAGE),
             fastTrack,
-            airlineUse
+            layout.trimToNull(base + BcbpLayout.REPEATED_AIRLINE_USE)
         );
     }
 
-    private static SecurityData parseSecurityData(Cursor cursor) {
-        if (cursor.remaining() < 4 || !"^".equals(cursor.peek())) {
+    static SecurityData securityData(BcbpLayout layout) {
+        if (!layout.isPresent(BcbpLayout.SECURITY_DATA)) {
             return null;
         }
-
-        cursor.read(1);
-        String type = trimToEmpty(cursor.read(1));
-        Integer length = cursor.readHex();
-        if (length == null) {
-            return null;
-        }
-
-        String data = cursor.read(length);
-        if (data == null) {
-            return null;
-        }
-
-        return new SecurityData(type, trimEndToEmpty(data));
+        return new SecurityData(
+            layout.trimToEmpty(BcbpLayout.SECURITY_TYPE),
+            layout.trimEndToEmpty(BcbpLayout.SECURITY_DATA)
+        );
     }
 
-    private static String normalize(String rawMessage) {
-        String withoutLineBreaks = rawMessage.replace("\r", "").replace("\n", "");
-        if (withoutLineBreaks.length() > 3 && withoutLineBreaks.charAt(0) == ']') {
-            return trimStart(withoutLineBreaks.substring(3));
+    /** Drops CR/LF characters; only copies the payload if it actually contains any. */
+    static CharSequence stripLineBreaks(CharSequence rawMessage) {
+        int length = rawMessage.length();
+        int firstBreak = 0;
+        while (firstBreak < length && rawMessage.charAt(firstBreak) != '\r' && rawMessage.charAt(firstBreak) != '\n') {
+            firstBreak++;
+        }
+        if (firstBreak == length) {
+            return rawMessage;
+        }
+        StringBuilder stripped = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            char c = rawMessage.charAt(i);
+            if (c != '\r' && c != '\n') {
+                stripped.append(c);
+            }
         }
-        return trimStart(withoutLineBreaks);
+        return stripped.toString();
     }
 
-    private static LocalDate resolveFlightDate(LocalDate candidate, LocalDate issuanceDate, int referenceYear) {
-        if (candidate == null || issuanceDate == null) {
-            return candidate;
-        }
-        LocalDate dateInIssueYear = decodeDayOfYear(candidate.getDayOfYear(), issuanceDate.getYear());
-        if (dateInIssueYear == null) {
-            return candidate;
-        }
-        if (dateInIssueYear.isBefore(issuanceDate)) {
-            return dateInIssueYear.plusYears(1);
-        }
-        return dateInIssueYear;
+    /** Index of the first payload character after an optional symbology identifier and leading whitespace. */
+    static int payloadStart(CharSequence message) {
+        return payloadStart(message, true);
     }
 
-    private static LocalDate decodeDayOfYear(int dayOfYear, int year) {
-        if (dayOfYear < 1 || dayOfYear > 366) {
-            return null;
-        }
-        try {
-            return LocalDate.ofYearDay(year, dayOfYear);
-        } catch (Exception ignored) {
-            return null;
+    static int payloadStart(CharSequence message, boolean stripSymbologyIdentifier) {
+        int start = stripSymbologyIdentifier && message.length() > 3 && message.charAt(0) == ']' ? 3 : 0;
+        while (start < message.length() && BcbpLayout.isRegexWhitespace(message.charAt(start))) {
+            start++;
         }
+        return start;
     }
 
-    private static LocalDate decodeIssueDate(String field, int referenceYear) {
-        String cleaned = trimToEmpty(field);
-        if (cleaned.length() != 4) {
+    static LocalDate decodeIssueDate(BcbpLayout layout, JulianDates dates) {
+        if (layout.trimmedLength(BcbpLayout.UNIQUE_ISSUANCE_DATE) != 4) {
             return null;
         }
+        int start = layout.start(BcbpLayout.UNIQUE_ISSUANCE_DATE);
+        CharSequence text = layout.text();
 
-        int yearDigit = Character.digit(cleaned.charAt(0), 10);
+        int yearDigit = Character.digit(text.charAt(start), 10);
         if (yearDigit < 0) {
             return null;
         }
 
-        Integer dayOfYear = toInt(cleaned.substring(1));
-        if (dayOfYear == null || dayOfYear < 1 || dayOfYear > 366) {
+        int dayOfYear = BcbpLayout.parseInt(text, start + 1, start + 4, 10);
+        if (dayOfYear == NO_VALUE) {
             return null;
         }
+        return dates.issuanceDate(yearDigit, dayOfYear);
+    }
 
-        int year = closestYearWithLastDigit(referenceYear, yearDigit);
-        return decodeDayOfYear(dayOfYear, year);
+    static String prettyPassengerName(String value) {
+        return prettyPassengerName(value, 0, value.length());
     }
 
-    private static int closestYearWithLastDigit(int referenceYear, int digit) {
-        int best = referenceYear;
-        int bestDistance = Integer.MAX_VALUE;
+    /**
+     * Formats a {@code LAST/FIRST} name block as {@code First Last}.
+     *
+     * <p>Single pass over the block: whitespace runs collapse to one space, each word and each
+     * hyphen-separated piece is title-cased, trailing hyphens of a word are dropped. Falls back to the
+     * whitespace-normalized block if neither part has any content.
+     */
+    static String prettyPassengerName(CharSequence text, int start, int end) {
+        StringBuilder joined = new StringBuilder(end - start + 1);
+        appendPrettyPassengerName(text, start, end, joined);
+        return joined.toString();
+    }
 
-        for (int year = referenceYear - 20; year <= referenceYear + 20; year++) {
-            int lastDigit = ((year % 10) + 10) % 10;
-            if (lastDigit != digit) {
-                continue;
-            }
-            int distance = Math.abs(year - referenceYear);
-            if (distance < bestDistance) {
-                bestDistance = distance;
-                best = year;
+    /** Appends {@link #prettyPassengerName(CharSequence, int, int)} of the block to {@code out}. */
+    static void appendPrettyPassengerName(CharSequence text, int start, int end, StringBuilder out) {
+        start = BcbpLayout.trimStart(text, start, end);
+        end = BcbpLayout.trimEnd(text, start, end);
+        if (needsWhitespaceCollapse(text, start, end)) {
+            text = collapseWhitespace(text, start, end);
+            start = 0;
+            end = text.length();
+        }
+
+        int slash = start;
+        while (slash < end && text.charAt(slash) != '/') {
+            slash++;
+        }
+
+        int nameStart = out.length();
+        if (slash < end) {
+            appendTitleCase(text, slash + 1, end, out);
+            if (BcbpLayout.isBlank(out, nameStart, out.length())) {
+                out.setLength(nameStart);
             }
         }
+        int firstNameEnd = out.length();
+        if (firstNameEnd > nameStart) {
+            out.append(' ');
+        }
+        int lastNameStart = out.length();
+        appendTitleCase(text, start, slash, out);
+        if (BcbpLayout.isBlank(out, lastNameStart, out.length())) {
+            out.setLength(firstNameEnd);
+        }
 
-        return best;
+        if (out.length() == nameStart) {
+            out.append(text, start, end);
+        }
     }
 
-    private static boolean isPassengerNameBlock(String value) {
-        for (int i = 0; i < value.length(); i++) {
-            char c = value.charAt(i);
-            if (!(Character.isUpperCase(c) || Character.isDigit(c) || c == ' ' || c == '/' || c == '-')) {
-                return false;
+    /** Whether {@code [start, end)} contains a regex {@code \s} run that is not a single space. */
+    private static boolean needsWhitespaceCollapse(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c != ' ' ? BcbpLayout.isRegexWhitespace(c) : i + 1 < end && BcbpLayout.isRegexWhitespace(text.charAt(i + 1))) {
+                return true;
             }
         }
-        return true;
+        return false;
     }
 
-    private static String prettyPassengerName(String value) {
-        String normalized = value.trim().replaceAll("\\s+", " ");
-
-        String[] split = normalized.split("/", 2);
-        String lastName = split.length > 0 ? titleCaseWords(split[0].trim()) : "";
-        String firstName = split.length > 1 ? titleCaseWords(split[1].trim()) : "";
-
-        String joined = String.join(" ", List.of(firstName, lastName).stream().filter(s -> !s.isBlank()).toList());
-        return joined.isBlank() ? normalized : joined;
+    private static String collapseWhitespace(CharSequence text, int start, int end) {
+        StringBuilder collapsed = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (!BcbpLayout.isRegexWhitespace(c)) {
+                collapsed.append(c);
+            } else if (!BcbpLayout.isRegexWhitespace(text.charAt(i - 1))) {
+                collapsed.append(' ');
+            }
+        }
+        return collapsed.toString();
     }
 
-    private static String titleCaseWords(String value) {
-        if (value.isBlank()) {
-            return "";
+    /**
+     * Appends the title-cased form of the trimmed range: lower-cased, with the first character of every
+     * space-separated word and hyphen-separated piece upper-cased.
+     */
+    private static void appendTitleCase(CharSequence text, int start, int end, StringBuilder out) {
+        start = BcbpLayout.trimStart(text, start, end);
+        end = BcbpLayout.trimEnd(text, start, end);
+        if (BcbpLayout.isBlank(text, start, end)) {
+            return;
+        }
+
+        boolean lowered = false;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) >= 0x80) {
+                // Non-ASCII lower-casing may change the length; let the JDK handle it once.
+                text = text.subSequence(start, end).toString().toLowerCase(Locale.ROOT);
+                start = 0;
+                end = text.length();
+                lowered = true;
+                break;
+            }
         }
 
-        String[] words = value.toLowerCase(Locale.ROOT).split(" ");
-        List<String> casedWords = new ArrayList<>(words.length);
-        for (String word : words) {
-            String[] pieces = word.split("-");
-            List<String> casedPieces = new ArrayList<>(pieces.length);
-            for (String piece : pieces) {
-                if (piece.isEmpty()) {
-                    casedPieces.add(piece);
-                } else {
-                    char first = Character.toUpperCase(piece.charAt(0));
-                    casedPieces.add(first + piece.substring(1));
+        while (end > start && text.charAt(end - 1) == ' ') {
+            end--;
+        }
+        int wordStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i < end && text.charAt(i) != ' ') {
+                continue;
+            }
+            int wordEnd = i;
+            while (wordEnd > wordStart && text.charAt(wordEnd - 1) == '-') {
+                wordEnd--;
+            }
+            for (int j = wordStart; j < wordEnd; j++) {
+                char c = text.charAt(j);
+                if (!lowered && c >= 'A' && c <= 'Z') {
+                    c = (char) (c + ('a' - 'A'));
+                }
+                if (j == wordStart || text.charAt(j - 1) == '-') {
+                    c = Character.toUpperCase(c);
                 }
+                out.append(c);
             }
-            casedWords.add(String.join("-", casedPieces));
+            if (i < end) {
+                out.append(' ');
+            }
+            wordStart = i + 1;
         }
-        return String.join(" ", casedWords);
     }
 
-    private static String normalizePaddedNumberWithOptionalSuffix(String value) {
+    static String normalizePaddedNumberWithOptionalSuffix(String value) {
         String trimmed = trimToEmpty(value);
         if (trimmed.isBlank()) {
             return "";
         }
-
-        Matcher match = NUMBER_WITH_SUFFIX_PATTERN.matcher(trimmed);
-        if (!match.matches()) {
-            return trimmed;
-        }
-
-        String number = match.group(2);
-        String noLeadingZeros = number.replaceFirst("^0+", "");
-        if (noLeadingZeros.isBlank()) {
-            noLeadingZeros = "0";
-        }
-
-        return noLeadingZeros + match.group(3);
-    }
-
-    private static String safeTake(String value, int length) {
-        return value.substring(0, Math.min(value.length(), Math.max(length, 0)));
+        return normalizePaddedNumberWithOptionalSuffix(trimmed, 0, trimmed.length());
     }
 
-    private static String safeDrop(String value, int length) {
-        int start = Math.min(value.length(), Math.max(length, 0));
-        return value.substring(start);
-    }
-
-    private static Integer toInt(String value) {
-        if (value == null) {
-            return null;
+    /**
+     * Strips leading zeros from a trimmed, non-blank {@code digits[A-Z]?} value, keeping at least one
+     * digit. Values of any other shape are returned unchanged.
+     */
+    static String normalizePaddedNumberWithOptionalSuffix(CharSequence text, int start, int end) {
+        int digitsEnd = end;
+        char last = text.charAt(end - 1);
+        if (last >= 'A' && last <= 'Z') {
+            digitsEnd--;
+        }
+        if (digitsEnd == start) {
+            return BcbpLayout.substring(text, start, end);
+        }
+        for (int i = start; i < digitsEnd; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return BcbpLayout.substring(text, start, end);
+            }
         }
-        try {
-            return Integer.valueOf(value);
-        } catch (NumberFormatException ignored) {
-            return null;
+        int firstSignificant = start;
+        while (firstSignificant < digitsEnd - 1 && text.charAt(firstSignificant) == '0') {
+            firstSignificant++;
         }
+        return BcbpLayout.substring(text, firstSignificant, end);
     }
 
-    private static String trimToEmpty(String value) {
-        return value == null ? "" : value.trim();
-    }
-
-    private static String trimToNull(String value) {
-        if (value == null) {
-            return null;
-        }
-        String trimmed = value.trim();
-        return trimmed.isBlank() ? null : trimmed;
-    }
-
-    private static String trimEndToEmpty(String value) {
-        if (value == null) {
+    /** {@code normalizePaddedNumberWithOptionalSuffix(trimToNull(field))} without the intermediate String. */
+    static String paddedNumber(BcbpLayout layout, int slot) {
+        if (layout.isBlank(slot)) {
             return "";
         }
-        return value.replaceFirst("\\s+$", "");
+        CharSequence text = layout.text();
+        int start = BcbpLayout.trimStart(text, layout.start(slot), layout.end(slot));
+        return normalizePaddedNumberWithOptionalSuffix(text, start, BcbpLayout.trimEnd(text, start, layout.end(slot)));
     }
 
-    private static String trimStart(String value) {
-        return value.replaceFirst("^\\s+", "");
+    static String passengerName(BcbpLayout layout) {
+        return layout.passengerName();
     }
 
-    private static String cleanOptional(String value) {
-        return trimToNull(value);
+    static String flightCode(String operatingCarrier, String flightNumber) {
+        int firstSignificant = 0;
+        while (firstSignificant < flightNumber.length() && flightNumber.charAt(firstSignificant) == '0') {
+            firstSignificant++;
+        }
+        boolean allZeros = BcbpLayout.isBlank(flightNumber, firstSignificant, flightNumber.length());
+        return operatingCarrier.concat(allZeros ? flightNumber : flightNumber.substring(firstSignificant));
     }
 
-    private static final class Cursor {
-        private final String raw;
-        private int index = 0;
-
-        Cursor(String raw) {
-            this.raw = raw;
-        }
+    static String summary(String fromAirport, String toAirport, String flightCode, String seat) {
+        String route = (fromAirport.isBlank() || toAirport.isBlank()) ? "" : fromAirport + "->" + toAirport;
+        String seatLabel = seat.isBlank() ? "" : "Seat " + seat;
 
-        int remaining() {
-            return raw.length() - index;
+        List<String> parts = new ArrayList<>(3);
+        if (!route.isBlank()) {
+            parts.add(route);
         }
-
-        String read(int length) {
-            if (length < 0 || index + length > raw.length()) {
-                return null;
-            }
-            String value = raw.substring(index, index + length);
-            index += length;
-            return value;
+        if (!flightCode.isBlank()) {
+            parts.add(flightCode);
         }
-
-        Integer readHex() {
-            String value = read(2);
-            if (value == null) {
-                return null;
-            }
-            String trimmed = value.trim();
-            if (trimmed.isBlank()) {
-                trimmed = "0";
-            }
-            try {
-                return Integer.valueOf(trimmed, 16);
-            } catch (NumberFormatException ignored) {
-                return null;
-            }
+        if (!seatLabel.isBlank()) {
+            parts.add(seatLabel);
         }
+        return String.join(" | ", parts);
+    }
 
-        String readRemaining() {
-            if (index >= raw.length()) {
-                return null;
-            }
-            String value = raw.substring(index);
-            index = raw.length();
-            return value;
-        }
+    static Integer toInteger(int value) {
+        return value == NO_VALUE ? null : Integer.valueOf(value);
+    }
 
-        String peek() {
-            if (index < raw.length()) {
-                return raw.substring(index, index + 1);
-            }
-            return null;
-        }
+    private static String trimToEmpty(String value) {
+        return value == null ? "" : value.trim();
     }
 
     public static final class Parsed {
@@ -510,6 +560,7 @@ public final class IataBcbp {
         private final UniqueConditional uniqueConditional;
         private final SecurityData securityData;
         private final String airlineData;
+        private final long loaded;
 
         public Parsed(
             String formatCode,
@@ -522,6 +573,25 @@ public final class IataBcbp {
             UniqueConditional uniqueConditional,
             SecurityData securityData,
             String airlineData
+        ) {
+            this(
+                formatCode, numberOfLegs, passengerName, ticketIndicator, versionNumberIndicator, versionNumber, legs,
+                uniqueConditional, securityData, airlineData, FieldMask.ALL_BITS
+            );
+        }
+
+        Parsed(
+            String formatCode,
+            int numberOfLegs,
+            String passengerName,
+            String ticketIndicator,
+            String versionNumberIndicator,
+            Integer versionNumber,
+            List<Leg> legs,
+            UniqueConditional uniqueConditional,
+            SecurityData securityData,
+            String airlineData,
+            long loaded
         ) {
             this.formatCode = formatCode;
             this.numberOfLegs = numberOfLegs;
@@ -533,9 +603,16 @@ public final class IataBcbp {
             this.uniqueConditional = uniqueConditional;
             this.securityData = securityData;
             this.airlineData = airlineData;
+            this.loaded = loaded;
+        }
+
+        /** Whether {@code field} was decoded; always {@code true} unless parsed with a {@link FieldMask}. */
+        public boolean isLoaded(FieldMask.Field field) {
+            return isSet(loaded, field);
         }
 
         public String getFormatCode() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.FORMAT_CODE);
             return formatCode;
         }
 
@@ -544,18 +621,22 @@ public final class IataBcbp {
         }
 
         public String getPassengerName() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.PASSENGER_NAME);
             return passengerName;
         }
 
         public String getTicketIndicator() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.TICKET_INDICATOR);
             return ticketIndicator;
         }
 
         public String getVersionNumberIndicator() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.VERSION);
             return versionNumberIndicator;
         }
 
         public Integer getVersionNumber() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.VERSION);
             return versionNumber;
         }
 
@@ -563,15 +644,21 @@ public final class IataBcbp {
             return legs;
         }
 
+        /** Loaded when either {@link FieldMask.Field#UNIQUE_CONDITIONAL} or {@link FieldMask.Field#BAG_TAGS} is. */
         public UniqueConditional getUniqueConditional() {
+            if (!isSet(loaded, FieldMask.Field.UNIQUE_CONDITIONAL)) {
+                FieldMask.checkLoaded(loaded, FieldMask.Field.BAG_TAGS);
+            }
             return uniqueConditional;
         }
 
         public SecurityData getSecurityData() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.SECURITY_DATA);
             return securityData;
         }
 
         public String getAirlineData() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.AIRLINE_DATA);
             return airlineData;
         }
 
@@ -635,21 +722,7 @@ public final class IataBcbp {
         }
 
         public String summary() {
-            String route = (getFromAirport().isBlank() || getToAirport().isBlank()) ? "" : getFromAirport() + "->" + getToAirport();
-            String flight = flightCode();
-            String seatLabel = getSeat().isBlank() ? "" : "Seat " + getSeat();
-
-            List<String> parts = new ArrayList<>(3);
-            if (!route.isBlank()) {
-                parts.add(route);
-            }
-            if (!flight.isBlank()) {
-                parts.add(flight);
-            }
-            if (!seatLabel.isBlank()) {
-                parts.add(seatLabel);
-            }
-            return String.join(" | ", parts);
+            return IataBcbp.summary(getFromAirport(), getToAirport(), flightCode(), getSeat());
         }
     }
 
@@ -666,6 +739,7 @@ public final class IataBcbp {
         private final String passengerStatus;
         private final int conditionalSize;
         private final RepeatedConditional repeatedConditional;
+        private final long loaded;
 
         public Leg(
             String pnrCode,
@@ -680,6 +754,27 @@ public final class IataBcbp {
             String passengerStatus,
             int conditionalSize,
             RepeatedConditional repeatedConditional
+        ) {
+            this(
+                pnrCode, fromAirport, toAirport, operatingCarrier, flightNumber, flightDate, compartmentCode, seatNumber,
+                checkInSequenceNumber, passengerStatus, conditionalSize, repeatedConditional, FieldMask.ALL_BITS
+            );
+        }
+
+        Leg(
+            String pnrCode,
+            String fromAirport,
+            String toAirport,
+            String operatingCarrier,
+            String flightNumber,
+            LocalDate flightDate,
+            String compartmentCode,
+            String seatNumber,
+            String checkInSequenceNumber,
+            String passengerStatus,
+            int conditionalSize,
+            RepeatedConditional repeatedConditional,
+            long loaded
         ) {
             this.pnrCode = pnrCode;
             this.fromAirport = fromAirport;
@@ -693,45 +788,56 @@ public final class IataBcbp {
             this.passengerStatus = passengerStatus;
             this.conditionalSize = conditionalSize;
             this.repeatedConditional = repeatedConditional;
+            this.loaded = loaded;
         }
 
         public String getPnrCode() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.PNR);
             return pnrCode;
         }
 
         public String getFromAirport() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.FROM_AIRPORT);
             return fromAirport;
         }
 
         public String getToAirport() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.TO_AIRPORT);
             return toAirport;
         }
 
         public String getOperatingCarrier() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.OPERATING_CARRIER);
             return operatingCarrier;
         }
 
         public String getFlightNumber() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.FLIGHT_NUMBER);
             return flightNumber;
         }
 
         public LocalDate getFlightDate() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.FLIGHT_DATE);
             return flightDate;
         }
 
         public String getCompartmentCode() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.COMPARTMENT);
             return compartmentCode;
         }
 
         public String getSeatNumber() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.SEAT);
             return seatNumber;
         }
 
         public String getCheckInSequenceNumber() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.CHECK_IN_SEQUENCE);
             return checkInSequenceNumber;
         }
 
         public String getPassengerStatus() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.PASSENGER_STATUS);
             return passengerStatus;
         }
 
@@ -740,47 +846,12 @@ public final class IataBcbp {
         }
 
         public RepeatedConditional getRepeatedConditional() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.REPEATED_CONDITIONAL);
             return repeatedConditional;
         }
 
         public String flightCode() {
-            String normalizedFlight = flightNumber.replaceFirst("^0+", "");
-            String number = normalizedFlight.isBlank() ? flightNumber : normalizedFlight;
-            return operatingCarrier + number;
-        }
-
-        private Leg withRepeatedConditional(RepeatedConditional value) {
-            return new Leg(
-                pnrCode,
-                fromAirport,
-                toAirport,
-                operatingCarrier,
-                flightNumber,
-                flightDate,
-                compartmentCode,
-                seatNumber,
-                checkInSequenceNumber,
-                passengerStatus,
-                conditionalSize,
-                value
-            );
-        }
-
-        private Leg withFlightDate(LocalDate value) {
-            return new Leg(
-                pnrCode,
-                fromAirport,
-                toAirport,
-                operatingCarrier,
-                flightNumber,
-                value,
-                compartmentCode,
-                seatNumber,
-                checkInSequenceNumber,
-                passengerStatus,
-                conditionalSize,
-                repeatedConditional
-            );
+            return IataBcbp.flightCode(getOperatingCarrier(), getFlightNumber());
         }
     }
 
@@ -792,6 +863,7 @@ public final class IataBcbp {
         private final String documentType;
         private final String issuingAirline;
         private final List<String> bagTagNumbers;
+        private final long loaded;
 
         public UniqueConditional(
             String passengerDescription,
@@ -801,6 +873,22 @@ public final class IataBcbp {
             String documentType,
             String issuingAirline,
             List<String> bagTagNumbers
+        ) {
+            this(
+                passengerDescription, checkInSource, boardingPassIssuanceSource, issuanceDate, documentType, issuingAirline,
+                bagTagNumbers, FieldMask.ALL_BITS
+            );
+        }
+
+        UniqueConditional(
+            String passengerDescription,
+            String checkInSource,
+            String boardingPassIssuanceSource,
+            LocalDate issuanceDate,
+            String documentType,
+            String issuingAirline,
+            List<String> bagTagNumbers,
+            long loaded
         ) {
             this.passengerDescription = passengerDescription;
             this.checkInSource = checkInSource;
@@ -809,33 +897,41 @@ public final class IataBcbp {
             this.documentType = documentType;
             this.issuingAirline = issuingAirline;
             this.bagTagNumbers = List.copyOf(bagTagNumbers);
+            this.loaded = loaded;
         }
 
         public String getPassengerDescription() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.UNIQUE_CONDITIONAL);
             return passengerDescription;
         }
 
         public String getCheckInSource() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.UNIQUE_CONDITIONAL);
             return checkInSource;
         }
 
         public String getBoardingPassIssuanceSource() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.UNIQUE_CONDITIONAL);
             return boardingPassIssuanceSource;
         }
 
         public LocalDate getIssuanceDate() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.UNIQUE_CONDITIONAL);
             return issuanceDate;
         }
 
         public String getDocumentType() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.UNIQUE_CONDITIONAL);
             return documentType;
         }
 
         public String getIssuingAirline() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.UNIQUE_CONDITIONAL);
             return issuingAirline;
         }
 
         public List<String> getBagTagNumbers() {
+            FieldMask.checkLoaded(loaded, FieldMask.Field.BAG_TAGS);
             return bagTagNumbers;
         }
     }
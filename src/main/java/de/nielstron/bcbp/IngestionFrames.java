@@ -0,0 +1,311 @@
+package de.nielstron.bcbp;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Wire format shared by {@link BcbpIngestionServer} and {@link BcbpIngestionClient}.
+ *
+ * <p>With {@link BcbpIngestionServer.Framing#LINES} a frame ends with {@code \n} (a {@code \r} before it is
+ * dropped) and a response reads {@code OK <base64 record>} or {@code ERR <failure> <offset> <leg>}. With
+ * {@link BcbpIngestionServer.Framing#LENGTH_PREFIXED} a frame is a big-endian unsigned 16-bit length and that
+ * many bytes, and a response body is {@code 0} followed by the record, or {@code 1}, the failure ordinal,
+ * the 16-bit offset and the leg as a signed byte. Records are {@link BcbpBinaryCodec} records.
+ */
+final class IngestionFrames {
+
+    /** Largest frame the 16-bit length prefix can announce. */
+    static final int MAX_FRAME_LENGTH = 0xFFFF;
+
+    private static final int INITIAL_BUFFER = 512;
+    private static final byte[] OK = "OK ".getBytes(StandardCharsets.ISO_8859_1);
+    private static final int SUCCESS = 0;
+    private static final int REJECTED = 1;
+    private static final ParseResult.Failure[] FAILURES = ParseResult.Failure.values();
+
+    private IngestionFrames() {
+    }
+
+    /** Frames a payload for sending; line frames must not contain a line break. */
+    static byte[] payload(String payload, BcbpIngestionServer.Framing framing) {
+        if (framing == BcbpIngestionServer.Framing.LINES && (payload.indexOf('\n') >= 0 || payload.indexOf('\r') >= 0)) {
+            throw new IllegalArgumentException("line-framed payloads must not contain line breaks");
+        }
+        return payload.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    static byte[] encodeResult(ParseResult result, BcbpIngestionServer.Framing framing) {
+        if (framing == BcbpIngestionServer.Framing.LINES) {
+            if (result.isSuccess()) {
+                byte[] record = Base64.getEncoder().encode(BcbpBinaryCodec.encode(result.getParsed()));
+                byte[] line = new byte[OK.length + record.length];
+                System.arraycopy(OK, 0, line, 0, OK.length);
+                System.arraycopy(record, 0, line, OK.length, record.length);
+                return line;
+            }
+            return ("ERR " + result.getFailure() + " " + result.getOffset() + " " + result.getLegIndex())
+                .getBytes(StandardCharsets.ISO_8859_1);
+        }
+        if (result.isSuccess()) {
+            byte[] record = BcbpBinaryCodec.encode(result.getParsed());
+            byte[] body = new byte[1 + record.length];
+            body[0] = SUCCESS;
+            System.arraycopy(record, 0, body, 1, record.length);
+            return body;
+        }
+        int offset = Math.max(result.getOffset(), 0);
+        return new byte[] {
+            REJECTED,
+            (byte) result.getFailure().ordinal(),
+            (byte) (offset >>> 8),
+            (byte) offset,
+            (byte) result.getLegIndex()
+        };
+    }
+
+    /** @throws IOException if the response is malformed */
+    static ParseResult decodeResult(byte[] frame, int offset, int length, BcbpIngestionServer.Framing framing)
+        throws IOException {
+        try {
+            if (framing == BcbpIngestionServer.Framing.LINES) {
+                String line = new String(frame, offset, length, StandardCharsets.ISO_8859_1);
+                if (line.startsWith("OK ")) {
+                    return ParseResult.success(BcbpBinaryCodec.decode(Base64.getDecoder().decode(line.substring(3))));
+                }
+                String[] parts = line.split(" ");
+                if (parts.length == 4 && parts[0].equals("ERR")) {
+                    return rejection(ParseResult.Failure.valueOf(parts[1]), Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+                }
+            } else if (length > 0 && frame[offset] == SUCCESS) {
+                return ParseResult.success(BcbpBinaryCodec.decode(ByteBuffer.wrap(frame, offset + 1, length - 1)));
+            } else if (length == 5 && frame[offset] == REJECTED) {
+                return rejection(
+                    FAILURES[frame[offset + 1] & 0xFF],
+                    (frame[offset + 2] & 0xFF) << 8 | frame[offset + 3] & 0xFF,
+                    frame[offset + 4]
+                );
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed ingestion response", e);
+        }
+        throw new IOException("Malformed ingestion response");
+    }
+
+    private static ParseResult rejection(ParseResult.Failure failure, int offset, int legIndex) {
+        return failure == ParseResult.Failure.NULL_INPUT ? ParseResult.nullInput() : ParseResult.failure(failure, offset, legIndex);
+    }
+
+    /**
+     * Splits a stream into frames in a buffer that grows only as far as the longest frame allowed. Each frame
+     * is valid until the next call to {@link #next()}. A frame over the maximum is reported as
+     * {@link #oversized()} without its bytes: a length-prefixed one is then skipped as it arrives, while the
+     * rest of an overlong line cannot be told from the next one, so the caller stops reading there.
+     */
+    static final class Reader {
+        private final InputStream in;
+        private final BcbpIngestionServer.Framing framing;
+        private final int maxLength;
+        private byte[] buffer;
+        private int start;
+        private int end;
+        /** Where the search for the next line break resumes, so that a slow line is not rescanned. */
+        private int scanned;
+        private int frameStart;
+        private int frameLength;
+        private boolean oversized;
+        /** Bytes of an oversized length-prefixed frame still to be discarded. */
+        private int skip;
+
+        Reader(InputStream in, BcbpIngestionServer.Framing framing, int maxLength) {
+            this.in = in;
+            this.framing = framing;
+            this.maxLength = maxLength;
+            this.buffer = new byte[Math.min(INITIAL_BUFFER, maxLength + 2)];
+        }
+
+        /**
+         * Reads the next frame.
+         *
+         * @return {@code false} if the stream ended between frames
+         * @throws IOException if the stream ends inside a frame
+         */
+        boolean next() throws IOException {
+            oversized = false;
+            while (!takeFrame()) {
+                if (!fill()) {
+                    if (start == end && skip == 0) {
+                        return false;
+                    }
+                    throw new EOFException("Stream ended inside a frame");
+                }
+            }
+            return true;
+        }
+
+        /** Whether {@link #next()} can return a frame without reading from the stream. */
+        boolean hasBufferedFrame() {
+            if (framing == BcbpIngestionServer.Framing.LINES) {
+                for (int i = scanned; i < end; i++) {
+                    if (buffer[i] == '\n') {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            int available = end - start - skip;
+            if (available < 2) {
+                return false;
+            }
+            int length = (buffer[start + skip] & 0xFF) << 8 | buffer[start + skip + 1] & 0xFF;
+            return length > maxLength || available - 2 >= length;
+        }
+
+        /** Whether a frame is buffered or more bytes can be read without blocking. */
+        boolean ready() throws IOException {
+            return hasBufferedFrame() || in.available() > 0;
+        }
+
+        byte[] buffer() {
+            return buffer;
+        }
+
+        int frameStart() {
+            return frameStart;
+        }
+
+        int frameLength() {
+            return frameLength;
+        }
+
+        /** Whether the last frame exceeded the maximum length; its bytes are not in the buffer. */
+        boolean oversized() {
+            return oversized;
+        }
+
+        private boolean takeFrame() throws IOException {
+            if (framing == BcbpIngestionServer.Framing.LINES) {
+                for (int i = scanned; i < end; i++) {
+                    if (buffer[i] == '\n') {
+                        frameStart = start;
+                        frameLength = i > start && buffer[i - 1] == '\r' ? i - 1 - start : i - start;
+                        start = i + 1;
+                        scanned = start;
+                        return true;
+                    }
+                }
+                scanned = end;
+                if (end - start > maxLength + 1) {
+                    return takeOversized(0);
+                }
+                return false;
+            }
+            if (skip > 0) {
+                int skipped = Math.min(skip, end - start);
+                start += skipped;
+                skip -= skipped;
+                if (skip > 0) {
+                    return false;
+                }
+            }
+            if (end - start < 2) {
+                return false;
+            }
+            int length = (buffer[start] & 0xFF) << 8 | buffer[start + 1] & 0xFF;
+            if (length > maxLength) {
+                // The prefix says where the next frame starts, so the payload is discarded rather than buffered.
+                start += 2;
+                return takeOversized(length);
+            }
+            if (end - start - 2 < length) {
+                return false;
+            }
+            frameStart = start + 2;
+            frameLength = length;
+            start += 2 + length;
+            return true;
+        }
+
+        private boolean takeOversized(int skip) {
+            this.skip = skip;
+            oversized = true;
+            frameStart = start;
+            frameLength = 0;
+            return true;
+        }
+
+        private boolean fill() throws IOException {
+            if (start == end) {
+                start = 0;
+                end = 0;
+                scanned = 0;
+            } else if (end == buffer.length) {
+                if (start > 0) {
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    scanned -= start;
+                    end -= start;
+                    start = 0;
+                } else {
+                    byte[] grown = new byte[Math.min(buffer.length * 2, maxLength + 2)];
+                    System.arraycopy(buffer, 0, grown, 0, end);
+                    buffer = grown;
+                }
+            }
+            int read = in.read(buffer, end, buffer.length - end);
+            if (read < 0) {
+                return false;
+            }
+            end += read;
+            return true;
+        }
+    }
+
+    /** Collects frames until {@link #flush()}, so that pipelined responses leave in as few writes as possible. */
+    static final class Writer {
+        private final OutputStream out;
+        private final BcbpIngestionServer.Framing framing;
+        private byte[] buffer = new byte[INITIAL_BUFFER];
+        private int size;
+
+        Writer(OutputStream out, BcbpIngestionServer.Framing framing) {
+            this.out = out;
+            this.framing = framing;
+        }
+
+        void write(byte[] body) {
+            if (body.length > MAX_FRAME_LENGTH) {
+                throw new IllegalArgumentException("Frame of " + body.length + " bytes exceeds " + MAX_FRAME_LENGTH);
+            }
+            ensureCapacity(body.length + 2);
+            if (framing == BcbpIngestionServer.Framing.LENGTH_PREFIXED) {
+                buffer[size++] = (byte) (body.length >>> 8);
+                buffer[size++] = (byte) body.length;
+            }
+            System.arraycopy(body, 0, buffer, size, body.length);
+            size += body.length;
+            if (framing == BcbpIngestionServer.Framing.LINES) {
+                buffer[size++] = '\n';
+            }
+        }
+
+        void flush() throws IOException {
+            if (size > 0) {
+                out.write(buffer, 0, size);
+                size = 0;
+            }
+            out.flush();
+        }
+
+        private void ensureCapacity(int additional) {
+            if (size + additional > buffer.length) {
+                byte[] grown = new byte[Math.max(buffer.length * 2, size + additional)];
+                System.arraycopy(buffer, 0, grown, 0, size);
+                buffer = grown;
+            }
+        }
+    }
+}
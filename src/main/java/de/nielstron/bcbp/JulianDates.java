@@ -0,0 +1,129 @@
+package de.nielstron.bcbp;
+
+import java.time.LocalDate;
+import java.time.Year;
+
+/**
+ * Precomputed resolution of BCBP's year-less dates against one reference year.
+ *
+ * <p>A flight date is a day of year in the reference year, or in the issuance year or the year after when
+ * the pass carries an issuance date. An issuance date is a day of year in the year closest to the reference
+ * year that ends in the given digit, which is at most five years away. So every date the parser can produce
+ * lies between five years before and six years after the reference year, and this table holds all of them as
+ * shared {@link LocalDate} instances: resolving a date is a pair of array lookups with no allocation and no
+ * exceptions. Years outside the window, which only direct callers can ask for, are computed instead.
+ *
+ * <p>Instances are immutable. {@link #forYear(int)} shares them between parsers; a parser whose clock moves
+ * into a new year picks up that year's table the first time it resolves a date there.
+ */
+final class JulianDates {
+
+    private static final int YEARS_BEFORE = 5;
+    private static final int YEARS_AFTER = 6;
+    private static final int DAYS = 367;
+
+    /**
+     * Direct-mapped by reference year. Racy publication is fine: every field is final, so a thread either
+     * sees a complete table or builds one itself.
+     */
+    private static final JulianDates[] SHARED = new JulianDates[8];
+
+    private final int referenceYear;
+    private final int firstYear;
+    /** {@code dates[year - firstYear][dayOfYear]}, {@code null} for day 366 of a common year and for day 0. */
+    private final LocalDate[][] dates;
+    /** {@code dates[row][day].plusYears(1)}, taken from the next row; the last row has none. */
+    private final LocalDate[][] nextYear;
+    /** Row of the year closest to the reference year that ends in each digit. */
+    private final int[] rowByLastDigit = new int[10];
+
+    private JulianDates(int referenceYear) {
+        this.referenceYear = referenceYear;
+        this.firstYear = referenceYear - YEARS_BEFORE;
+        int years = YEARS_BEFORE + 1 + YEARS_AFTER;
+        this.dates = new LocalDate[years][];
+        for (int row = 0; row < years; row++) {
+            dates[row] = new LocalDate[DAYS];
+            for (int day = 1; day < DAYS; day++) {
+                dates[row][day] = compute(firstYear + row, day);
+            }
+        }
+        this.nextYear = new LocalDate[years - 1][];
+        for (int row = 0; row < years - 1; row++) {
+            nextYear[row] = new LocalDate[DAYS];
+            for (int day = 1; day < DAYS; day++) {
+                LocalDate date = dates[row][day];
+                nextYear[row][day] = date == null ? null : dates[row + 1][date.plusYears(1).getDayOfYear()];
+            }
+        }
+        for (int digit = 0; digit < 10; digit++) {
+            rowByLastDigit[digit] = closestYearWithLastDigit(referenceYear, digit) - firstYear;
+        }
+    }
+
+    /** The table for {@code referenceYear}, shared with every other caller asking for the same year. */
+    static JulianDates forYear(int referenceYear) {
+        int slot = referenceYear & (SHARED.length - 1);
+        JulianDates shared = SHARED[slot];
+        if (shared == null || shared.referenceYear != referenceYear) {
+            shared = new JulianDates(referenceYear);
+            SHARED[slot] = shared;
+        }
+        return shared;
+    }
+
+    int referenceYear() {
+        return referenceYear;
+    }
+
+    /** {@code LocalDate.ofYearDay(year, dayOfYear)}, or {@code null} where that would throw. */
+    LocalDate date(int year, int dayOfYear) {
+        if (dayOfYear < 1 || dayOfYear >= DAYS) {
+            return null;
+        }
+        int row = year - firstYear;
+        return row >= 0 && row < dates.length ? dates[row][dayOfYear] : compute(year, dayOfYear);
+    }
+
+    /** The issuance date for a {@code yearDigit} and day of year: the closest year ending in that digit. */
+    LocalDate issuanceDate(int yearDigit, int dayOfYear) {
+        if (dayOfYear < 1 || dayOfYear >= DAYS) {
+            return null;
+        }
+        return dates[rowByLastDigit[yearDigit]][dayOfYear];
+    }
+
+    /**
+     * The flight date for a day of year: in the reference year, or, when the pass has an issuance date, in
+     * the issuance year unless that falls before issuance, in which case a year later.
+     */
+    LocalDate flightDate(int dayOfYear, LocalDate issuanceDate) {
+        LocalDate candidate = date(referenceYear, dayOfYear);
+        if (candidate == null || issuanceDate == null) {
+            return candidate;
+        }
+        int issuanceYear = issuanceDate.getYear();
+        LocalDate dateInIssueYear = date(issuanceYear, dayOfYear);
+        if (dateInIssueYear == null) {
+            return candidate;
+        }
+        if (!dateInIssueYear.isBefore(issuanceDate)) {
+            return dateInIssueYear;
+        }
+        int row = issuanceYear - firstYear;
+        return row >= 0 && row < nextYear.length ? nextYear[row][dayOfYear] : dateInIssueYear.plusYears(1);
+    }
+
+    /** The year nearest {@code referenceYear} whose last digit is {@code digit}; ties go to the earlier year. */
+    static int closestYearWithLastDigit(int referenceYear, int digit) {
+        int ahead = Math.floorMod(digit - referenceYear, 10);
+        return ahead < 5 ? referenceYear + ahead : referenceYear + ahead - 10;
+    }
+
+    private static LocalDate compute(int year, int dayOfYear) {
+        if (year < Year.MIN_VALUE || year > Year.MAX_VALUE || (dayOfYear == 366 && !Year.isLeap(year))) {
+            return null;
+        }
+        return LocalDate.ofYearDay(year, dayOfYear);
+    }
+}
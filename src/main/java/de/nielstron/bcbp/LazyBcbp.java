@@ -0,0 +1,306 @@
+package de.nielstron.bcbp;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Lazily decoded view of a BCBP payload, created by {@link IataBcbp#parseLazy(String)}.
+ *
+ * <p>The payload is validated up front exactly like {@link IataBcbp#parse(String)}, but the view only keeps
+ * an offset table into it. Each field is decoded the first time its getter is called and then remembered.
+ * Getters return the same values as the identically named getters of {@link IataBcbp.Parsed} and
+ * {@link IataBcbp.Leg}.
+ *
+ * <p>Instances are safe to share between threads; under contention a field may be decoded more than once,
+ * which is harmless because every decoded value is immutable.
+ */
+public final class LazyBcbp {
+
+    private static final Object NULL = new Object();
+
+    private static final int PASSENGER_NAME = 0;
+    private static final int TICKET_INDICATOR = 1;
+    private static final int VERSION_NUMBER_INDICATOR = 2;
+    private static final int VERSION_NUMBER = 3;
+    private static final int UNIQUE_CONDITIONAL = 4;
+    private static final int SECURITY_DATA = 5;
+    private static final int AIRLINE_DATA = 6;
+    private static final int LEGS = 7;
+    private static final int FORMAT_CODE = 8;
+
+    private final BcbpLayout layout;
+    private final JulianDates dates;
+    private final Object[] values = new Object[9];
+
+    LazyBcbp(BcbpLayout layout, JulianDates dates) {
+        this.layout = layout;
+        this.dates = dates;
+    }
+
+    /** Decodes every remaining field into an eagerly built {@link IataBcbp.Parsed}. */
+    public IataBcbp.Parsed toParsed() {
+        return IataBcbp.materialize(layout, dates);
+    }
+
+    public String getFormatCode() {
+        Object value = values[FORMAT_CODE];
+        if (value == null) {
+            value = store(values, FORMAT_CODE, layout.raw(BcbpLayout.FORMAT_CODE));
+        }
+        return (String) unwrap(value);
+    }
+
+    public int getNumberOfLegs() {
+        return layout.numberOfLegs();
+    }
+
+    public String getPassengerName() {
+        Object value = values[PASSENGER_NAME];
+        if (value == null) {
+            value = store(values, PASSENGER_NAME, IataBcbp.passengerName(layout));
+        }
+        return (String) unwrap(value);
+    }
+
+    public String getTicketIndicator() {
+        Object value = values[TICKET_INDICATOR];
+        if (value == null) {
+            value = store(values, TICKET_INDICATOR, layout.codeToEmpty(BcbpLayout.TICKET_INDICATOR));
+        }
+        return (String) unwrap(value);
+    }
+
+    public String getVersionNumberIndicator() {
+        Object value = values[VERSION_NUMBER_INDICATOR];
+        if (value == null) {
+            String indicator = layout.conditionalSize(0) > 0 ? layout.trimEndToEmpty(BcbpLayout.VERSION_INDICATOR) : null;
+            value = store(values, VERSION_NUMBER_INDICATOR, indicator);
+        }
+        return (String) unwrap(value);
+    }
+
+    public Integer getVersionNumber() {
+        Object value = values[VERSION_NUMBER];
+        if (value == null) {
+            Integer number = layout.conditionalSize(0) > 0 ? IataBcbp.toInteger(layout.trimmedInt(BcbpLayout.VERSION_NUMBER)) : null;
+            value = store(values, VERSION_NUMBER, number);
+        }
+        return (Integer) unwrap(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<Leg> getLegs() {
+        Object value = values[LEGS];
+        if (value == null) {
+            Leg[] legs = new Leg[layout.numberOfLegs()];
+            for (int legIndex = 0; legIndex < legs.length; legIndex++) {
+                legs[legIndex] = new Leg(this, legIndex);
+            }
+            value = store(values, LEGS, List.of(legs));
+        }
+        return (List<Leg>) value;
+    }
+
+    public IataBcbp.UniqueConditional getUniqueConditional() {
+        Object value = values[UNIQUE_CONDITIONAL];
+        if (value == null) {
+            value = store(values, UNIQUE_CONDITIONAL, IataBcbp.uniqueConditional(layout, dates));
+        }
+        return (IataBcbp.UniqueConditional) unwrap(value);
+    }
+
+    public IataBcbp.SecurityData getSecurityData() {
+        Object value = values[SECURITY_DATA];
+        if (value == null) {
+            value = store(values, SECURITY_DATA, IataBcbp.securityData(layout));
+        }
+        return (IataBcbp.SecurityData) unwrap(value);
+    }
+
+    public String getAirlineData() {
+        Object value = values[AIRLINE_DATA];
+        if (value == null) {
+            value = store(values, AIRLINE_DATA, layout.trimToNull(BcbpLayout.AIRLINE_DATA));
+        }
+        return (String) unwrap(value);
+    }
+
+    public Leg getFirstLeg() {
+        return getLegs().get(0);
+    }
+
+    public String getFromAirport() {
+        return getFirstLeg().getFromAirport();
+    }
+
+    public String getToAirport() {
+        return getFirstLeg().getToAirport();
+    }
+
+    public String getCarrierCode() {
+        return getFirstLeg().getOperatingCarrier();
+    }
+
+    public String getFlightNumber() {
+        return getFirstLeg().getFlightNumber();
+    }
+
+    public LocalDate getFlightDate() {
+        return getFirstLeg().getFlightDate();
+    }
+
+    public String getTravelClass() {
+        return getFirstLeg().getCompartmentCode();
+    }
+
+    public String getSeat() {
+        return getFirstLeg().getSeatNumber();
+    }
+
+    public String getPnr() {
+        return getFirstLeg().getPnrCode();
+    }
+
+    public String getCheckInSequence() {
+        return getFirstLeg().getCheckInSequenceNumber();
+    }
+
+    public String getPassengerStatus() {
+        return getFirstLeg().getPassengerStatus();
+    }
+
+    public String flightCode() {
+        return getFirstLeg().flightCode();
+    }
+
+    public String summary() {
+        return IataBcbp.summary(getFromAirport(), getToAirport(), flightCode(), getSeat());
+    }
+
+    private static Object store(Object[] values, int index, Object value) {
+        Object stored = value == null ? NULL : value;
+        values[index] = stored;
+        return stored;
+    }
+
+    private static Object unwrap(Object value) {
+        return value == NULL ? null : value;
+    }
+
+    /** Lazily decoded view of one leg; mirrors {@link IataBcbp.Leg}. */
+    public static final class Leg {
+        private static final int PNR_CODE = 0;
+        private static final int FROM_AIRPORT = 1;
+        private static final int TO_AIRPORT = 2;
+        private static final int OPERATING_CARRIER = 3;
+        private static final int FLIGHT_NUMBER = 4;
+        private static final int FLIGHT_DATE = 5;
+        private static final int COMPARTMENT_CODE = 6;
+        private static final int SEAT_NUMBER = 7;
+        private static final int CHECK_IN_SEQUENCE_NUMBER = 8;
+        private static final int PASSENGER_STATUS = 9;
+        private static final int REPEATED_CONDITIONAL = 10;
+        private static final int FLIGHT_CODE = 11;
+
+        private final LazyBcbp pass;
+        private final int legIndex;
+        private final int base;
+        private final Object[] values = new Object[12];
+
+        private Leg(LazyBcbp pass, int legIndex) {
+            this.pass = pass;
+            this.legIndex = legIndex;
+            this.base = BcbpLayout.legSlot(legIndex, 0);
+        }
+
+        public String getPnrCode() {
+            return trimmed(PNR_CODE, BcbpLayout.PNR);
+        }
+
+        public String getFromAirport() {
+            return code(FROM_AIRPORT, BcbpLayout.FROM_AIRPORT);
+        }
+
+        public String getToAirport() {
+            return code(TO_AIRPORT, BcbpLayout.TO_AIRPORT);
+        }
+
+        public String getOperatingCarrier() {
+            return code(OPERATING_CARRIER, BcbpLayout.OPERATING_CARRIER);
+        }
+
+        public String getFlightNumber() {
+            return paddedNumber(FLIGHT_NUMBER, BcbpLayout.FLIGHT_NUMBER);
+        }
+
+        public LocalDate getFlightDate() {
+            Object value = values[FLIGHT_DATE];
+            if (value == null) {
+                IataBcbp.UniqueConditional unique = pass.getUniqueConditional();
+                LocalDate issuanceDate = unique != null ? unique.getIssuanceDate() : null;
+                value = store(values, FLIGHT_DATE, IataBcbp.flightDate(pass.layout, legIndex, issuanceDate, pass.dates));
+            }
+            return (LocalDate) unwrap(value);
+        }
+
+        public String getCompartmentCode() {
+            return code(COMPARTMENT_CODE, BcbpLayout.COMPARTMENT);
+        }
+
+        public String getSeatNumber() {
+            return paddedNumber(SEAT_NUMBER, BcbpLayout.SEAT);
+        }
+
+        public String getCheckInSequenceNumber() {
+            return paddedNumber(CHECK_IN_SEQUENCE_NUMBER, BcbpLayout.CHECK_IN_SEQUENCE);
+        }
+
+        public String getPassengerStatus() {
+            return code(PASSENGER_STATUS, BcbpLayout.PASSENGER_STATUS);
+        }
+
+        public int getConditionalSize() {
+            return pass.layout.conditionalSize(legIndex);
+        }
+
+        public IataBcbp.RepeatedConditional getRepeatedConditional() {
+            Object value = values[REPEATED_CONDITIONAL];
+            if (value == null) {
+                value = store(values, REPEATED_CONDITIONAL, IataBcbp.repeatedConditional(pass.layout, base));
+            }
+            return (IataBcbp.RepeatedConditional) unwrap(value);
+        }
+
+        public String flightCode() {
+            Object value = values[FLIGHT_CODE];
+            if (value == null) {
+                value = store(values, FLIGHT_CODE, IataBcbp.flightCode(getOperatingCarrier(), getFlightNumber()));
+            }
+            return (String) value;
+        }
+
+        private String trimmed(int index, int field) {
+            Object value = values[index];
+            if (value == null) {
+                value = store(values, index, pass.layout.trimToEmpty(base + field));
+            }
+            return (String) value;
+        }
+
+        private String code(int index, int field) {
+            Object value = values[index];
+            if (value == null) {
+                value = store(values, index, pass.layout.codeToEmpty(base + field));
+            }
+            return (String) value;
+        }
+
+        private String paddedNumber(int index, int field) {
+            Object value = values[index];
+            if (value == null) {
+                value = store(values, index, IataBcbp.paddedNumber(pass.layout, base + field));
+            }
+            return (String) value;
+        }
+    }
+}
@@ -0,0 +1,541 @@
+package de.nielstron.bcbp;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Reusable parse target for {@link BcbpParser#parseInto(CharSequence, MutableBcbp)}, for loops that parse
+ * one pass at a time and are done with it before the next.
+ *
+ * <p>The holder copies the payload into its own char array and keeps the offset table of the last scan.
+ * Getters return {@link CharSequence} views into that array instead of Strings, one preallocated view per
+ * field, so once the array has grown to the longest payload seen, parsing and reading text fields allocates
+ * nothing. Views follow the holder: the next {@code parseInto} changes what they show, so call
+ * {@code toString()} on anything that must outlive it. Compare views with
+ * {@link CharSequence#compare(CharSequence, CharSequence)}. Dates come from the parser's precomputed tables,
+ * so reading them allocates nothing either.
+ *
+ * <p>Text getters return what the identically named getters of {@link IataBcbp.Parsed},
+ * {@link IataBcbp.Leg} and the conditional sections return, including {@code ""} versus {@code null}. Numbers
+ * that are absent are {@code -1} rather than {@code null}. {@link #toParsed()} takes an immutable snapshot.
+ *
+ * <p>Not thread-safe; use one holder per thread.
+ */
+public final class MutableBcbp {
+
+    private static final int INITIAL_CAPACITY = 256;
+    /** Bag tags that fit in a unique conditional section, whose size is two hex digits. */
+    private static final int MAX_BAG_TAGS = 0xFF / BcbpLayout.BAG_TAG_LENGTH;
+
+    private static final int FORMAT_CODE = 0;
+    private static final int TICKET_INDICATOR = 1;
+    private static final int VERSION_INDICATOR = 2;
+    private static final int PASSENGER_DESCRIPTION = 3;
+    private static final int CHECK_IN_SOURCE = 4;
+    private static final int ISSUANCE_SOURCE = 5;
+    private static final int DOCUMENT_TYPE = 6;
+    private static final int ISSUING_AIRLINE = 7;
+    private static final int SECURITY_TYPE = 8;
+    private static final int SECURITY_DATA = 9;
+    private static final int AIRLINE_DATA = 10;
+    private static final int BAG_TAGS = 11;
+    private static final int HEADER_VIEWS = BAG_TAGS + MAX_BAG_TAGS;
+
+    private final BcbpLayout layout = new BcbpLayout();
+    private final View text = new View();
+    private final View[] views = newViews(this, HEADER_VIEWS);
+    private final Leg[] legs = new Leg[BcbpLayout.MAX_LEGS];
+    private final StringBuilder passengerName = new StringBuilder(BcbpLayout.HEADER_LENGTH);
+    private final int[] bagTagStarts = new int[MAX_BAG_TAGS];
+    private char[] chars = new char[INITIAL_CAPACITY];
+    private boolean valid;
+    private JulianDates dates;
+    private boolean passengerNameFormatted;
+    private int bagTagCount = -1;
+    private boolean issuanceDateDecoded;
+    private LocalDate issuanceDate;
+
+    public MutableBcbp() {
+        for (int legIndex = 0; legIndex < legs.length; legIndex++) {
+            legs[legIndex] = new Leg(this, legIndex);
+        }
+        reset();
+    }
+
+    /** Drops the last pass; {@link #isValid()} is {@code false} until the next successful parse. */
+    public void reset() {
+        text.set(0, 0);
+        layout.reject(ParseResult.Failure.NULL_INPUT, -1);
+        onScanned(false, null);
+    }
+
+    /** Whether the last parse accepted its payload. Every other getter requires it. */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /** Why the last parse rejected its payload, or {@code null} after a success; see {@link ParseResult}. */
+    public ParseResult.Failure getFailure() {
+        return valid ? null : layout.failure();
+    }
+
+    /** {@link ParseResult#getOffset()} of the last rejection, or {@code -1} after a success. */
+    public int getFailureOffset() {
+        return valid ? -1 : layout.failureOffset();
+    }
+
+    /** {@link ParseResult#getLegIndex()} of the last rejection, or {@code -1} after a success. */
+    public int getFailureLeg() {
+        return valid ? -1 : layout.failureLeg();
+    }
+
+    /** Copies the current pass into an immutable {@link IataBcbp.Parsed}. */
+    public IataBcbp.Parsed toParsed() {
+        checkValid();
+        return IataBcbp.materialize(layout, dates);
+    }
+
+    public CharSequence getFormatCode() {
+        checkValid();
+        return raw(views[FORMAT_CODE], BcbpLayout.FORMAT_CODE);
+    }
+
+    public int getNumberOfLegs() {
+        checkValid();
+        return layout.numberOfLegs();
+    }
+
+    /** The formatted name, as {@link IataBcbp.Parsed#getPassengerName()}; a reused builder, not a view. */
+    public CharSequence getPassengerName() {
+        checkValid();
+        if (!passengerNameFormatted) {
+            passengerName.setLength(0);
+            IataBcbp.appendPrettyPassengerName(
+                text, layout.start(BcbpLayout.PASSENGER_NAME), layout.end(BcbpLayout.PASSENGER_NAME), passengerName);
+            passengerNameFormatted = true;
+        }
+        return passengerName;
+    }
+
+    public CharSequence getTicketIndicator() {
+        checkValid();
+        return trimToEmpty(views[TICKET_INDICATOR], BcbpLayout.TICKET_INDICATOR);
+    }
+
+    public CharSequence getVersionNumberIndicator() {
+        checkValid();
+        if (layout.conditionalSize(0) <= 0) {
+            return null;
+        }
+        return trimEndToEmpty(views[VERSION_INDICATOR], BcbpLayout.VERSION_INDICATOR);
+    }
+
+    /** The version number, or {@code -1} when there is none. */
+    public int getVersionNumber() {
+        checkValid();
+        if (layout.conditionalSize(0) <= 0) {
+            return -1;
+        }
+        int number = layout.trimmedInt(BcbpLayout.VERSION_NUMBER);
+        return number == BcbpLayout.NO_VALUE ? -1 : number;
+    }
+
+    /** The leg slot at {@code legIndex}, below {@link #getNumberOfLegs()}. Slots are reused across parses. */
+    public Leg getLeg(int legIndex) {
+        checkValid();
+        Objects.checkIndex(legIndex, layout.numberOfLegs());
+        return legs[legIndex];
+    }
+
+    public Leg getFirstLeg() {
+        return getLeg(0);
+    }
+
+    /** Whether the pass has a unique conditional section; the getters below return {@code null} otherwise. */
+    public boolean hasUniqueConditional() {
+        checkValid();
+        return layout.isPresent(BcbpLayout.UNIQUE_SECTION);
+    }
+
+    public CharSequence getPassengerDescription() {
+        return uniqueField(views[PASSENGER_DESCRIPTION], BcbpLayout.UNIQUE_PASSENGER_DESCRIPTION);
+    }
+
+    public CharSequence getCheckInSource() {
+        return uniqueField(views[CHECK_IN_SOURCE], BcbpLayout.UNIQUE_CHECK_IN_SOURCE);
+    }
+
+    public CharSequence getBoardingPassIssuanceSource() {
+        return uniqueField(views[ISSUANCE_SOURCE], BcbpLayout.UNIQUE_ISSUANCE_SOURCE);
+    }
+
+    public LocalDate getIssuanceDate() {
+        if (!hasUniqueConditional()) {
+            return null;
+        }
+        return issuanceDate();
+    }
+
+    public CharSequence getDocumentType() {
+        return uniqueField(views[DOCUMENT_TYPE], BcbpLayout.UNIQUE_DOCUMENT_TYPE);
+    }
+
+    public CharSequence getIssuingAirline() {
+        return uniqueField(views[ISSUING_AIRLINE], BcbpLayout.UNIQUE_ISSUING_AIRLINE);
+    }
+
+    /** Number of non-blank bag tags, as in {@link IataBcbp.UniqueConditional#getBagTagNumbers()}. */
+    public int getBagTagCount() {
+        checkValid();
+        if (bagTagCount < 0) {
+            int count = 0;
+            if (layout.isPresent(BcbpLayout.UNIQUE_BAG_TAGS)) {
+                int end = layout.end(BcbpLayout.UNIQUE_BAG_TAGS);
+                for (int start = layout.start(BcbpLayout.UNIQUE_BAG_TAGS); start < end; start += BcbpLayout.BAG_TAG_LENGTH) {
+                    if (!BcbpLayout.isBlank(text, start, start + BcbpLayout.BAG_TAG_LENGTH)) {
+                        bagTagStarts[count++] = start;
+                    }
+                }
+            }
+            bagTagCount = count;
+        }
+        return bagTagCount;
+    }
+
+    public CharSequence getBagTag(int index) {
+        Objects.checkIndex(index, getBagTagCount());
+        int start = bagTagStarts[index];
+        return trimmed(views[BAG_TAGS + index], start, start + BcbpLayout.BAG_TAG_LENGTH);
+    }
+
+    /** Whether the pass has a security section; {@link #getSecurityType()} and {@link #getSecurityData()} need it. */
+    public boolean hasSecurityData() {
+        checkValid();
+        return layout.isPresent(BcbpLayout.SECURITY_DATA);
+    }
+
+    public CharSequence getSecurityType() {
+        return hasSecurityData() ? trimToEmpty(views[SECURITY_TYPE], BcbpLayout.SECURITY_TYPE) : null;
+    }
+
+    public CharSequence getSecurityData() {
+        return hasSecurityData() ? trimEndToEmpty(views[SECURITY_DATA], BcbpLayout.SECURITY_DATA) : null;
+    }
+
+    public CharSequence getAirlineData() {
+        checkValid();
+        return trimToNull(views[AIRLINE_DATA], BcbpLayout.AIRLINE_DATA);
+    }
+
+    /** Mutable view of one leg of the current pass; mirrors {@link IataBcbp.Leg} and its repeated section. */
+    public static final class Leg {
+        private static final int PNR = 0;
+        private static final int FROM_AIRPORT = 1;
+        private static final int TO_AIRPORT = 2;
+        private static final int OPERATING_CARRIER = 3;
+        private static final int FLIGHT_NUMBER = 4;
+        private static final int COMPARTMENT = 5;
+        private static final int SEAT = 6;
+        private static final int CHECK_IN_SEQUENCE = 7;
+        private static final int PASSENGER_STATUS = 8;
+        private static final int AIRLINE_NUMERIC_CODE = 9;
+        private static final int DOCUMENT_SERIAL = 10;
+        private static final int SELECTEE = 11;
+        private static final int DOCUMENT_VERIFICATION = 12;
+        private static final int MARKETING_CARRIER = 13;
+        private static final int FREQUENT_FLYER_AIRLINE = 14;
+        private static final int FREQUENT_FLYER_NUMBER = 15;
+        private static final int ID_AD = 16;
+        private static final int FREE_BAGGAGE = 17;
+        private static final int AIRLINE_USE = 18;
+        private static final int VIEWS = 19;
+
+        private final MutableBcbp pass;
+        private final int legIndex;
+        private final int base;
+        private final View[] views;
+
+        private Leg(MutableBcbp pass, int legIndex) {
+            this.pass = pass;
+            this.legIndex = legIndex;
+            this.base = BcbpLayout.legSlot(legIndex, 0);
+            this.views = newViews(pass, VIEWS);
+        }
+
+        public CharSequence getPnrCode() {
+            return pass.trimToEmpty(views[PNR], base + BcbpLayout.PNR);
+        }
+
+        public CharSequence getFromAirport() {
+            return pass.trimToEmpty(views[FROM_AIRPORT], base + BcbpLayout.FROM_AIRPORT);
+        }
+
+        public CharSequence getToAirport() {
+            return pass.trimToEmpty(views[TO_AIRPORT], base + BcbpLayout.TO_AIRPORT);
+        }
+
+        public CharSequence getOperatingCarrier() {
+            return pass.trimToEmpty(views[OPERATING_CARRIER], base + BcbpLayout.OPERATING_CARRIER);
+        }
+
+        public CharSequence getFlightNumber() {
+            return pass.paddedNumber(views[FLIGHT_NUMBER], base + BcbpLayout.FLIGHT_NUMBER);
+        }
+
+        public LocalDate getFlightDate() {
+            pass.checkValid();
+            return IataBcbp.flightDate(pass.layout, legIndex, pass.issuanceDate(), pass.dates);
+        }
+
+        public CharSequence getCompartmentCode() {
+            return pass.trimToEmpty(views[COMPARTMENT], base + BcbpLayout.COMPARTMENT);
+        }
+
+        public CharSequence getSeatNumber() {
+            return pass.paddedNumber(views[SEAT], base + BcbpLayout.SEAT);
+        }
+
+        public CharSequence getCheckInSequenceNumber() {
+            return pass.paddedNumber(views[CHECK_IN_SEQUENCE], base + BcbpLayout.CHECK_IN_SEQUENCE);
+        }
+
+        public CharSequence getPassengerStatus() {
+            return pass.trimToEmpty(views[PASSENGER_STATUS], base + BcbpLayout.PASSENGER_STATUS);
+        }
+
+        public int getConditionalSize() {
+            pass.checkValid();
+            return pass.layout.conditionalSize(legIndex);
+        }
+
+        /** Whether the leg has a repeated conditional section; the getters below return {@code null} otherwise. */
+        public boolean hasRepeatedConditional() {
+            pass.checkValid();
+            return pass.layout.isPresent(base + BcbpLayout.REPEATED_SECTION);
+        }
+
+        public CharSequence getAirlineNumericCode() {
+            return repeatedField(views[AIRLINE_NUMERIC_CODE], BcbpLayout.REPEATED_AIRLINE_NUMERIC_CODE);
+        }
+
+        public CharSequence getDocumentSerialNumber() {
+            return repeatedField(views[DOCUMENT_SERIAL], BcbpLayout.REPEATED_DOCUMENT_SERIAL);
+        }
+
+        public CharSequence getSelecteeIndicator() {
+            return repeatedField(views[SELECTEE], BcbpLayout.REPEATED_SELECTEE);
+        }
+
+        public CharSequence getInternationalDocumentVerification() {
+            return repeatedField(views[DOCUMENT_VERIFICATION], BcbpLayout.REPEATED_DOCUMENT_VERIFICATION);
+        }
+
+        public CharSequence getMarketingCarrierDesignator() {
+            return repeatedField(views[MARKETING_CARRIER], BcbpLayout.REPEATED_MARKETING_CARRIER);
+        }
+
+        public CharSequence getFrequentFlyerAirlineDesignator() {
+            int slot = base + BcbpLayout.REPEATED_FREQUENT_FLYER;
+            if (!hasRepeatedConditional() || !pass.layout.isPresent(slot)) {
+                return null;
+            }
+            int start = pass.layout.start(slot);
+            return pass.trimmed(views[FREQUENT_FLYER_AIRLINE], start, Math.min(start + 3, pass.layout.end(slot)));
+        }
+
+        public CharSequence getFrequentFlyerNumber() {
+            int slot = base + BcbpLayout.REPEATED_FREQUENT_FLYER;
+            if (!hasRepeatedConditional() || !pass.layout.isPresent(slot)) {
+                return null;
+            }
+            int end = pass.layout.end(slot);
+            return pass.trimmed(views[FREQUENT_FLYER_NUMBER], Math.min(pass.layout.start(slot) + 3, end), end);
+        }
+
+        public CharSequence getIdAdIndicator() {
+            return repeatedField(views[ID_AD], BcbpLayout.REPEATED_ID_AD);
+        }
+
+        public CharSequence getFreeBaggageAllowance() {
+            return repeatedField(views[FREE_BAGGAGE], BcbpLayout.REPEATED_FREE_BAGGAGE);
+        }
+
+        public Boolean getFastTrack() {
+            if (!hasRepeatedConditional()) {
+                return null;
+            }
+            int slot = base + BcbpLayout.REPEATED_FAST_TRACK;
+            if (pass.layout.trimmedEquals(slot, 'Y')) {
+                return Boolean.TRUE;
+            }
+            return pass.layout.trimmedEquals(slot, 'N') ? Boolean.FALSE : null;
+        }
+
+        public CharSequence getAirlineUse() {
+            return repeatedField(views[AIRLINE_USE], BcbpLayout.REPEATED_AIRLINE_USE);
+        }
+
+        private CharSequence repeatedField(View view, int field) {
+            return hasRepeatedConditional() ? pass.trimToNull(view, base + field) : null;
+        }
+    }
+
+    BcbpLayout layout() {
+        return layout;
+    }
+
+    /** Copies {@code rawMessage} into the holder, dropping CR/LF when asked, and returns the copy. */
+    CharSequence load(CharSequence rawMessage, boolean stripLineBreaks) {
+        int length = rawMessage.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        int copied = 0;
+        if (rawMessage instanceof String value && !stripLineBreaks) {
+            value.getChars(0, length, chars, 0);
+            copied = length;
+        } else {
+            for (int i = 0; i < length; i++) {
+                char c = rawMessage.charAt(i);
+                if (!stripLineBreaks || (c != '\r' && c != '\n')) {
+                    chars[copied++] = c;
+                }
+            }
+        }
+        return text.set(0, copied);
+    }
+
+    /** Called by the parser after every scan of {@link #layout()}. */
+    void onScanned(boolean accepted, JulianDates dates) {
+        this.valid = accepted;
+        this.dates = dates;
+        this.passengerNameFormatted = false;
+        this.bagTagCount = -1;
+        this.issuanceDateDecoded = false;
+        this.issuanceDate = null;
+    }
+
+    private void checkValid() {
+        if (!valid) {
+            throw new IllegalStateException("No pass: the last parse was rejected (" + layout.failure() + ")");
+        }
+    }
+
+    private LocalDate issuanceDate() {
+        if (!issuanceDateDecoded) {
+            issuanceDate = layout.isPresent(BcbpLayout.UNIQUE_SECTION) ? IataBcbp.decodeIssueDate(layout, dates) : null;
+            issuanceDateDecoded = true;
+        }
+        return issuanceDate;
+    }
+
+    private CharSequence uniqueField(View view, int slot) {
+        return hasUniqueConditional() ? trimToNull(view, slot) : null;
+    }
+
+    private CharSequence raw(View view, int slot) {
+        return layout.isPresent(slot) ? view.set(layout.start(slot), layout.end(slot)) : null;
+    }
+
+    private CharSequence trimToEmpty(View view, int slot) {
+        checkValid();
+        if (!layout.isPresent(slot)) {
+            return view.set(0, 0);
+        }
+        int start = BcbpLayout.trimStart(text, layout.start(slot), layout.end(slot));
+        return view.set(start, BcbpLayout.trimEnd(text, start, layout.end(slot)));
+    }
+
+    private CharSequence trimToNull(View view, int slot) {
+        checkValid();
+        return layout.isPresent(slot) ? trimmed(view, layout.start(slot), layout.end(slot)) : null;
+    }
+
+    /** {@link BcbpLayout#trimToNull(int, int)} of {@code [start, end)} as a view. */
+    private CharSequence trimmed(View view, int start, int end) {
+        int trimmedStart = BcbpLayout.trimStart(text, start, end);
+        int trimmedEnd = BcbpLayout.trimEnd(text, trimmedStart, end);
+        return BcbpLayout.isBlank(text, trimmedStart, trimmedEnd) ? null : view.set(trimmedStart, trimmedEnd);
+    }
+
+    private CharSequence trimEndToEmpty(View view, int slot) {
+        checkValid();
+        if (!layout.isPresent(slot)) {
+            return view.set(0, 0);
+        }
+        int start = layout.start(slot);
+        int end = layout.end(slot);
+        char last = end > start ? chars[end - 1] : ' ';
+        if (last == '\u0085' || last == '\u2028' || last == '\u2029') {
+            // Whitespace cut from before a final line terminator leaves no contiguous range to view.
+            return layout.trimEndToEmpty(slot);
+        }
+        while (end > start && BcbpLayout.isRegexWhitespace(chars[end - 1])) {
+            end--;
+        }
+        return view.set(start, end);
+    }
+
+    /** {@link IataBcbp#paddedNumber(BcbpLayout, int)} as a view: leading zeros are a prefix of the field. */
+    private CharSequence paddedNumber(View view, int slot) {
+        checkValid();
+        if (layout.isBlank(slot)) {
+            return view.set(0, 0);
+        }
+        int start = BcbpLayout.trimStart(text, layout.start(slot), layout.end(slot));
+        int end = BcbpLayout.trimEnd(text, start, layout.end(slot));
+        int digitsEnd = chars[end - 1] >= 'A' && chars[end - 1] <= 'Z' ? end - 1 : end;
+        for (int i = start; i < digitsEnd; i++) {
+            if (chars[i] < '0' || chars[i] > '9') {
+                return view.set(start, end);
+            }
+        }
+        while (start < digitsEnd - 1 && chars[start] == '0') {
+            start++;
+        }
+        return view.set(start, end);
+    }
+
+    private static View[] newViews(MutableBcbp pass, int count) {
+        View[] views = new View[count];
+        for (int i = 0; i < count; i++) {
+            views[i] = pass.new View();
+        }
+        return views;
+    }
+
+    /** Window onto the holder's current char array. */
+    private final class View implements CharSequence {
+        private int start;
+        private int end;
+
+        View set(int start, int end) {
+            this.start = start;
+            this.end = end;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            Objects.checkIndex(index, end - start);
+            return chars[start + index];
+        }
+
+        /** Returns a String copy: a view of a view would change with this one. */
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            Objects.checkFromToIndex(from, to, end - start);
+            return new String(chars, start + from, to - from);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, start, end - start);
+        }
+    }
+}
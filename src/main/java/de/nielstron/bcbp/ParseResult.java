@@ -0,0 +1,170 @@
+package de.nielstron.bcbp;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Outcome of parsing one payload: either the {@link IataBcbp.Parsed} pass or the reason it was rejected.
+ *
+ * <p>A rejection carries the {@link Failure}, the offset of the offending field counted from the start of the
+ * payload as scanned (after line breaks and the symbology identifier are removed), and the leg it belongs to.
+ * Rejections are shared instances, so reporting them allocates nothing once a given failure has been seen;
+ * rejections past the first 512 characters, which only hostile payloads produce, share a bounded table.
+ */
+public final class ParseResult {
+
+    /** Why a payload was rejected. */
+    public enum Failure {
+        /** The payload was {@code null}. */
+        NULL_INPUT,
+        /** Shorter than the header plus one leg's mandatory fields; the offset is the payload length. */
+        TOO_SHORT,
+        /** The format code is neither {@code M} nor {@code S}. */
+        FORMAT_CODE,
+        /** The number of legs is not a digit from 1 to 9. */
+        LEG_COUNT,
+        /** The passenger name block contains characters no name can hold. */
+        PASSENGER_NAME,
+        /** A leg's conditional size is not two hex digits, or the leg is cut off before it. */
+        CONDITIONAL_SIZE,
+        FROM_AIRPORT,
+        TO_AIRPORT,
+        OPERATING_CARRIER,
+        FLIGHT_NUMBER,
+        /** The flight date is neither blank nor a day of year from 1 to 366. */
+        DAY_OF_YEAR,
+        /** A leg's conditional section runs past the end of the payload. */
+        CONDITIONAL_OVERFLOW,
+        /** The unique conditional section runs past the end of the first leg's conditional section. */
+        UNIQUE_SIZE,
+        /** Longer than the parser's maximum payload length; the offset is that maximum. */
+        TOO_LONG
+    }
+
+    /** Offsets below this, which cover every real payload, each have a cached rejection instance per failure and leg. */
+    private static final int CACHED_OFFSETS = 512;
+    /** Slots for the rare rejections at larger offsets, which only oversized or hostile payloads produce. */
+    private static final int FAR_SLOTS = 256;
+    private static final int TOO_LONG_SLOTS = 8;
+    private static final int LEG_ROWS = BcbpLayout.MAX_LEGS + 1;
+
+    private static final ParseResult NULL_INPUT = new ParseResult(null, Failure.NULL_INPUT, -1, -1);
+
+    /**
+     * Lazily filled per failure, leg (-1 in row 0) and offset. Racy publication is fine: every field is final,
+     * so a thread either sees a complete instance or fills the slot itself.
+     */
+    private static final ParseResult[][] REJECTIONS = new ParseResult[Failure.values().length * LEG_ROWS][];
+
+    /**
+     * {@link Failure#TOO_LONG} rejections, direct-mapped by offset. Their offset is the parser's maximum payload
+     * length, so each parser needs one slot, kept apart from {@link #FAR_REJECTIONS} so noise cannot evict it.
+     */
+    private static final ParseResult[] TOO_LONG_REJECTIONS = new ParseResult[TOO_LONG_SLOTS];
+
+    /** Rejections at offsets past {@link #CACHED_OFFSETS}, direct-mapped; a collision costs one allocation. */
+    private static final ParseResult[] FAR_REJECTIONS = new ParseResult[FAR_SLOTS];
+
+    private final IataBcbp.Parsed parsed;
+    private final Failure failure;
+    private final int offset;
+    private final int legIndex;
+
+    private ParseResult(IataBcbp.Parsed parsed, Failure failure, int offset, int legIndex) {
+        this.parsed = parsed;
+        this.failure = failure;
+        this.offset = offset;
+        this.legIndex = legIndex;
+    }
+
+    static ParseResult success(IataBcbp.Parsed parsed) {
+        return new ParseResult(parsed, null, -1, -1);
+    }
+
+    static ParseResult nullInput() {
+        return NULL_INPUT;
+    }
+
+    /** The rejection for {@code failure} at {@code offset} in leg {@code legIndex} ({@code -1} for the header). */
+    static ParseResult failure(Failure failure, int offset, int legIndex) {
+        if (offset < 0 || legIndex < -1 || legIndex >= BcbpLayout.MAX_LEGS) {
+            return new ParseResult(null, failure, offset, legIndex);
+        }
+        if (failure == Failure.TOO_LONG) {
+            return directMapped(TOO_LONG_REJECTIONS, offset, failure, offset, legIndex);
+        }
+        if (offset >= CACHED_OFFSETS) {
+            int hash = (offset * 31 + legIndex) * 31 + failure.ordinal();
+            return directMapped(FAR_REJECTIONS, hash ^ hash >>> 8, failure, offset, legIndex);
+        }
+        int row = failure.ordinal() * LEG_ROWS + legIndex + 1;
+        ParseResult[] offsets = REJECTIONS[row];
+        if (offsets == null) {
+            offsets = new ParseResult[CACHED_OFFSETS];
+            REJECTIONS[row] = offsets;
+        }
+        ParseResult rejection = offsets[offset];
+        if (rejection == null) {
+            rejection = new ParseResult(null, failure, offset, legIndex);
+            offsets[offset] = rejection;
+        }
+        return rejection;
+    }
+
+    private static ParseResult directMapped(ParseResult[] table, int hash, Failure failure, int offset, int legIndex) {
+        int slot = hash & (table.length - 1);
+        ParseResult rejection = table[slot];
+        if (rejection == null || rejection.failure != failure || rejection.offset != offset || rejection.legIndex != legIndex) {
+            rejection = new ParseResult(null, failure, offset, legIndex);
+            table[slot] = rejection;
+        }
+        return rejection;
+    }
+
+    /** The rejection recorded by the last failed {@link BcbpLayout#scan(CharSequence, int)}. */
+    static ParseResult failure(BcbpLayout layout) {
+        return failure(layout.failure(), layout.failureOffset(), layout.failureLeg());
+    }
+
+    public boolean isSuccess() {
+        return parsed != null;
+    }
+
+    /** @return the parsed pass, or {@code null} if the payload was rejected */
+    public IataBcbp.Parsed getParsed() {
+        return parsed;
+    }
+
+    /** @throws NoSuchElementException if the payload was rejected */
+    public IataBcbp.Parsed get() {
+        if (parsed == null) {
+            throw new NoSuchElementException("payload was rejected: " + failure);
+        }
+        return parsed;
+    }
+
+    /** @return why the payload was rejected, or {@code null} on success */
+    public Failure getFailure() {
+        return failure;
+    }
+
+    /** @return offset of the offending field in the payload, or {@code -1} on success and for null input */
+    public int getOffset() {
+        return offset;
+    }
+
+    /** @return index of the offending leg, or {@code -1} on success and for header failures */
+    public int getLegIndex() {
+        return legIndex;
+    }
+
+    @Override
+    public String toString() {
+        if (parsed != null) {
+            return "ParseResult[" + parsed.summary() + "]";
+        }
+        if (failure == Failure.NULL_INPUT) {
+            return "ParseResult[rejected: NULL_INPUT]";
+        }
+        return "ParseResult[rejected: " + failure + " at " + offset + (legIndex >= 0 ? ", leg " + legIndex : "") + "]";
+    }
+}
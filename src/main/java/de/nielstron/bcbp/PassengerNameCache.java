@@ -0,0 +1,51 @@
+package de.nielstron.bcbp;
+
+/**
+ * Direct-mapped cache from the raw 20-character name block to its formatted passenger name.
+ *
+ * <p>The same traveller is typically scanned at check-in, security, lounge and gate; a hit skips the
+ * formatting and lets all of those passes share one name String. Entries are immutable, so the table is
+ * read and written without synchronization.
+ */
+final class PassengerNameCache {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final Entry[] table;
+    private final int mask;
+
+    PassengerNameCache(int capacity) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity must be between 1 and " + MAX_CAPACITY + ": " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.table = new Entry[size];
+        this.mask = size - 1;
+    }
+
+    /** @return the formatted name for the raw block {@code [start, end)} of {@code text} */
+    String passengerName(CharSequence text, int start, int end) {
+        int hash = DirectMappedInterner.hash(text, start, end);
+        int index = (hash ^ (hash >>> 16)) & mask;
+        Entry entry = table[index];
+        if (entry != null && DirectMappedInterner.contentEquals(entry.block, text, start, end)) {
+            return entry.name;
+        }
+        String name = IataBcbp.prettyPassengerName(text, start, end);
+        table[index] = new Entry(BcbpLayout.substring(text, start, end), name);
+        return name;
+    }
+
+    private static final class Entry {
+        private final String block;
+        private final String name;
+
+        private Entry(String block, String name) {
+            this.block = block;
+            this.name = name;
+        }
+    }
+}
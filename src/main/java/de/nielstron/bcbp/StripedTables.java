@@ -0,0 +1,112 @@
+package de.nielstron.bcbp;
+
+/**
+ * Building blocks shared by the lock-striped primitive tables of this package: the 6-bit character code that
+ * packs BCBP fields into {@code long} keys, the hash that spreads those keys, table and stripe sizing, and the
+ * two-generation rotation that amortizes expiry into writes.
+ */
+final class StripedTables {
+
+    /** Width of one character packed by {@link #code(char)}. */
+    static final int CHAR_BITS = 6;
+
+    private static final int MAX_STRIPES = 64;
+
+    private StripedTables() {
+    }
+
+    /** 1-10 for digits, 11-36 for upper-case letters, 37 for a space, -1 for anything else; 0 is left for padding. */
+    static int code(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0' + 1;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 11;
+        }
+        return c == ' ' ? 37 : -1;
+    }
+
+    /** The character that {@link #code(char)} maps to {@code code}, which must be 1-37. */
+    static char character(int code) {
+        if (code <= 10) {
+            return (char) ('0' + code - 1);
+        }
+        return code <= 36 ? (char) ('A' + code - 11) : ' ';
+    }
+
+    static long mix(long key) {
+        return mix(key, 0);
+    }
+
+    static long mix(long high, long low) {
+        long hash = high * 0x9E3779B97F4A7C15L ^ low * 0xC2B2AE3D27D4EB4FL;
+        hash ^= hash >>> 31;
+        hash *= 0xBF58476D1CE4E5B9L;
+        return hash ^ hash >>> 29;
+    }
+
+    /** Power-of-two capacity that holds {@code expected} keys at most half full, and at least 16. */
+    static int tableSize(int expected) {
+        int size = Integer.highestOneBit(Math.max(8, expected) * 2 - 1) << 1;
+        return Math.max(16, size);
+    }
+
+    /** Power-of-two stripe count: about four per processor, at most 64. */
+    static int concurrencyLevel() {
+        int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+        return Math.max(1, Math.min(stripes, MAX_STRIPES));
+    }
+
+    /** Shift that turns a hash into a stripe index for a power-of-two {@code stripeCount}; see {@link #stripe}. */
+    static int stripeShift(int stripeCount) {
+        return 64 - Integer.numberOfTrailingZeros(stripeCount);
+    }
+
+    /** Stripe index of {@code hash} from its top bits, which the slot index within a stripe does not use. */
+    static int stripe(long hash, int stripeShift) {
+        return stripeShift == 64 ? 0 : (int) (hash >>> stripeShift);
+    }
+
+    /** A table that {@link Generations} restarts when it recycles it. */
+    abstract static class Generation {
+        long startedAt = Long.MIN_VALUE / 2;
+
+        /** Drops every entry and starts the generation at {@code now}. */
+        abstract void clear(long now);
+    }
+
+    /**
+     * A current and a previous generation that each cover one window. When the current generation is a window
+     * old it becomes the previous one, and the old previous generation, whose entries are all expired by then,
+     * is cleared and reused. Callers hold the stripe's lock.
+     */
+    static class Generations<G extends Generation> {
+        G current;
+        G previous;
+
+        Generations(G current, G previous) {
+            this.current = current;
+            this.previous = previous;
+        }
+
+        final void rotate(long now, long window) {
+            if (now - current.startedAt < window) {
+                return;
+            }
+            G dropped = previous;
+            dropped.clear(now);
+            if (now - current.startedAt < 2 * window) {
+                previous = current;
+                current = dropped;
+            } else {
+                // Idle for two windows: both generations are expired.
+                current.clear(now);
+            }
+        }
+
+        final void clear() {
+            current.clear(current.startedAt);
+            previous.clear(previous.startedAt);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class AdversarialInputTest {
+
+    private static final String BASIC_BCBP = "M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000";
+    private static final String MULTI_LEG_WITH_SECURITY_BCBP =
+        "M2DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 14D>6181WW6225BAC 00141234560032A0141234567890 1AC AC 1234567890123    20KYLX58ZDEF456 FRAGVALH 3664 227C012C0002 12E2A0140987654321 1AC AC 1234567890123    2PCNWQ^164GIWVC5EH7JNT684FVNJ91W2QA4DVN5J8K4F0L0GEQ3DF5TGBN8709HKT5D3DW3GBHFCVHMY7J5T6HFR41W2QA4DVN5J8K4F0L0GE";
+    private static final String[] SEEDS = {BASIC_BCBP, MULTI_LEG_WITH_SECURITY_BCBP, maximalPass()};
+    /** Characters the mutations draw from: structure markers, hex digits, padding, line breaks and non-ASCII. */
+    private static final String ALPHABET = "0123456789ABCDEFZ >^]/-\r\n\t\u0000\u00FF\u0100\u2028\uD83D\uDE00";
+    /** Bound on characters read by a full parse plus a validation, per payload character and per payload. */
+    private static final int READS_PER_CHAR = 8;
+    private static final int READS_CONSTANT = 512;
+    private static final BcbpParser PARSER = BcbpParser.builder().fixedReferenceYear(2024).build();
+    /** Keeps line breaks so that every character the scanner reads goes through the counting view. */
+    private static final BcbpParser VERBATIM = BcbpParser.builder().fixedReferenceYear(2024).stripLineBreaks(false).build();
+
+    @Test
+    void rejectsPayloadsOverTheLengthCeiling() {
+        String tooLong = BASIC_BCBP + " ".repeat(BcbpParser.DEFAULT_MAX_PAYLOAD_LENGTH - BASIC_BCBP.length() + 1);
+        assertNotNull(PARSER.parse(tooLong.substring(0, BcbpParser.DEFAULT_MAX_PAYLOAD_LENGTH)));
+
+        ParseResult rejected = PARSER.tryParse(tooLong);
+        assertEquals(ParseResult.Failure.TOO_LONG, rejected.getFailure());
+        assertEquals(BcbpParser.DEFAULT_MAX_PAYLOAD_LENGTH, rejected.getOffset());
+        // Every oversized frame shares one rejection, however far past the offset cache the maximum lies.
+        assertSame(rejected, PARSER.tryParse(tooLong + "X"));
+        assertNull(PARSER.parse(tooLong));
+        assertFalse(PARSER.isLikelyBcbp(tooLong));
+        byte[] bytes = tooLong.getBytes(StandardCharsets.ISO_8859_1);
+        assertFalse(PARSER.validate(bytes, 0, bytes.length));
+        assertNull(PARSER.parse(bytes, 0, bytes.length));
+        assertNull(PARSER.parseLazy(bytes, 0, bytes.length));
+        assertNull(CachingBcbpParser.builder().parser(PARSER).build().parse(tooLong));
+
+        BcbpParser strict = BcbpParser.builder().maxPayloadLength(BASIC_BCBP.length() - 1).build();
+        assertEquals(ParseResult.Failure.TOO_LONG, strict.tryParse(BASIC_BCBP).getFailure());
+        assertSame(rejected, PARSER.tryParse(tooLong));
+        assertEquals(ParseResult.Failure.TOO_LONG, strict.tryParse("\r\n" + BASIC_BCBP.substring(2)).getFailure());
+    }
+
+    @Test
+    void fuzzCorpusIsHandledConsistentlyByEveryEntryPoint() {
+        for (String payload : corpus(0x5EED, 20_000)) {
+            ParseResult result = PARSER.tryParse(payload);
+            IataBcbp.Parsed parsed = PARSER.parse(payload);
+            assertEquals(result.isSuccess(), parsed != null, () -> describe(payload));
+            assertEquals(result.isSuccess(), PARSER.isLikelyBcbp(payload), () -> describe(payload));
+            assertEquals(result.isSuccess(), PARSER.parseLazy(payload) != null, () -> describe(payload));
+            if (parsed != null) {
+                assertNotNull(parsed.summary());
+            }
+            if (isLatin1(payload)) {
+                if (parsed != null) {
+                    // The binary codec stores text as ISO-8859-1, like the scanner bytes it stands in for.
+                    assertEquals(parsed.summary(), BcbpBinaryCodec.decode(BcbpBinaryCodec.encode(parsed)).summary());
+                }
+                byte[] bytes = payload.getBytes(StandardCharsets.ISO_8859_1);
+                assertEquals(result.toString(), PARSER.tryParse(bytes, 0, bytes.length).toString(), () -> describe(payload));
+                assertEquals(result.isSuccess(), PARSER.parse(ByteBuffer.wrap(bytes)) != null, () -> describe(payload));
+            }
+        }
+    }
+
+    @Test
+    void costIsLinearInPayloadLength() {
+        List<String> payloads = corpus(0xC0FFEE, 5_000);
+        payloads.addAll(worstCases());
+        BcbpLayout layout = new BcbpLayout();
+        for (String payload : payloads) {
+            CountingSequence counted = new CountingSequence(payload);
+            if (VERBATIM.scan(layout, counted)) {
+                IataBcbp.materialize(layout, 2024);
+            }
+            layout.clear();
+            VERBATIM.isLikelyBcbp(counted);
+            assertTrue(counted.reads <= READS_PER_CHAR * payload.length() + READS_CONSTANT,
+                () -> counted.reads + " reads for " + describe(payload));
+        }
+    }
+
+    @Test
+    void maximalSectionsStillParse() {
+        IataBcbp.Parsed pass = PARSER.parse(maximalPass());
+        assertNotNull(pass);
+        assertEquals(9, pass.getNumberOfLegs());
+        assertEquals(255, pass.getSecurityData().getData().length());
+    }
+
+    /** Mutations of valid passes plus raw noise, drawn from a seeded generator so failures reproduce. */
+    private static List<String> corpus(long seed, int size) {
+        Random random = new Random(seed);
+        List<String> corpus = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            StringBuilder payload = new StringBuilder(SEEDS[random.nextInt(SEEDS.length)]);
+            int mutations = 1 + random.nextInt(4);
+            for (int m = 0; m < mutations; m++) {
+                mutate(payload, random);
+            }
+            corpus.add(payload.toString());
+        }
+        return corpus;
+    }
+
+    private static void mutate(StringBuilder payload, Random random) {
+        int at = payload.length() == 0 ? 0 : random.nextInt(payload.length());
+        switch (random.nextInt(9)) {
+            case 0 -> {
+                if (at < payload.length()) {
+                    payload.setCharAt(at, randomChar(random));
+                }
+            }
+            case 1 -> payload.insert(at, randomRun(random, 1 + random.nextInt(8)));
+            case 2 -> payload.delete(at, Math.min(payload.length(), at + 1 + random.nextInt(16)));
+            case 3 -> payload.setLength(at);
+            case 4 -> {
+                // Size fields are two hex digits; push one to its extremes or make it unreadable.
+                String[] sizes = {"FF", "00", "ZZ", "-1", "F", " F"};
+                String size = sizes[random.nextInt(sizes.length)];
+                payload.replace(at, Math.min(payload.length(), at + size.length()), size);
+            }
+            case 5 -> {
+                if (payload.length() > 1) {
+                    payload.setCharAt(1, (char) ('0' + random.nextInt(10)));
+                }
+            }
+            case 6 -> payload.insert(0, random.nextBoolean() ? "]Q3" : " ".repeat(random.nextInt(64)));
+            case 7 -> {
+                int from = random.nextInt(payload.length() + 1);
+                int to = Math.min(payload.length(), from + random.nextInt(120));
+                payload.insert(random.nextInt(payload.length() + 1), payload.substring(from, to));
+            }
+            default -> payload.setLength(Math.min(payload.length(), BcbpParser.DEFAULT_MAX_PAYLOAD_LENGTH + 16));
+        }
+    }
+
+    /** Shapes that push each part of the scanner as far as the format allows. */
+    private static List<String> worstCases() {
+        int max = BcbpParser.DEFAULT_MAX_PAYLOAD_LENGTH;
+        String pass = maximalPass();
+        List<String> cases = new ArrayList<>();
+        cases.add(pass);
+        cases.add(pass + "X".repeat(max - pass.length()));
+        cases.add(" ".repeat(max - BASIC_BCBP.length()) + BASIC_BCBP);
+        cases.add("\n".repeat(max));
+        cases.add(pass.replace("FF", "FG"));
+        cases.add("M9" + "/".repeat(max - 2));
+        cases.add("M9DESMARAIS/LUC       E" + "ABC123 YULFRAAC 0834 226F001A0025 1FF".repeat(100));
+        cases.add("X".repeat(max + 1));
+        return cases;
+    }
+
+    /**
+     * Nine legs whose conditional sections are all 0xFF long: the first filled by its unique section, the
+     * others by their repeated sections. Ends with a 255 character security section.
+     */
+    private static String maximalPass() {
+        StringBuilder pass = new StringBuilder("M9DESMARAIS/LUC       E");
+        for (int leg = 0; leg < 9; leg++) {
+            pass.append("ABC123 YULFRAAC 0834 226F001A0025 1FF");
+            if (leg == 0) {
+                pass.append(">6FB").append("1WW6225BAC ").append("0".repeat(251 - 11));
+            } else {
+                pass.append("FD").append("0141234567890 1AC AC ").append("1".repeat(253 - 21));
+            }
+        }
+        return pass.append("^1FF").append("S".repeat(255)).toString();
+    }
+
+    private static char randomChar(Random random) {
+        return ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+    }
+
+    private static String randomRun(Random random, int length) {
+        StringBuilder run = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            run.append(randomChar(random));
+        }
+        return run.toString();
+    }
+
+    private static boolean isLatin1(String payload) {
+        for (int i = 0; i < payload.length(); i++) {
+            if (payload.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String describe(String payload) {
+        String shown = payload.length() > 160 ? payload.substring(0, 160) + "... (" + payload.length() + " chars)" : payload;
+        return shown.replace("\r", "\\r").replace("\n", "\\n");
+    }
+
+    /** Counts every character read through it, including those copied out by {@link #subSequence}. */
+    private static final class CountingSequence implements CharSequence {
+        private final String text;
+        private long reads;
+
+        private CountingSequence(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            reads++;
+            return text.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            reads += end - start;
+            return text.substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class BcbpBinaryCodecTest {
+
+    private static final String BASIC_BCBP = "M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000";
+    private static final String MULTI_LEG_WITH_SECURITY_BCBP =
+        "M2DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 14D>6181WW6225BAC 00141234560032A0141234567890 1AC AC 1234567890123    20KYLX58ZDEF456 FRAGVALH 3664 227C012C0002 12E2A0140987654321 1AC AC 1234567890123    2PCNWQ^164GIWVC5EH7JNT684FVNJ91W2QA4DVN5J8K4F0L0GEQ3DF5TGBN8709HKT5D3DW3GBHFCVHMY7J5T6HFR41W2QA4DVN5J8K4F0L0GE";
+
+    @Test
+    void roundTripsParsedPassesInFewerBytesThanThePayload() {
+        for (String payload : List.of(BASIC_BCBP, MULTI_LEG_WITH_SECURITY_BCBP)) {
+            IataBcbp.Parsed parsed = IataBcbp.parse(payload);
+            byte[] encoded = BcbpBinaryCodec.encode(parsed);
+
+            assertSamePass(parsed, BcbpBinaryCodec.decode(encoded));
+            assertTrue(encoded.length < payload.length(), encoded.length + " >= " + payload.length());
+        }
+    }
+
+    @Test
+    void roundTripsMutatedPayloads() {
+        Random random = new Random(11);
+        String alphabet = " 0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ/<>^-\u00e9\u0100";
+        int checked = 0;
+        for (int i = 0; i < 20_000; i++) {
+            char[] chars = (i % 2 == 0 ? BASIC_BCBP : MULTI_LEG_WITH_SECURITY_BCBP).toCharArray();
+            for (int mutation = random.nextInt(6); mutation >= 0; mutation--) {
+                chars[random.nextInt(chars.length)] = alphabet.charAt(random.nextInt(alphabet.length()));
+            }
+            IataBcbp.Parsed parsed = IataBcbp.parse(new String(chars));
+            if (parsed != null) {
+                assertSamePass(parsed, BcbpBinaryCodec.decode(BcbpBinaryCodec.encode(parsed)));
+                checked++;
+            }
+        }
+        assertTrue(checked > 1_000, "only " + checked + " payloads parsed");
+    }
+
+    @Test
+    void roundTripsHandBuiltPassesWithNullsAndUnicode() {
+        IataBcbp.Leg leg = new IataBcbp.Leg(
+            null, "", "Z\u00fcR", "0", "0A", LocalDate.of(-40, 1, 1), null, "12345678901234567890", "007", "\u20ac", -3,
+            new IataBcbp.RepeatedConditional(null, "0000000000", "", null, "LH", null, "ABCDEFGHIJKL", null, "2PC", Boolean.FALSE, "x")
+        );
+        IataBcbp.Parsed parsed = new IataBcbp.Parsed(
+            null, -1, "Zo\u00eb M\u00fcller", "", null, Integer.MIN_VALUE, List.of(leg, leg),
+            new IataBcbp.UniqueConditional(null, null, null, null, null, null, List.of("", "0014123456003")),
+            new IataBcbp.SecurityData(null, ""),
+            null
+        );
+
+        assertSamePass(parsed, BcbpBinaryCodec.decode(BcbpBinaryCodec.encode(parsed)));
+    }
+
+    @Test
+    void streamsRecordsBackToBack() throws IOException {
+        IataBcbp.Parsed basic = IataBcbp.parse(BASIC_BCBP);
+        IataBcbp.Parsed multi = IataBcbp.parse(MULTI_LEG_WITH_SECURITY_BCBP);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BcbpBinaryCodec.encode(basic, out);
+        BcbpBinaryCodec.encode(multi, out);
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        assertSamePass(basic, BcbpBinaryCodec.decode(in));
+        assertSamePass(multi, BcbpBinaryCodec.decode(in));
+        assertNull(BcbpBinaryCodec.decode(in));
+
+        byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() - 1);
+        ByteArrayInputStream partial = new ByteArrayInputStream(truncated);
+        BcbpBinaryCodec.decode(partial);
+        assertThrows(EOFException.class, () -> BcbpBinaryCodec.decode(partial));
+    }
+
+    @Test
+    void readsAndWritesByteBuffers() {
+        IataBcbp.Parsed basic = IataBcbp.parse(BASIC_BCBP);
+        IataBcbp.Parsed multi = IataBcbp.parse(MULTI_LEG_WITH_SECURITY_BCBP);
+
+        for (ByteBuffer buffer : List.of(ByteBuffer.allocate(1024), ByteBuffer.allocateDirect(1024))) {
+            BcbpBinaryCodec.encode(basic, buffer);
+            BcbpBinaryCodec.encode(multi, buffer);
+            buffer.flip();
+            assertSamePass(basic, BcbpBinaryCodec.decode(buffer));
+            assertSamePass(multi, BcbpBinaryCodec.decode(buffer));
+            assertEquals(0, buffer.remaining());
+        }
+
+        ByteBuffer tooSmall = ByteBuffer.allocate(8);
+        assertThrows(BufferOverflowException.class, () -> BcbpBinaryCodec.encode(multi, tooSmall));
+        assertEquals(0, tooSmall.position());
+
+        byte[] record = BcbpBinaryCodec.encode(multi);
+        ByteBuffer partial = ByteBuffer.wrap(record, 0, record.length - 1);
+        assertThrows(BufferUnderflowException.class, () -> BcbpBinaryCodec.decode(partial));
+        assertEquals(0, partial.position());
+    }
+
+    @Test
+    void rejectsUnknownVersionsAndCorruptRecords() {
+        byte[] record = BcbpBinaryCodec.encode(IataBcbp.parse(BASIC_BCBP));
+
+        byte[] futureVersion = record.clone();
+        futureVersion[0] = 2;
+        assertThrows(IllegalArgumentException.class, () -> BcbpBinaryCodec.decode(futureVersion));
+
+        byte[] shortBody = record.clone();
+        shortBody[1]--;
+        assertThrows(IllegalArgumentException.class, () -> BcbpBinaryCodec.decode(Arrays.copyOf(shortBody, record.length - 1)));
+    }
+
+    static void assertSamePass(IataBcbp.Parsed expected, IataBcbp.Parsed actual) {
+        assertEquals(expected.getFormatCode(), actual.getFormatCode());
+        assertEquals(expected.getNumberOfLegs(), actual.getNumberOfLegs());
+        assertEquals(expected.getPassengerName(), actual.getPassengerName());
+        assertEquals(expected.getTicketIndicator(), actual.getTicketIndicator());
+        assertEquals(expected.getVersionNumberIndicator(), actual.getVersionNumberIndicator());
+        assertEquals(expected.getVersionNumber(), actual.getVersionNumber());
+        assertEquals(expected.getAirlineData(), actual.getAirlineData());
+        assertEquals(expected.getLegs().size(), actual.getLegs().size());
+        for (int i = 0; i < expected.getLegs().size(); i++) {
+            IataBcbp.Leg expectedLeg = expected.getLegs().get(i);
+            IataBcbp.Leg actualLeg = actual.getLegs().get(i);
+            assertEquals(expectedLeg.getPnrCode(), actualLeg.getPnrCode());
+            assertEquals(expectedLeg.getFromAirport(), actualLeg.getFromAirport());
+            assertEquals(expectedLeg.getToAirport(), actualLeg.getToAirport());
+            assertEquals(expectedLeg.getOperatingCarrier(), actualLeg.getOperatingCarrier());
+            assertEquals(expectedLeg.getFlightNumber(), actualLeg.getFlightNumber());
+            assertEquals(expectedLeg.getFlightDate(), actualLeg.getFlightDate());
+            assertEquals(expectedLeg.getCompartmentCode(), actualLeg.getCompartmentCode());
+            assertEquals(expectedLeg.getSeatNumber(), actualLeg.getSeatNumber());
+            assertEquals(expectedLeg.getCheckInSequenceNumber(), actualLeg.getCheckInSequenceNumber());
+            assertEquals(expectedLeg.getPassengerStatus(), actualLeg.getPassengerStatus());
+            assertEquals(expectedLeg.getConditionalSize(), actualLeg.getConditionalSize());
+            IataBcbp.RepeatedConditional expectedRepeated = expectedLeg.getRepeatedConditional();
+            IataBcbp.RepeatedConditional actualRepeated = actualLeg.getRepeatedConditional();
+            assertEquals(expectedRepeated == null, actualRepeated == null);
+            if (expectedRepeated != null) {
+                assertEquals(expectedRepeated.getAirlineNumericCode(), actualRepeated.getAirlineNumericCode());
+                assertEquals(expectedRepeated.getDocumentSerialNumber(), actualRepeated.getDocumentSerialNumber());
+                assertEquals(expectedRepeated.getSelecteeIndicator(), actualRepeated.getSelecteeIndicator());
+                assertEquals(expectedRepeated.getInternationalDocumentVerification(), actualRepeated.getInternationalDocumentVerification());
+                assertEquals(expectedRepeated.getMarketingCarrierDesignator(), actualRepeated.getMarketingCarrierDesignator());
+                assertEquals(expectedRepeated.getFrequentFlyerAirlineDesignator(), actualRepeated.getFrequentFlyerAirlineDesignator());
+                assertEquals(expectedRepeated.getFrequentFlyerNumber(), actualRepeated.getFrequentFlyerNumber());
+                assertEquals(expectedRepeated.getIdAdIndicator(), actualRepeated.getIdAdIndicator());
+                assertEquals(expectedRepeated.getFreeBaggageAllowance(), actualRepeated.getFreeBaggageAllowance());
+                assertEquals(expectedRepeated.getFastTrack(), actualRepeated.getFastTrack());
+                assertEquals(expectedRepeated.getAirlineUse(), actualRepeated.getAirlineUse());
+            }
+        }
+        IataBcbp.UniqueConditional expectedUnique = expected.getUniqueConditional();
+        IataBcbp.UniqueConditional actualUnique = actual.getUniqueConditional();
+        assertEquals(expectedUnique == null, actualUnique == null);
+        if (expectedUnique != null) {
+            assertEquals(expectedUnique.getPassengerDescription(), actualUnique.getPassengerDescription());
+            assertEquals(expectedUnique.getCheckInSource(), actualUnique.getCheckInSource());
+            assertEquals(expectedUnique.getBoardingPassIssuanceSource(), actualUnique.getBoardingPassIssuanceSource());
+            assertEquals(expectedUnique.getIssuanceDate(), actualUnique.getIssuanceDate());
+            assertEquals(expectedUnique.getDocumentType(), actualUnique.getDocumentType());
+            assertEquals(expectedUnique.getIssuingAirline(), actualUnique.getIssuingAirline());
+            assertEquals(expectedUnique.getBagTagNumbers(), actualUnique.getBagTagNumbers());
+        }
+        IataBcbp.SecurityData expectedSecurity = expected.getSecurityData();
+        IataBcbp.SecurityData actualSecurity = actual.getSecurityData();
+        assertEquals(expectedSecurity == null, actualSecurity == null);
+        if (expectedSecurity != null) {
+            assertEquals(expectedSecurity.getType(), actualSecurity.getType());
+            assertEquals(expectedSecurity.getData(), actualSecurity.getData());
+        }
+    }
+}
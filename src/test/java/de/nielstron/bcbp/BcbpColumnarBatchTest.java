@@ -0,0 +1,111 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class BcbpColumnarBatchTest {
+
+    private static final String BASIC_BCBP = "M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000";
+    private static final String MULTI_LEG_WITH_SECURITY_BCBP =
+        "M2DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 14D>6181WW6225BAC 00141234560032A0141234567890 1AC AC 1234567890123    20KYLX58ZDEF456 FRAGVALH 3664 227C012C0002 12E2A0140987654321 1AC AC 1234567890123    2PCNWQ^164GIWVC5EH7JNT684FVNJ91W2QA4DVN5J8K4F0L0GEQ3DF5TGBN8709HKT5D3DW3GBHFCVHMY7J5T6HFR41W2QA4DVN5J8K4F0L0GE";
+
+    private static final BcbpParser PARSER = BcbpParser.builder().fixedReferenceYear(2020).build();
+
+    @Test
+    void rowsMatchParsedLegs() {
+        List<String> payloads = List.of(
+            BASIC_BCBP,
+            MULTI_LEG_WITH_SECURITY_BCBP,
+            BASIC_BCBP.replace("YULFRAAC 0834", "Y\u0100LFRAAC    7"),
+            BASIC_BCBP.replace("001A0025", "ABCD 2X "),
+            MULTI_LEG_WITH_SECURITY_BCBP.replace("1AC AC 1234567890123    20K", "1AC    1234567890123    20K")
+        );
+        BcbpColumnarBatch batch = new BcbpColumnarBatch(PARSER, 0);
+        assertEquals(payloads.size(), batch.appendAll(payloads));
+
+        int row = 0;
+        for (int passIndex = 0; passIndex < payloads.size(); passIndex++) {
+            IataBcbp.Parsed parsed = PARSER.parse(payloads.get(passIndex));
+            for (IataBcbp.Leg leg : parsed.getLegs()) {
+                assertEquals(passIndex, batch.pass(row));
+                assertEquals(leg.getFromAirport(), batch.fromAirport(row));
+                assertEquals(leg.getToAirport(), batch.toAirport(row));
+                assertEquals(leg.getOperatingCarrier(), batch.operatingCarrier(row));
+                assertEquals(leg.getFlightNumber(), batch.flightNumber(row));
+                assertEquals(leg.getFlightDate(), batch.flightDate(row));
+                assertEquals(leg.getCompartmentCode(), batch.compartmentCode(row));
+                assertEquals(leg.getSeatNumber(), batch.seatNumber(row));
+                assertEquals(leg.getCheckInSequenceNumber(), batch.checkInSequenceNumber(row));
+                assertEquals(leg.getPassengerStatus(), batch.passengerStatus(row));
+                IataBcbp.RepeatedConditional repeated = leg.getRepeatedConditional();
+                assertEquals(repeated == null ? null : repeated.getMarketingCarrierDesignator(), batch.marketingCarrierDesignator(row));
+                assertEquals(repeated == null ? null : repeated.getFrequentFlyerAirlineDesignator(), batch.frequentFlyerAirlineDesignator(row));
+                assertEquals(repeated == null ? null : repeated.getFrequentFlyerNumber(), batch.frequentFlyerNumber(row));
+                assertEquals(repeated == null ? null : repeated.getFreeBaggageAllowance(), batch.freeBaggageAllowance(row));
+                assertEquals(repeated == null ? null : repeated.getFastTrack(), batch.fastTrack(row));
+                row++;
+            }
+        }
+        assertEquals(row, batch.size());
+        assertEquals(payloads.size(), batch.passCount());
+        assertThrows(IndexOutOfBoundsException.class, () -> batch.fromAirport(batch.size()));
+    }
+
+    @Test
+    void scansColumnsWithoutMaterializingLegs() {
+        BcbpColumnarBatch batch = new BcbpColumnarBatch(PARSER, 4);
+        List<String> payloads = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            payloads.add(i % 2 == 0 ? BASIC_BCBP : MULTI_LEG_WITH_SECURITY_BCBP);
+        }
+        payloads.add("not a boarding pass");
+        assertEquals(1_000, batch.appendAll(payloads));
+        assertFalse(batch.append((String) null));
+
+        assertEquals(1_500, batch.size());
+        assertEquals(1_000, batch.countWhere(BcbpColumnarBatch.CodeColumn.FROM_AIRPORT, "YUL"));
+        assertEquals(500, batch.countWhere(BcbpColumnarBatch.CodeColumn.TO_AIRPORT, "GVA"));
+        assertEquals(0, batch.countWhere(BcbpColumnarBatch.CodeColumn.OPERATING_CARRIER, "XXXX"));
+
+        int[] lufthansa = batch.rowsWhere(BcbpColumnarBatch.CodeColumn.OPERATING_CARRIER, "LH");
+        assertEquals(500, lufthansa.length);
+        assertEquals(2, lufthansa[0]);
+        assertEquals(1, batch.legIndex(lufthansa[0]));
+
+        // The multi-leg pass carries an issuance date in 2016, which anchors its flight dates.
+        assertEquals(500, batch.rowsForFlight("AC", "834", LocalDate.of(2020, 8, 13)).length);
+        assertEquals(500, batch.rowsForFlight("AC", "834", LocalDate.of(2016, 8, 13)).length);
+        assertEquals(0, batch.rowsForFlight("AC", "0834", LocalDate.of(2020, 8, 13)).length);
+        assertEquals(1_000, batch.countFlightDatesBetween(LocalDate.of(2016, 8, 1), LocalDate.of(2016, 8, 31)));
+    }
+
+    @Test
+    void appendsScannerBytes() {
+        BcbpColumnarBatch batch = new BcbpColumnarBatch();
+        byte[] bytes = ("xx" + BASIC_BCBP).getBytes(StandardCharsets.ISO_8859_1);
+        assertTrue(batch.append(bytes, 2, bytes.length - 2));
+        assertEquals("FRA", batch.toAirport(0));
+        assertNull(batch.fastTrack(0));
+    }
+
+    @Test
+    void packsCodesIntoInts() {
+        assertEquals(0, BcbpColumnarBatch.packCode(""));
+        assertEquals(('F' << 16) | ('R' << 8) | 'A', BcbpColumnarBatch.packCode("FRA"));
+        assertEquals(('L' << 16) | ('H' << 8), BcbpColumnarBatch.packCode("LH"));
+        assertArrayEquals(
+            new int[] {BcbpLayout.NO_VALUE, BcbpLayout.NO_VALUE},
+            new int[] {BcbpColumnarBatch.packCode("ABCD"), BcbpColumnarBatch.packCode("\u0100")}
+        );
+    }
+}
@@ -0,0 +1,133 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class BcbpDuplicateDetectorTest {
+
+    private static final String BASIC_BCBP = "M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000";
+    private static final BcbpParser PARSER = BcbpParser.builder().fixedReferenceYear(2024).build();
+
+    @Test
+    void refusesARepeatWithinTheWindow() {
+        MutableClock clock = new MutableClock(Instant.parse("2024-08-13T08:00:00Z"));
+        BcbpDuplicateDetector detector = BcbpDuplicateDetector.builder().window(Duration.ofHours(1)).clock(clock).build();
+        IataBcbp.Leg leg = leg(BASIC_BCBP);
+
+        assertFalse(detector.wasAdmitted(leg));
+        assertTrue(detector.admit(leg));
+        assertTrue(detector.wasAdmitted(leg));
+        clock.advance(Duration.ofMinutes(59));
+        assertFalse(detector.admit(leg(BASIC_BCBP.replace("DESMARAIS/LUC", "SOMEONE/ELSE "))));
+        clock.advance(Duration.ofMinutes(1));
+        assertTrue(detector.admit(leg));
+        assertFalse(detector.admit(leg));
+    }
+
+    @Test
+    void legIdentityCoversEveryKeyField() {
+        BcbpDuplicateDetector detector = BcbpDuplicateDetector.builder().build();
+        assertTrue(detector.admit(leg(BASIC_BCBP)));
+
+        assertTrue(detector.admit(leg(BASIC_BCBP.replace("0025 ", "0026 "))));
+        assertTrue(detector.admit(leg(BASIC_BCBP.replace("AC 0834", "LH 0834"))));
+        assertTrue(detector.admit(leg(BASIC_BCBP.replace("AC 0834", "AC 0835"))));
+        assertTrue(detector.admit(leg(BASIC_BCBP.replace("0834 226", "0834 227"))));
+        assertTrue(detector.admit(leg(BASIC_BCBP.replace("YULFRA", "YYZFRA"))));
+        // The destination and seat are not part of the identity while a sequence number is present.
+        assertFalse(detector.admit(leg(BASIC_BCBP.replace("YULFRA", "YULMUC"))));
+        assertFalse(detector.admit(leg(BASIC_BCBP.replace("001A0025", "002C0025"))));
+
+        IataBcbp.Leg unsequenced = leg(BASIC_BCBP.replace("001A0025 ", "001A     "));
+        assertTrue(detector.admit(unsequenced));
+        assertFalse(detector.admit(unsequenced));
+        assertTrue(detector.admit(leg(BASIC_BCBP.replace("001A0025 ", "002A     "))));
+    }
+
+    @Test
+    void packsStandardFieldsExactly() {
+        IataBcbp.Leg leg = leg(BASIC_BCBP);
+        IataBcbp.Leg suffixed = leg(BASIC_BCBP.replace("AC 0834 ", "AC 0834A"));
+
+        assertNotEquals(BcbpDuplicateDetector.highKey(leg), BcbpDuplicateDetector.highKey(suffixed));
+        assertEquals(BcbpDuplicateDetector.lowKey(leg), BcbpDuplicateDetector.lowKey(suffixed));
+        assertEquals(BcbpDuplicateDetector.highKey(leg), BcbpDuplicateDetector.highKey(leg(BASIC_BCBP)));
+    }
+
+    @Test
+    void dropsWholeGenerationsOnceTheyExpire() {
+        MutableClock clock = new MutableClock(Instant.parse("2024-08-13T08:00:00Z"));
+        BcbpDuplicateDetector detector = BcbpDuplicateDetector.builder()
+            .window(Duration.ofMinutes(10))
+            .clock(clock)
+            .expectedLegs(16)
+            .build();
+
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(detector.admit(leg(sequence(i))));
+        }
+        assertEquals(1_000, detector.size());
+        clock.advance(Duration.ofMinutes(10));
+        assertTrue(detector.admit(leg(sequence(1_000))));
+        assertTrue(detector.admit(leg(sequence(0))));
+        clock.advance(Duration.ofMinutes(5));
+        assertFalse(detector.admit(leg(sequence(1_000))));
+        assertTrue(detector.admit(leg(sequence(1))));
+
+        clock.advance(Duration.ofDays(1));
+        assertEquals(0, detector.size());
+        assertTrue(detector.admit(leg(sequence(1_000))));
+        assertEquals(1, detector.size());
+        detector.clear();
+        assertEquals(0, detector.size());
+    }
+
+    @Test
+    void admitsEachLegOnceAcrossGates() throws Exception {
+        BcbpDuplicateDetector detector = BcbpDuplicateDetector.builder().build();
+        List<IataBcbp.Leg> legs = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            legs.add(leg(sequence(i)));
+        }
+        AtomicInteger admitted = new AtomicInteger();
+
+        ExecutorService gates = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<Void>> scans = new ArrayList<>();
+            for (int gate = 0; gate < 8; gate++) {
+                scans.add(CompletableFuture.runAsync(() -> {
+                    for (IataBcbp.Leg leg : legs) {
+                        if (detector.admit(leg)) {
+                            admitted.incrementAndGet();
+                        }
+                    }
+                }, gates));
+            }
+            CompletableFuture.allOf(scans.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            gates.shutdown();
+        }
+        assertEquals(legs.size(), admitted.get());
+        assertEquals(legs.size(), detector.size());
+    }
+
+    private static String sequence(int i) {
+        return BASIC_BCBP.replace("001A0025 ", "001A" + String.format("%04d ", i));
+    }
+
+    private static IataBcbp.Leg leg(String payload) {
+        return PARSER.parse(payload).getFirstLeg();
+    }
+}
@@ -0,0 +1,330 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class BcbpEncoderTest {
+
+    private static final String BASIC_BCBP = "M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000";
+    private static final String MULTI_LEG_WITH_SECURITY_BCBP =
+        "M2DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 14D>6181WW6225BAC 00141234560032A0141234567890 1AC AC 1234567890123    20KYLX58ZDEF456 FRAGVALH 3664 227C012C0002 12E2A0140987654321 1AC AC 1234567890123    2PCNWQ^164GIWVC5EH7JNT684FVNJ91W2QA4DVN5J8K4F0L0GEQ3DF5TGBN8709HKT5D3DW3GBHFCVHMY7J5T6HFR41W2QA4DVN5J8K4F0L0GE";
+
+    private static final int REFERENCE_YEAR = 2024;
+    private static final BcbpParser PARSER = BcbpParser.builder().fixedReferenceYear(REFERENCE_YEAR).build();
+    private static final String[] NAME_WORDS = {"Luc", "Anna", "Desmarais", "Jean-Luc", "Van", "Der", "Berg", "O", "Li", "M\u00fcller"};
+
+    @Test
+    void writesTheBasicPassWithCanonicalPadding() {
+        IataBcbp.Parsed parsed = IataBcbp.parse(BASIC_BCBP);
+
+        // The unique section is empty, so the declared six characters end in blank padding instead of "00".
+        assertEquals("M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>600  ", BcbpEncoder.encode(parsed));
+    }
+
+    @Test
+    void reproducesTheMultiLegPassByteForByte() {
+        IataBcbp.Parsed parsed = IataBcbp.parse(MULTI_LEG_WITH_SECURITY_BCBP);
+
+        // Only the airline-use characters after each repeated section are lost; they are not part of Parsed.
+        String expected = MULTI_LEG_WITH_SECURITY_BCBP.replace("20KYLX58Z", "20KY     ").replace("2PCNWQ^", "2PCN  ^");
+        assertEquals(expected, BcbpEncoder.encode(parsed));
+    }
+
+    @Test
+    void roundTripsGeneratedPasses() {
+        Random random = new Random(12);
+        for (int i = 0; i < 5_000; i++) {
+            IataBcbp.Parsed generated = randomPass(random);
+            String payload = BcbpEncoder.encode(generated);
+            IataBcbp.Parsed parsed = PARSER.parse(payload);
+
+            assertNotNull(parsed, payload);
+            BcbpBinaryCodecTest.assertSamePass(withConditionalSizesOf(parsed, generated), parsed);
+            assertEquals(payload, BcbpEncoder.encode(parsed));
+        }
+    }
+
+    @Test
+    void roundTripsMutatedPayloads() {
+        Random random = new Random(13);
+        String alphabet = " 0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ/<>^-\u00e9\u0100";
+        int checked = 0;
+        for (int i = 0; i < 20_000; i++) {
+            char[] chars = (i % 2 == 0 ? BASIC_BCBP : MULTI_LEG_WITH_SECURITY_BCBP).toCharArray();
+            for (int mutation = random.nextInt(6); mutation >= 0; mutation--) {
+                chars[random.nextInt(chars.length)] = alphabet.charAt(random.nextInt(alphabet.length()));
+            }
+            IataBcbp.Parsed parsed = PARSER.parse(new String(chars));
+            if (parsed == null) {
+                continue;
+            }
+            String payload = BcbpEncoder.encode(parsed);
+            IataBcbp.Parsed reparsed = PARSER.parse(payload);
+
+            assertNotNull(reparsed, payload);
+            // Hyphen-only name words print as empty words, which cannot be written back.
+            IataBcbp.Parsed expected = withName(parsed, parsed.getPassengerName().replaceAll(" +", " ").trim());
+            BcbpBinaryCodecTest.assertSamePass(withConditionalSizesOf(reparsed, expected), reparsed);
+            if (expected.getPassengerName().equals(parsed.getPassengerName())) {
+                assertEquals(payload, BcbpEncoder.encode(reparsed));
+            }
+            checked++;
+        }
+        assertTrue(checked > 1_000, "only " + checked + " payloads parsed");
+    }
+
+    @Test
+    void keepsAirlineDataStartingWithACaretApartFromSecurityData() {
+        // The blank ends the legs, so "^164..." is airline data rather than a security section.
+        IataBcbp.Parsed parsed = PARSER.parse(MULTI_LEG_WITH_SECURITY_BCBP.replace("2PCNWQ^", "2PCNWQ ^"));
+        assertNull(parsed.getSecurityData());
+        assertTrue(parsed.getAirlineData().startsWith("^164"));
+
+        String payload = BcbpEncoder.encode(parsed);
+        assertEquals(payload.length(), BcbpEncoder.encodedLength(parsed));
+        IataBcbp.Parsed reparsed = PARSER.parse(payload);
+        assertNull(reparsed.getSecurityData());
+        assertEquals(parsed.getAirlineData(), reparsed.getAirlineData());
+        BcbpBinaryCodecTest.assertSamePass(parsed, reparsed);
+    }
+
+    @Test
+    void writesTheSamePayloadIntoEveryTarget() {
+        IataBcbp.Parsed parsed = IataBcbp.parse(MULTI_LEG_WITH_SECURITY_BCBP);
+        String payload = BcbpEncoder.encode(parsed);
+        int length = BcbpEncoder.encodedLength(parsed);
+        assertEquals(payload.length(), length);
+
+        char[] chars = new char[length + 10];
+        assertEquals(length, BcbpEncoder.encode(parsed, chars, 4));
+        assertEquals(payload, new String(chars, 4, length));
+
+        byte[] bytes = new byte[length + 10];
+        assertEquals(length, BcbpEncoder.encode(parsed, bytes, 6));
+        assertArrayEquals(payload.getBytes(StandardCharsets.ISO_8859_1), Arrays.copyOfRange(bytes, 6, 6 + length));
+
+        for (ByteBuffer buffer : List.of(ByteBuffer.allocate(2 * length), ByteBuffer.allocateDirect(2 * length))) {
+            BcbpEncoder.encode(parsed, buffer);
+            BcbpEncoder.encode(parsed, buffer);
+            assertEquals(2 * length, buffer.position());
+            buffer.flip();
+            assertEquals(payload + payload, StandardCharsets.ISO_8859_1.decode(buffer).toString());
+        }
+    }
+
+    @Test
+    void rejectsTargetsThatAreTooSmall() {
+        IataBcbp.Parsed parsed = IataBcbp.parse(BASIC_BCBP);
+        int length = BcbpEncoder.encodedLength(parsed);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> BcbpEncoder.encode(parsed, new char[length], 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> BcbpEncoder.encode(parsed, new byte[length - 1], 0));
+        ByteBuffer buffer = ByteBuffer.allocate(length + 2);
+        buffer.position(3);
+        assertThrows(BufferOverflowException.class, () -> BcbpEncoder.encode(parsed, buffer));
+        assertEquals(3, buffer.position());
+    }
+
+    @Test
+    void rejectsValuesThatDoNotFitTheirFields() {
+        IataBcbp.Parsed basic = IataBcbp.parse(BASIC_BCBP);
+        IataBcbp.Leg leg = basic.getFirstLeg();
+
+        IataBcbp.Leg longAirport = new IataBcbp.Leg(
+            leg.getPnrCode(), "YULX", leg.getToAirport(), leg.getOperatingCarrier(), leg.getFlightNumber(), leg.getFlightDate(),
+            leg.getCompartmentCode(), leg.getSeatNumber(), leg.getCheckInSequenceNumber(), leg.getPassengerStatus(), 0, null
+        );
+        assertThrows(IllegalArgumentException.class, () -> BcbpEncoder.encode(withLegs(basic, List.of(longAirport))));
+
+        IataBcbp.Leg longFlight = new IataBcbp.Leg(
+            leg.getPnrCode(), leg.getFromAirport(), leg.getToAirport(), leg.getOperatingCarrier(), "12345A", leg.getFlightDate(),
+            leg.getCompartmentCode(), leg.getSeatNumber(), leg.getCheckInSequenceNumber(), leg.getPassengerStatus(), 0, null
+        );
+        assertThrows(IllegalArgumentException.class, () -> BcbpEncoder.encode(withLegs(basic, List.of(longFlight))));
+        assertThrows(IllegalArgumentException.class, () -> BcbpEncoder.encode(withLegs(basic, List.of())));
+
+        IataBcbp.Parsed euroData = new IataBcbp.Parsed(
+            "M", 1, "Luc Desmarais", "E", null, null, List.of(leg), null, null, "\u20ac"
+        );
+        assertEquals('\u20ac', BcbpEncoder.encode(euroData).charAt(BcbpEncoder.encodedLength(euroData) - 1));
+        assertThrows(IllegalArgumentException.class, () -> BcbpEncoder.encode(euroData, new byte[100], 0));
+    }
+
+    @Test
+    void writesTheLastWordAsSurnameAndCutsLongNames() {
+        IataBcbp.Parsed basic = IataBcbp.parse(BASIC_BCBP);
+
+        assertEquals("Anna Van Der Berg", PARSER.parse(BcbpEncoder.encode(withName(basic, "Anna Van Der Berg"))).getPassengerName());
+        assertEquals("Madonna", PARSER.parse(BcbpEncoder.encode(withName(basic, "Madonna"))).getPassengerName());
+        assertEquals(
+            "BARTHOLOMEW-SMITH/AL",
+            BcbpEncoder.encode(withName(basic, "Alexandra Bartholomew-Smith")).substring(2, 22)
+        );
+    }
+
+    private static IataBcbp.Parsed randomPass(Random random) {
+        boolean conditional = random.nextInt(5) != 0;
+        boolean unique = conditional && random.nextInt(4) != 0;
+        LocalDate issuanceDate = unique && random.nextInt(4) != 0
+            ? LocalDate.of(REFERENCE_YEAR - 3 + random.nextInt(7), 1, 1).plusDays(random.nextInt(365))
+            : null;
+        int legCount = 1 + random.nextInt(4);
+        List<IataBcbp.Leg> legs = new ArrayList<>();
+        for (int i = 0; i < legCount; i++) {
+            legs.add(new IataBcbp.Leg(
+                random.nextInt(8) == 0 ? "" : letters(random, 5 + random.nextInt(3), "ABCDEFGHJKLMNPQRSTUVWXYZ0123456789"),
+                letters(random, 3), letters(random, 3), letters(random, 2 + random.nextInt(2)),
+                number(random, random.nextInt(10) == 0 ? 99_999 : 9_999, random.nextBoolean()),
+                random.nextInt(10) == 0 ? null : flightDate(random, issuanceDate),
+                letters(random, 1),
+                random.nextInt(10) == 0 ? "" : number(random, 999, true),
+                number(random, 9_999, random.nextInt(5) == 0),
+                String.valueOf(random.nextInt(10)),
+                0,
+                random.nextInt(3) == 0 || i == 0 && !unique ? null : randomRepeated(random)
+            ));
+        }
+
+        IataBcbp.UniqueConditional uniqueConditional = null;
+        if (unique) {
+            List<String> bagTags = new ArrayList<>();
+            for (int i = random.nextInt(4); i > 0; i--) {
+                bagTags.add(letters(random, 13, "0123456789"));
+            }
+            uniqueConditional = new IataBcbp.UniqueConditional(
+                letters(random, 1, "0123456789"), letters(random, 1), letters(random, 1), issuanceDate,
+                random.nextBoolean() ? "B" : null, letters(random, 2 + random.nextInt(2)), bagTags
+            );
+        }
+        IataBcbp.SecurityData security = random.nextInt(3) == 0
+            ? null
+            : new IataBcbp.SecurityData(String.valueOf(random.nextInt(10)), letters(random, random.nextInt(120), "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ"));
+        String airlineData = random.nextInt(3) == 0 ? letters(random, 1 + random.nextInt(30)) : null;
+
+        return new IataBcbp.Parsed(
+            random.nextBoolean() ? "M" : "S",
+            legCount,
+            randomName(random),
+            random.nextBoolean() ? "E" : "",
+            conditional ? ">" : null,
+            conditional ? random.nextInt(8) : null,
+            legs,
+            uniqueConditional,
+            security,
+            airlineData
+        );
+    }
+
+    private static IataBcbp.RepeatedConditional randomRepeated(Random random) {
+        boolean frequentFlyer = random.nextBoolean();
+        int fastTrack = random.nextInt(3);
+        return new IataBcbp.RepeatedConditional(
+            letters(random, 3, "0123456789"),
+            letters(random, 10, "0123456789"),
+            random.nextBoolean() ? null : "1",
+            letters(random, 1, "0123456789"),
+            letters(random, 2 + random.nextInt(2)),
+            frequentFlyer ? letters(random, 2) : null,
+            frequentFlyer ? letters(random, 6 + random.nextInt(15), "0123456789") : null,
+            random.nextBoolean() ? null : "A",
+            random.nextBoolean() ? "20K" : "2PC",
+            fastTrack == 0 ? null : fastTrack == 1,
+            null
+        );
+    }
+
+    /** Mirrors how the parser resolves a day of year against the issuance (or reference) year. */
+    private static LocalDate flightDate(Random random, LocalDate issuanceDate) {
+        while (true) {
+            int dayOfYear = 1 + random.nextInt(365);
+            if (issuanceDate == null) {
+                return LocalDate.ofYearDay(REFERENCE_YEAR, dayOfYear);
+            }
+            LocalDate date = LocalDate.ofYearDay(issuanceDate.getYear(), dayOfYear);
+            if (date.isBefore(issuanceDate)) {
+                date = date.plusYears(1);
+            }
+            // Across a February 29 the day of year shifts, and the encoded day would resolve differently.
+            if (date.getDayOfYear() == dayOfYear) {
+                return date;
+            }
+        }
+    }
+
+    private static String randomName(Random random) {
+        while (true) {
+            int words = 1 + random.nextInt(3);
+            StringBuilder name = new StringBuilder();
+            for (int i = 0; i < words; i++) {
+                if (i > 0) {
+                    name.append(' ');
+                }
+                name.append(NAME_WORDS[random.nextInt(NAME_WORDS.length)]);
+            }
+            if (name.length() <= 20) {
+                return name.toString();
+            }
+        }
+    }
+
+    private static String number(Random random, int max, boolean suffix) {
+        String digits = Integer.toString(1 + random.nextInt(max));
+        return suffix && digits.length() < String.valueOf(max).length() ? digits + (char) ('A' + random.nextInt(26)) : digits;
+    }
+
+    private static String letters(Random random, int length) {
+        return letters(random, length, "ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+    }
+
+    private static String letters(Random random, int length, String alphabet) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(chars);
+    }
+
+    /** {@code expected} with the conditional sizes the encoder chose, which the inputs leave open. */
+    private static IataBcbp.Parsed withConditionalSizesOf(IataBcbp.Parsed encoded, IataBcbp.Parsed expected) {
+        List<IataBcbp.Leg> legs = new ArrayList<>();
+        for (int i = 0; i < expected.getLegs().size(); i++) {
+            IataBcbp.Leg leg = expected.getLegs().get(i);
+            legs.add(new IataBcbp.Leg(
+                leg.getPnrCode(), leg.getFromAirport(), leg.getToAirport(), leg.getOperatingCarrier(), leg.getFlightNumber(),
+                leg.getFlightDate(), leg.getCompartmentCode(), leg.getSeatNumber(), leg.getCheckInSequenceNumber(),
+                leg.getPassengerStatus(), encoded.getLegs().get(i).getConditionalSize(), leg.getRepeatedConditional()
+            ));
+        }
+        return withLegs(expected, legs);
+    }
+
+    private static IataBcbp.Parsed withLegs(IataBcbp.Parsed parsed, List<IataBcbp.Leg> legs) {
+        return new IataBcbp.Parsed(
+            parsed.getFormatCode(), legs.size(), parsed.getPassengerName(), parsed.getTicketIndicator(),
+            parsed.getVersionNumberIndicator(), parsed.getVersionNumber(), legs, parsed.getUniqueConditional(),
+            parsed.getSecurityData(), parsed.getAirlineData()
+        );
+    }
+
+    private static IataBcbp.Parsed withName(IataBcbp.Parsed parsed, String passengerName) {
+        return new IataBcbp.Parsed(
+            parsed.getFormatCode(), parsed.getNumberOfLegs(), passengerName, parsed.getTicketIndicator(),
+            parsed.getVersionNumberIndicator(), parsed.getVersionNumber(), parsed.getLegs(), parsed.getUniqueConditional(),
+            parsed.getSecurityData(), parsed.getAirlineData()
+        );
+    }
+}
@@ -0,0 +1,91 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BcbpFileScannerTest {
+
+    private static final String BASIC_BCBP = "M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000";
+    private static final String MULTI_LEG_WITH_SECURITY_BCBP =
+        "M2DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 14D>6181WW6225BAC 00141234560032A0141234567890 1AC AC 1234567890123    20KYLX58ZDEF456 FRAGVALH 3664 227C012C0002 12E2A0140987654321 1AC AC 1234567890123    2PCNWQ^164GIWVC5EH7JNT684FVNJ91W2QA4DVN5J8K4F0L0GEQ3DF5TGBN8709HKT5D3DW3GBHFCVHMY7J5T6HFR41W2QA4DVN5J8K4F0L0GE";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void framesLinesAndSkipsBlankAndRejectedLines() throws IOException {
+        Path log = write("log.txt",
+            BASIC_BCBP + "\r\n"
+                + "\n"
+                + "https://example.com/not-a-pass\n"
+                + "]Q3" + MULTI_LEG_WITH_SECURITY_BCBP + "\n"
+                + BASIC_BCBP.replace("DESMARAIS/LUC  ", "MUSTERMANN/MAX "));
+
+        List<IataBcbp.Parsed> passes = BcbpFileScanner.open(log).stream().collect(Collectors.toList());
+
+        assertEquals(3, passes.size());
+        assertEquals("Luc Desmarais", passes.get(0).getPassengerName());
+        assertEquals(2, passes.get(1).getNumberOfLegs());
+        assertEquals("Max Mustermann", passes.get(2).getPassengerName());
+    }
+
+    @Test
+    void parallelStreamKeepsFileOrder() throws IOException {
+        List<String> expected = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            String seq = String.format("%04d", i % 10_000);
+            String payload = (i % 3 == 0 ? MULTI_LEG_WITH_SECURITY_BCBP : BASIC_BCBP).replace("0025", seq);
+            content.append(payload).append('\n');
+            if (i % 7 == 0) {
+                content.append("garbage ").append(i).append('\n');
+            }
+            expected.add(IataBcbp.parse(payload).getCheckInSequence());
+        }
+        Path log = write("large.txt", content.toString());
+
+        BcbpFileScanner scanner = BcbpFileScanner.open(log);
+        Spliterator<IataBcbp.Parsed> spliterator = scanner.spliterator();
+        assertNotNull(spliterator.trySplit());
+
+        List<String> actual = scanner.parallelStream()
+            .map(IataBcbp.Parsed::getCheckInSequence)
+            .collect(Collectors.toList());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void readsAcrossMappedRegions() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            content.append(i % 2 == 0 ? BASIC_BCBP : MULTI_LEG_WITH_SECURITY_BCBP).append('\n');
+        }
+        Path log = write("regions.txt", content.toString());
+
+        BcbpFileScanner scanner = BcbpFileScanner.open(log, BcbpParser.defaultParser(), 1_000);
+
+        assertEquals(Files.size(log), scanner.size());
+        assertEquals(500, scanner.stream().count());
+        assertEquals(750, scanner.parallelStream().mapToInt(IataBcbp.Parsed::getNumberOfLegs).sum());
+    }
+
+    @Test
+    void emptyFileYieldsNoPasses() throws IOException {
+        assertEquals(0, BcbpFileScanner.open(write("empty.txt", "")).stream().count());
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(directory.resolve(name), content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,236 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.nielstron.bcbp.BcbpIngestionServer.Framing;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import org.junit.jupiter.api.Test;
+
+class BcbpIngestionServerTest {
+
+    private static final String BASIC_BCBP = "M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000";
+    private static final String MULTI_LEG_WITH_SECURITY_BCBP =
+        "M2DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 14D>6181WW6225BAC 00141234560032A0141234567890 1AC AC 1234567890123    20KYLX58ZDEF456 FRAGVALH 3664 227C012C0002 12E2A0140987654321 1AC AC 1234567890123    2PCNWQ^164GIWVC5EH7JNT684FVNJ91W2QA4DVN5J8K4F0L0GEQ3DF5TGBN8709HKT5D3DW3GBHFCVHMY7J5T6HFR41W2QA4DVN5J8K4F0L0GE";
+    private static final BcbpParser PARSER = BcbpParser.builder().fixedReferenceYear(2024).build();
+
+    @Test
+    void answersPassesAndRejectionsInBothFramings() throws IOException {
+        for (Framing framing : Framing.values()) {
+            try (BcbpIngestionServer server = BcbpIngestionServer.builder().parser(PARSER).framing(framing).start();
+                 BcbpIngestionClient client = BcbpIngestionClient.connect(server.address(), framing)) {
+                ParseResult pass = client.parse(MULTI_LEG_WITH_SECURITY_BCBP);
+                assertTrue(pass.isSuccess(), framing.name());
+                IataBcbp.Parsed expected = PARSER.parse(MULTI_LEG_WITH_SECURITY_BCBP);
+                assertEquals(expected.summary(), pass.get().summary());
+                assertEquals(expected.getSecurityData().getData(), pass.get().getSecurityData().getData());
+
+                ParseResult rejected = client.parse(BASIC_BCBP.replace("YUL", "Y1L"));
+                assertEquals(PARSER.tryParse(BASIC_BCBP.replace("YUL", "Y1L")).toString(), rejected.toString());
+                assertEquals(ParseResult.Failure.TOO_SHORT, client.parse("garbage").getFailure());
+            }
+        }
+    }
+
+    @Test
+    void pipelinedResultsComeBackInOrder() throws IOException {
+        List<String> payloads = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            payloads.add(i % 7 == 6 ? "not a pass" : BASIC_BCBP.replace("0834", String.format("%04d", i)));
+        }
+        try (BcbpIngestionServer server = BcbpIngestionServer.builder()
+                .parser(PARSER)
+                .framing(Framing.LENGTH_PREFIXED)
+                .maxPipelinedResponses(16)
+                .start();
+             BcbpIngestionClient client = BcbpIngestionClient.connect(server.address(), Framing.LENGTH_PREFIXED)) {
+            List<ParseResult> results = client.parseAll(payloads, 128);
+            assertEquals(payloads.size(), results.size());
+            for (int i = 0; i < payloads.size(); i++) {
+                IataBcbp.Parsed expected = PARSER.parse(payloads.get(i));
+                assertEquals(expected == null ? null : expected.flightCode(), results.get(i).isSuccess() ? results.get(i).get().flightCode() : null);
+            }
+        }
+    }
+
+    @Test
+    void linesIgnoreBlankKeepAlivesAndCarriageReturns() throws IOException {
+        try (BcbpIngestionServer server = BcbpIngestionServer.builder().parser(PARSER).start();
+             Socket socket = new Socket(server.address().getAddress(), server.port())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("\n\r\n" + BASIC_BCBP + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            byte[] line = readLine(socket.getInputStream());
+            assertTrue(new String(line, StandardCharsets.ISO_8859_1).startsWith("OK "));
+        }
+    }
+
+    @Test
+    void skipsOversizedLengthPrefixedFrames() throws Exception {
+        try (BcbpIngestionServer server = BcbpIngestionServer.builder()
+                .parser(PARSER)
+                .framing(Framing.LENGTH_PREFIXED)
+                .maxPayloadLength(1_024)
+                .start();
+             Socket socket = new Socket(server.address().getAddress(), server.port())) {
+            socket.setSoTimeout(10_000);
+            ByteArrayOutputStream frames = new ByteArrayOutputStream();
+            writeLengthPrefixed(frames, BASIC_BCBP.getBytes(StandardCharsets.ISO_8859_1));
+            writeLengthPrefixed(frames, new byte[4_096]);
+            writeLengthPrefixed(frames, MULTI_LEG_WITH_SECURITY_BCBP.getBytes(StandardCharsets.ISO_8859_1));
+            socket.getOutputStream().write(frames.toByteArray());
+            socket.getOutputStream().flush();
+
+            IngestionFrames.Reader responses =
+                new IngestionFrames.Reader(socket.getInputStream(), Framing.LENGTH_PREFIXED, IngestionFrames.MAX_FRAME_LENGTH);
+            assertTrue(nextResult(responses, Framing.LENGTH_PREFIXED).isSuccess());
+            ParseResult tooLong = nextResult(responses, Framing.LENGTH_PREFIXED);
+            assertEquals(ParseResult.Failure.TOO_LONG, tooLong.getFailure());
+            assertEquals(1_024, tooLong.getOffset());
+            assertEquals(2, nextResult(responses, Framing.LENGTH_PREFIXED).get().getLegs().size());
+            assertEquals(1, server.connectionCount());
+
+            // A frame cut off by the peer still closes the connection, after the answers before it.
+            frames.reset();
+            writeLengthPrefixed(frames, BASIC_BCBP.getBytes(StandardCharsets.ISO_8859_1));
+            frames.write(new byte[] {0x00, 0x40, 'M', '1'});
+            socket.getOutputStream().write(frames.toByteArray());
+            socket.shutdownOutput();
+            assertTrue(nextResult(responses, Framing.LENGTH_PREFIXED).isSuccess());
+            assertFalse(responses.next());
+            awaitCount(server::connectionCount, 0);
+        }
+    }
+
+    @Test
+    void answersPipelinedLinesBeforeClosingOnAnOverlongOne() throws Exception {
+        for (int run = 0; run < 20; run++) {
+            try (BcbpIngestionServer server = BcbpIngestionServer.builder().parser(PARSER).maxPayloadLength(100).start();
+                 Socket socket = new Socket(server.address().getAddress(), server.port())) {
+                socket.setSoTimeout(10_000);
+                String pipelined = (BASIC_BCBP + "\n").repeat(3) + "X".repeat(300) + "\n";
+                socket.getOutputStream().write(pipelined.getBytes(StandardCharsets.ISO_8859_1));
+                socket.getOutputStream().flush();
+
+                IngestionFrames.Reader responses =
+                    new IngestionFrames.Reader(socket.getInputStream(), Framing.LINES, IngestionFrames.MAX_FRAME_LENGTH);
+                for (int i = 0; i < 3; i++) {
+                    assertTrue(nextResult(responses, Framing.LINES).isSuccess(), "run " + run);
+                }
+                assertEquals(ParseResult.failure(ParseResult.Failure.TOO_LONG, 100, -1), nextResult(responses, Framing.LINES));
+                assertFalse(responses.next());
+            }
+        }
+    }
+
+    @Test
+    void holdsManyIdleConnections() throws Exception {
+        int idle = 2_000;
+        List<Socket> sockets = new ArrayList<>(idle);
+        try (BcbpIngestionServer server = BcbpIngestionServer.builder().parser(PARSER).start()) {
+            try {
+                for (int i = 0; i < idle; i++) {
+                    sockets.add(new Socket(server.address().getAddress(), server.port()));
+                }
+                awaitCount(server::connectionCount, idle);
+
+                try (BcbpIngestionClient client = BcbpIngestionClient.connect(server.address(), Framing.LINES)) {
+                    assertTrue(client.parse(BASIC_BCBP).isSuccess());
+                }
+            } finally {
+                for (Socket socket : sockets) {
+                    socket.close();
+                }
+            }
+            awaitCount(server::connectionCount, 0);
+            assertEquals(idle + 1, server.acceptedCount());
+        }
+    }
+
+    @Test
+    void closingTheServerClosesItsConnections() throws Exception {
+        BcbpIngestionServer server = BcbpIngestionServer.builder().start();
+        try (BcbpIngestionClient client = BcbpIngestionClient.connect(server.address(), Framing.LINES)) {
+            assertTrue(client.parse(BASIC_BCBP).isSuccess());
+            server.close();
+            assertThrows(IOException.class, () -> client.parse(BASIC_BCBP));
+        }
+        awaitCount(server::connectionCount, 0);
+    }
+
+    @Test
+    void backsOffWhileAcceptingFails() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicBoolean failing = new AtomicBoolean(true);
+        ServerSocket serverSocket = new ServerSocket() {
+            @Override
+            public Socket accept() throws IOException {
+                attempts.incrementAndGet();
+                if (failing.get()) {
+                    throw new IOException("Too many open files");
+                }
+                return super.accept();
+            }
+        };
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        List<IOException> reported = new CopyOnWriteArrayList<>();
+        try (BcbpIngestionServer server = BcbpIngestionServer.builder().acceptErrorHandler(reported::add).start(serverSocket)) {
+            Thread.sleep(500);
+            failing.set(false);
+            int failed = attempts.get();
+            // Without backoff this would be millions of attempts; doubling from 1 ms allows about ten.
+            assertTrue(failed > 1 && failed < 20, failed + " attempts");
+
+            try (BcbpIngestionClient client = BcbpIngestionClient.connect(server.address(), Framing.LINES)) {
+                assertTrue(client.parse(BASIC_BCBP).isSuccess());
+            }
+            assertEquals(server.acceptFailureCount(), reported.size());
+            assertTrue(server.acceptFailureCount() >= failed - 1);
+            assertEquals("Too many open files", reported.get(0).getMessage());
+        }
+    }
+
+    private static void writeLengthPrefixed(ByteArrayOutputStream out, byte[] payload) {
+        out.write(payload.length >>> 8);
+        out.write(payload.length);
+        out.write(payload, 0, payload.length);
+    }
+
+    private static ParseResult nextResult(IngestionFrames.Reader responses, Framing framing) throws IOException {
+        assertTrue(responses.next());
+        return IngestionFrames.decodeResult(responses.buffer(), responses.frameStart(), responses.frameLength(), framing);
+    }
+
+    private static byte[] readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n') {
+            line.write(b);
+        }
+        return line.toByteArray();
+    }
+
+    private static void awaitCount(IntSupplier count, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (count.getAsInt() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, count.getAsInt());
+    }
+}
@@ -0,0 +1,85 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class BcbpInternerTest {
+
+    private static final String BASIC_BCBP = "M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000";
+    private static final String MULTI_LEG_WITH_SECURITY_BCBP =
+        "M2DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 14D>6181WW6225BAC 00141234560032A0141234567890 1AC AC 1234567890123    20KYLX58ZDEF456 FRAGVALH 3664 227C012C0002 12E2A0140987654321 1AC AC 1234567890123    2PCNWQ^164GIWVC5EH7JNT684FVNJ91W2QA4DVN5J8K4F0L0GEQ3DF5TGBN8709HKT5D3DW3GBHFCVHMY7J5T6HFR41W2QA4DVN5J8K4F0L0GE";
+
+    @Test
+    void boundedInternerReturnsEqualSharedStrings() {
+        BcbpInterner interner = BcbpInterner.bounded(100);
+
+        String first = interner.intern("xxFRAxx", 2, 5);
+        assertEquals("FRA", first);
+        assertSame(first, interner.intern(new StringBuilder("FRA"), 0, 3));
+        assertSame(first, interner.intern(new AsciiCharSequence("..FRA".getBytes(), 2, 3), 0, 3));
+        assertEquals("", interner.intern("FRA", 1, 1));
+        assertEquals(128, ((DirectMappedInterner) interner).capacity());
+        assertThrows(IllegalArgumentException.class, () -> BcbpInterner.bounded(0));
+    }
+
+    @Test
+    void boundedInternerEvictsOnCollisionAndSkipsLongValues() {
+        BcbpInterner interner = BcbpInterner.bounded(1);
+        String fra = interner.intern(" FRA", 1, 4);
+        interner.intern(" YUL", 1, 4);
+        assertNotSame(fra, interner.intern(" FRA", 1, 4));
+
+        String longValue = " 1234567890ABCDEFG";
+        assertNotSame(interner.intern(longValue, 1, longValue.length()), interner.intern(longValue, 1, longValue.length()));
+    }
+
+    @Test
+    void internedParserSharesCodeStringsAcrossPasses() {
+        BcbpParser parser = BcbpParser.builder().interner(BcbpInterner.bounded(1024)).passengerNameCache(64).build();
+
+        IataBcbp.Parsed first = parser.parse(MULTI_LEG_WITH_SECURITY_BCBP);
+        IataBcbp.Parsed second = parser.parse(new String(MULTI_LEG_WITH_SECURITY_BCBP.toCharArray()));
+        IataBcbp.Leg firstLeg = first.getLegs().get(1);
+        IataBcbp.Leg secondLeg = second.getLegs().get(1);
+
+        assertSame(firstLeg.getFromAirport(), secondLeg.getFromAirport());
+        assertSame(firstLeg.getToAirport(), secondLeg.getToAirport());
+        assertSame(firstLeg.getOperatingCarrier(), secondLeg.getOperatingCarrier());
+        assertSame(firstLeg.getCompartmentCode(), secondLeg.getCompartmentCode());
+        assertSame(firstLeg.getPassengerStatus(), secondLeg.getPassengerStatus());
+        assertSame(
+            firstLeg.getRepeatedConditional().getMarketingCarrierDesignator(),
+            secondLeg.getRepeatedConditional().getMarketingCarrierDesignator()
+        );
+        assertSame(first.getPassengerName(), second.getPassengerName());
+        assertSame(first.getLegs().get(0).getToAirport(), secondLeg.getFromAirport());
+        assertSame(first.getPassengerName(), parser.parse(BASIC_BCBP).getPassengerName());
+        assertSame(firstLeg.getFromAirport(), parser.parseLazy(MULTI_LEG_WITH_SECURITY_BCBP).getLegs().get(1).getFromAirport());
+    }
+
+    @Test
+    void internedParserMatchesPlainParser() {
+        BcbpParser interned = BcbpParser.builder().fixedReferenceYear(2020).interner(BcbpInterner.bounded(4)).passengerNameCache(2).build();
+        BcbpParser plain = BcbpParser.builder().fixedReferenceYear(2020).build();
+
+        for (String payload : new String[] {BASIC_BCBP, MULTI_LEG_WITH_SECURITY_BCBP, BASIC_BCBP.replace("LUC  ", "ANNA ")}) {
+            IataBcbp.Parsed expected = plain.parse(payload);
+            IataBcbp.Parsed actual = interned.parse(payload);
+            assertEquals(expected.getPassengerName(), actual.getPassengerName());
+            assertEquals(expected.getTicketIndicator(), actual.getTicketIndicator());
+            for (int i = 0; i < expected.getNumberOfLegs(); i++) {
+                IataBcbp.Leg expectedLeg = expected.getLegs().get(i);
+                IataBcbp.Leg actualLeg = actual.getLegs().get(i);
+                assertEquals(expectedLeg.getFromAirport(), actualLeg.getFromAirport());
+                assertEquals(expectedLeg.getToAirport(), actualLeg.getToAirport());
+                assertEquals(expectedLeg.getOperatingCarrier(), actualLeg.getOperatingCarrier());
+                assertEquals(expectedLeg.getCompartmentCode(), actualLeg.getCompartmentCode());
+                assertEquals(expectedLeg.getPassengerStatus(), actualLeg.getPassengerStatus());
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.nielstron.bcbp.BcbpManifestAggregator.Flight;
+import de.nielstron.bcbp.BcbpManifestAggregator.FlightCounts;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+
+class BcbpManifestAggregatorTest {
+
+    private static final String BASIC_BCBP = "M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000";
+    private static final String MULTI_LEG_WITH_SECURITY_BCBP =
+        "M2DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 14D>6181WW6225BAC 00141234560032A0141234567890 1AC AC 1234567890123    20KYLX58ZDEF456 FRAGVALH 3664 227C012C0002 12E2A0140987654321 1AC AC 1234567890123    2PCNWQ^164GIWVC5EH7JNT684FVNJ91W2QA4DVN5J8K4F0L0GEQ3DF5TGBN8709HKT5D3DW3GBHFCVHMY7J5T6HFR41W2QA4DVN5J8K4F0L0GE";
+    /** The first leg's repeated section carries selectee indicator {@code 3}. */
+    private static final String SELECTEE_BCBP = MULTI_LEG_WITH_SECURITY_BCBP.replace("1234567890 1AC", "123456789031AC");
+    private static final BcbpParser PARSER = BcbpParser.builder().fixedReferenceYear(2024).build();
+    private static final Flight AC834 = new Flight("AC", "834", LocalDate.of(2024, 8, 13), "YUL");
+
+    @Test
+    void countsEachLegUnderItsFlight() {
+        BcbpManifestAggregator aggregator = BcbpManifestAggregator.builder().parser(PARSER).build();
+
+        assertTrue(aggregator.add(BASIC_BCBP));
+        assertTrue(aggregator.add(SELECTEE_BCBP));
+        assertTrue(aggregator.add(BASIC_BCBP.replace("0834 226F", "0834 226Y")));
+        assertFalse(aggregator.add("garbage"));
+
+        BcbpManifestAggregator.Snapshot snapshot = aggregator.snapshot();
+        assertEquals(3, snapshot.getFlights().size());
+        assertEquals(4, snapshot.getPassengers());
+
+        FlightCounts ac834 = snapshot.get(AC834);
+        assertEquals(2, ac834.getPassengers());
+        assertEquals(Map.of("F", 1L, "Y", 1L), ac834.getByCompartment());
+        assertEquals(Map.of("1", 2L), ac834.getByPassengerStatus());
+        assertTrue(ac834.getBySelecteeIndicator().isEmpty());
+        assertEquals(0, ac834.getFastTrack());
+
+        List<IataBcbp.Leg> legs = PARSER.parse(SELECTEE_BCBP).getLegs();
+        FlightCounts first = snapshot.get(Flight.of(legs.get(0)));
+        assertEquals(1, first.getPassengers());
+        assertEquals(Map.of("3", 1L), first.getBySelecteeIndicator());
+        assertEquals(1, first.getFastTrack());
+
+        FlightCounts second = snapshot.get(Flight.of(legs.get(1)));
+        assertEquals(Map.of("C", 1L), second.getByCompartment());
+        assertEquals(0, second.getFastTrack());
+        assertEquals("AC834 2024-08-13 from YUL", AC834.toString());
+    }
+
+    @Test
+    void dropsIdleFlights() {
+        MutableClock clock = new MutableClock(Instant.parse("2024-08-13T08:00:00Z"));
+        BcbpManifestAggregator aggregator = BcbpManifestAggregator.builder()
+            .parser(PARSER)
+            .clock(clock)
+            .expireAfterIdle(Duration.ofHours(1))
+            .build();
+
+        aggregator.add(MULTI_LEG_WITH_SECURITY_BCBP);
+        aggregator.add(BASIC_BCBP);
+        clock.advance(Duration.ofMinutes(45));
+        aggregator.add(BASIC_BCBP);
+        clock.advance(Duration.ofMinutes(30));
+
+        BcbpManifestAggregator.Snapshot snapshot = aggregator.snapshot();
+        assertEquals(1, snapshot.getFlights().size());
+        assertEquals(2, snapshot.get(AC834).getPassengers());
+
+        assertEquals(2, aggregator.remove(AC834).getPassengers());
+        assertTrue(aggregator.snapshot().getFlights().isEmpty());
+        assertNull(aggregator.remove(AC834));
+    }
+
+    @Test
+    void flightsUseTheLegsNormalizedFlightNumber() {
+        Flight flight = Flight.of(PARSER.parse(BASIC_BCBP).getFirstLeg());
+        assertEquals(AC834, flight);
+        assertEquals("834", flight.getFlightNumber());
+        assertNotEquals(new Flight("AC", "0834", LocalDate.of(2024, 8, 13), "YUL"), flight);
+    }
+
+    @Test
+    void removalsLoseNoConcurrentScans() throws Exception {
+        BcbpManifestAggregator aggregator = BcbpManifestAggregator.builder().parser(PARSER).build();
+        IataBcbp.Parsed pass = PARSER.parse(BASIC_BCBP);
+        int threads = 4;
+        int passesPerThread = 20_000;
+
+        ExecutorService scanners = Executors.newFixedThreadPool(threads);
+        long removed = 0;
+        try {
+            List<CompletableFuture<Void>> adds = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                adds.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < passesPerThread; i++) {
+                        aggregator.add(pass);
+                    }
+                }, scanners));
+            }
+            CompletableFuture<Void> all = CompletableFuture.allOf(adds.toArray(new CompletableFuture<?>[0]));
+            while (!all.isDone()) {
+                FlightCounts counts = aggregator.remove(AC834);
+                removed += counts == null ? 0 : counts.getPassengers();
+            }
+            all.join();
+        } finally {
+            scanners.shutdown();
+        }
+
+        FlightCounts rest = aggregator.snapshot().get(AC834);
+        assertEquals(threads * passesPerThread, removed + (rest == null ? 0 : rest.getPassengers()));
+    }
+
+    @Test
+    void snapshotsAreConsistentUnderConcurrentAdds() throws Exception {
+        BcbpManifestAggregator aggregator = BcbpManifestAggregator.builder().parser(PARSER).build();
+        IataBcbp.Parsed first = PARSER.parse(BASIC_BCBP);
+        IataBcbp.Parsed economy = PARSER.parse(BASIC_BCBP.replace("0834 226F", "0834 226Y"));
+        int threads = 8;
+        int passesPerThread = 5_000;
+
+        ExecutorService scanners = Executors.newFixedThreadPool(threads);
+        try {
+            List<CompletableFuture<Void>> adds = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                adds.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < passesPerThread; i++) {
+                        aggregator.add(i % 2 == 0 ? first : economy);
+                    }
+                }, scanners));
+            }
+            CompletableFuture<Void> all = CompletableFuture.allOf(adds.toArray(new CompletableFuture<?>[0]));
+            while (!all.isDone()) {
+                FlightCounts counts = aggregator.snapshot().get(AC834);
+                if (counts != null) {
+                    long byCompartment = counts.getByCompartment().values().stream().mapToLong(Long::longValue).sum();
+                    assertEquals(counts.getPassengers(), byCompartment);
+                }
+            }
+            all.join();
+        } finally {
+            scanners.shutdown();
+        }
+
+        FlightCounts counts = aggregator.snapshot().get(AC834);
+        assertEquals(threads * passesPerThread, counts.getPassengers());
+        assertEquals(Map.of("F", threads * passesPerThread / 2L, "Y", threads * passesPerThread / 2L), counts.getByCompartment());
+    }
+}
@@ -0,0 +1,104 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.nielstron.bcbp.ParseResult.Failure;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class BcbpMetricsTest {
+
+    private static final String BASIC_BCBP = "M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000";
+    private static final String MULTI_LEG_WITH_SECURITY_BCBP =
+        "M2DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 14D>6181WW6225BAC 00141234560032A0141234567890 1AC AC 1234567890123    20KYLX58ZDEF456 FRAGVALH 3664 227C012C0002 12E2A0140987654321 1AC AC 1234567890123    2PCNWQ^164GIWVC5EH7JNT684FVNJ91W2QA4DVN5J8K4F0L0GEQ3DF5TGBN8709HKT5D3DW3GBHFCVHMY7J5T6HFR41W2QA4DVN5J8K4F0L0GE";
+
+    @Test
+    void countsOutcomesAndPassShapes() {
+        BcbpMetrics metrics = new BcbpMetrics();
+        BcbpParser parser = BcbpParser.builder().metrics(metrics).build();
+        byte[] multiLeg = MULTI_LEG_WITH_SECURITY_BCBP.getBytes(StandardCharsets.ISO_8859_1);
+
+        parser.parse(BASIC_BCBP);
+        parser.parse(multiLeg, 0, multiLeg.length);
+        parser.parseLazy(MULTI_LEG_WITH_SECURITY_BCBP);
+        parser.tryParse(BASIC_BCBP.replace("0834 226", "0834 999"));
+        parser.parse("garbage");
+        parser.parse((String) null);
+
+        BcbpMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(6, snapshot.getParses());
+        assertEquals(3, snapshot.getPasses());
+        assertEquals(3, snapshot.getRejections());
+        assertEquals(1, snapshot.getRejections(Failure.DAY_OF_YEAR));
+        assertEquals(1, snapshot.getRejections(Failure.TOO_SHORT));
+        assertEquals(1, snapshot.getRejections(Failure.NULL_INPUT));
+        assertEquals(0, snapshot.getRejections(Failure.FORMAT_CODE));
+        assertEquals(1, snapshot.getPassesWithLegs(1));
+        assertEquals(2, snapshot.getPassesWithLegs(2));
+        assertEquals(0, snapshot.getPassesWithLegs(9));
+        assertEquals(3, snapshot.getPassesWithUniqueConditional());
+        assertEquals(2, snapshot.getPassesWithRepeatedConditional());
+        assertEquals(2, snapshot.getPassesWithSecurityData());
+        assertThrows(IllegalArgumentException.class, () -> snapshot.getPassesWithLegs(10));
+    }
+
+    @Test
+    void timesParseEntryPoints() {
+        BcbpMetrics metrics = new BcbpMetrics();
+        BcbpParser parser = BcbpParser.builder().metrics(metrics).build();
+        for (int i = 0; i < 100; i++) {
+            parser.parse(BASIC_BCBP);
+        }
+
+        BcbpMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(100, snapshot.getLatencyCount());
+        long median = snapshot.getLatencyNanosAtQuantile(0.5);
+        assertTrue(median > 0 && median <= snapshot.getLatencyNanosAtQuantile(1));
+        assertTrue(snapshot.getMeanLatencyNanos() < snapshot.getLatencyNanosAtQuantile(1));
+        assertEquals(100, IntStream.range(0, BcbpMetrics.LATENCY_BUCKETS)
+            .mapToLong(snapshot::getLatencyBucketCount).sum());
+    }
+
+    @Test
+    void histogramBucketsArePowersOfTwo() {
+        assertEquals(0, BcbpMetrics.bucket(0));
+        assertEquals(1, BcbpMetrics.bucket(1));
+        assertEquals(10, BcbpMetrics.bucket(1_000));
+        assertEquals(BcbpMetrics.LATENCY_BUCKETS - 1, BcbpMetrics.bucket(Long.MAX_VALUE));
+        assertEquals(1_024, BcbpMetrics.Snapshot.getLatencyBucketUpperBound(BcbpMetrics.bucket(1_000)));
+
+        BcbpMetrics metrics = new BcbpMetrics();
+        assertEquals(0, metrics.snapshot().getLatencyNanosAtQuantile(0.99));
+        metrics.recordLatency(700);
+        metrics.recordLatency(5_000);
+        assertEquals(1_024, metrics.snapshot().getLatencyNanosAtQuantile(0.5));
+        assertEquals(8_192, metrics.snapshot().getLatencyNanosAtQuantile(0.99));
+    }
+
+    @Test
+    void sumsAcrossThreads() {
+        BcbpMetrics metrics = new BcbpMetrics();
+        BcbpParser parser = BcbpParser.builder().metrics(metrics).build();
+        String[] batch = new String[10_000];
+        Arrays.fill(batch, BASIC_BCBP);
+        Arrays.fill(batch, 0, 1_000, "X" + BASIC_BCBP.substring(1));
+
+        parser.parseAll(batch);
+
+        BcbpMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(9_000, snapshot.getPasses());
+        assertEquals(1_000, snapshot.getRejections(Failure.FORMAT_CODE));
+        assertEquals(10_000, snapshot.getLatencyCount());
+        assertTrue(snapshot.toString().contains("FORMAT_CODE=1000"), snapshot::toString);
+    }
+
+    @Test
+    void disabledByDefault() {
+        assertNull(BcbpParser.defaultParser().metrics());
+    }
+}
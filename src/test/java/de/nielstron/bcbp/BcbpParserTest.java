@@ -0,0 +1,136 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+
+class BcbpParserTest {
+
+    private static final String BASIC_BCBP = "M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000";
+    private static final String MULTI_LEG_WITH_SECURITY_BCBP =
+        "M2DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 14D>6181WW6225BAC 00141234560032A0141234567890 1AC AC 1234567890123    20KYLX58ZDEF456 FRAGVALH 3664 227C012C0002 12E2A0140987654321 1AC AC 1234567890123    2PCNWQ^164GIWVC5EH7JNT684FVNJ91W2QA4DVN5J8K4F0L0GEQ3DF5TGBN8709HKT5D3DW3GBHFCVHMY7J5T6HFR41W2QA4DVN5J8K4F0L0GE";
+
+    @Test
+    void resolvesDatesAgainstConfiguredClock() {
+        BcbpParser parser = BcbpParser.builder()
+            .clock(Clock.fixed(Instant.parse("2020-06-01T12:00:00Z"), ZoneOffset.UTC))
+            .build();
+
+        IataBcbp.Parsed parsed = parser.parse(BASIC_BCBP);
+        assertNotNull(parsed);
+        assertEquals(LocalDate.of(2020, 8, 13), parsed.getFlightDate());
+    }
+
+    @Test
+    void replaysHistoricPayloadsDeterministically() {
+        BcbpParser replay2017 = BcbpParser.builder().fixedReferenceYear(2017).build();
+        IataBcbp.Parsed parsed = replay2017.parse(MULTI_LEG_WITH_SECURITY_BCBP);
+        assertNotNull(parsed);
+        assertEquals(LocalDate.of(2016, 8, 12), parsed.getUniqueConditional().getIssuanceDate());
+        assertEquals(LocalDate.of(2016, 8, 13), parsed.getLegs().get(0).getFlightDate());
+        assertEquals(LocalDate.of(2016, 8, 14), parsed.getLegs().get(1).getFlightDate());
+
+        BcbpParser replay2025 = BcbpParser.builder().fixedReferenceYear(2025).build();
+        assertEquals(LocalDate.of(2026, 8, 14), replay2025.parse(MULTI_LEG_WITH_SECURITY_BCBP).getFlightDate());
+        assertEquals(LocalDate.of(2016, 8, 13), replay2017.parseLazy(MULTI_LEG_WITH_SECURITY_BCBP).getFlightDate());
+    }
+
+    @Test
+    void refreshesReferenceYearWhenClockCrossesNewYear() {
+        MutableClock clock = new MutableClock(Instant.parse("2020-12-31T23:59:59Z"));
+        BcbpParser parser = BcbpParser.builder().clock(clock).build();
+
+        assertEquals(2020, parser.referenceYear());
+        clock.set(Instant.parse("2021-01-01T00:00:00Z"));
+        assertEquals(2021, parser.referenceYear());
+        clock.set(Instant.parse("2019-07-01T00:00:00Z"));
+        assertEquals(2019, parser.referenceYear());
+    }
+
+    @Test
+    void normalizationCanBeDisabled() {
+        BcbpParser strict = BcbpParser.builder()
+            .stripSymbologyIdentifier(false)
+            .stripLineBreaks(false)
+            .build();
+
+        assertNotNull(strict.parse(BASIC_BCBP));
+        assertNull(strict.parse("]Q3" + BASIC_BCBP));
+        assertNull(strict.parse("M1DESMARAIS/\nLUC      EABC123 YULFRAAC 0834 226F001A0025 106>60000"));
+        assertNotNull(IataBcbp.parse("M1DESMARAIS/\nLUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000"));
+    }
+
+    @Test
+    void staticEntryPointsUseDefaultParser() {
+        assertSame(BcbpParser.defaultParser(), BcbpParser.defaultParser());
+        assertEquals(LocalDate.now(ZoneOffset.UTC).getYear(), BcbpParser.defaultParser().referenceYear());
+        assertEquals(
+            BcbpParser.defaultParser().parse(BASIC_BCBP).getFlightDate(),
+            IataBcbp.parse(BASIC_BCBP).getFlightDate()
+        );
+        assertThrows(IllegalArgumentException.class, () -> BcbpParser.builder().fixedReferenceYear(0));
+    }
+
+    @Test
+    void parseAllPreservesInputOrderAndMarksRejects() {
+        List<String> batch = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            switch (i % 4) {
+                case 0 -> batch.add(BASIC_BCBP);
+                case 1 -> batch.add(MULTI_LEG_WITH_SECURITY_BCBP);
+                case 2 -> batch.add("not a boarding pass " + i);
+                default -> batch.add(null);
+            }
+        }
+
+        List<ParseResult> results = IataBcbp.parseAll(batch);
+        assertEquals(batch.size(), results.size());
+        for (int i = 0; i < batch.size(); i++) {
+            ParseResult result = results.get(i);
+            switch (i % 4) {
+                case 0 -> assertEquals(1, result.get().getNumberOfLegs());
+                case 1 -> assertEquals(2, result.get().getNumberOfLegs());
+                default -> {
+                    assertFalse(result.isSuccess());
+                    assertNull(result.getParsed());
+                }
+            }
+        }
+        assertThrows(NoSuchElementException.class, () -> results.get(2).get());
+    }
+
+    @Test
+    void parseAllRunsOnCallerSuppliedExecutor() {
+        String[] batch = new String[3_000];
+        Arrays.fill(batch, BASIC_BCBP);
+        batch[1_234] = "garbage";
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            ParseResult[] results = BcbpParser.builder().fixedReferenceYear(2020).build().parseAll(batch, executor);
+            assertEquals(batch.length, results.length);
+            assertFalse(results[1_234].isSuccess());
+            assertTrue(results[2_999].isSuccess());
+            assertEquals(LocalDate.of(2020, 8, 13), results[0].get().getFlightDate());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, IataBcbp.parseAll(new String[0]).length);
+    }
+}
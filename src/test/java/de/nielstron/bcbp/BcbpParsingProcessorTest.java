@@ -0,0 +1,304 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class BcbpParsingProcessorTest {
+
+    private static final String BASIC_BCBP = "M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000";
+    private static final BcbpParser PARSER = BcbpParser.builder().fixedReferenceYear(2024).build();
+
+    @Test
+    void parsesBurstsInOrderAcrossParallelBatches() throws Exception {
+        ExecutorService parsers = Executors.newFixedThreadPool(4);
+        ExecutorService publisherThreads = Executors.newSingleThreadExecutor();
+        try {
+            BcbpParsingProcessor<String> processor = BcbpParsingProcessor.forStrings()
+                .parser(PARSER)
+                .executor(parsers)
+                .batchSize(16)
+                .parallelism(4)
+                .build();
+            RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+            processor.subscribe(subscriber);
+
+            List<String> payloads = payloads(20_000);
+            try (SubmissionPublisher<String> publisher = new SubmissionPublisher<>(publisherThreads, 1024)) {
+                publisher.subscribe(processor);
+                for (int burst = 0; burst < payloads.size(); burst += 2_000) {
+                    payloads.subList(burst, burst + 2_000).forEach(publisher::submit);
+                    Thread.sleep(1);
+                }
+            }
+
+            subscriber.completion.get(30, TimeUnit.SECONDS);
+            assertEquals(payloads.size(), subscriber.results.size());
+            for (int i = 0; i < payloads.size(); i++) {
+                assertResultMatches(payloads.get(i), subscriber.results.get(i));
+            }
+        } finally {
+            parsers.shutdown();
+            publisherThreads.shutdown();
+        }
+    }
+
+    @Test
+    void requestsOnlyWhatTheSubscriberAskedFor() {
+        BurstPublisher<String> publisher = new BurstPublisher<>(payloads(1_000));
+        BcbpParsingProcessor<String> processor = BcbpParsingProcessor.forStrings()
+            .parser(PARSER)
+            .executor(Runnable::run)
+            .batchSize(8)
+            .build();
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        processor.subscribe(subscriber);
+        publisher.subscribe(processor);
+        assertEquals(0, publisher.requested.get());
+
+        subscriber.subscription.request(5);
+        assertEquals(5, publisher.requested.get());
+        assertEquals(5, subscriber.results.size());
+
+        // An unbounded request is still only pulled 2 * batchSize * parallelism payloads at a time.
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertTrue(subscriber.completion.isDone());
+        assertEquals(1_000, subscriber.results.size());
+        assertTrue(publisher.largestRequest.get() <= 16, "largest request " + publisher.largestRequest.get());
+    }
+
+    @Test
+    void parsesByteBuffersAndReportsRejections() {
+        BurstPublisher<ByteBuffer> publisher = new BurstPublisher<>(List.of(
+            ByteBuffer.wrap(BASIC_BCBP.getBytes(StandardCharsets.ISO_8859_1)),
+            ByteBuffer.wrap("garbage".getBytes(StandardCharsets.ISO_8859_1)),
+            ByteBuffer.allocateDirect(BASIC_BCBP.length()).put(BASIC_BCBP.getBytes(StandardCharsets.ISO_8859_1)).flip()
+        ));
+        BcbpParsingProcessor<ByteBuffer> processor = BcbpParsingProcessor.forByteBuffers().parser(PARSER).build();
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        processor.subscribe(subscriber);
+        publisher.subscribe(processor);
+
+        subscriber.completion.join();
+        assertEquals(3, subscriber.results.size());
+        assertEquals("AC834", subscriber.results.get(0).get().flightCode());
+        assertEquals(ParseResult.Failure.TOO_SHORT, subscriber.results.get(1).getFailure());
+        assertEquals("AC834", subscriber.results.get(2).get().flightCode());
+    }
+
+    @Test
+    void passesUpstreamErrorsOnAfterPendingResults() {
+        BurstPublisher<String> publisher = new BurstPublisher<>(List.of(BASIC_BCBP), new IllegalStateException("scanner gone"));
+        BcbpParsingProcessor<String> processor = BcbpParsingProcessor.forStrings().executor(Runnable::run).build();
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        processor.subscribe(subscriber);
+        publisher.subscribe(processor);
+
+        assertEquals(1, subscriber.results.size());
+        assertInstanceOf(IllegalStateException.class, subscriber.completion.handle((ignored, error) -> error).join());
+    }
+
+    @Test
+    void errorsThrownWhileParsingFailTheStream() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        // Parsing reads the clock for every pass; from the fourth on, it overflows the stack.
+        Clock failing = new Clock() {
+            @Override
+            public Instant instant() {
+                if (reads.incrementAndGet() > 3) {
+                    throw new StackOverflowError("simulated");
+                }
+                return Instant.parse("2024-08-13T08:00:00Z");
+            }
+
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            BurstPublisher<String> publisher = new BurstPublisher<>(payloads(100));
+            BcbpParsingProcessor<String> processor = BcbpParsingProcessor.forStrings()
+                .parser(BcbpParser.builder().clock(failing).build())
+                .executor(executor)
+                .build();
+            RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+            processor.subscribe(subscriber);
+            publisher.subscribe(processor);
+
+            Throwable error = subscriber.completion.handle((ignored, e) -> e).get(10, TimeUnit.SECONDS);
+            assertInstanceOf(StackOverflowError.class, error);
+            assertTrue(publisher.cancelled);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectsSecondSubscriberAndNonPositiveRequests() {
+        BcbpParsingProcessor<String> processor = BcbpParsingProcessor.forStrings().build();
+        RecordingSubscriber first = new RecordingSubscriber(0);
+        RecordingSubscriber second = new RecordingSubscriber(0);
+        processor.subscribe(first);
+        processor.subscribe(second);
+        assertInstanceOf(IllegalStateException.class, second.completion.handle((ignored, error) -> error).join());
+        assertFalse(first.completion.isDone());
+
+        BurstPublisher<String> publisher = new BurstPublisher<>(payloads(10));
+        publisher.subscribe(processor);
+        first.subscription.request(0);
+        assertInstanceOf(IllegalArgumentException.class, first.completion.handle((ignored, error) -> error).join());
+        assertTrue(publisher.cancelled);
+    }
+
+    private static List<String> payloads(int count) {
+        List<String> payloads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            payloads.add(i % 10 == 9 ? "not a pass " + i : BASIC_BCBP.replace("0834", String.format("%04d", i % 10_000)));
+        }
+        return payloads;
+    }
+
+    private static void assertResultMatches(String payload, ParseResult result) {
+        if (payload.startsWith("not a pass")) {
+            assertFalse(result.isSuccess(), payload);
+        } else {
+            assertEquals(PARSER.parse(payload).flightCode(), result.get().flightCode());
+        }
+    }
+
+    private static final class RecordingSubscriber implements Flow.Subscriber<ParseResult> {
+        private final long initialRequest;
+        private final List<ParseResult> results = Collections.synchronizedList(new ArrayList<>());
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private volatile Flow.Subscription subscription;
+
+        private RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(ParseResult item) {
+            results.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completion.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completion.complete(null);
+        }
+    }
+
+    /**
+     * Emits everything it may as soon as it is requested, on the requesting thread, and records the demand.
+     * After the last item it completes, or fails with {@code failure} if one is given.
+     */
+    private static final class BurstPublisher<T> implements Flow.Publisher<T> {
+        private final List<T> items;
+        private final Throwable failure;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicLong largestRequest = new AtomicLong();
+        private volatile boolean cancelled;
+
+        private BurstPublisher(List<T> items) {
+            this(items, null);
+        }
+
+        private BurstPublisher(List<T> items, Throwable failure) {
+            this.items = items;
+            this.failure = failure;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super T> subscriber) {
+            subscriber.onSubscribe(new Subscription(subscriber));
+        }
+
+        private final class Subscription implements Flow.Subscription {
+            private final Flow.Subscriber<? super T> subscriber;
+            private final AtomicInteger wip = new AtomicInteger();
+            private long demand;
+            private int next;
+
+            private Subscription(Flow.Subscriber<? super T> subscriber) {
+                this.subscriber = subscriber;
+            }
+
+            @Override
+            public void request(long n) {
+                requested.addAndGet(n);
+                largestRequest.accumulateAndGet(n, Math::max);
+                synchronized (this) {
+                    demand += n;
+                }
+                if (wip.getAndIncrement() != 0) {
+                    return;
+                }
+                do {
+                    while (!cancelled && next < items.size() && takeDemand()) {
+                        subscriber.onNext(items.get(next++));
+                    }
+                    if (!cancelled && next == items.size()) {
+                        next++;
+                        if (failure != null) {
+                            subscriber.onError(failure);
+                        } else {
+                            subscriber.onComplete();
+                        }
+                    }
+                } while (wip.decrementAndGet() != 0);
+            }
+
+            private synchronized boolean takeDemand() {
+                if (demand == 0) {
+                    return false;
+                }
+                demand--;
+                return true;
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class BcbpPassRepositoryTest {
+
+    private static final String BASIC_BCBP = "M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000";
+    private static final String MULTI_LEG_WITH_SECURITY_BCBP =
+        "M2DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 14D>6181WW6225BAC 00141234560032A0141234567890 1AC AC 1234567890123    20KYLX58ZDEF456 FRAGVALH 3664 227C012C0002 12E2A0140987654321 1AC AC 1234567890123    2PCNWQ^164GIWVC5EH7JNT684FVNJ91W2QA4DVN5J8K4F0L0GEQ3DF5TGBN8709HKT5D3DW3GBHFCVHMY7J5T6HFR41W2QA4DVN5J8K4F0L0GE";
+    private static final BcbpParser PARSER = BcbpParser.builder().fixedReferenceYear(2024).build();
+
+    @Test
+    void findsPassesByEveryIndexedField() {
+        BcbpPassRepository repository = BcbpPassRepository.builder().parser(PARSER).build();
+        IataBcbp.Parsed basic = PARSER.parse(BASIC_BCBP);
+        IataBcbp.Parsed multiLeg = PARSER.parse(MULTI_LEG_WITH_SECURITY_BCBP);
+        repository.add(basic);
+        repository.add(multiLeg);
+
+        assertEquals(2, repository.findByPnr("ABC123").size());
+        assertEquals(List.of(multiLeg), repository.findByPnr(" DEF456 "));
+        assertEquals(List.of(multiLeg), repository.findByFrequentFlyerNumber("1234567890123"));
+        assertEquals(List.of(multiLeg), repository.findByBagTag("0014123456"));
+        assertEquals(List.of(multiLeg), repository.findByBagTag("0014123456003"));
+        assertEquals(List.of(), repository.findByPnr("XYZ999"));
+        assertEquals(List.of(), repository.findByFrequentFlyerNumber("1234567890124"));
+
+        assertTrue(repository.add(BASIC_BCBP.replace("ABC123", "GHI789")));
+        assertFalse(repository.add("M1short"));
+        assertEquals(1, repository.findByPnr("GHI789").size());
+    }
+
+    @Test
+    void expandsConsecutiveBagTags() {
+        BcbpPassRepository repository = BcbpPassRepository.builder().build();
+        IataBcbp.Parsed pass = PARSER.parse(MULTI_LEG_WITH_SECURITY_BCBP);
+        repository.add(pass);
+
+        // 0014123456003 is plate 0014123456 and the three plates after it.
+        for (String plate : new String[] {"0014123456", "0014123457", "0014123458", "0014123459"}) {
+            assertEquals(List.of(pass), repository.findByBagTag(plate), plate);
+        }
+        assertEquals(List.of(), repository.findByBagTag("0014123455"));
+        assertEquals(List.of(), repository.findByBagTag("0014123460"));
+        assertEquals(List.of(), repository.findByBagTag("1014123457"));
+        assertEquals(List.of(), repository.findByBagTag("0024123457"));
+    }
+
+    @Test
+    void boundsAndWrapsBagTagBlocks() {
+        IataBcbp.Parsed wrapping = PARSER.parse(MULTI_LEG_WITH_SECURITY_BCBP.replace("0014123456003", "0014999998002"));
+        IataBcbp.Parsed hostile = PARSER.parse(MULTI_LEG_WITH_SECURITY_BCBP.replace("0014123456003", "0014123456999"));
+        BcbpPassRepository repository = BcbpPassRepository.builder().maxBagTagsPerBlock(10).build();
+        repository.add(wrapping);
+        repository.add(hostile);
+
+        assertEquals(List.of(wrapping), repository.findByBagTag("0014999999"));
+        assertEquals(List.of(wrapping), repository.findByBagTag("0014000000"));
+        assertEquals(List.of(hostile), repository.findByBagTag("0014123465"));
+        assertEquals(List.of(), repository.findByBagTag("0014123466"));
+        assertEquals(2 + 1 + 10, BcbpPassRepository.keys(hostile, 10).length);
+    }
+
+    @Test
+    void projectedPassesIndexOnlyTheirLoadedFields() {
+        BcbpPassRepository repository = BcbpPassRepository.builder().build();
+        IataBcbp.Parsed projected = PARSER.parse(
+            MULTI_LEG_WITH_SECURITY_BCBP, FieldMask.of(FieldMask.Field.PNR, FieldMask.Field.BAG_TAGS));
+        repository.add(projected);
+
+        assertEquals(List.of(projected), repository.findByPnr("ABC123"));
+        assertEquals(List.of(projected), repository.findByBagTag("0014123457"));
+        assertEquals(List.of(), repository.findByFrequentFlyerNumber("1234567890123"));
+    }
+
+    @Test
+    void hashedKeysNeverReturnAnotherPass() {
+        long packed = BcbpPassRepository.textKey(0, "ABC123");
+        assertEquals(packed, BcbpPassRepository.textKey(0, "ABC123"));
+        assertNotEquals(packed, BcbpPassRepository.textKey(1, "ABC123"));
+        assertNotEquals(packed, BcbpPassRepository.textKey(0, "ABC12"));
+        assertEquals(-1, BcbpPassRepository.plate("00141234"));
+        assertEquals(-1, BcbpPassRepository.plate("00141234X6003"));
+        assertEquals(14_123_456L, BcbpPassRepository.plate("0014123456003"));
+
+        BcbpPassRepository repository = BcbpPassRepository.builder().build();
+        IataBcbp.Parsed pass = PARSER.parse(MULTI_LEG_WITH_SECURITY_BCBP);
+        repository.add(pass);
+        assertEquals(List.of(pass), repository.findByFrequentFlyerNumber("1234567890123"));
+        assertEquals(List.of(), repository.findByFrequentFlyerNumber("123456789012"));
+        assertEquals(List.of(), repository.findByFrequentFlyerNumber("12345678901234"));
+    }
+
+    @Test
+    void rescansOfOneInstanceAreStoredOnce() {
+        MutableClock clock = new MutableClock(Instant.parse("2024-08-13T08:00:00Z"));
+        BcbpPassRepository repository = BcbpPassRepository.builder().retention(Duration.ofHours(1)).clock(clock).build();
+        IataBcbp.Parsed pass = PARSER.parse(BASIC_BCBP);
+
+        repository.add(pass);
+        clock.advance(Duration.ofMinutes(50));
+        repository.add(pass);
+        assertEquals(List.of(pass), repository.findByPnr("ABC123"));
+        clock.advance(Duration.ofMinutes(50));
+        // The second add restarted the retention period.
+        assertEquals(List.of(pass), repository.findByPnr("ABC123"));
+        repository.add(pass);
+        // Now in both generations, but found once.
+        assertEquals(List.of(pass), repository.findByPnr("ABC123"));
+        repository.add(PARSER.parse(BASIC_BCBP));
+        assertEquals(2, repository.findByPnr("ABC123").size());
+    }
+
+    @Test
+    void evictsPassesAfterTheRetentionPeriod() {
+        MutableClock clock = new MutableClock(Instant.parse("2024-08-13T08:00:00Z"));
+        BcbpPassRepository repository = BcbpPassRepository.builder()
+            .retention(Duration.ofMinutes(10))
+            .clock(clock)
+            .expectedPasses(16)
+            .build();
+
+        List<IataBcbp.Parsed> early = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            IataBcbp.Parsed pass = PARSER.parse(BASIC_BCBP.replace("ABC123", pnr(i)));
+            early.add(pass);
+            repository.add(pass);
+        }
+        for (int i = 0; i < 500; i++) {
+            assertEquals(List.of(early.get(i)), repository.findByPnr(pnr(i)));
+        }
+
+        clock.advance(Duration.ofMinutes(6));
+        IataBcbp.Parsed late = PARSER.parse(BASIC_BCBP.replace("ABC123", pnr(0)));
+        repository.add(late);
+        clock.advance(Duration.ofMinutes(5));
+        assertEquals(List.of(late), repository.findByPnr(pnr(0)));
+        assertEquals(List.of(), repository.findByPnr(pnr(1)));
+
+        repository.expire();
+        assertEquals(List.of(late), repository.findByPnr(pnr(0)));
+        clock.advance(Duration.ofMinutes(5));
+        assertEquals(List.of(), repository.findByPnr(pnr(0)));
+
+        repository.add(early.get(2));
+        repository.clear();
+        assertEquals(List.of(), repository.findByPnr(pnr(2)));
+    }
+
+    @Test
+    void concurrentAddsAreAllFound() throws Exception {
+        BcbpPassRepository repository = BcbpPassRepository.builder().expectedPasses(64).build();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicInteger next = new AtomicInteger();
+        try {
+            List<CompletableFuture<Void>> scanners = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                scanners.add(CompletableFuture.runAsync(() -> {
+                    for (int i = next.getAndIncrement(); i < 4_000; i = next.getAndIncrement()) {
+                        IataBcbp.Parsed pass = PARSER.parse(BASIC_BCBP.replace("ABC123", pnr(i)));
+                        repository.add(pass);
+                        assertEquals(List.of(pass), repository.findByPnr(pnr(i)));
+                        repository.findByPnr(pnr(i / 2));
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(scanners.toArray(new CompletableFuture<?>[0])).get();
+        } finally {
+            executor.shutdownNow();
+        }
+        for (int i = 0; i < 4_000; i++) {
+            List<IataBcbp.Parsed> found = repository.findByPnr(pnr(i));
+            assertEquals(1, found.size());
+            assertEquals(pnr(i), found.get(0).getFirstLeg().getPnrCode());
+        }
+    }
+
+    private static String pnr(int i) {
+        return String.format("P%05d", i);
+    }
+}
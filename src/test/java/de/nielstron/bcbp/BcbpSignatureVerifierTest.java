@@ -0,0 +1,223 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import de.nielstron.bcbp.BcbpSignatureVerifier.Result;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BcbpSignatureVerifierTest {
+
+    private static final String BASIC_BCBP = "M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000";
+    private static final String MULTI_LEG_WITH_SECURITY_BCBP =
+        "M2DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 14D>6181WW6225BAC 00141234560032A0141234567890 1AC AC 1234567890123    20KYLX58ZDEF456 FRAGVALH 3664 227C012C0002 12E2A0140987654321 1AC AC 1234567890123    2PCNWQ^164GIWVC5EH7JNT684FVNJ91W2QA4DVN5J8K4F0L0GEQ3DF5TGBN8709HKT5D3DW3GBHFCVHMY7J5T6HFR41W2QA4DVN5J8K4F0L0GE";
+    private static final String UNSIGNED = MULTI_LEG_WITH_SECURITY_BCBP.substring(0, MULTI_LEG_WITH_SECURITY_BCBP.indexOf('^'));
+
+    @TempDir
+    static Path keys;
+
+    private static KeyPair ecKeys;
+    private static KeyPair rsaKeys;
+
+    @BeforeAll
+    static void writeKeys() throws Exception {
+        KeyPairGenerator ec = KeyPairGenerator.getInstance("EC");
+        ec.initialize(new ECGenParameterSpec("secp256r1"));
+        ecKeys = ec.generateKeyPair();
+        String pem = "-----BEGIN PUBLIC KEY-----\n"
+            + Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII)).encodeToString(ecKeys.getPublic().getEncoded())
+            + "\n-----END PUBLIC KEY-----\n";
+        Files.writeString(keys.resolve("AC-1.pem"), pem);
+
+        KeyPairGenerator rsa = KeyPairGenerator.getInstance("RSA");
+        rsa.initialize(1024);
+        rsaKeys = rsa.generateKeyPair();
+        Files.write(keys.resolve("AC-3.der"), rsaKeys.getPublic().getEncoded());
+    }
+
+    @Test
+    void verifiesTheSignedPortion() throws Exception {
+        BcbpSignatureVerifier verifier = BcbpSignatureVerifier.builder(BcbpKeySource.directory(keys)).build();
+        String signed = sign(UNSIGNED, '1', ecKeys.getPrivate(), "SHA256withECDSA");
+
+        assertEquals(Result.VALID, verifier.verify(signed));
+        assertEquals(Result.VALID, verifier.verify("]Q3" + signed.substring(0, 40) + "\r\n" + signed.substring(40)));
+        assertEquals(Result.INVALID, verifier.verify(signed.replace("DESMARAIS", "DESMARAIX")));
+        assertEquals(Result.VALID, verifier.verify(sign(UNSIGNED, '3', rsaKeys.getPrivate(), "SHA256withRSA")));
+    }
+
+    @Test
+    void reportsWhyNothingWasVerified() throws Exception {
+        BcbpSignatureVerifier verifier = BcbpSignatureVerifier.builder(BcbpKeySource.directory(keys)).build();
+
+        assertEquals(Result.NO_SIGNATURE, verifier.verify(BASIC_BCBP));
+        assertEquals(Result.NOT_BCBP, verifier.verify("garbage"));
+        assertEquals(Result.NOT_BCBP, verifier.verify(null));
+        assertEquals(Result.UNKNOWN_KEY, verifier.verify(sign(UNSIGNED, '2', ecKeys.getPrivate(), "SHA256withECDSA")));
+        assertEquals(Result.UNKNOWN_KEY, verifier.verify(sign(UNSIGNED.replace("BAC ", "BLH "), '1', ecKeys.getPrivate(), "SHA256withECDSA")));
+        // Not Base64, and not a signature either.
+        assertEquals(Result.INVALID, verifier.verify(UNSIGNED + "^104****"));
+        assertEquals(Result.INVALID, verifier.verify(MULTI_LEG_WITH_SECURITY_BCBP));
+    }
+
+    @Test
+    void loadsEachKeyOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        BcbpKeySource directory = BcbpKeySource.directory(keys);
+        BcbpSignatureVerifier verifier = BcbpSignatureVerifier.builder((issuer, keyId) -> {
+            loads.incrementAndGet();
+            return directory.load(issuer, keyId);
+        }).build();
+        String signed = sign(UNSIGNED, '1', ecKeys.getPrivate(), "SHA256withECDSA");
+        String unknown = sign(UNSIGNED, '2', ecKeys.getPrivate(), "SHA256withECDSA");
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Result.VALID, verifier.verify(signed));
+            assertEquals(Result.UNKNOWN_KEY, verifier.verify(unknown));
+        }
+        assertEquals(2, loads.get());
+
+        verifier.clearKeyCache();
+        verifier.verify(signed);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void directoryKeysStayInsideTheDirectory(@TempDir Path root) throws Exception {
+        Path trusted = Files.createDirectory(root.resolve("trusted"));
+        byte[] encoded = ecKeys.getPublic().getEncoded();
+        Files.write(root.resolve("-1.der"), encoded);
+        Files.write(root.resolve("X-1.der"), encoded);
+        Files.write(trusted.resolve("AC-1.der"), encoded);
+        BcbpKeySource directory = BcbpKeySource.directory(trusted.resolve("..").resolve("trusted"));
+
+        assertNotNull(directory.load("AC", "1"));
+        assertNull(directory.load("../", "1"));
+        assertNull(directory.load("..", "/../X-1"));
+        assertNull(directory.load(root.resolve("X").toString(), "1"));
+        assertNull(directory.load("ac", "1"));
+        assertNull(directory.load("AC", "11"));
+
+        BcbpSignatureVerifier verifier = BcbpSignatureVerifier.builder(directory).build();
+        String traversal = sign(UNSIGNED.replace("BAC ", "B../"), '1', ecKeys.getPrivate(), "SHA256withECDSA");
+        assertEquals(Result.UNKNOWN_KEY, verifier.verify(traversal));
+    }
+
+    @Test
+    void malformedIssuersNeverReachTheKeySource() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        BcbpSignatureVerifier verifier = BcbpSignatureVerifier.builder((issuer, keyId) -> {
+            loads.incrementAndGet();
+            return issuer.equals("AB") ? ecKeys.getPublic() : null;
+        }).build();
+
+        for (String issuer : new String[] {"../", "/ET", " AB", "A B", "ab ", "A-B"}) {
+            String pass = sign(UNSIGNED.replace("BAC ", "B" + issuer), '1', ecKeys.getPrivate(), "SHA256withECDSA");
+            assertEquals(Result.UNKNOWN_KEY, verifier.verify(pass), issuer);
+        }
+        assertEquals(Result.UNKNOWN_KEY, verifier.verify(UNSIGNED + "^.04AAAA"));
+        assertEquals(0, loads.get());
+        // Spaces are packed too, so "AB " does not lend its key to another issuer.
+        assertEquals(Result.VALID, verifier.verify(sign(UNSIGNED.replace("BAC ", "BAB "), '1', ecKeys.getPrivate(), "SHA256withECDSA")));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void unknownIssuersAreRememberedInBoundedSpace() {
+        AtomicInteger loads = new AtomicInteger();
+        BcbpSignatureVerifier verifier = BcbpSignatureVerifier.builder((issuer, keyId) -> {
+            loads.incrementAndGet();
+            return null;
+        }).build();
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+        String pass = null;
+
+        for (int i = 0; i < 5_000; i++) {
+            String issuer = "" + alphabet.charAt(i % 36) + alphabet.charAt(i / 36 % 36) + alphabet.charAt(i / 1296);
+            pass = UNSIGNED.replace("BAC ", "B" + issuer) + "^104AAAA";
+            assertEquals(Result.UNKNOWN_KEY, verifier.verify(pass));
+        }
+        assertEquals(5_000, loads.get());
+        // The latest miss is still remembered; older ones may have been displaced rather than kept forever.
+        assertEquals(Result.UNKNOWN_KEY, verifier.verify(pass));
+        assertEquals(5_000, loads.get());
+    }
+
+    @Test
+    void slowKeyLookupsHoldUpOnlyTheirOwnKey() throws Exception {
+        AtomicInteger slowLoads = new AtomicInteger();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BcbpKeySource directory = BcbpKeySource.directory(keys);
+        BcbpSignatureVerifier verifier = BcbpSignatureVerifier.builder((issuer, keyId) -> {
+            if (keyId.equals("1")) {
+                slowLoads.incrementAndGet();
+                entered.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return directory.load(issuer, keyId);
+        }).build();
+        String slow = sign(UNSIGNED, '1', ecKeys.getPrivate(), "SHA256withECDSA");
+        String other = sign(UNSIGNED, '3', rsaKeys.getPrivate(), "SHA256withRSA");
+
+        CompletableFuture<Result> first = CompletableFuture.supplyAsync(() -> verifier.verify(slow));
+        entered.await(10, TimeUnit.SECONDS);
+        // Neither may wait for the pending lookup, which only returns once released below.
+        assertEquals(Result.VALID, CompletableFuture.supplyAsync(() -> verifier.verify(other)).get(5, TimeUnit.SECONDS));
+        CompletableFuture.runAsync(verifier::clearKeyCache).get(5, TimeUnit.SECONDS);
+        release.countDown();
+
+        assertEquals(Result.VALID, first.get(10, TimeUnit.SECONDS));
+        // The lookup overlapped clearKeyCache(), so its key was not kept.
+        assertEquals(Result.VALID, verifier.verify(slow));
+        assertEquals(Result.VALID, verifier.verify(slow));
+        assertEquals(2, slowLoads.get());
+    }
+
+    @Test
+    void verifiesBatchesInParallel() throws Exception {
+        BcbpSignatureVerifier verifier = BcbpSignatureVerifier.builder(BcbpKeySource.directory(keys)).build();
+        String signed = sign(UNSIGNED, '1', ecKeys.getPrivate(), "SHA256withECDSA");
+        String tampered = signed.replace("YULFRA", "YULYYZ");
+        String[] batch = new String[2_000];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = i % 10 == 0 ? tampered : signed;
+        }
+
+        Result[] results = verifier.verifyAll(batch);
+
+        assertEquals(batch.length, results.length);
+        for (int i = 0; i < batch.length; i++) {
+            assertEquals(i % 10 == 0 ? Result.INVALID : Result.VALID, results[i], "payload " + i);
+        }
+    }
+
+    private static String sign(String unsigned, char keyId, PrivateKey key, String algorithm) throws GeneralSecurityException {
+        Signature signature = Signature.getInstance(algorithm);
+        signature.initSign(key);
+        signature.update(unsigned.getBytes(StandardCharsets.ISO_8859_1));
+        String data = Base64.getEncoder().encodeToString(signature.sign());
+        return unsigned + "^" + keyId + String.format("%02X", data.length()) + data;
+    }
+}
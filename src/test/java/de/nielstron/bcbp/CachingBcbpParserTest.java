@@ -0,0 +1,118 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+class CachingBcbpParserTest {
+
+    private static final String BASIC_BCBP = "M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000";
+    private static final String MULTI_LEG_WITH_SECURITY_BCBP =
+        "M2DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 14D>6181WW6225BAC 00141234560032A0141234567890 1AC AC 1234567890123    20KYLX58ZDEF456 FRAGVALH 3664 227C012C0002 12E2A0140987654321 1AC AC 1234567890123    2PCNWQ^164GIWVC5EH7JNT684FVNJ91W2QA4DVN5J8K4F0L0GEQ3DF5TGBN8709HKT5D3DW3GBHFCVHMY7J5T6HFR41W2QA4DVN5J8K4F0L0GE";
+
+    @Test
+    void rescansOfTheSamePayloadHitRegardlessOfFraming() {
+        CachingBcbpParser cache = CachingBcbpParser.builder().build();
+
+        IataBcbp.Parsed first = cache.parse(BASIC_BCBP);
+        assertSame(first, cache.parse(BASIC_BCBP));
+        assertSame(first, cache.parse("]Q3" + BASIC_BCBP));
+        assertSame(first, cache.parse(BASIC_BCBP.substring(0, 30) + "\r\n" + BASIC_BCBP.substring(30)));
+
+        CachingBcbpParser.Stats stats = cache.stats();
+        assertEquals(3, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(0.75, stats.hitRate());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void rejectedPayloadsAreNotCached() {
+        CachingBcbpParser cache = CachingBcbpParser.builder().build();
+
+        assertNull(cache.parse("https://example.com"));
+        assertNull(cache.parse("https://example.com"));
+        assertNull(cache.parse(null));
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.stats().getMissCount());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenFull() {
+        CachingBcbpParser cache = CachingBcbpParser.builder().maximumSize(1).build();
+
+        IataBcbp.Parsed basic = cache.parse(BASIC_BCBP);
+        cache.parse(MULTI_LEG_WITH_SECURITY_BCBP);
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.stats().getEvictionCount());
+        assertNotSame(basic, cache.parse(BASIC_BCBP));
+    }
+
+    @Test
+    void expiresEntriesAfterWriteAndOnNewReferenceYear() {
+        MutableClock clock = new MutableClock(Instant.parse("2020-12-31T23:00:00Z"));
+        CachingBcbpParser cache = CachingBcbpParser.builder()
+            .parser(BcbpParser.builder().clock(clock).build())
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+        IataBcbp.Parsed first = cache.parse(BASIC_BCBP);
+        clock.advance(Duration.ofMinutes(9));
+        assertSame(first, cache.parse(BASIC_BCBP));
+        clock.advance(Duration.ofMinutes(1));
+        IataBcbp.Parsed second = cache.parse(BASIC_BCBP);
+        assertNotSame(first, second);
+
+        clock.advance(Duration.ofMinutes(55));
+        IataBcbp.Parsed nextYear = cache.parse(BASIC_BCBP);
+        assertNotSame(second, nextYear);
+        assertEquals(2021, nextYear.getFlightDate().getYear());
+
+        cache.parse(MULTI_LEG_WITH_SECURITY_BCBP);
+        clock.advance(Duration.ofHours(1));
+        cache.cleanUp();
+        assertEquals(0, cache.size());
+        assertEquals(4, cache.stats().getEvictionCount());
+    }
+
+    @Test
+    void sharesEntriesAcrossThreads() throws Exception {
+        CachingBcbpParser cache = CachingBcbpParser.builder().maximumSize(64).build();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        String payload = BASIC_BCBP.replace("0025", String.format("%04d", i % 32 + 1));
+                        assertEquals(String.valueOf(i % 32 + 1), cache.parse(payload).getCheckInSequence());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(80_000, cache.stats().getRequestCount());
+        assertEquals(32, cache.size());
+    }
+
+    @Test
+    void rejectsInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> CachingBcbpParser.builder().maximumSize(0));
+        assertThrows(IllegalArgumentException.class, () -> CachingBcbpParser.builder().expireAfterWrite(Duration.ZERO));
+    }
+}
@@ -0,0 +1,92 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.nielstron.bcbp.FieldMask.Field;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class FieldMaskTest {
+
+    private static final String MULTI_LEG_WITH_SECURITY_BCBP =
+        "M2DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 14D>6181WW6225BAC 00141234560032A0141234567890 1AC AC 1234567890123    20KYLX58ZDEF456 FRAGVALH 3664 227C012C0002 12E2A0140987654321 1AC AC 1234567890123    2PCNWQ^164GIWVC5EH7JNT684FVNJ91W2QA4DVN5J8K4F0L0GEQ3DF5TGBN8709HKT5D3DW3GBHFCVHMY7J5T6HFR41W2QA4DVN5J8K4F0L0GE";
+
+    @Test
+    void securityLaneMaskLoadsOnlyItsFields() {
+        FieldMask securityLane = FieldMask.of(Field.FLIGHT_NUMBER, Field.OPERATING_CARRIER, Field.FLIGHT_DATE, Field.FROM_AIRPORT)
+            .with(Field.REPEATED_CONDITIONAL);
+        IataBcbp.Parsed full = IataBcbp.parse(MULTI_LEG_WITH_SECURITY_BCBP);
+        IataBcbp.Parsed projected = IataBcbp.parse(MULTI_LEG_WITH_SECURITY_BCBP, securityLane);
+
+        assertEquals(2, projected.getNumberOfLegs());
+        for (int i = 0; i < 2; i++) {
+            IataBcbp.Leg expected = full.getLegs().get(i);
+            IataBcbp.Leg leg = projected.getLegs().get(i);
+            assertEquals(expected.flightCode(), leg.flightCode());
+            assertEquals(expected.getFromAirport(), leg.getFromAirport());
+            assertEquals(expected.getConditionalSize(), leg.getConditionalSize());
+            assertEquals(expected.getRepeatedConditional().getSelecteeIndicator(), leg.getRepeatedConditional().getSelecteeIndicator());
+            // Resolved against the issuance date even though the unique section itself was skipped.
+            assertEquals(expected.getFlightDate(), leg.getFlightDate());
+            assertThrows(IllegalStateException.class, leg::getToAirport);
+            assertThrows(IllegalStateException.class, leg::getSeatNumber);
+        }
+
+        assertFalse(projected.isLoaded(Field.PASSENGER_NAME));
+        assertTrue(projected.isLoaded(Field.FLIGHT_DATE));
+        assertThrows(IllegalStateException.class, projected::getPassengerName);
+        assertThrows(IllegalStateException.class, projected::getUniqueConditional);
+        assertThrows(IllegalStateException.class, projected::getSecurityData);
+        assertThrows(IllegalStateException.class, projected::summary);
+    }
+
+    @Test
+    void bagTagsLoadWithoutTheRestOfTheUniqueSection() {
+        IataBcbp.Parsed projected = IataBcbp.parse(MULTI_LEG_WITH_SECURITY_BCBP, FieldMask.of(Field.BAG_TAGS));
+
+        IataBcbp.UniqueConditional unique = projected.getUniqueConditional();
+        assertEquals(List.of("0014123456003"), unique.getBagTagNumbers());
+        assertThrows(IllegalStateException.class, unique::getIssuanceDate);
+        assertThrows(IllegalStateException.class, projected.getFirstLeg()::getRepeatedConditional);
+
+        IataBcbp.Parsed withoutTags = IataBcbp.parse(MULTI_LEG_WITH_SECURITY_BCBP, FieldMask.all().without(Field.BAG_TAGS));
+        assertEquals("1", withoutTags.getUniqueConditional().getPassengerDescription());
+        assertThrows(IllegalStateException.class, withoutTags.getUniqueConditional()::getBagTagNumbers);
+    }
+
+    @Test
+    void allFieldsMatchAPlainParse() {
+        IataBcbp.Parsed projected = IataBcbp.parse(MULTI_LEG_WITH_SECURITY_BCBP, FieldMask.all());
+
+        BcbpBinaryCodecTest.assertSamePass(IataBcbp.parse(MULTI_LEG_WITH_SECURITY_BCBP), projected);
+        for (Field field : Field.values()) {
+            assertTrue(projected.isLoaded(field));
+        }
+    }
+
+    @Test
+    void stillValidatesTheWholePayload() {
+        FieldMask nameOnly = FieldMask.of(Field.PASSENGER_NAME);
+        String brokenSecondLeg = MULTI_LEG_WITH_SECURITY_BCBP.replace("FRAGVALH", "FRAGV LH");
+
+        assertNull(IataBcbp.parse(brokenSecondLeg, nameOnly));
+        assertNull(IataBcbp.parse(null, nameOnly));
+        assertEquals("Luc Desmarais", IataBcbp.parse(MULTI_LEG_WITH_SECURITY_BCBP, nameOnly).getPassengerName());
+    }
+
+    @Test
+    void masksAreValues() {
+        FieldMask mask = FieldMask.of(Field.SEAT, Field.PNR);
+
+        assertEquals(FieldMask.of(Field.PNR).with(Field.SEAT), mask);
+        assertSame(mask, mask.with(Field.SEAT));
+        assertTrue(mask.contains(Field.PNR));
+        assertFalse(mask.without(Field.PNR).contains(Field.PNR));
+        assertEquals("FieldMask[PNR, SEAT]", mask.toString());
+    }
+}
@@ -3,8 +3,13 @@ package de.nielstron.bcbp;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
 import org.junit.jupiter.api.Test;
 
 class IataBcbpTest {
@@ -75,4 +80,76 @@ class IataBcbpTest {
         assertEquals("HAM", parsed.getToAirport());
         assertEquals("LX1056", parsed.flightCode());
     }
+
+    @Test
+    void parsesByteArraySlice() {
+        byte[] bytes = ("xx" + MULTI_LEG_WITH_SECURITY_BCBP + "yy").getBytes(StandardCharsets.US_ASCII);
+        IataBcbp.Parsed parsed = IataBcbp.parse(bytes, 2, MULTI_LEG_WITH_SECURITY_BCBP.length());
+        assertNotNull(parsed);
+        assertEquals("Luc Desmarais", parsed.getPassengerName());
+        assertEquals("LH3664", parsed.getLegs().get(1).flightCode());
+        assertEquals(IataBcbp.parse(MULTI_LEG_WITH_SECURITY_BCBP).getSecurityData().getData(), parsed.getSecurityData().getData());
+    }
+
+    @Test
+    void parsesHeapAndDirectByteBuffersWithoutMovingPosition() {
+        byte[] bytes = ("]Q3" + BASIC_BCBP).getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer heap = ByteBuffer.wrap(bytes);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+
+        for (ByteBuffer buffer : new ByteBuffer[] {heap, direct}) {
+            IataBcbp.Parsed parsed = IataBcbp.parse(buffer);
+            assertNotNull(parsed);
+            assertEquals("AC834", parsed.flightCode());
+            assertEquals("1A", parsed.getSeat());
+            assertEquals(0, buffer.position());
+            assertEquals(bytes.length, buffer.limit());
+        }
+    }
+
+    @Test
+    void rejectsInvalidBytes() {
+        byte[] bytes = "Q1DOE/JOHN            EXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXX".getBytes(StandardCharsets.US_ASCII);
+        assertNull(IataBcbp.parse(bytes, 0, bytes.length));
+        assertNull(IataBcbp.parse((ByteBuffer) null));
+    }
+
+    @Test
+    void preCheckRejectsFramesThatAreNotBcbp() {
+        for (String frame : List.of("", "M1short", "https://menu.example.com/table/12", "M1Doe/John            E" + "X".repeat(40))) {
+            assertFalse(IataBcbp.isLikelyBcbp(frame), frame);
+        }
+        assertFalse(IataBcbp.isLikelyBcbp(null));
+        assertFalse(IataBcbp.validate(null, 0, 0));
+        assertTrue(IataBcbp.isLikelyBcbp("]Q3" + BASIC_BCBP + "\r\n"));
+        assertTrue(IataBcbp.isLikelyBcbp(new StringBuilder(MULTI_LEG_WITH_SECURITY_BCBP)));
+
+        byte[] bytes = ("xx" + BASIC_BCBP).getBytes(StandardCharsets.ISO_8859_1);
+        assertTrue(IataBcbp.validate(bytes, 2, bytes.length - 2));
+        assertFalse(IataBcbp.validate(bytes, 0, bytes.length));
+    }
+
+    @Test
+    void preCheckAgreesWithParseOnMutatedAndTruncatedPayloads() {
+        Random random = new Random(13);
+        String alphabet = " 0123456789ABCDEF-/>^\u2003\u00c9";
+        String[] seeds = {BASIC_BCBP, MULTI_LEG_WITH_SECURITY_BCBP, LUFTHANSA_AZTEC_BCBP_WITH_TRAILING_SPACES};
+        int accepted = 0;
+        for (int i = 0; i < 50_000; i++) {
+            String seed = seeds[i % seeds.length];
+            int cut = random.nextInt(3) == 0 ? random.nextInt(seed.length()) : 0;
+            char[] chars = seed.substring(0, seed.length() - cut).toCharArray();
+            for (int mutation = random.nextInt(4); mutation >= 0; mutation--) {
+                chars[random.nextInt(chars.length)] = alphabet.charAt(random.nextInt(alphabet.length()));
+            }
+            String payload = new String(chars);
+            boolean parses = IataBcbp.parse(payload) != null;
+            byte[] bytes = payload.getBytes(StandardCharsets.ISO_8859_1);
+
+            assertEquals(parses, IataBcbp.isLikelyBcbp(payload), payload);
+            assertEquals(parses, IataBcbp.validate(bytes, 0, bytes.length), payload);
+            accepted += parses ? 1 : 0;
+        }
+        assertTrue(accepted > 5_000 && accepted < 45_000, accepted + " of 50000 accepted");
+    }
 }
@@ -0,0 +1,115 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+
+class JulianDatesTest {
+
+    private static final int[] REFERENCE_YEARS = {1, 4, 1999, 2019, 2020, 2023, 2024, 2025, 2028, 2029, 2100, 9999};
+
+    @Test
+    void issuanceDatesMatchTheYearScan() {
+        for (int referenceYear : REFERENCE_YEARS) {
+            JulianDates dates = JulianDates.forYear(referenceYear);
+            for (int digit = 0; digit < 10; digit++) {
+                assertEquals(scanClosestYear(referenceYear, digit), JulianDates.closestYearWithLastDigit(referenceYear, digit));
+                for (int day = 0; day <= 367; day++) {
+                    LocalDate expected = decodeDayOfYear(day, scanClosestYear(referenceYear, digit));
+                    assertEquals(expected, dates.issuanceDate(digit, day), referenceYear + " " + digit + " " + day);
+                }
+            }
+        }
+    }
+
+    @Test
+    void flightDatesMatchPerCallResolution() {
+        for (int referenceYear : REFERENCE_YEARS) {
+            JulianDates dates = JulianDates.forYear(referenceYear);
+            for (int digit = 0; digit < 10; digit++) {
+                for (int issuanceDay : new int[] {1, 2, 58, 59, 60, 61, 180, 300, 364, 365, 366}) {
+                    LocalDate issuance = dates.issuanceDate(digit, issuanceDay);
+                    for (int day = 1; day <= 366; day++) {
+                        LocalDate expected = resolveFlightDate(decodeDayOfYear(day, referenceYear), issuance);
+                        assertEquals(expected, dates.flightDate(day, issuance), referenceYear + " " + issuance + " " + day);
+                    }
+                }
+            }
+            for (int day = 1; day <= 366; day++) {
+                assertEquals(decodeDayOfYear(day, referenceYear), dates.flightDate(day, null));
+            }
+        }
+    }
+
+    @Test
+    void yearsOutsideTheWindowAreComputed() {
+        JulianDates dates = JulianDates.forYear(2024);
+        assertEquals(LocalDate.of(1990, 2, 1), dates.date(1990, 32));
+        assertNull(dates.date(2100, 366));
+        assertNull(dates.date(2024, 0));
+        assertEquals(LocalDate.of(2050, 12, 31), dates.flightDate(365, LocalDate.of(2050, 1, 1)));
+        assertEquals(LocalDate.of(2051, 1, 1), dates.flightDate(1, LocalDate.of(2050, 6, 1)));
+    }
+
+    @Test
+    void datesAreSharedInstances() {
+        JulianDates dates = JulianDates.forYear(2024);
+        assertSame(dates, JulianDates.forYear(2024));
+        assertSame(dates.date(2024, 60), dates.flightDate(60, null));
+        LocalDate issuance = dates.issuanceDate(4, 100);
+        assertSame(dates.flightDate(50, issuance), dates.flightDate(50, issuance));
+
+        IataBcbp.Parsed first = BcbpParser.builder().fixedReferenceYear(2024).build().parse(
+            "M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000");
+        assertSame(dates.date(2024, 226), first.getFlightDate());
+    }
+
+    @Test
+    void parserMovesToTheNextYearsTable() {
+        MutableClock clock = new MutableClock(Instant.parse("2024-12-31T23:59:59Z"));
+        BcbpParser parser = BcbpParser.builder().clock(clock).build();
+        assertSame(JulianDates.forYear(2024), parser.julianDates());
+        clock.set(Instant.parse("2025-01-01T00:00:00Z"));
+        assertSame(JulianDates.forYear(2025), parser.julianDates());
+        assertEquals(2025, parser.referenceYear());
+    }
+
+    /** The resolution the tables replace, kept to check them against. */
+    private static LocalDate resolveFlightDate(LocalDate candidate, LocalDate issuanceDate) {
+        if (candidate == null || issuanceDate == null) {
+            return candidate;
+        }
+        LocalDate dateInIssueYear = decodeDayOfYear(candidate.getDayOfYear(), issuanceDate.getYear());
+        if (dateInIssueYear == null) {
+            return candidate;
+        }
+        return dateInIssueYear.isBefore(issuanceDate) ? dateInIssueYear.plusYears(1) : dateInIssueYear;
+    }
+
+    private static LocalDate decodeDayOfYear(int dayOfYear, int year) {
+        if (dayOfYear < 1 || dayOfYear > 366) {
+            return null;
+        }
+        try {
+            return LocalDate.ofYearDay(year, dayOfYear);
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+
+    private static int scanClosestYear(int referenceYear, int digit) {
+        int best = referenceYear;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int year = referenceYear - 20; year <= referenceYear + 20; year++) {
+            if (Math.floorMod(year, 10) == digit && Math.abs(year - referenceYear) < bestDistance) {
+                bestDistance = Math.abs(year - referenceYear);
+                best = year;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,81 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class LazyBcbpTest {
+
+    private static final String BASIC_BCBP = "M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000";
+    private static final String MULTI_LEG_WITH_SECURITY_BCBP =
+        "M2DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 14D>6181WW6225BAC 00141234560032A0141234567890 1AC AC 1234567890123    20KYLX58ZDEF456 FRAGVALH 3664 227C012C0002 12E2A0140987654321 1AC AC 1234567890123    2PCNWQ^164GIWVC5EH7JNT684FVNJ91W2QA4DVN5J8K4F0L0GEQ3DF5TGBN8709HKT5D3DW3GBHFCVHMY7J5T6HFR41W2QA4DVN5J8K4F0L0GE";
+
+    @Test
+    void matchesEagerParse() {
+        IataBcbp.Parsed eager = IataBcbp.parse(MULTI_LEG_WITH_SECURITY_BCBP);
+        LazyBcbp lazy = IataBcbp.parseLazy(MULTI_LEG_WITH_SECURITY_BCBP);
+        assertNotNull(lazy);
+
+        assertEquals(eager.getFormatCode(), lazy.getFormatCode());
+        assertEquals(eager.getNumberOfLegs(), lazy.getNumberOfLegs());
+        assertEquals(eager.getPassengerName(), lazy.getPassengerName());
+        assertEquals(eager.getTicketIndicator(), lazy.getTicketIndicator());
+        assertEquals(eager.getVersionNumberIndicator(), lazy.getVersionNumberIndicator());
+        assertEquals(eager.getVersionNumber(), lazy.getVersionNumber());
+        assertEquals(eager.getAirlineData(), lazy.getAirlineData());
+        assertEquals(eager.getSecurityData().getData(), lazy.getSecurityData().getData());
+        assertEquals(eager.getUniqueConditional().getBagTagNumbers(), lazy.getUniqueConditional().getBagTagNumbers());
+        assertEquals(eager.summary(), lazy.summary());
+
+        for (int i = 0; i < eager.getNumberOfLegs(); i++) {
+            IataBcbp.Leg expected = eager.getLegs().get(i);
+            LazyBcbp.Leg actual = lazy.getLegs().get(i);
+            assertEquals(expected.getPnrCode(), actual.getPnrCode());
+            assertEquals(expected.getFromAirport(), actual.getFromAirport());
+            assertEquals(expected.getToAirport(), actual.getToAirport());
+            assertEquals(expected.flightCode(), actual.flightCode());
+            assertEquals(expected.getFlightDate(), actual.getFlightDate());
+            assertEquals(expected.getCompartmentCode(), actual.getCompartmentCode());
+            assertEquals(expected.getSeatNumber(), actual.getSeatNumber());
+            assertEquals(expected.getCheckInSequenceNumber(), actual.getCheckInSequenceNumber());
+            assertEquals(expected.getPassengerStatus(), actual.getPassengerStatus());
+            assertEquals(expected.getConditionalSize(), actual.getConditionalSize());
+            assertEquals(
+                expected.getRepeatedConditional().getFrequentFlyerNumber(),
+                actual.getRepeatedConditional().getFrequentFlyerNumber()
+            );
+        }
+    }
+
+    @Test
+    void memoizesDecodedFields() {
+        LazyBcbp lazy = IataBcbp.parseLazy(BASIC_BCBP);
+        assertNotNull(lazy);
+        assertSame(lazy.getPassengerName(), lazy.getPassengerName());
+        assertSame(lazy.getFirstLeg().flightCode(), lazy.flightCode());
+        assertNull(lazy.getSecurityData());
+        assertNull(lazy.getSecurityData());
+    }
+
+    @Test
+    void rejectsInvalidPayloads() {
+        assertNull(IataBcbp.parseLazy((String) null));
+        assertNull(IataBcbp.parseLazy("M1short"));
+        assertNull(IataBcbp.parseLazy("Q1DOE/JOHN            E" + "X".repeat(40)));
+    }
+
+    @Test
+    void byteViewDoesNotDependOnCallerBuffer() {
+        byte[] bytes = BASIC_BCBP.getBytes(StandardCharsets.US_ASCII);
+        LazyBcbp lazy = IataBcbp.parseLazy(bytes, 0, bytes.length);
+        Arrays.fill(bytes, (byte) 'X');
+        assertNotNull(lazy);
+        assertEquals("YUL->FRA | AC834 | Seat 1A", lazy.summary());
+        assertEquals("Luc Desmarais", lazy.toParsed().getPassengerName());
+    }
+}
@@ -0,0 +1,87 @@
+package de.nielstron.bcbp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** The regex-based helpers the parser used before the char scanners; kept as a differential oracle. */
+final class LegacyRegexNormalization {
+
+    private static final Pattern NUMBER_WITH_SUFFIX_PATTERN = Pattern.compile("^(0*)(\\d+)([A-Z]?)$");
+
+    private LegacyRegexNormalization() {
+    }
+
+    static String prettyPassengerName(String value) {
+        String normalized = value.trim().replaceAll("\\s+", " ");
+
+        String[] split = normalized.split("/", 2);
+        String lastName = split.length > 0 ? titleCaseWords(split[0].trim()) : "";
+        String firstName = split.length > 1 ? titleCaseWords(split[1].trim()) : "";
+
+        String joined = String.join(" ", List.of(firstName, lastName).stream().filter(s -> !s.isBlank()).toList());
+        return joined.isBlank() ? normalized : joined;
+    }
+
+    private static String titleCaseWords(String value) {
+        if (value.isBlank()) {
+            return "";
+        }
+
+        String[] words = value.toLowerCase(Locale.ROOT).split(" ");
+        List<String> casedWords = new ArrayList<>(words.length);
+        for (String word : words) {
+            String[] pieces = word.split("-");
+            List<String> casedPieces = new ArrayList<>(pieces.length);
+            for (String piece : pieces) {
+                if (piece.isEmpty()) {
+                    casedPieces.add(piece);
+                } else {
+                    char first = Character.toUpperCase(piece.charAt(0));
+                    casedPieces.add(first + piece.substring(1));
+                }
+            }
+            casedWords.add(String.join("-", casedPieces));
+        }
+        return String.join(" ", casedWords);
+    }
+
+    static String normalizePaddedNumberWithOptionalSuffix(String value) {
+        String trimmed = value == null ? "" : value.trim();
+        if (trimmed.isBlank()) {
+            return "";
+        }
+
+        Matcher match = NUMBER_WITH_SUFFIX_PATTERN.matcher(trimmed);
+        if (!match.matches()) {
+            return trimmed;
+        }
+
+        String number = match.group(2);
+        String noLeadingZeros = number.replaceFirst("^0+", "");
+        if (noLeadingZeros.isBlank()) {
+            noLeadingZeros = "0";
+        }
+
+        return noLeadingZeros + match.group(3);
+    }
+
+    static String flightCode(String operatingCarrier, String flightNumber) {
+        String normalizedFlight = flightNumber.replaceFirst("^0+", "");
+        String number = normalizedFlight.isBlank() ? flightNumber : normalizedFlight;
+        return operatingCarrier + number;
+    }
+
+    static String trimEndToEmpty(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replaceFirst("\\s+$", "");
+    }
+
+    static String trimStart(String value) {
+        return value.replaceFirst("^\\s+", "");
+    }
+}
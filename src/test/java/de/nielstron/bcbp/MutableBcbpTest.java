@@ -0,0 +1,209 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class MutableBcbpTest {
+
+    private static final String BASIC_BCBP = "M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000";
+    private static final String MULTI_LEG_WITH_SECURITY_BCBP =
+        "M2DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 14D>6181WW6225BAC 00141234560032A0141234567890 1AC AC 1234567890123    20KYLX58ZDEF456 FRAGVALH 3664 227C012C0002 12E2A0140987654321 1AC AC 1234567890123    2PCNWQ^164GIWVC5EH7JNT684FVNJ91W2QA4DVN5J8K4F0L0GEQ3DF5TGBN8709HKT5D3DW3GBHFCVHMY7J5T6HFR41W2QA4DVN5J8K4F0L0GE";
+    private static final BcbpParser PARSER = BcbpParser.builder().fixedReferenceYear(2024).build();
+
+    @Test
+    void matchesEagerParse() {
+        MutableBcbp target = new MutableBcbp();
+        for (String payload : payloads()) {
+            IataBcbp.Parsed expected = PARSER.parse(payload);
+            assertEquals(expected != null, PARSER.parseInto(payload, target), payload);
+            if (expected != null) {
+                assertMatches(expected, target);
+                assertEquals(expected.summary(), target.toParsed().summary());
+            }
+        }
+    }
+
+    @Test
+    void reportsRejectionsLikeTryParse() {
+        MutableBcbp target = new MutableBcbp();
+        String tooLong = BASIC_BCBP + "X".repeat(BcbpParser.DEFAULT_MAX_PAYLOAD_LENGTH);
+        String[] rejected = {"M1short", BASIC_BCBP.replace("YUL", " YU"), "\r\n" + BASIC_BCBP.replace("0834", "    "), tooLong};
+        for (String payload : rejected) {
+            ParseResult expected = PARSER.tryParse(payload);
+            assertFalse(PARSER.parseInto(payload, target));
+            assertFalse(target.isValid());
+            assertEquals(expected.getFailure(), target.getFailure(), payload);
+            assertEquals(expected.getOffset(), target.getFailureOffset(), payload);
+            assertEquals(expected.getLegIndex(), target.getFailureLeg(), payload);
+            assertThrows(IllegalStateException.class, target::getFirstLeg);
+        }
+        assertFalse(PARSER.parseInto((CharSequence) null, target));
+        assertEquals(ParseResult.Failure.NULL_INPUT, target.getFailure());
+
+        assertTrue(PARSER.parseInto(BASIC_BCBP, target));
+        assertNull(target.getFailure());
+        target.reset();
+        assertFalse(target.isValid());
+    }
+
+    @Test
+    void viewsFollowTheHolder() {
+        MutableBcbp target = new MutableBcbp();
+        assertTrue(IataBcbp.parseInto(MULTI_LEG_WITH_SECURITY_BCBP, target));
+        MutableBcbp.Leg second = target.getLeg(1);
+        CharSequence from = second.getFromAirport();
+        String kept = from.toString();
+        assertEquals("FRA", kept);
+
+        assertTrue(IataBcbp.parseInto(MULTI_LEG_WITH_SECURITY_BCBP.replace("FRAGVA", "MUCGVA"), target));
+        assertSame(second, target.getLeg(1));
+        assertEquals("MUC", from.toString());
+        assertEquals("FRA", kept);
+        assertEquals(0, CharSequence.compare("MUC", target.getLeg(1).getFromAirport()));
+    }
+
+    @Test
+    void parsesScannerBytes() {
+        MutableBcbp target = new MutableBcbp();
+        byte[] bytes = ("xx]Q3" + BASIC_BCBP + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        assertTrue(PARSER.parseInto(bytes, 2, bytes.length - 2, target));
+        bytes[2 + 3 + 30] = 'X';
+        assertEquals("YUL->FRA | AC834 | Seat 1A", target.toParsed().summary());
+        assertEquals("Luc Desmarais", target.getPassengerName().toString());
+    }
+
+    @Test
+    void steadyStateParsingDoesNotAllocate() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)
+            || !threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        MutableBcbp target = new MutableBcbp();
+        byte[] bytes = MULTI_LEG_WITH_SECURITY_BCBP.getBytes(StandardCharsets.ISO_8859_1);
+        long checksum = 0;
+        for (int i = 0; i < 20_000; i++) {
+            checksum += readAll(bytes, target);
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 20_000; i++) {
+            checksum += readAll(bytes, target);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        assertTrue(checksum > 0);
+        assertTrue(allocated < 20_000, () -> allocated + " bytes allocated over 20000 parses");
+    }
+
+    /** Parses and touches every text field, returning something that depends on all of them. */
+    private static long readAll(byte[] bytes, MutableBcbp target) {
+        PARSER.parseInto(bytes, 0, bytes.length, target);
+        long sum = target.getPassengerName().length() + target.getBagTagCount() + target.getSecurityData().length();
+        for (int i = 0; i < target.getNumberOfLegs(); i++) {
+            MutableBcbp.Leg leg = target.getLeg(i);
+            sum += leg.getPnrCode().length() + leg.getFromAirport().charAt(0) + leg.getFlightNumber().length()
+                + leg.getSeatNumber().length() + leg.getFrequentFlyerNumber().length();
+        }
+        return sum;
+    }
+
+    private static List<String> payloads() {
+        List<String> payloads = new ArrayList<>(List.of(
+            BASIC_BCBP,
+            MULTI_LEG_WITH_SECURITY_BCBP,
+            "]Q3" + BASIC_BCBP,
+            BASIC_BCBP.substring(0, 30) + "\r\n" + BASIC_BCBP.substring(30),
+            BASIC_BCBP.replace("0834 ", "0000 ").replace("001A", "000 "),
+            BASIC_BCBP.replace("F001A", "F  1A"),
+            BASIC_BCBP + "^135" + "S".repeat(50) + "  \u2028",
+            MULTI_LEG_WITH_SECURITY_BCBP.replace("0032A", "0032 ").replace("1234567890123    2", "12345         2")
+        ));
+        // The holder must agree field by field wherever the eager parser accepts, not just on clean passes.
+        Random random = new Random(0x13);
+        String alphabet = "0123456789ABCDEFYN -/>^\r\n\u0085";
+        for (int i = 0; i < 3_000; i++) {
+            StringBuilder payload = new StringBuilder(random.nextBoolean() ? BASIC_BCBP : MULTI_LEG_WITH_SECURITY_BCBP);
+            for (int m = 1 + random.nextInt(3); m > 0; m--) {
+                payload.setCharAt(random.nextInt(payload.length()), alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            payloads.add(payload.toString());
+        }
+        return payloads;
+    }
+
+    private static void assertMatches(IataBcbp.Parsed expected, MutableBcbp actual) {
+        assertText(expected.getFormatCode(), actual.getFormatCode());
+        assertEquals(expected.getNumberOfLegs(), actual.getNumberOfLegs());
+        assertText(expected.getPassengerName(), actual.getPassengerName());
+        assertText(expected.getTicketIndicator(), actual.getTicketIndicator());
+        assertText(expected.getVersionNumberIndicator(), actual.getVersionNumberIndicator());
+        assertEquals(Objects.requireNonNullElse(expected.getVersionNumber(), -1), actual.getVersionNumber());
+        assertText(expected.getAirlineData(), actual.getAirlineData());
+
+        IataBcbp.SecurityData security = expected.getSecurityData();
+        assertEquals(security != null, actual.hasSecurityData());
+        assertText(security != null ? security.getType() : null, actual.getSecurityType());
+        assertText(security != null ? security.getData() : null, actual.getSecurityData());
+
+        IataBcbp.UniqueConditional unique = expected.getUniqueConditional();
+        assertEquals(unique != null, actual.hasUniqueConditional());
+        if (unique != null) {
+            assertText(unique.getPassengerDescription(), actual.getPassengerDescription());
+            assertText(unique.getCheckInSource(), actual.getCheckInSource());
+            assertText(unique.getBoardingPassIssuanceSource(), actual.getBoardingPassIssuanceSource());
+            assertEquals(unique.getIssuanceDate(), actual.getIssuanceDate());
+            assertText(unique.getDocumentType(), actual.getDocumentType());
+            assertText(unique.getIssuingAirline(), actual.getIssuingAirline());
+            assertEquals(unique.getBagTagNumbers().size(), actual.getBagTagCount());
+            for (int i = 0; i < actual.getBagTagCount(); i++) {
+                assertText(unique.getBagTagNumbers().get(i), actual.getBagTag(i));
+            }
+        }
+
+        for (int i = 0; i < expected.getNumberOfLegs(); i++) {
+            IataBcbp.Leg leg = expected.getLegs().get(i);
+            MutableBcbp.Leg slot = actual.getLeg(i);
+            assertText(leg.getPnrCode(), slot.getPnrCode());
+            assertText(leg.getFromAirport(), slot.getFromAirport());
+            assertText(leg.getToAirport(), slot.getToAirport());
+            assertText(leg.getOperatingCarrier(), slot.getOperatingCarrier());
+            assertText(leg.getFlightNumber(), slot.getFlightNumber());
+            assertEquals(leg.getFlightDate(), slot.getFlightDate());
+            assertText(leg.getCompartmentCode(), slot.getCompartmentCode());
+            assertText(leg.getSeatNumber(), slot.getSeatNumber());
+            assertText(leg.getCheckInSequenceNumber(), slot.getCheckInSequenceNumber());
+            assertText(leg.getPassengerStatus(), slot.getPassengerStatus());
+            assertEquals(leg.getConditionalSize(), slot.getConditionalSize());
+
+            IataBcbp.RepeatedConditional repeated = leg.getRepeatedConditional();
+            assertEquals(repeated != null, slot.hasRepeatedConditional());
+            if (repeated != null) {
+                assertText(repeated.getAirlineNumericCode(), slot.getAirlineNumericCode());
+                assertText(repeated.getDocumentSerialNumber(), slot.getDocumentSerialNumber());
+                assertText(repeated.getSelecteeIndicator(), slot.getSelecteeIndicator());
+                assertText(repeated.getInternationalDocumentVerification(), slot.getInternationalDocumentVerification());
+                assertText(repeated.getMarketingCarrierDesignator(), slot.getMarketingCarrierDesignator());
+                assertText(repeated.getFrequentFlyerAirlineDesignator(), slot.getFrequentFlyerAirlineDesignator());
+                assertText(repeated.getFrequentFlyerNumber(), slot.getFrequentFlyerNumber());
+                assertText(repeated.getIdAdIndicator(), slot.getIdAdIndicator());
+                assertText(repeated.getFreeBaggageAllowance(), slot.getFreeBaggageAllowance());
+                assertEquals(repeated.getFastTrack(), slot.getFastTrack());
+                assertText(repeated.getAirlineUse(), slot.getAirlineUse());
+            }
+        }
+    }
+
+    private static void assertText(String expected, CharSequence actual) {
+        assertEquals(expected, actual == null ? null : actual.toString());
+    }
+}
@@ -0,0 +1,108 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.nielstron.bcbp.ParseResult.Failure;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ParseResultTest {
+
+    private static final String BASIC_BCBP = "M1DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 106>60000";
+    private static final String MULTI_LEG_WITH_SECURITY_BCBP =
+        "M2DESMARAIS/LUC       EABC123 YULFRAAC 0834 226F001A0025 14D>6181WW6225BAC 00141234560032A0141234567890 1AC AC 1234567890123    20KYLX58ZDEF456 FRAGVALH 3664 227C012C0002 12E2A0140987654321 1AC AC 1234567890123    2PCNWQ^164GIWVC5EH7JNT684FVNJ91W2QA4DVN5J8K4F0L0GEQ3DF5TGBN8709HKT5D3DW3GBHFCVHMY7J5T6HFR41W2QA4DVN5J8K4F0L0GE";
+
+    @Test
+    void reportsHeaderFailures() {
+        assertRejected(IataBcbp.tryParse((String) null), Failure.NULL_INPUT, -1, -1);
+        assertRejected(IataBcbp.tryParse("M1DESMARAIS"), Failure.TOO_SHORT, 11, -1);
+        assertRejected(IataBcbp.tryParse("X" + BASIC_BCBP.substring(1)), Failure.FORMAT_CODE, 0, -1);
+        assertRejected(IataBcbp.tryParse("M0" + BASIC_BCBP.substring(2)), Failure.LEG_COUNT, 1, -1);
+        assertRejected(IataBcbp.tryParse(BASIC_BCBP.replace("DESMARAIS", "Desmarais")), Failure.PASSENGER_NAME, 2, -1);
+    }
+
+    @Test
+    void reportsLegFailuresAtTheOffendingField() {
+        assertRejected(IataBcbp.tryParse(BASIC_BCBP.replace("YULFRAAC", "Y  FRAAC")), Failure.FROM_AIRPORT, 30, 0);
+        assertRejected(IataBcbp.tryParse(BASIC_BCBP.replace("YULFRAAC", "YUL   AC")), Failure.TO_AIRPORT, 33, 0);
+        assertRejected(IataBcbp.tryParse(BASIC_BCBP.replace("YULFRAAC ", "YULFRAA  ")), Failure.OPERATING_CARRIER, 36, 0);
+        assertRejected(IataBcbp.tryParse(BASIC_BCBP.replace("AC 0834 ", "AC      ")), Failure.FLIGHT_NUMBER, 39, 0);
+        assertRejected(IataBcbp.tryParse(BASIC_BCBP.replace("0834 226", "0834 999")), Failure.DAY_OF_YEAR, 44, 0);
+        assertRejected(IataBcbp.tryParse(BASIC_BCBP.replace("0025 106", "0025 10G")), Failure.CONDITIONAL_SIZE, 58, 0);
+        assertRejected(IataBcbp.tryParse(BASIC_BCBP.replace("0025 106", "0025 1FF")), Failure.CONDITIONAL_OVERFLOW, 60, 0);
+        assertRejected(IataBcbp.tryParse(BASIC_BCBP.replace(">60000", ">6FF00")), Failure.UNIQUE_SIZE, 62, 0);
+    }
+
+    @Test
+    void reportsTheLegOfALaterFailure() {
+        int secondLeg = MULTI_LEG_WITH_SECURITY_BCBP.indexOf("DEF456 FRA");
+        assertRejected(IataBcbp.tryParse(MULTI_LEG_WITH_SECURITY_BCBP.replace("FRAGVALH", "FRAGV LH")),
+            Failure.TO_AIRPORT, secondLeg + 10, 1);
+        assertRejected(IataBcbp.tryParse(MULTI_LEG_WITH_SECURITY_BCBP.substring(0, secondLeg + 20)),
+            Failure.CONDITIONAL_SIZE, secondLeg + 20, 1);
+    }
+
+    @Test
+    void offsetsAreCountedFromThePayloadStart() {
+        BcbpParser parser = BcbpParser.builder().stripSymbologyIdentifier(true).build();
+        ParseResult result = parser.tryParse("]Q3" + BASIC_BCBP.replace("0834 226", "0834 999"));
+
+        assertRejected(result, Failure.DAY_OF_YEAR, 44, 0);
+        assertEquals("ParseResult[rejected: DAY_OF_YEAR at 44, leg 0]", result.toString());
+        assertEquals("ParseResult[rejected: FORMAT_CODE at 0]", IataBcbp.tryParse("X" + BASIC_BCBP.substring(1)).toString());
+    }
+
+    @Test
+    void repeatedFailuresShareOneInstance() {
+        String garbage = "X" + BASIC_BCBP.substring(1);
+        byte[] bytes = garbage.getBytes(StandardCharsets.ISO_8859_1);
+
+        assertSame(IataBcbp.tryParse(garbage), IataBcbp.tryParse(garbage));
+        assertSame(IataBcbp.tryParse(garbage), IataBcbp.tryParse(bytes, 0, bytes.length));
+        assertSame(IataBcbp.tryParse((String) null), IataBcbp.tryParse(null, 0, 0));
+        assertThrows(NoSuchElementException.class, () -> IataBcbp.tryParse(garbage).get());
+    }
+
+    @Test
+    void successMatchesParse() {
+        ParseResult result = IataBcbp.tryParse(MULTI_LEG_WITH_SECURITY_BCBP);
+
+        assertTrue(result.isSuccess());
+        assertNull(result.getFailure());
+        assertEquals(-1, result.getOffset());
+        assertEquals(-1, result.getLegIndex());
+        BcbpBinaryCodecTest.assertSamePass(IataBcbp.parse(MULTI_LEG_WITH_SECURITY_BCBP), result.get());
+    }
+
+    @Test
+    void agreesWithParseOnMutatedPayloads() {
+        Random random = new Random(15);
+        String[] seeds = {BASIC_BCBP, MULTI_LEG_WITH_SECURITY_BCBP};
+        for (int i = 0; i < 20_000; i++) {
+            char[] chars = seeds[i % seeds.length].toCharArray();
+            chars[random.nextInt(chars.length)] = (char) (' ' + random.nextInt(64));
+            String mutated = new String(chars, 0, chars.length - random.nextInt(chars.length));
+
+            ParseResult result = IataBcbp.tryParse(mutated);
+            assertEquals(IataBcbp.parse(mutated) != null, result.isSuccess(), mutated);
+            if (!result.isSuccess()) {
+                assertTrue(result.getOffset() >= 0 && result.getOffset() <= mutated.length(), mutated);
+            }
+        }
+    }
+
+    private static void assertRejected(ParseResult result, Failure failure, int offset, int legIndex) {
+        assertFalse(result.isSuccess());
+        assertNull(result.getParsed());
+        assertEquals(failure, result.getFailure());
+        assertEquals(offset, result.getOffset());
+        assertEquals(legIndex, result.getLegIndex());
+    }
+}
@@ -0,0 +1,89 @@
+package de.nielstron.bcbp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class RegexFreeNormalizationTest {
+
+    private static final int CORPUS_SIZE = 200_000;
+
+    private static final String NAME_ALPHABET = "ABCDEFXYZ0129 /-";
+    private static final String NUMBER_ALPHABET = "0000123456789 AZ";
+    private static final String EDGE_CHARACTERS =
+        "\t\n\u000B\f\r\u0000\u001F\u00A0\u2003\u2028\u0085\u00C9\u0130\u00DF\u01C5a+-/\u0661";
+
+    @Test
+    void passengerNamesMatchRegexImplementation() {
+        Random random = new Random(1);
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            String value = randomString(random, NAME_ALPHABET, 24);
+            assertEquals(LegacyRegexNormalization.prettyPassengerName(value), IataBcbp.prettyPassengerName(value), () -> describe(value));
+        }
+    }
+
+    @Test
+    void paddedNumbersMatchRegexImplementation() {
+        Random random = new Random(2);
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            String value = randomString(random, NUMBER_ALPHABET, 6);
+            assertEquals(
+                LegacyRegexNormalization.normalizePaddedNumberWithOptionalSuffix(value),
+                IataBcbp.normalizePaddedNumberWithOptionalSuffix(value),
+                () -> describe(value)
+            );
+        }
+    }
+
+    @Test
+    void flightCodesMatchRegexImplementation() {
+        Random random = new Random(3);
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            String value = randomString(random, NUMBER_ALPHABET, 6);
+            assertEquals(LegacyRegexNormalization.flightCode("LH", value), IataBcbp.flightCode("LH", value), () -> describe(value));
+        }
+    }
+
+    @Test
+    void whitespaceTrimmingMatchesRegexImplementation() {
+        Random random = new Random(4);
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            String value = randomString(random, "AB1^ ", 8);
+            assertEquals(
+                LegacyRegexNormalization.trimEndToEmpty(value),
+                BcbpLayout.trimEndToEmpty(value, 0, value.length()),
+                () -> describe(value)
+            );
+            if (!value.startsWith("]")) {
+                assertEquals(
+                    LegacyRegexNormalization.trimStart(value),
+                    value.substring(IataBcbp.payloadStart(value)),
+                    () -> describe(value)
+                );
+            }
+        }
+    }
+
+    private static String randomString(Random random, String alphabet, int maxLength) {
+        int length = random.nextInt(maxLength + 1);
+        StringBuilder value = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            String source = random.nextInt(8) == 0 ? EDGE_CHARACTERS : alphabet;
+            value.append(source.charAt(random.nextInt(source.length())));
+        }
+        return value.toString();
+    }
+
+    private static String describe(String value) {
+        StringBuilder escaped = new StringBuilder("input: \"");
+        for (char c : value.toCharArray()) {
+            if (c >= 0x20 && c < 0x7F) {
+                escaped.append(c);
+            } else {
+                escaped.append(String.format("\\u%04X", (int) c));
+            }
+        }
+        return escaped.append('"').toString();
+    }
+}